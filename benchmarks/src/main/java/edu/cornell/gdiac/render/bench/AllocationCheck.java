@@ -0,0 +1,173 @@
+package edu.cornell.gdiac.render.bench;
+
+import java.lang.management.ManagementFactory;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Affine2;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+
+import edu.cornell.gdiac.math.Poly2;
+import edu.cornell.gdiac.render.*;
+
+/**
+ * This class is a regression check that a steady-state frame allocates nothing.
+ *
+ * The check draws a representative frame with a {@link CUSpriteBatch}: color,
+ * gradient and scissor changes, fills, outlines, textures, regions, and a
+ * polygon. After warming up (so that the JIT has compiled the drawing code),
+ * it measures the bytes allocated by the drawing thread over many frames with
+ * {@link com.sun.management.ThreadMXBean}. The frames are measured in several
+ * rounds, and the check fails if the average of the best round exceeds the
+ * budget. A steady-state allocation shows up in every round, while one-time
+ * events (such as a late JIT recompilation) only show up in one.
+ *
+ * The frame runs against a {@link CUGLRecorder}, which does not allocate once
+ * it is warmed up. The recorder log is on, and is cleared before each frame,
+ * so the check also covers recording. The counts of the last frame are shown.
+ *
+ * The check takes three optional arguments: the budget in bytes per frame
+ * (default 0), the number of warmup frames (default 5000), and the number of
+ * measured frames per round (default 1000). The process exits with status 1 if the
+ * check fails, so that it may be used in a build.
+ */
+public class AllocationCheck {
+    /** The number of shapes of each kind in a frame */
+    public static final int SHAPES = 256;
+    /** The number of measured rounds */
+    public static final int ROUNDS = 5;
+
+    /** The sprite batch */
+    private final CUSpriteBatch batch;
+    /** The textures to alternate between */
+    private final CUTexture[] textures;
+    /** The texture regions to alternate between */
+    private final TextureRegion[] regions;
+    /** The gradient of the frame */
+    private final CUGradient gradient;
+    /** The scissor of the frame */
+    private final CUScissor scissor;
+    /** The polygon of the frame */
+    private final Poly2 poly;
+    /** The transform of the polygon */
+    private final Affine2 transform = new Affine2();
+
+    /**
+     * Creates the sprite batch and the resources of the frame.
+     */
+    public AllocationCheck() {
+        HeadlessContext.install();
+        batch = new CUSpriteBatch();
+        batch.setProjectionMatrix(HeadlessContext.PROJECTION);
+        textures = new CUTexture[] { new CUTexture(64, 64), new CUTexture(64, 64) };
+        regions = new TextureRegion[] { new TextureRegion(textures[0], 0, 0, 32, 32),
+                                        new TextureRegion(textures[1], 16, 16, 32, 32) };
+        gradient = new CUGradient(Color.RED, Color.BLUE, new Vector2(0, 0), new Vector2(64, 64));
+        scissor = new CUScissor(new Rectangle(32, 32, 512, 512), 2);
+        poly = new Poly2(new float[] { 0, 0, 40, 0, 40, 30, 0, 30, 20, 45 },
+                         new short[] { 0, 1, 2, 0, 2, 3, 3, 2, 4 });
+    }
+
+    /**
+     * Draws a single frame.
+     */
+    public void frame() {
+        batch.begin();
+        for (int ii = 0; ii < SHAPES; ii++) {
+            batch.setColor((ii & 1) == 0 ? Color.WHITE : Color.YELLOW);
+            batch.fill(ii % 32 * 32, ii / 32 * 24, 24, 16);
+        }
+        batch.setColor(Color.WHITE);
+
+        batch.setGradient(gradient);
+        for (int ii = 0; ii < SHAPES; ii++) {
+            batch.fill(ii % 32 * 32, ii / 32 * 24, 24, 16);
+        }
+        batch.setGradient(null);
+
+        batch.setScissor(scissor);
+        for (int ii = 0; ii < SHAPES; ii++) {
+            batch.outline(ii % 32 * 32, ii / 32 * 24, 24, 16);
+        }
+        batch.setScissor(null);
+
+        for (int ii = 0; ii < SHAPES; ii++) {
+            batch.draw(textures[(ii >> 4) & 1], ii % 32 * 32, ii / 32 * 24, 24, 16);
+            batch.draw(regions[(ii >> 4) & 1], ii % 32 * 32, ii / 32 * 24, 24, 16);
+        }
+
+        for (int ii = 0; ii < SHAPES; ii++) {
+            transform.setToTranslation(ii % 32 * 32, ii / 32 * 24);
+            batch.fill(poly, 0, 0, transform);
+        }
+        batch.end();
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far.
+     *
+     * @param bean  The thread bean
+     *
+     * @return the bytes allocated by the current thread so far.
+     */
+    private static long allocated(com.sun.management.ThreadMXBean bean) {
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Runs the allocation check.
+     *
+     * @param args  The budget, the warmup frames, and the measured frames per round
+     */
+    public static void main(String[] args) {
+        long budget = args.length > 0 ? Long.parseLong(args[0]) : 0;
+        int warmup  = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int frames  = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported()) {
+            System.err.println("Allocation check skipped: thread allocation is not supported by this JVM");
+            return;
+        }
+        bean.setThreadAllocatedMemoryEnabled(true);
+
+        AllocationCheck check = new AllocationCheck();
+        CUGLRecorder recorder = HeadlessContext.get();
+        recorder.setLogging(true);
+        for (int ii = 0; ii < warmup; ii++) {
+            recorder.clear();
+            check.frame();
+        }
+
+        // The query itself may allocate, so measure it for the baseline
+        long start = allocated(bean);
+        long overhead = allocated(bean)-start;
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            start = allocated(bean);
+            for (int ii = 0; ii < frames; ii++) {
+                recorder.clear();
+                check.frame();
+            }
+            long total = allocated(bean)-start-overhead;
+            System.out.printf("Round %d: allocated %d bytes over %d frames%n", round+1, total, frames);
+            best = Math.min(best, total);
+        }
+        double perFrame = (double)best/frames;
+
+        CUBatchStats stats = check.batch.getStats();
+        System.out.printf("Best round: %.1f bytes/frame (budget %d)%n", perFrame, budget);
+        System.out.printf("Last frame: %s%n", stats);
+        System.out.printf("Last frame: %d GL calls, %d draws, %d state changes, %d bytes uploaded%n",
+                          recorder.getCalls(), recorder.getDrawCalls(), recorder.getStateChanges(),
+                          recorder.getUploadedBytes());
+        if (perFrame > budget) {
+            System.err.println("Allocation check FAILED");
+            System.exit(1);
+        }
+        System.out.println("Allocation check passed");
+        System.exit(0);
+    }
+}
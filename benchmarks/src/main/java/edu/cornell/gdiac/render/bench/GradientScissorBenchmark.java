@@ -0,0 +1,106 @@
+package edu.cornell.gdiac.render.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+
+import edu.cornell.gdiac.render.CUGradient;
+import edu.cornell.gdiac.render.CUScissor;
+
+/**
+ * This class benchmarks the uniform conversions of gradients and scissors.
+ *
+ * These methods run every time a sprite batch writes a uniform block, so their
+ * cost is paid per state change. The intersection benchmark must restore the
+ * scissor before each intersection (as intersection is destructive), so its
+ * score includes a call to {@link CUScissor#set(CUScissor)}, which is also
+ * measured on its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GradientScissorBenchmark {
+    /** A linear gradient */
+    private CUGradient linear;
+    /** A box gradient */
+    private CUGradient box;
+    /** The scissor to intersect */
+    private CUScissor scissor;
+    /** The scissor to intersect with */
+    private CUScissor other;
+    /** The scissor modified by intersection */
+    private CUScissor work;
+    /** The array to receive the data */
+    private final float[] data = new float[64];
+
+    /**
+     * Creates the gradients and scissors.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        linear = new CUGradient(Color.RED, Color.BLUE, new Vector2(0, 0), new Vector2(64, 64));
+        box = new CUGradient(Color.WHITE, Color.BLACK, new Rectangle(10, 10, 100, 50), 8, 4);
+        scissor = new CUScissor(new Rectangle(0, 0, 512, 512), 1);
+        scissor.rotate(0.25f);
+        other = new CUScissor(new Rectangle(128, 128, 512, 512), 1);
+        other.rotate(0.25f);
+        work = new CUScissor(scissor);
+    }
+
+    /**
+     * Benchmarks the data of a linear gradient.
+     *
+     * @return the data array
+     */
+    @Benchmark
+    public float[] gradientLinear() {
+        return linear.getData(data, 0);
+    }
+
+    /**
+     * Benchmarks the data of a box gradient.
+     *
+     * @return the data array
+     */
+    @Benchmark
+    public float[] gradientBox() {
+        return box.getData(data, 24);
+    }
+
+    /**
+     * Benchmarks the data of a scissor.
+     *
+     * @return the data array
+     */
+    @Benchmark
+    public float[] scissorData() {
+        return scissor.getData(data, 0);
+    }
+
+    /**
+     * Benchmarks copying a scissor.
+     *
+     * @return the copied scissor
+     */
+    @Benchmark
+    public CUScissor scissorSet() {
+        return work.set(scissor);
+    }
+
+    /**
+     * Benchmarks intersecting two scissors.
+     *
+     * @return the intersected scissor
+     */
+    @Benchmark
+    public CUScissor scissorIntersect() {
+        return work.set(scissor).intersect(other);
+    }
+}
@@ -0,0 +1,69 @@
+package edu.cornell.gdiac.render.bench;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.math.Matrix4;
+
+import edu.cornell.gdiac.render.CUGLRecorder;
+
+/**
+ * This class provides the libGDX environment for the benchmarks.
+ *
+ * The render classes need more than an OpenGL instance. They log through
+ * {@link Gdx#app}, read the window size from {@link Gdx#graphics}, and copy
+ * buffers with native code. A headless application provides all of these.
+ * This class starts a single headless application for the whole process, and
+ * then replaces the OpenGL instances with a {@link CUGLRecorder}.
+ *
+ * The recorder log is off by default, as benchmarks draw far too many frames
+ * to keep it. The counters of the recorder are still available.
+ *
+ * The headless application reports a window size of 0x0, so benchmarks should
+ * set the projection of a sprite batch to {@link #PROJECTION}.
+ */
+public class HeadlessContext {
+    /** The width of the simulated window */
+    public static final int WIDTH  = 1024;
+    /** The height of the simulated window */
+    public static final int HEIGHT = 768;
+    /** An orthographic projection for the simulated window */
+    public static final Matrix4 PROJECTION = new Matrix4().setToOrtho2D(0, 0, WIDTH, HEIGHT);
+
+    /** The headless application (shared by all benchmarks) */
+    private static HeadlessApplication app;
+    /** The recording OpenGL (shared by all benchmarks) */
+    private static CUGLRecorder gl;
+
+    /**
+     * Returns the recording OpenGL, starting the headless application if necessary.
+     *
+     * This method is safe to call multiple times. The recorder is cleared and
+     * its log turned off on each call, but the simulated state is kept.
+     *
+     * @return the recording OpenGL, starting the headless application if necessary.
+     */
+    public static synchronized CUGLRecorder install() {
+        if (app == null) {
+            HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+            config.updatesPerSecond = 1;
+            app = new HeadlessApplication(new ApplicationAdapter() {}, config);
+            gl = new CUGLRecorder();
+            gl.glViewport(0, 0, WIDTH, HEIGHT);
+        }
+        gl.install();
+        gl.setLogging(false);
+        gl.clear();
+        return gl;
+    }
+
+    /**
+     * Returns the recording OpenGL, or null if it is not installed.
+     *
+     * @return the recording OpenGL, or null if it is not installed.
+     */
+    public static synchronized CUGLRecorder get() {
+        return gl;
+    }
+}
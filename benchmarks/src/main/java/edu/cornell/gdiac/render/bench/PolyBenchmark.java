@@ -0,0 +1,109 @@
+package edu.cornell.gdiac.render.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.badlogic.gdx.graphics.GL30;
+
+import edu.cornell.gdiac.math.Poly2;
+import edu.cornell.gdiac.render.*;
+
+/**
+ * This class benchmarks {@link CUSpriteBatch#prepare(Poly2)} on meshes of several sizes.
+ *
+ * The mesh is a regular polygon triangulated as a fan, with {@link #triangles}
+ * triangles. The largest size exceeds the vertex capacity of the default sprite
+ * batch, so it measures the chunked path. Each invocation prepares the mesh
+ * {@link #REPEATS} times in a single frame, and the scores are reported per
+ * mesh. The outline benchmark prepares the same mesh as lines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolyBenchmark {
+    /** The number of meshes in a frame */
+    public static final int REPEATS = 16;
+
+    /** The number of triangles in the mesh */
+    @Param({"16", "256", "4096", "16384"})
+    public int triangles;
+
+    /** The sprite batch */
+    private CUSpriteBatch batch;
+    /** The mesh, triangulated as a fan */
+    private Poly2 solid;
+    /** The mesh boundary, as line segments */
+    private Poly2 path;
+
+    /**
+     * Creates the sprite batch and the meshes.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        HeadlessContext.install();
+        batch = new CUSpriteBatch();
+        batch.setProjectionMatrix(HeadlessContext.PROJECTION);
+
+        float[] vertices = new float[2*(triangles+1)];
+        vertices[0] = 512;
+        vertices[1] = 384;
+        for (int ii = 0; ii < triangles; ii++) {
+            double angle = 2*Math.PI*ii/triangles;
+            vertices[2*ii+2] = 512+(float)(300*Math.cos(angle));
+            vertices[2*ii+3] = 384+(float)(300*Math.sin(angle));
+        }
+
+        short[] fan = new short[3*triangles];
+        short[] lines = new short[2*triangles];
+        for (int ii = 0; ii < triangles; ii++) {
+            short next = (short)((ii+1) % triangles+1);
+            fan[3*ii  ] = 0;
+            fan[3*ii+1] = (short)(ii+1);
+            fan[3*ii+2] = next;
+            lines[2*ii  ] = (short)(ii+1);
+            lines[2*ii+1] = next;
+        }
+        solid = new Poly2(vertices, fan);
+        path = new Poly2(vertices, lines);
+    }
+
+    /**
+     * Disposes the sprite batch.
+     */
+    @TearDown(Level.Trial)
+    public void teardown() {
+        batch.dispose();
+    }
+
+    /**
+     * Benchmarks preparing the mesh as triangles.
+     */
+    @Benchmark
+    @OperationsPerInvocation(REPEATS)
+    public void prepareSolid() {
+        batch.begin();
+        batch.setCommand(GL30.GL_TRIANGLES);
+        for (int ii = 0; ii < REPEATS; ii++) {
+            batch.prepare(solid);
+        }
+        batch.end();
+    }
+
+    /**
+     * Benchmarks preparing the mesh as lines.
+     */
+    @Benchmark
+    @OperationsPerInvocation(REPEATS)
+    public void prepareOutline() {
+        batch.begin();
+        batch.setCommand(GL30.GL_LINES);
+        for (int ii = 0; ii < REPEATS; ii++) {
+            batch.prepare(path);
+        }
+        batch.end();
+    }
+}
@@ -0,0 +1,152 @@
+package edu.cornell.gdiac.render.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+
+import edu.cornell.gdiac.render.*;
+
+/**
+ * This class benchmarks the drawing methods of {@link CUSpriteBatch}.
+ *
+ * Each invocation draws a full frame of {@link #SHAPES} shapes, from begin to
+ * end, so the scores include batching and flushing. The scores are reported
+ * per shape. The shapes alternate between two textures (or colors), so that a
+ * frame has the state changes of a typical scene. The gradient and scissor
+ * variants measure the cost of those uniforms on top of a plain fill.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpriteBatchBenchmark {
+    /** The number of shapes in a frame */
+    public static final int SHAPES = 1024;
+
+    /** The sprite batch */
+    private CUSpriteBatch batch;
+    /** The textures to alternate between */
+    private CUTexture[] textures;
+    /** The texture regions to alternate between */
+    private TextureRegion[] regions;
+    /** The gradient for the gradient fill */
+    private CUGradient gradient;
+    /** The scissor for the scissored fill */
+    private CUScissor scissor;
+
+    /**
+     * Creates the sprite batch and its resources.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        HeadlessContext.install();
+        batch = new CUSpriteBatch();
+        batch.setProjectionMatrix(HeadlessContext.PROJECTION);
+        textures = new CUTexture[] { new CUTexture(64, 64), new CUTexture(64, 64) };
+        regions = new TextureRegion[] { new TextureRegion(textures[0], 0, 0, 32, 32),
+                                        new TextureRegion(textures[1], 16, 16, 32, 32) };
+        gradient = new CUGradient(Color.RED, Color.BLUE, new Vector2(0, 0), new Vector2(64, 64));
+        scissor = new CUScissor(new Rectangle(32, 32, 512, 512), 2);
+    }
+
+    /**
+     * Disposes the sprite batch and its resources.
+     */
+    @TearDown(Level.Trial)
+    public void teardown() {
+        batch.dispose();
+        for (CUTexture texture : textures) {
+            texture.dispose();
+        }
+    }
+
+    /**
+     * Benchmarks solid rectangles.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SHAPES)
+    public void fill() {
+        batch.begin();
+        for (int ii = 0; ii < SHAPES; ii++) {
+            batch.setColor((ii & 1) == 0 ? Color.WHITE : Color.YELLOW);
+            batch.fill(ii % 32 * 32, ii / 32 * 24, 24, 16);
+        }
+        batch.end();
+    }
+
+    /**
+     * Benchmarks rectangles filled with a gradient.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SHAPES)
+    public void fillGradient() {
+        batch.begin();
+        batch.setGradient(gradient);
+        for (int ii = 0; ii < SHAPES; ii++) {
+            batch.fill(ii % 32 * 32, ii / 32 * 24, 24, 16);
+        }
+        batch.setGradient(null);
+        batch.end();
+    }
+
+    /**
+     * Benchmarks rectangles clipped by a scissor.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SHAPES)
+    public void fillScissor() {
+        batch.begin();
+        batch.setScissor(scissor);
+        for (int ii = 0; ii < SHAPES; ii++) {
+            batch.fill(ii % 32 * 32, ii / 32 * 24, 24, 16);
+        }
+        batch.setScissor(null);
+        batch.end();
+    }
+
+    /**
+     * Benchmarks rectangle outlines.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SHAPES)
+    public void outline() {
+        batch.begin();
+        for (int ii = 0; ii < SHAPES; ii++) {
+            batch.outline(ii % 32 * 32, ii / 32 * 24, 24, 16);
+        }
+        batch.end();
+    }
+
+    /**
+     * Benchmarks textured rectangles.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SHAPES)
+    public void drawTexture() {
+        batch.begin();
+        for (int ii = 0; ii < SHAPES; ii++) {
+            batch.draw(textures[(ii >> 4) & 1], ii % 32 * 32, ii / 32 * 24, 24, 16);
+        }
+        batch.end();
+    }
+
+    /**
+     * Benchmarks texture regions.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SHAPES)
+    public void drawRegion() {
+        batch.begin();
+        for (int ii = 0; ii < SHAPES; ii++) {
+            batch.draw(regions[(ii >> 4) & 1], ii % 32 * 32, ii / 32 * 24, 24, 16);
+        }
+        batch.end();
+    }
+}
@@ -0,0 +1,143 @@
+package edu.cornell.gdiac.render.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.Affine2;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector2;
+
+import edu.cornell.gdiac.render.CUUniformBuffer;
+
+/**
+ * This class benchmarks the uniform setters of {@link CUUniformBuffer}.
+ *
+ * The buffer has the block layout of the sprite batch (a gradient and a
+ * scissor per block). When {@link #active} is true, the buffer is bound and
+ * active, so every setter also writes to (stub) OpenGL. Otherwise, the setters
+ * only update the cached data. The scores are reported per call, except for
+ * {@link #flush}, which is reported per buffer upload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UniformBufferBenchmark {
+    /** The capacity of a block in bytes */
+    public static final int CAPACITY = 192;
+    /** The number of blocks */
+    public static final int BLOCKS = 64;
+
+    /** Whether the buffer is active while it is set */
+    @Param({"false", "true"})
+    public boolean active;
+
+    /** The uniform buffer */
+    private CUUniformBuffer buffer;
+    /** The values for the array setter (a full block) */
+    private final float[] values = new float[CAPACITY/4];
+    /** The value for the vector setter */
+    private final Vector2 vector = new Vector2(3, 4);
+    /** The value for the color setter */
+    private final Color color = new Color(0.25f, 0.5f, 0.75f, 1);
+    /** The value for the matrix setter */
+    private final Matrix4 matrix = new Matrix4().setToOrtho2D(0, 0, 1024, 768);
+    /** The value for the affine setter */
+    private final Affine2 affine = new Affine2().setToTrnRotScl(10, 20, 30, 2, 3);
+    /** The block to write next */
+    private int block;
+
+    /**
+     * Creates the uniform buffer.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        HeadlessContext.install();
+        buffer = new CUUniformBuffer(CAPACITY, BLOCKS);
+        for (int ii = 0; ii < values.length; ii++) {
+            values[ii] = ii;
+        }
+        if (active) {
+            buffer.bind(true);
+        }
+    }
+
+    /**
+     * Disposes the uniform buffer.
+     */
+    @TearDown(Level.Trial)
+    public void teardown() {
+        buffer.dispose();
+    }
+
+    /**
+     * Returns the next block to write.
+     *
+     * @return the next block to write.
+     */
+    private int next() {
+        block = (block+1) % BLOCKS;
+        return block;
+    }
+
+    /**
+     * Benchmarks setting a full block from an array.
+     */
+    @Benchmark
+    public void setUniformfv() {
+        buffer.setUniformfv(next(), 0, values.length, values);
+    }
+
+    /**
+     * Benchmarks setting a vector.
+     */
+    @Benchmark
+    public void setUniformVector() {
+        buffer.setUniform(next(), 16, vector);
+    }
+
+    /**
+     * Benchmarks setting a color.
+     */
+    @Benchmark
+    public void setUniformColor() {
+        buffer.setUniform(next(), 32, color);
+    }
+
+    /**
+     * Benchmarks setting a 4x4 matrix.
+     */
+    @Benchmark
+    public void setUniformMatrix() {
+        buffer.setUniform(next(), 64, matrix);
+    }
+
+    /**
+     * Benchmarks setting an affine transform (as a std140 3x3 matrix).
+     */
+    @Benchmark
+    public void setUniformAffine() {
+        buffer.setUniform(next(), 128, affine);
+    }
+
+    /**
+     * Benchmarks setting a value in every block at once.
+     */
+    @Benchmark
+    public void setUniformAll() {
+        buffer.setUniform(-1, 32, color);
+    }
+
+    /**
+     * Benchmarks uploading the entire buffer.
+     */
+    @Benchmark
+    public void flush() {
+        buffer.activate();
+        buffer.flush();
+    }
+}
@@ -0,0 +1,57 @@
+package edu.cornell.gdiac.math;
+
+import com.badlogic.gdx.math.Rectangle;
+
+/**
+ * This class is a minimal stand-in for the GDIAC polygon class.
+ *
+ * It is only compiled by the benchmark module, and only when the GDIAC math
+ * package is not in the source tree (see the math-shim profile). It has the
+ * members that the render package uses: the vertex and index arrays, and
+ * the bounding box. It has none of the factories or geometry of the real
+ * class, and must not be used outside of the benchmarks.
+ */
+public class Poly2 {
+    /** The vertices of this polygon, as x,y pairs */
+    public float[] vertices;
+    /** The indices of this polygon (triangles or line segments) */
+    public short[] indices;
+    /** The bounding box of this polygon */
+    private final Rectangle bounds = new Rectangle();
+
+    /**
+     * Creates a polygon with the given vertices and indices.
+     *
+     * The polygon uses the arrays (it does not copy them).
+     *
+     * @param vertices  The vertices, as x,y pairs
+     * @param indices   The indices
+     */
+    public Poly2(float[] vertices, short[] indices) {
+        this.vertices = vertices;
+        this.indices = indices;
+    }
+
+    /**
+     * Returns the bounding box of this polygon.
+     *
+     * The box is recomputed on each call, as the vertices may change. The
+     * rectangle returned is owned by this polygon, and must not be modified.
+     *
+     * @return the bounding box of this polygon.
+     */
+    public Rectangle getBounds() {
+        if (vertices.length < 2) {
+            return bounds.set(0, 0, 0, 0);
+        }
+        float minx = vertices[0], maxx = vertices[0];
+        float miny = vertices[1], maxy = vertices[1];
+        for (int ii = 2; ii+1 < vertices.length; ii += 2) {
+            minx = Math.min(minx, vertices[ii]);
+            maxx = Math.max(maxx, vertices[ii]);
+            miny = Math.min(miny, vertices[ii+1]);
+            maxy = Math.max(maxy, vertices[ii+1]);
+        }
+        return bounds.set(minx, miny, maxx-minx, maxy-miny);
+    }
+}
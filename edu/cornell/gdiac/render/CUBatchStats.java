@@ -0,0 +1,178 @@
+package edu.cornell.gdiac.render;
+
+/**
+ * This class is a collection of rendering statistics for a {@link CUSpriteBatch}.
+ *
+ * A sprite batch keeps one of these objects and resets it at every call to
+ * {@link CUSpriteBatch#begin}. Hence the values describe the current (or, after
+ * {@link CUSpriteBatch#end}, the most recent) pass of the batch. The values are
+ * plain counters so that they may be read every frame without any cost. To keep
+ * the values of a pass around, copy them with {@link #set}.
+ *
+ * Flushes are counted by their cause. A capacity flush happens when the vertex
+ * or index buffer is full. A uniform flush happens when the batch has run out
+ * of uniform blocks for gradients and scissor masks. An end flush is the one
+ * issued by {@link CUSpriteBatch#end}. All other flushes are explicit.
+ *
+ * State records are counted by the setting that triggered them. A setting only
+ * triggers a record if geometry was drawn with the previous state, so these
+ * values are the number of state changes that split a draw call.
+ */
+public class CUBatchStats {
+    /** The number of flushes because the vertex or index buffer was full */
+    public int capacityFlushes;
+    /** The number of flushes requested by the user */
+    public int explicitFlushes;
+    /** The number of flushes because the uniform blocks were exhausted */
+    public int uniformFlushes;
+    /** The number of flushes at the end of the pass */
+    public int endFlushes;
+
+    /** The number of state records triggered by a texture change */
+    public int textureRecords;
+    /** The number of state records triggered by a blend state or factor change */
+    public int blendRecords;
+    /** The number of state records triggered by a perspective or transform change */
+    public int matrixRecords;
+    /** The number of state records triggered by a gradient change */
+    public int gradientRecords;
+    /** The number of state records triggered by a scissor change */
+    public int scissorRecords;
+    /** The number of state records triggered by a stencil effect or clear */
+    public int stencilRecords;
+    /** The number of state records triggered by a drawing command change */
+    public int commandRecords;
+    /** The number of state records triggered by a blur step change */
+    public int blurRecords;
+    /** The number of state records triggered by a layer change */
+    public int layerRecords;
+    /** The number of state records triggered by an opaque change */
+    public int opaqueRecords;
+
+    /** The number of draw calls issued */
+    public int drawCalls;
+    /** The number of vertices sent to the graphics card */
+    public int vertices;
+    /** The number of indices sent to the graphics card (or drawn as quads) */
+    public int indices;
+
+    /** The number of bytes uploaded to the vertex buffer */
+    public long vertexBytes;
+    /** The number of bytes uploaded to the index buffer */
+    public long indexBytes;
+    /** The number of bytes uploaded to the uniform buffer */
+    public long uniformBytes;
+
+    /** The number of polygons too large to draw without {@link CUSpriteBatch#chunkify} */
+    public int chunkifyFallbacks;
+
+    /**
+     * Creates a new statistics object with all values zero.
+     */
+    public CUBatchStats() {
+    }
+
+    /**
+     * Creates a copy of the given statistics object.
+     *
+     * @param stats The statistics to copy
+     */
+    public CUBatchStats(CUBatchStats stats) {
+        set(stats);
+    }
+
+    /**
+     * Returns the total number of flushes for all causes.
+     *
+     * @return the total number of flushes for all causes.
+     */
+    public int getFlushes() {
+        return capacityFlushes+explicitFlushes+uniformFlushes+endFlushes;
+    }
+
+    /**
+     * Returns the total number of state records for all triggers.
+     *
+     * @return the total number of state records for all triggers.
+     */
+    public int getRecords() {
+        return textureRecords+blendRecords+matrixRecords+gradientRecords+
+               scissorRecords+stencilRecords+commandRecords+blurRecords+layerRecords+
+               opaqueRecords;
+    }
+
+    /**
+     * Returns the total number of bytes uploaded to the graphics card.
+     *
+     * @return the total number of bytes uploaded to the graphics card.
+     */
+    public long getUploadBytes() {
+        return vertexBytes+indexBytes+uniformBytes;
+    }
+
+    /**
+     * Sets this object to be a copy of the given statistics.
+     *
+     * @param stats The statistics to copy
+     *
+     * @return this object, for chaining
+     */
+    public CUBatchStats set(CUBatchStats stats) {
+        capacityFlushes = stats.capacityFlushes;
+        explicitFlushes = stats.explicitFlushes;
+        uniformFlushes  = stats.uniformFlushes;
+        endFlushes      = stats.endFlushes;
+        textureRecords  = stats.textureRecords;
+        blendRecords    = stats.blendRecords;
+        matrixRecords   = stats.matrixRecords;
+        gradientRecords = stats.gradientRecords;
+        scissorRecords  = stats.scissorRecords;
+        stencilRecords  = stats.stencilRecords;
+        commandRecords  = stats.commandRecords;
+        blurRecords     = stats.blurRecords;
+        layerRecords    = stats.layerRecords;
+        opaqueRecords   = stats.opaqueRecords;
+        drawCalls    = stats.drawCalls;
+        vertices     = stats.vertices;
+        indices      = stats.indices;
+        vertexBytes  = stats.vertexBytes;
+        indexBytes   = stats.indexBytes;
+        uniformBytes = stats.uniformBytes;
+        chunkifyFallbacks = stats.chunkifyFallbacks;
+        return this;
+    }
+
+    /**
+     * Resets all values to zero.
+     */
+    public void reset() {
+        capacityFlushes = explicitFlushes = uniformFlushes = endFlushes = 0;
+        textureRecords = blendRecords = matrixRecords = gradientRecords = 0;
+        scissorRecords = stencilRecords = commandRecords = blurRecords = 0;
+        layerRecords = opaqueRecords = 0;
+        drawCalls = vertices = indices = 0;
+        vertexBytes = indexBytes = uniformBytes = 0;
+        chunkifyFallbacks = 0;
+    }
+
+    /**
+     * Returns a string representation of these statistics for debugging.
+     *
+     * @return a string representation of these statistics for debugging.
+     */
+    @Override
+    public String toString() {
+        return "CUBatchStats[flushes=" + getFlushes() +
+                " (capacity=" + capacityFlushes + ", explicit=" + explicitFlushes +
+                ", uniform=" + uniformFlushes + ", end=" + endFlushes + ")" +
+                ", records=" + getRecords() +
+                " (texture=" + textureRecords + ", blend=" + blendRecords +
+                ", matrix=" + matrixRecords + ", gradient=" + gradientRecords +
+                ", scissor=" + scissorRecords + ", stencil=" + stencilRecords +
+                ", command=" + commandRecords + ", blur=" + blurRecords +
+                ", layer=" + layerRecords + ", opaque=" + opaqueRecords + ")" +
+                ", draws=" + drawCalls + ", vertices=" + vertices + ", indices=" + indices +
+                ", bytes=(vbo=" + vertexBytes + ", ibo=" + indexBytes + ", ubo=" + uniformBytes + ")" +
+                ", chunkify=" + chunkifyFallbacks + "]";
+    }
+}
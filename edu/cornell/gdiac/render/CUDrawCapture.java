@@ -0,0 +1,298 @@
+package edu.cornell.gdiac.render;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.PooledLinkedList;
+
+/**
+ * This class writes the draw submissions of a sprite batch to a capture file.
+ *
+ * A capture is attached to a sprite batch with {@link CUSpriteBatch#setCapture}.
+ * From then on, every flush of the batch is written to the file in full: the
+ * vertices, the indices, the uniform block contents, and every drawing context
+ * (including the identity of its texture). Calls to {@link CUSpriteBatch#begin}
+ * and {@link CUSpriteBatch#end} mark the frame boundaries. The file can be read
+ * back with {@link CUDrawReplay}, which submits the same data to a sprite batch.
+ *
+ * The file is a compact binary stream (big-endian, which is the default order
+ * of both {@link DataOutputStream} and {@link ByteBuffer}). It starts with a
+ * header of the magic number {@link #MAGIC}, the format {@link #VERSION}, and
+ * the number of floats in a vertex. This is followed by a sequence of records,
+ * each starting with a tag:
+ *
+ * {@link #TAG_FRAME} starts a frame. {@link #TAG_FLUSH} is a flush, which has
+ * the number of floats followed by the floats, the number of indices and a quad
+ * flag followed by the indices (only if not quads, padded to a multiple of four
+ * bytes), the number of uniform bytes followed by the bytes, and the number of
+ * contexts followed by the contexts. {@link #TAG_END} ends a frame. Only the
+ * uniform blocks used by the contexts of a flush are written, and not the
+ * whole uniform buffer.
+ *
+ * Each context is {@link #CONTEXT_INTS} ints followed by the perspective and
+ * transform matrices (16 floats each). Textures are identified by their OpenGL
+ * handle and size, as they cannot be stored in the file.
+ */
+public class CUDrawCapture implements Disposable {
+    /** The magic number at the start of every capture file ("CUDC") */
+    public static final int MAGIC = 0x43554443;
+    /** The capture file format version */
+    public static final int VERSION = 2;
+
+    /** The tag for the start of a frame */
+    public static final int TAG_FRAME = 1;
+    /** The tag for a flush */
+    public static final int TAG_FLUSH = 2;
+    /** The tag for the end of a frame */
+    public static final int TAG_END = 3;
+
+    /** The number of integer fields in a serialized context */
+    public static final int CONTEXT_INTS = 20;
+
+    /** The output stream */
+    private DataOutputStream output;
+    /** The number of frames written */
+    private int frames;
+    /** The number of flushes written */
+    private int flushes;
+    /** The scratch space for bulk writes of vertices, indices and uniforms */
+    private byte[] scratch = new byte[0];
+    /** A big-endian view of the scratch space */
+    private ByteBuffer scratchView = ByteBuffer.wrap(scratch);
+
+    /**
+     * Creates a capture that writes to the given file.
+     *
+     * Any existing file is replaced.
+     *
+     * @param file      The capture file
+     * @param vertex    The number of floats in a vertex
+     */
+    public CUDrawCapture(FileHandle file, int vertex) {
+        this(file.write(false), vertex);
+    }
+
+    /**
+     * Creates a capture that writes to the given stream.
+     *
+     * The capture takes ownership of the stream, and will close it when
+     * disposed.
+     *
+     * @param stream    The output stream
+     * @param vertex    The number of floats in a vertex
+     */
+    public CUDrawCapture(OutputStream stream, int vertex) {
+        output = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(vertex);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Unable to write capture header", e);
+        }
+    }
+
+    /**
+     * Closes the capture file.
+     *
+     * Any buffered data is written first. It is safe to call this method more
+     * than once.
+     */
+    @Override
+    public void dispose() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                throw new GdxRuntimeException("Unable to close capture", e);
+            } finally {
+                output = null;
+            }
+        }
+    }
+
+    /**
+     * Returns true if this capture is still open.
+     *
+     * @return true if this capture is still open.
+     */
+    public boolean isOpen() {
+        return output != null;
+    }
+
+    /**
+     * Returns the number of frames written to this capture.
+     *
+     * @return the number of frames written to this capture.
+     */
+    public int getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Returns the number of flushes written to this capture.
+     *
+     * @return the number of flushes written to this capture.
+     */
+    public int getFlushCount() {
+        return flushes;
+    }
+
+    /**
+     * Marks the start of a frame.
+     */
+    void beginFrame() {
+        writeTag(TAG_FRAME);
+    }
+
+    /**
+     * Marks the end of a frame.
+     *
+     * The stream is flushed, so that a capture is usable even if the
+     * application terminates without disposing it.
+     */
+    void endFrame() {
+        writeTag(TAG_END);
+        frames++;
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Unable to write capture", e);
+        }
+    }
+
+    /**
+     * Writes a single record tag.
+     *
+     * @param tag   The record tag
+     */
+    private void writeTag(int tag) {
+        if (output == null) {
+            throw new IllegalStateException("Capture has been disposed");
+        }
+        try {
+            output.writeInt(tag);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Unable to write capture", e);
+        }
+    }
+
+    /**
+     * Writes a full flush of a sprite batch.
+     *
+     * Only the uniform blocks up to the last one used by a context are
+     * written. The data is copied into a scratch array and written in bulk.
+     *
+     * @param vertices  The vertex data
+     * @param floats    The number of floats in the vertex data
+     * @param indices   The index data
+     * @param count     The number of indices
+     * @param quads     Whether the indices are the standard quad pattern
+     * @param uniforms  The uniform buffer contents (from position to limit)
+     * @param stride    The size of a uniform block in bytes
+     * @param history   The drawing contexts of the flush
+     */
+    void writeFlush(float[] vertices, int floats, short[] indices, int count, boolean quads,
+                    ByteBuffer uniforms, int stride, PooledLinkedList<CUSpriteBatch.Context> history) {
+        if (output == null) {
+            throw new IllegalStateException("Capture has been disposed");
+        }
+        try {
+            int contexts = 0;
+            int blocks = 0;
+            history.iter();
+            CUSpriteBatch.Context next;
+            while ((next = history.next()) != null) {
+                blocks = Math.max(blocks, next.blockptr+1);
+                contexts++;
+            }
+
+            DataOutputStream out = output;
+            out.writeInt(TAG_FLUSH);
+            out.writeInt(floats);
+            reserve(4*floats);
+            scratchView.asFloatBuffer().put(vertices, 0, floats);
+            out.write(scratch, 0, 4*floats);
+            out.writeInt(count);
+            out.writeInt(quads ? 1 : 0);
+            if (!quads) {
+                int padded = count+(count % 2);
+                reserve(2*padded);
+                scratchView.asShortBuffer().put(indices, 0, count);
+                if (count % 2 == 1) {
+                    scratchView.putShort(2*count, (short)0);
+                }
+                out.write(scratch, 0, 2*padded);
+            }
+            int bytes = Math.min(uniforms.remaining(), blocks*stride);
+            out.writeInt(bytes);
+            reserve(bytes);
+            int mark = uniforms.position();
+            uniforms.get(scratch, 0, bytes);
+            ((Buffer)uniforms).position(mark);
+            out.write(scratch, 0, bytes);
+
+            out.writeInt(contexts);
+            history.iter();
+            while ((next = history.next()) != null) {
+                writeContext(out, next);
+            }
+            flushes++;
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Unable to write capture", e);
+        }
+    }
+
+    /**
+     * Ensures that the scratch space holds at least the given number of bytes.
+     *
+     * @param bytes The number of bytes required
+     */
+    private void reserve(int bytes) {
+        if (scratch.length < bytes) {
+            scratch = new byte[Math.max(bytes, 2*scratch.length)];
+            scratchView = ByteBuffer.wrap(scratch);
+        }
+    }
+
+    /**
+     * Writes a single drawing context.
+     *
+     * @param out       The output stream
+     * @param context   The drawing context
+     */
+    private static void writeContext(DataOutputStream out, CUSpriteBatch.Context context) throws IOException {
+        Texture texture = context.texture;
+        out.writeInt(context.first);
+        out.writeInt(context.last);
+        out.writeInt(context.type);
+        out.writeInt(context.command);
+        out.writeInt(context.blending ? 1 : 0);
+        out.writeInt(context.blendEquation);
+        out.writeInt(context.srcFactor);
+        out.writeInt(context.dstFactor);
+        out.writeInt(context.srcFactorAlpha);
+        out.writeInt(context.dstFactorAlpha);
+        out.writeInt(context.stencil == null ? -1 : context.stencil.ordinal());
+        out.writeInt(context.cleared);
+        out.writeInt(texture == null ? 0 : texture.getTextureObjectHandle());
+        out.writeInt(texture == null ? 0 : texture.getWidth());
+        out.writeInt(texture == null ? 0 : texture.getHeight());
+        out.writeInt(context.blockptr);
+        out.writeInt(context.blurstep);
+        out.writeInt(context.dirty);
+        out.writeInt(context.layer);
+        out.writeInt(context.opaque ? 1 : 0);
+        for (float value : context.perspective.val) {
+            out.writeFloat(value);
+        }
+        for (float value : context.transform.val) {
+            out.writeFloat(value);
+        }
+    }
+}
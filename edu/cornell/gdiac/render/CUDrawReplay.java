@@ -0,0 +1,314 @@
+package edu.cornell.gdiac.render;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.*;
+
+/**
+ * This class replays a capture file written by {@link CUDrawCapture}.
+ *
+ * The capture file is memory mapped, so even large captures can be opened
+ * quickly. When it is opened, the replay indexes the frames in the file and
+ * the textures that they reference. Each frame can then be submitted to a
+ * sprite batch with {@link #replay}. The vertices, indices and uniform blocks
+ * are loaded into the batch's {@link CUVertexBuffer} and {@link CUUniformBuffer}
+ * exactly as captured, and the drawing contexts are applied as in a normal
+ * flush. This makes it possible to reproduce and benchmark real frames offline.
+ *
+ * Textures cannot be stored in a capture, so the file only records their
+ * OpenGL handles (and sizes). Before replaying, assign a texture to each
+ * handle in {@link #getTextureHandles} with {@link #setTexture}. Contexts with
+ * an unassigned texture are drawn with no texture.
+ *
+ * The sprite batch must use the same number of floats per vertex as the
+ * capture, and must be large enough for every captured flush.
+ */
+public class CUDrawReplay {
+    /** The mapped capture file */
+    private final ByteBuffer data;
+    /** The number of floats in a vertex */
+    private final int vertex;
+    /** The offset of each frame in the file (after the frame tag) */
+    private final IntArray frames = new IntArray();
+    /** The texture handles referenced by the capture */
+    private final IntArray handles = new IntArray();
+    /** The textures to use for each captured handle */
+    private final IntMap<Texture> textures = new IntMap<>();
+    /** The contexts of the flush being replayed */
+    private final Array<CUSpriteBatch.Context> contexts = new Array<>();
+
+    /**
+     * Opens the given capture file for replay.
+     *
+     * @param file  The capture file
+     */
+    public CUDrawReplay(FileHandle file) {
+        this(map(file));
+    }
+
+    /**
+     * Opens the given capture data for replay.
+     *
+     * The data is read from its current position to its limit. It is not
+     * copied, so it should not be modified while this replay is in use.
+     *
+     * @param data  The capture data
+     */
+    public CUDrawReplay(ByteBuffer data) {
+        this.data = data.slice();
+        if (this.data.remaining() < 12 || this.data.getInt(0) != CUDrawCapture.MAGIC) {
+            throw new GdxRuntimeException("Data is not a sprite batch capture");
+        } else if (this.data.getInt(4) != CUDrawCapture.VERSION) {
+            throw new GdxRuntimeException("Unsupported capture version "+this.data.getInt(4));
+        }
+        vertex = this.data.getInt(8);
+        scan();
+    }
+
+    /**
+     * Returns the memory mapped contents of the given file.
+     *
+     * @param file  The capture file
+     *
+     * @return the memory mapped contents of the given file.
+     */
+    private static ByteBuffer map(FileHandle file) {
+        try (RandomAccessFile access = new RandomAccessFile(file.file(), "r");
+             FileChannel channel = access.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return buffer;
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Unable to map capture "+file, e);
+        }
+    }
+
+    /**
+     * Indexes the frames and texture handles of the capture.
+     */
+    private void scan() {
+        int pos = 12;
+        int limit = data.limit();
+        IntSet seen = new IntSet();
+        while (pos+4 <= limit) {
+            int tag = data.getInt(pos);
+            pos += 4;
+            switch (tag) {
+                case CUDrawCapture.TAG_FRAME:
+                    frames.add(pos);
+                    break;
+                case CUDrawCapture.TAG_END:
+                    break;
+                case CUDrawCapture.TAG_FLUSH: {
+                    pos = skipBuffers(pos);
+                    int count = data.getInt(pos);
+                    pos += 4;
+                    for (int ii = 0; ii < count; ii++) {
+                        int handle = data.getInt(pos+12*4);
+                        if (handle != 0 && seen.add(handle)) {
+                            handles.add(handle);
+                        }
+                        pos += CONTEXT_BYTES;
+                    }
+                    break;
+                }
+                default:
+                    throw new GdxRuntimeException("Corrupt capture: unknown tag "+tag+" at "+(pos-4));
+            }
+        }
+    }
+
+    /**
+     * Returns the position after the vertex, index and uniform data of a flush.
+     *
+     * @param pos   The position of the flush data (after the tag)
+     *
+     * @return the position after the vertex, index and uniform data of a flush.
+     */
+    private int skipBuffers(int pos) {
+        int floats = data.getInt(pos);
+        pos += 4+4*floats;
+        int count = data.getInt(pos);
+        boolean quads = data.getInt(pos+4) != 0;
+        pos += 8;
+        if (!quads) {
+            pos += 2*(count+(count % 2));
+        }
+        int bytes = data.getInt(pos);
+        return pos+4+bytes;
+    }
+
+    /**
+     * Returns the number of floats in a captured vertex.
+     *
+     * @return the number of floats in a captured vertex.
+     */
+    public int getVertexSize() {
+        return vertex;
+    }
+
+    /**
+     * Returns the number of frames in the capture.
+     *
+     * @return the number of frames in the capture.
+     */
+    public int getFrameCount() {
+        return frames.size;
+    }
+
+    /**
+     * Returns the OpenGL handles of the textures referenced by the capture.
+     *
+     * @return the OpenGL handles of the textures referenced by the capture.
+     */
+    public IntArray getTextureHandles() {
+        return handles;
+    }
+
+    /**
+     * Sets the texture to use in place of a captured texture handle.
+     *
+     * @param handle    The captured texture handle
+     * @param texture   The texture to use (or null to clear it)
+     */
+    public void setTexture(int handle, Texture texture) {
+        if (texture == null) {
+            textures.remove(handle);
+        } else {
+            textures.put(handle, texture);
+        }
+    }
+
+    /**
+     * Submits the given frame to the sprite batch.
+     *
+     * The sprite batch must be drawing (e.g. between calls to begin and end).
+     * Any pending geometry in the batch is flushed first. After this method,
+     * the batch reapplies its own state on the next draw.
+     *
+     * @param frame The frame index
+     * @param batch The sprite batch
+     *
+     * @return the number of flushes submitted
+     */
+    public int replay(int frame, CUSpriteBatch batch) {
+        if (frame < 0 || frame >= frames.size) {
+            throw new IndexOutOfBoundsException("Frame "+frame+" is out of range");
+        } else if (batch.numsInVertex != vertex) {
+            throw new IllegalArgumentException("Batch has "+batch.numsInVertex+
+                                               " floats per vertex, but capture has "+vertex);
+        }
+
+        int flushes = 0;
+        int pos = frames.get(frame);
+        int tag;
+        while ((tag = data.getInt(pos)) == CUDrawCapture.TAG_FLUSH) {
+            pos = replayFlush(pos+4, batch);
+            flushes++;
+        }
+        if (tag != CUDrawCapture.TAG_END) {
+            throw new GdxRuntimeException("Corrupt capture: frame "+frame+" is not terminated");
+        }
+        return flushes;
+    }
+
+    /**
+     * Submits a single flush to the sprite batch, returning the next position.
+     *
+     * @param pos   The position of the flush data (after the tag)
+     * @param batch The sprite batch
+     *
+     * @return the position after the flush
+     */
+    private int replayFlush(int pos, CUSpriteBatch batch) {
+        int floats = data.getInt(pos);
+        ByteBuffer vertices = range(pos+4, 4*floats);
+        pos += 4+4*floats;
+
+        int count = data.getInt(pos);
+        boolean quads = data.getInt(pos+4) != 0;
+        pos += 8;
+        ByteBuffer indices = null;
+        if (!quads) {
+            indices = range(pos, 2*count);
+            pos += 2*(count+(count % 2));
+        }
+
+        int bytes = data.getInt(pos);
+        ByteBuffer uniforms = range(pos+4, bytes);
+        pos += 4+bytes;
+
+        int amount = data.getInt(pos);
+        pos += 4;
+        while (contexts.size < amount) {
+            contexts.add(new CUSpriteBatch.Context());
+        }
+        for (int ii = 0; ii < amount; ii++) {
+            readContext(pos, contexts.get(ii));
+            pos += CONTEXT_BYTES;
+        }
+
+        batch.submit(vertices, floats, indices, count, quads, uniforms, contexts, amount);
+        return pos;
+    }
+
+    /**
+     * Returns a view of the given byte range of the capture.
+     *
+     * @param pos   The start of the range
+     * @param bytes The length of the range
+     *
+     * @return a view of the given byte range of the capture.
+     */
+    private ByteBuffer range(int pos, int bytes) {
+        ByteBuffer view = data.duplicate();
+        ((Buffer)view).limit(pos+bytes);
+        ((Buffer)view).position(pos);
+        return view.slice();
+    }
+
+    /**
+     * Reads a captured drawing context.
+     *
+     * @param pos       The position of the context
+     * @param context   The context to store the result
+     */
+    private void readContext(int pos, CUSpriteBatch.Context context) {
+        context.first = data.getInt(pos);
+        context.last  = data.getInt(pos+4);
+        context.type  = data.getInt(pos+8);
+        context.command  = data.getInt(pos+12);
+        context.blending = data.getInt(pos+16) != 0;
+        context.blendEquation  = data.getInt(pos+20);
+        context.srcFactor = data.getInt(pos+24);
+        context.dstFactor = data.getInt(pos+28);
+        context.srcFactorAlpha = data.getInt(pos+32);
+        context.dstFactorAlpha = data.getInt(pos+36);
+        int stencil = data.getInt(pos+40);
+        context.stencil = stencil < 0 ? null : CUStencilEffect.Effect.values()[stencil];
+        context.cleared = data.getInt(pos+44);
+        context.texture = textures.get(data.getInt(pos+48));
+        context.blockptr = data.getInt(pos+60);
+        context.blurstep = data.getInt(pos+64);
+        context.dirty = data.getInt(pos+68);
+        context.layer = data.getInt(pos+72);
+        context.opaque = data.getInt(pos+76) != 0;
+        pos += 4*CUDrawCapture.CONTEXT_INTS;
+        for (int ii = 0; ii < 16; ii++) {
+            context.perspective.val[ii] = data.getFloat(pos+4*ii);
+        }
+        pos += 64;
+        for (int ii = 0; ii < 16; ii++) {
+            context.transform.val[ii] = data.getFloat(pos+4*ii);
+        }
+    }
+
+    /** The size in bytes of a serialized context */
+    private static final int CONTEXT_BYTES = 4*CUDrawCapture.CONTEXT_INTS+2*64;
+}
@@ -0,0 +1,490 @@
+package edu.cornell.gdiac.render;
+
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL30;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.*;
+
+/**
+ * This class packs small images into shared texture pages at runtime.
+ *
+ * Every texture switch in a {@link CUSpriteBatch} starts a new draw call. So
+ * many small textures (icons, decals, generated text) are expensive, even if
+ * each one is drawn only a few times. This class copies such images into a few
+ * large pages on first use, and returns a {@link TextureRegion} for each one.
+ * All regions on the same page draw with the same texture, and so the batch
+ * draws them without any state change.
+ *
+ * Images are identified by a user-defined key. The first call to {@link #add}
+ * for a key packs the image and uploads it to its page with a sub-image
+ * update. Later calls to {@link #get} (or {@link #add}) with the same key
+ * simply return the region. Pages are filled with a skyline packer, which is
+ * fast and wastes little space for images of similar heights.
+ *
+ * When every page is full, the least recently used page is cleared and reused.
+ * Eviction is by page and not by image, so every image on that page is removed
+ * (even those used recently). Use is measured in frames, which are advanced by
+ * {@link #update}. This means that a region is only valid until its page is
+ * evicted. Hence regions should be looked up with {@link #get} each frame, and
+ * not kept. Images that are too large for a page are never packed, and must be
+ * drawn with their own texture.
+ *
+ * A page used in the current frame is never evicted, as sprites drawn from it
+ * may still be waiting in an unflushed sprite batch. Overwriting the page would
+ * change the pixels under those sprites. So if every page is full and every
+ * page was used this frame, the image is not packed. It must be drawn with its
+ * own texture until a later frame, or the atlas must have more pages.
+ *
+ * Pages are RGBA textures, and images are copied as is. For a sprite batch in
+ * premultiplied mode, premultiply each image (see {@link CUTexture#premultiply})
+ * before adding it.
+ */
+public class CUDynamicAtlas implements Disposable {
+    /** The default page size (in each dimension) */
+    public static final int DEFAULT_PAGE_SIZE = 1024;
+    /** The default maximum number of pages */
+    public static final int DEFAULT_MAX_PAGES = 4;
+
+    /**
+     * A single page of the atlas.
+     *
+     * The skyline is stored as a sequence of segments (x, y, width), ordered
+     * by x and covering the full page width.
+     */
+    private static class Page {
+        /** The page texture */
+        final CUTexture texture;
+        /** The skyline segments of this page, as (x, y, width) triples */
+        final IntArray skyline = new IntArray();
+        /** The keys of the images on this page */
+        final Array<Object> keys = new Array<>();
+        /** The last frame that any image on this page was used */
+        long lastUse;
+        /** Whether this page has been evicted (and so may hold stale pixels) */
+        boolean stale;
+
+        /**
+         * Creates an empty page of the given size.
+         *
+         * The page is cleared to transparent, so that padding is invisible.
+         *
+         * @param width     The page width
+         * @param height    The page height
+         */
+        Page(int width, int height) {
+            texture = new CUTexture(BufferUtils.newByteBuffer(4*width*height), width, height);
+            texture.setName("CUDynamicAtlas page");
+            clear();
+        }
+
+        /**
+         * Resets this page to empty, without erasing the texture.
+         */
+        void clear() {
+            skyline.clear();
+            skyline.add(0, 0, texture.getWidth());
+            keys.clear();
+        }
+    }
+
+    /**
+     * A packed image.
+     */
+    private static class Entry {
+        /** The page holding the image */
+        Page page;
+        /** The region of the image on the page */
+        final TextureRegion region = new TextureRegion();
+    }
+
+    /** The page width */
+    private final int pageWidth;
+    /** The page height */
+    private final int pageHeight;
+    /** The maximum number of pages */
+    private final int maxPages;
+    /** The empty pixels between images (to prevent filtering bleed) */
+    private final int padding;
+
+    /** The allocated pages */
+    private final Array<Page> pages = new Array<>();
+    /** The packed images by key */
+    private final ObjectMap<Object, Entry> entries = new ObjectMap<>();
+    /** The current frame */
+    private long frame;
+    /** The number of pages evicted */
+    private int evictions;
+    /** The result of a skyline search (x, y, segment index) */
+    private final int[] fit = new int[3];
+    /** Transparent pixels for clearing the padding of stale pages */
+    private final ByteBuffer blank;
+
+    /**
+     * Creates an atlas with the default page size and page limit.
+     */
+    public CUDynamicAtlas() {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES, 1);
+    }
+
+    /**
+     * Creates an atlas with the given page size and page limit.
+     *
+     * Pages are allocated as needed, up to maxPages.
+     *
+     * @param pageWidth     The page width in pixels
+     * @param pageHeight    The page height in pixels
+     * @param maxPages      The maximum number of pages
+     * @param padding       The empty pixels between images
+     */
+    public CUDynamicAtlas(int pageWidth, int pageHeight, int maxPages, int padding) {
+        if (pageWidth <= 0 || pageHeight <= 0) {
+            throw new IllegalArgumentException("Page size "+pageWidth+"x"+pageHeight+" is not valid");
+        } else if (maxPages <= 0) {
+            throw new IllegalArgumentException("Atlas must have at least one page");
+        } else if (padding < 0) {
+            throw new IllegalArgumentException("Padding must be nonnegative");
+        }
+        this.pageWidth  = pageWidth;
+        this.pageHeight = pageHeight;
+        this.maxPages = maxPages;
+        this.padding  = padding;
+        this.blank = padding == 0 ? null : BufferUtils.newByteBuffer(4*padding*Math.max(pageWidth, pageHeight));
+    }
+
+    /**
+     * Disposes all pages of this atlas.
+     *
+     * All regions returned by this atlas are invalid afterwards.
+     */
+    @Override
+    public void dispose() {
+        for (Page page : pages) {
+            page.texture.dispose();
+        }
+        pages.clear();
+        entries.clear();
+    }
+
+    /**
+     * Advances the frame used to measure the recent use of each page.
+     *
+     * This method should be called once per animation frame.
+     */
+    public void update() {
+        frame++;
+    }
+
+    /**
+     * Returns the region for the given key, or null if it is not packed.
+     *
+     * This method marks the page of the image as used in this frame.
+     *
+     * @param key   The image key
+     *
+     * @return the region for the given key, or null if it is not packed.
+     */
+    public TextureRegion get(Object key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.page.lastUse = frame;
+        return entry.region;
+    }
+
+    /**
+     * Returns true if the image for the given key is packed.
+     *
+     * @param key   The image key
+     *
+     * @return true if the image for the given key is packed.
+     */
+    public boolean contains(Object key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Returns the region for the given image, packing it if necessary.
+     *
+     * If the key is already packed, the pixmap is ignored. Otherwise, the
+     * pixmap is copied into a page. Pixmaps that are not RGBA8888 are
+     * converted first. This method returns null if the image is larger
+     * than a page, or if there is no room for it without evicting a page
+     * used in this frame.
+     *
+     * @param key       The image key
+     * @param pixmap    The image pixels
+     *
+     * @return the region for the given image, or null if it cannot be packed.
+     */
+    public TextureRegion add(Object key, Pixmap pixmap) {
+        TextureRegion result = get(key);
+        if (result != null) {
+            return result;
+        }
+        if (pixmap.getFormat() == Pixmap.Format.RGBA8888) {
+            return pack(key, pixmap.getPixels(), pixmap.getWidth(), pixmap.getHeight());
+        }
+
+        Pixmap copy = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), Pixmap.Format.RGBA8888);
+        copy.setBlending(Pixmap.Blending.None);
+        copy.drawPixmap(pixmap, 0, 0);
+        result = pack(key, copy.getPixels(), copy.getWidth(), copy.getHeight());
+        copy.dispose();
+        return result;
+    }
+
+    /**
+     * Returns the region for the given image, packing it if necessary.
+     *
+     * If the key is already packed, the data is ignored. Otherwise, the
+     * data (RGBA, from position to limit) is copied into a page. This method
+     * returns null if the image is larger than a page, or if there is no room
+     * for it without evicting a page used in this frame.
+     *
+     * @param key       The image key
+     * @param data      The image pixels (size width*height*4)
+     * @param width     The image width
+     * @param height    The image height
+     *
+     * @return the region for the given image, or null if it cannot be packed.
+     */
+    public TextureRegion add(Object key, ByteBuffer data, int width, int height) {
+        TextureRegion result = get(key);
+        if (result != null) {
+            return result;
+        }
+        if (data.remaining() < 4*width*height) {
+            throw new IllegalArgumentException("Buffer has "+data.remaining()+" bytes, but "+
+                                               width+"x"+height+" requires "+(4*width*height));
+        }
+        return pack(key, data, width, height);
+    }
+
+    /**
+     * Removes the image for the given key.
+     *
+     * The space is not reclaimed until its page is evicted.
+     *
+     * @param key   The image key
+     */
+    public void remove(Object key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            entry.page.keys.removeValue(key, false);
+        }
+    }
+
+    /**
+     * Returns the number of images in this atlas.
+     *
+     * @return the number of images in this atlas.
+     */
+    public int size() {
+        return entries.size;
+    }
+
+    /**
+     * Returns the number of pages allocated by this atlas.
+     *
+     * @return the number of pages allocated by this atlas.
+     */
+    public int getPageCount() {
+        return pages.size;
+    }
+
+    /**
+     * Returns the texture of the given page.
+     *
+     * @param index The page index
+     *
+     * @return the texture of the given page.
+     */
+    public Texture getPage(int index) {
+        return pages.get(index).texture;
+    }
+
+    /**
+     * Returns the number of pages evicted to make room for new images.
+     *
+     * @return the number of pages evicted to make room for new images.
+     */
+    public int getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Packs the image into a page and uploads it.
+     *
+     * @param key       The image key
+     * @param data      The image pixels (RGBA)
+     * @param width     The image width
+     * @param height    The image height
+     *
+     * @return the region for the image, or null if it cannot be packed.
+     */
+    private TextureRegion pack(Object key, ByteBuffer data, int width, int height) {
+        int w = width+padding;
+        int h = height+padding;
+        if (w > pageWidth || h > pageHeight) {
+            return null;
+        }
+
+        Page page = null;
+        for (int ii = 0; page == null && ii < pages.size; ii++) {
+            if (findSkyline(pages.get(ii), w, h)) {
+                page = pages.get(ii);
+            }
+        }
+        if (page == null) {
+            if (pages.size < maxPages) {
+                page = new Page(pageWidth, pageHeight);
+                pages.add(page);
+            } else {
+                page = evict();
+                if (page == null) {
+                    return null;
+                }
+            }
+            findSkyline(page, w, h);
+        }
+
+        int x = fit[0];
+        int y = fit[1];
+        addSkyline(page, fit[2], x, y+h, w);
+
+        page.texture.bind();
+        Gdx.gl30.glPixelStorei(GL30.GL_UNPACK_ALIGNMENT, 1);
+        Gdx.gl30.glTexSubImage2D(GL30.GL_TEXTURE_2D, 0, x, y, width, height,
+                                 GL30.GL_RGBA, GL30.GL_UNSIGNED_BYTE, data);
+        if (page.stale && padding > 0) {
+            // Evicted images may remain in the padding, and bleed when filtered
+            Gdx.gl30.glTexSubImage2D(GL30.GL_TEXTURE_2D, 0, x+width, y, padding, h,
+                                     GL30.GL_RGBA, GL30.GL_UNSIGNED_BYTE, blank);
+            Gdx.gl30.glTexSubImage2D(GL30.GL_TEXTURE_2D, 0, x, y+height, width, padding,
+                                     GL30.GL_RGBA, GL30.GL_UNSIGNED_BYTE, blank);
+        }
+        Gdx.gl30.glPixelStorei(GL30.GL_UNPACK_ALIGNMENT, 4);
+
+        Entry entry = new Entry();
+        entry.page = page;
+        entry.region.setTexture(page.texture);
+        entry.region.setRegion(x, y, width, height);
+        entries.put(key, entry);
+        page.keys.add(key);
+        page.lastUse = frame;
+        return entry.region;
+    }
+
+    /**
+     * Clears the least recently used page, and returns it.
+     *
+     * All images on the page are removed from the atlas. The texture is not
+     * erased, but the padding of each new image on the page is cleared when
+     * it is packed. If every page was used in this frame, no page is evicted
+     * and this method returns null.
+     *
+     * @return the least recently used page (or null if all are in use).
+     */
+    private Page evict() {
+        Page oldest = pages.first();
+        for (Page page : pages) {
+            if (page.lastUse < oldest.lastUse) {
+                oldest = page;
+            }
+        }
+        if (oldest.lastUse == frame) {
+            return null;
+        }
+        for (Object key : oldest.keys) {
+            entries.remove(key);
+        }
+        oldest.clear();
+        oldest.stale = true;
+        evictions++;
+        return oldest;
+    }
+
+    /**
+     * Returns true if a rectangle fits on the page, storing the position in fit.
+     *
+     * The position is the one with the lowest top edge (ties broken by the
+     * leftmost segment). The result is stored as (x, y, segment index).
+     *
+     * @param page      The atlas page
+     * @param width     The rectangle width
+     * @param height    The rectangle height
+     *
+     * @return true if a rectangle fits on the page.
+     */
+    private boolean findSkyline(Page page, int width, int height) {
+        IntArray skyline = page.skyline;
+        int best = Integer.MAX_VALUE;
+        for (int ii = 0; ii < skyline.size; ii += 3) {
+            int x = skyline.get(ii);
+            if (x+width > pageWidth) {
+                break;
+            }
+            int y = 0;
+            int remain = width;
+            for (int jj = ii; remain > 0; jj += 3) {
+                y = Math.max(y, skyline.get(jj+1));
+                remain -= skyline.get(jj+2);
+            }
+            if (y+height <= pageHeight && y+height < best) {
+                best = y+height;
+                fit[0] = x;
+                fit[1] = y;
+                fit[2] = ii;
+            }
+        }
+        return best != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Adds a new skyline segment, trimming the segments it covers.
+     *
+     * @param page  The atlas page
+     * @param index The index of the first covered segment
+     * @param x     The segment left edge
+     * @param y     The segment height
+     * @param width The segment width
+     */
+    private void addSkyline(Page page, int index, int x, int y, int width) {
+        IntArray skyline = page.skyline;
+        skyline.insert(index, width);
+        skyline.insert(index, y);
+        skyline.insert(index, x);
+
+        int right = x+width;
+        int ii = index+3;
+        while (ii < skyline.size) {
+            int sx = skyline.get(ii);
+            int sw = skyline.get(ii+2);
+            if (sx >= right) {
+                break;
+            } else if (sx+sw <= right) {
+                skyline.removeRange(ii, ii+2);
+            } else {
+                skyline.set(ii, right);
+                skyline.set(ii+2, sx+sw-right);
+                break;
+            }
+        }
+
+        // Merge neighbors of the same height
+        ii = 0;
+        while (ii+3 < skyline.size) {
+            if (skyline.get(ii+1) == skyline.get(ii+4)) {
+                skyline.incr(ii+2, skyline.get(ii+5));
+                skyline.removeRange(ii+3, ii+5);
+            } else {
+                ii += 3;
+            }
+        }
+    }
+}
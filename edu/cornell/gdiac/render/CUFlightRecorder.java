@@ -0,0 +1,329 @@
+package edu.cornell.gdiac.render;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class reports the activity of the renderer to Java Flight Recorder.
+ *
+ * The render classes call the static methods of this class at their flushes,
+ * state records, buffer uploads, render target passes, and pixel readbacks.
+ * Each method creates a JFR event, but only if that event is enabled in the
+ * active recording. Otherwise the methods do nothing besides a single check.
+ * The events are in the category "CUGL/Rendering" and may be enabled or
+ * disabled individually in a JFR settings file.
+ *
+ * Flight Recorder is not part of every platform that we support (most notably
+ * Android). All references to the JFR classes are isolated in a nested class,
+ * which is never loaded if JFR is not present. In that case, {@link #AVAILABLE}
+ * is false and every method of this class is a no-op.
+ */
+public final class CUFlightRecorder {
+    /** Whether Java Flight Recorder is available on this platform */
+    public static final boolean AVAILABLE = detect();
+
+    /** This class is a collection of static methods */
+    private CUFlightRecorder() {}
+
+    /**
+     * Returns true if the Java Flight Recorder classes are present.
+     *
+     * @return true if the Java Flight Recorder classes are present.
+     */
+    private static boolean detect() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return FlightEvents.FLUSH != null;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    //region Sprite Batch
+    /**
+     * Returns a new flush event, or null if that event is not enabled.
+     *
+     * The event measures the time until the call to {@link #endFlush}.
+     *
+     * @return a new flush event, or null if that event is not enabled.
+     */
+    static Object beginFlush() {
+        return AVAILABLE ? FlightEvents.beginFlush() : null;
+    }
+
+    /**
+     * Commits a flush event created by {@link #beginFlush}.
+     *
+     * If event is null, this method does nothing.
+     *
+     * @param event     The flush event (or null)
+     * @param draws     The number of draw calls issued
+     * @param vertices  The number of vertices flushed
+     * @param indices   The number of indices flushed
+     */
+    static void endFlush(Object event, int draws, int vertices, int indices) {
+        if (event != null) {
+            FlightEvents.endFlush(event, draws, vertices, indices);
+        }
+    }
+
+    /**
+     * Reports that the sprite batch recorded a drawing context.
+     *
+     * The dirty bits are those of the context just recorded. They identify the
+     * state changes that started the segment of geometry now closed.
+     *
+     * @param dirty     The dirty bits of the recorded context
+     * @param indices   The number of indices in the recorded context
+     */
+    static void record(int dirty, int indices) {
+        if (AVAILABLE) {
+            FlightEvents.record(dirty, indices);
+        }
+    }
+    //endregion
+
+    //region Buffers
+    /**
+     * Reports an upload of vertex data to the graphics card.
+     *
+     * @param bytes The number of bytes uploaded
+     */
+    static void uploadVertices(long bytes) {
+        if (AVAILABLE) {
+            FlightEvents.upload("vertex", bytes);
+        }
+    }
+
+    /**
+     * Reports an upload of index data to the graphics card.
+     *
+     * @param bytes The number of bytes uploaded
+     */
+    static void uploadIndices(long bytes) {
+        if (AVAILABLE) {
+            FlightEvents.upload("index", bytes);
+        }
+    }
+
+    /**
+     * Reports an upload of uniform block data to the graphics card.
+     *
+     * @param bytes The number of bytes uploaded
+     */
+    static void uploadUniforms(long bytes) {
+        if (AVAILABLE) {
+            FlightEvents.upload("uniform", bytes);
+        }
+    }
+    //endregion
+
+    //region Render Targets
+    /**
+     * Returns a new render target event, or null if that event is not enabled.
+     *
+     * The event measures the time until the call to {@link #endTarget}.
+     *
+     * @param width     The render target width
+     * @param height    The render target height
+     *
+     * @return a new render target event, or null if that event is not enabled.
+     */
+    static Object beginTarget(int width, int height) {
+        return AVAILABLE ? FlightEvents.beginTarget(width, height) : null;
+    }
+
+    /**
+     * Commits a render target event created by {@link #beginTarget}.
+     *
+     * If event is null, this method does nothing.
+     *
+     * @param event The render target event (or null)
+     */
+    static void endTarget(Object event) {
+        if (event != null) {
+            FlightEvents.commit(event);
+        }
+    }
+
+    /**
+     * Returns a new readback event, or null if that event is not enabled.
+     *
+     * The event measures the time until the call to {@link #endReadback}.
+     *
+     * @param width     The image width
+     * @param height    The image height
+     * @param bytes     The number of bytes read
+     *
+     * @return a new readback event, or null if that event is not enabled.
+     */
+    static Object beginReadback(int width, int height, long bytes) {
+        return AVAILABLE ? FlightEvents.beginReadback(width, height, bytes) : null;
+    }
+
+    /**
+     * Commits a readback event created by {@link #beginReadback}.
+     *
+     * If event is null, this method does nothing.
+     *
+     * @param event The readback event (or null)
+     */
+    static void endReadback(Object event) {
+        if (event != null) {
+            FlightEvents.commit(event);
+        }
+    }
+    //endregion
+
+    /**
+     * The JFR events of the renderer.
+     *
+     * This class is only loaded if Flight Recorder is available. The event
+     * types are looked up once, so that checking whether an event is enabled
+     * does not require an allocation.
+     */
+    private static class FlightEvents {
+        /** The type of the flush event */
+        static final EventType FLUSH = EventType.getEventType(FlushEvent.class);
+        /** The type of the record event */
+        static final EventType RECORD = EventType.getEventType(RecordEvent.class);
+        /** The type of the upload event */
+        static final EventType UPLOAD = EventType.getEventType(UploadEvent.class);
+        /** The type of the render target event */
+        static final EventType TARGET = EventType.getEventType(TargetEvent.class);
+        /** The type of the readback event */
+        static final EventType READBACK = EventType.getEventType(ReadbackEvent.class);
+
+        static Object beginFlush() {
+            if (!FLUSH.isEnabled()) {
+                return null;
+            }
+            FlushEvent event = new FlushEvent();
+            event.begin();
+            return event;
+        }
+
+        static void endFlush(Object event, int draws, int vertices, int indices) {
+            FlushEvent flush = (FlushEvent)event;
+            flush.end();
+            if (flush.shouldCommit()) {
+                flush.drawCalls = draws;
+                flush.vertices = vertices;
+                flush.indices = indices;
+                flush.commit();
+            }
+        }
+
+        static void record(int dirty, int indices) {
+            if (RECORD.isEnabled()) {
+                RecordEvent event = new RecordEvent();
+                event.dirty = dirty;
+                event.indices = indices;
+                event.commit();
+            }
+        }
+
+        static void upload(String buffer, long bytes) {
+            if (UPLOAD.isEnabled()) {
+                UploadEvent event = new UploadEvent();
+                event.buffer = buffer;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+
+        static Object beginTarget(int width, int height) {
+            if (!TARGET.isEnabled()) {
+                return null;
+            }
+            TargetEvent event = new TargetEvent();
+            event.width = width;
+            event.height = height;
+            event.begin();
+            return event;
+        }
+
+        static Object beginReadback(int width, int height, long bytes) {
+            if (!READBACK.isEnabled()) {
+                return null;
+            }
+            ReadbackEvent event = new ReadbackEvent();
+            event.width = width;
+            event.height = height;
+            event.bytes = bytes;
+            event.begin();
+            return event;
+        }
+
+        static void commit(Object event) {
+            ((Event)event).commit();
+        }
+    }
+
+    @Name("edu.cornell.gdiac.render.Flush")
+    @Label("Sprite Batch Flush")
+    @Category({"CUGL", "Rendering"})
+    @Description("A flush of a sprite batch to the graphics card")
+    static class FlushEvent extends Event {
+        @Label("Draw Calls")
+        int drawCalls;
+        @Label("Vertices")
+        int vertices;
+        @Label("Indices")
+        int indices;
+    }
+
+    @Name("edu.cornell.gdiac.render.Record")
+    @Label("Sprite Batch Record")
+    @Category({"CUGL", "Rendering"})
+    @Description("A drawing context recorded by a state change in a sprite batch")
+    static class RecordEvent extends Event {
+        @Label("Dirty Bits")
+        @Description("The state changes at the start of the recorded context")
+        int dirty;
+        @Label("Indices")
+        int indices;
+    }
+
+    @Name("edu.cornell.gdiac.render.Upload")
+    @Label("Buffer Upload")
+    @Category({"CUGL", "Rendering"})
+    @Description("An upload of vertex, index, or uniform data to the graphics card")
+    static class UploadEvent extends Event {
+        @Label("Buffer")
+        String buffer;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("edu.cornell.gdiac.render.RenderTarget")
+    @Label("Render Target Pass")
+    @Category({"CUGL", "Rendering"})
+    @Description("The time between the begin and end of a render target")
+    static class TargetEvent extends Event {
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+    }
+
+    @Name("edu.cornell.gdiac.render.Readback")
+    @Label("Pixel Readback")
+    @Category({"CUGL", "Rendering"})
+    @Description("A read of render target pixels back from the graphics card")
+    static class ReadbackEvent extends Event {
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+}
@@ -0,0 +1,3014 @@
+package edu.cornell.gdiac.render;
+
+import java.nio.*;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.GL30;
+import com.badlogic.gdx.utils.*;
+
+/**
+ * This class is a headless OpenGL backend that records every call it receives.
+ *
+ * A recorder is a {@link GL30} implementation that does not require a graphics
+ * card or a display. Every call is appended to a compact command log (a method
+ * id followed by the primitive arguments), and is counted. The recorder
+ * simulates enough of OpenGL for the render classes to run: it returns fresh
+ * handles for generated objects, tracks the buffer, texture and framebuffer
+ * bindings, answers the queries used by this package, and keeps the contents of
+ * every buffer object in memory (including mapped ranges). Nothing is drawn.
+ *
+ * This makes it possible to test and benchmark {@link CUSpriteBatch} and its
+ * supporting classes on a machine with no display. Create a headless libGDX
+ * application (so that {@link Gdx#graphics} exists), and then call {@link #install}
+ * to replace the active GL instances. After drawing, the log can be checked for
+ * exact draw-call counts, upload sizes, and state changes.
+ *
+ * The recorder does not allocate memory once it is warmed up. Arguments are
+ * written to the log as ints, and buffer storage and mapped ranges are reused.
+ * The log itself only grows, so call {@link #clear} between frames, or turn
+ * off the log with {@link #setLogging} (the counters are still kept). Hence
+ * the recorder may be used to check that drawing does not allocate.
+ */
+public class CUGLRecorder implements GL30 {
+    //region Method Ids
+    /** The names of the GL methods, indexed by method id */
+    private static final String[] NAMES = {
+        "glActiveTexture",
+        "glBindTexture",
+        "glBlendFunc",
+        "glClear",
+        "glClearColor",
+        "glClearDepthf",
+        "glClearStencil",
+        "glColorMask",
+        "glCompressedTexImage2D",
+        "glCompressedTexSubImage2D",
+        "glCopyTexImage2D",
+        "glCopyTexSubImage2D",
+        "glCullFace",
+        "glDeleteTextures",
+        "glDeleteTexture",
+        "glDepthFunc",
+        "glDepthMask",
+        "glDepthRangef",
+        "glDisable",
+        "glDrawArrays",
+        "glDrawElements",
+        "glEnable",
+        "glFinish",
+        "glFlush",
+        "glFrontFace",
+        "glGenTextures",
+        "glGenTexture",
+        "glGetError",
+        "glGetIntegerv",
+        "glGetString",
+        "glHint",
+        "glLineWidth",
+        "glPixelStorei",
+        "glPolygonOffset",
+        "glReadPixels",
+        "glScissor",
+        "glStencilFunc",
+        "glStencilMask",
+        "glStencilOp",
+        "glTexImage2D",
+        "glTexParameterf",
+        "glTexSubImage2D",
+        "glViewport",
+        "glAttachShader",
+        "glBindAttribLocation",
+        "glBindBuffer",
+        "glBindFramebuffer",
+        "glBindRenderbuffer",
+        "glBlendColor",
+        "glBlendEquation",
+        "glBlendEquationSeparate",
+        "glBlendFuncSeparate",
+        "glBufferData",
+        "glBufferSubData",
+        "glCheckFramebufferStatus",
+        "glCompileShader",
+        "glCreateProgram",
+        "glCreateShader",
+        "glDeleteBuffer",
+        "glDeleteBuffers",
+        "glDeleteFramebuffer",
+        "glDeleteFramebuffers",
+        "glDeleteProgram",
+        "glDeleteRenderbuffer",
+        "glDeleteRenderbuffers",
+        "glDeleteShader",
+        "glDetachShader",
+        "glDisableVertexAttribArray",
+        "glEnableVertexAttribArray",
+        "glFramebufferRenderbuffer",
+        "glFramebufferTexture2D",
+        "glGenBuffer",
+        "glGenBuffers",
+        "glGenerateMipmap",
+        "glGenFramebuffer",
+        "glGenFramebuffers",
+        "glGenRenderbuffer",
+        "glGenRenderbuffers",
+        "glGetActiveAttrib",
+        "glGetActiveUniform",
+        "glGetAttachedShaders",
+        "glGetAttribLocation",
+        "glGetBooleanv",
+        "glGetBufferParameteriv",
+        "glGetFloatv",
+        "glGetFramebufferAttachmentParameteriv",
+        "glGetProgramiv",
+        "glGetProgramInfoLog",
+        "glGetRenderbufferParameteriv",
+        "glGetShaderiv",
+        "glGetShaderInfoLog",
+        "glGetShaderPrecisionFormat",
+        "glGetTexParameterfv",
+        "glGetTexParameteriv",
+        "glGetUniformfv",
+        "glGetUniformiv",
+        "glGetUniformLocation",
+        "glGetVertexAttribfv",
+        "glGetVertexAttribiv",
+        "glGetVertexAttribPointerv",
+        "glIsBuffer",
+        "glIsEnabled",
+        "glIsFramebuffer",
+        "glIsProgram",
+        "glIsRenderbuffer",
+        "glIsShader",
+        "glIsTexture",
+        "glLinkProgram",
+        "glReleaseShaderCompiler",
+        "glRenderbufferStorage",
+        "glSampleCoverage",
+        "glShaderBinary",
+        "glShaderSource",
+        "glStencilFuncSeparate",
+        "glStencilMaskSeparate",
+        "glStencilOpSeparate",
+        "glTexParameterfv",
+        "glTexParameteri",
+        "glTexParameteriv",
+        "glUniform1f",
+        "glUniform1fv",
+        "glUniform1i",
+        "glUniform1iv",
+        "glUniform2f",
+        "glUniform2fv",
+        "glUniform2i",
+        "glUniform2iv",
+        "glUniform3f",
+        "glUniform3fv",
+        "glUniform3i",
+        "glUniform3iv",
+        "glUniform4f",
+        "glUniform4fv",
+        "glUniform4i",
+        "glUniform4iv",
+        "glUniformMatrix2fv",
+        "glUniformMatrix3fv",
+        "glUniformMatrix4fv",
+        "glUseProgram",
+        "glValidateProgram",
+        "glVertexAttrib1f",
+        "glVertexAttrib1fv",
+        "glVertexAttrib2f",
+        "glVertexAttrib2fv",
+        "glVertexAttrib3f",
+        "glVertexAttrib3fv",
+        "glVertexAttrib4f",
+        "glVertexAttrib4fv",
+        "glVertexAttribPointer",
+        "glReadBuffer",
+        "glDrawRangeElements",
+        "glTexImage3D",
+        "glTexSubImage3D",
+        "glCopyTexSubImage3D",
+        "glGenQueries",
+        "glDeleteQueries",
+        "glIsQuery",
+        "glBeginQuery",
+        "glEndQuery",
+        "glGetQueryiv",
+        "glGetQueryObjectuiv",
+        "glUnmapBuffer",
+        "glGetBufferPointerv",
+        "glDrawBuffers",
+        "glUniformMatrix2x3fv",
+        "glUniformMatrix3x2fv",
+        "glUniformMatrix2x4fv",
+        "glUniformMatrix4x2fv",
+        "glUniformMatrix3x4fv",
+        "glUniformMatrix4x3fv",
+        "glBlitFramebuffer",
+        "glRenderbufferStorageMultisample",
+        "glFramebufferTextureLayer",
+        "glMapBufferRange",
+        "glFlushMappedBufferRange",
+        "glBindVertexArray",
+        "glDeleteVertexArrays",
+        "glGenVertexArrays",
+        "glIsVertexArray",
+        "glBeginTransformFeedback",
+        "glEndTransformFeedback",
+        "glBindBufferRange",
+        "glBindBufferBase",
+        "glTransformFeedbackVaryings",
+        "glVertexAttribIPointer",
+        "glGetVertexAttribIiv",
+        "glGetVertexAttribIuiv",
+        "glVertexAttribI4i",
+        "glVertexAttribI4ui",
+        "glGetUniformuiv",
+        "glGetFragDataLocation",
+        "glUniform1uiv",
+        "glUniform3uiv",
+        "glUniform4uiv",
+        "glClearBufferiv",
+        "glClearBufferuiv",
+        "glClearBufferfv",
+        "glClearBufferfi",
+        "glGetStringi",
+        "glCopyBufferSubData",
+        "glGetUniformIndices",
+        "glGetActiveUniformsiv",
+        "glGetUniformBlockIndex",
+        "glGetActiveUniformBlockiv",
+        "glGetActiveUniformBlockName",
+        "glUniformBlockBinding",
+        "glDrawArraysInstanced",
+        "glDrawElementsInstanced",
+        "glGetInteger64v",
+        "glGetBufferParameteri64v",
+        "glGenSamplers",
+        "glDeleteSamplers",
+        "glIsSampler",
+        "glBindSampler",
+        "glSamplerParameteri",
+        "glSamplerParameteriv",
+        "glSamplerParameterf",
+        "glSamplerParameterfv",
+        "glGetSamplerParameteriv",
+        "glGetSamplerParameterfv",
+        "glVertexAttribDivisor",
+        "glBindTransformFeedback",
+        "glDeleteTransformFeedbacks",
+        "glGenTransformFeedbacks",
+        "glIsTransformFeedback",
+        "glPauseTransformFeedback",
+        "glResumeTransformFeedback",
+        "glProgramParameteri",
+        "glInvalidateFramebuffer",
+        "glInvalidateSubFramebuffer"
+    };
+
+    private static final int ID_ACTIVE_TEXTURE = 0;
+    private static final int ID_BIND_TEXTURE = 1;
+    private static final int ID_BLEND_FUNC = 2;
+    private static final int ID_CLEAR = 3;
+    private static final int ID_CLEAR_COLOR = 4;
+    private static final int ID_CLEAR_DEPTHF = 5;
+    private static final int ID_CLEAR_STENCIL = 6;
+    private static final int ID_COLOR_MASK = 7;
+    private static final int ID_COMPRESSED_TEX_IMAGE2_D = 8;
+    private static final int ID_COMPRESSED_TEX_SUB_IMAGE2_D = 9;
+    private static final int ID_COPY_TEX_IMAGE2_D = 10;
+    private static final int ID_COPY_TEX_SUB_IMAGE2_D = 11;
+    private static final int ID_CULL_FACE = 12;
+    private static final int ID_DELETE_TEXTURES = 13;
+    private static final int ID_DELETE_TEXTURE = 14;
+    private static final int ID_DEPTH_FUNC = 15;
+    private static final int ID_DEPTH_MASK = 16;
+    private static final int ID_DEPTH_RANGEF = 17;
+    private static final int ID_DISABLE = 18;
+    private static final int ID_DRAW_ARRAYS = 19;
+    private static final int ID_DRAW_ELEMENTS = 20;
+    private static final int ID_ENABLE = 21;
+    private static final int ID_FINISH = 22;
+    private static final int ID_FLUSH = 23;
+    private static final int ID_FRONT_FACE = 24;
+    private static final int ID_GEN_TEXTURES = 25;
+    private static final int ID_GEN_TEXTURE = 26;
+    private static final int ID_GET_ERROR = 27;
+    private static final int ID_GET_INTEGERV = 28;
+    private static final int ID_GET_STRING = 29;
+    private static final int ID_HINT = 30;
+    private static final int ID_LINE_WIDTH = 31;
+    private static final int ID_PIXEL_STOREI = 32;
+    private static final int ID_POLYGON_OFFSET = 33;
+    private static final int ID_READ_PIXELS = 34;
+    private static final int ID_SCISSOR = 35;
+    private static final int ID_STENCIL_FUNC = 36;
+    private static final int ID_STENCIL_MASK = 37;
+    private static final int ID_STENCIL_OP = 38;
+    private static final int ID_TEX_IMAGE2_D = 39;
+    private static final int ID_TEX_PARAMETERF = 40;
+    private static final int ID_TEX_SUB_IMAGE2_D = 41;
+    private static final int ID_VIEWPORT = 42;
+    private static final int ID_ATTACH_SHADER = 43;
+    private static final int ID_BIND_ATTRIB_LOCATION = 44;
+    private static final int ID_BIND_BUFFER = 45;
+    private static final int ID_BIND_FRAMEBUFFER = 46;
+    private static final int ID_BIND_RENDERBUFFER = 47;
+    private static final int ID_BLEND_COLOR = 48;
+    private static final int ID_BLEND_EQUATION = 49;
+    private static final int ID_BLEND_EQUATION_SEPARATE = 50;
+    private static final int ID_BLEND_FUNC_SEPARATE = 51;
+    private static final int ID_BUFFER_DATA = 52;
+    private static final int ID_BUFFER_SUB_DATA = 53;
+    private static final int ID_CHECK_FRAMEBUFFER_STATUS = 54;
+    private static final int ID_COMPILE_SHADER = 55;
+    private static final int ID_CREATE_PROGRAM = 56;
+    private static final int ID_CREATE_SHADER = 57;
+    private static final int ID_DELETE_BUFFER = 58;
+    private static final int ID_DELETE_BUFFERS = 59;
+    private static final int ID_DELETE_FRAMEBUFFER = 60;
+    private static final int ID_DELETE_FRAMEBUFFERS = 61;
+    private static final int ID_DELETE_PROGRAM = 62;
+    private static final int ID_DELETE_RENDERBUFFER = 63;
+    private static final int ID_DELETE_RENDERBUFFERS = 64;
+    private static final int ID_DELETE_SHADER = 65;
+    private static final int ID_DETACH_SHADER = 66;
+    private static final int ID_DISABLE_VERTEX_ATTRIB_ARRAY = 67;
+    private static final int ID_ENABLE_VERTEX_ATTRIB_ARRAY = 68;
+    private static final int ID_FRAMEBUFFER_RENDERBUFFER = 69;
+    private static final int ID_FRAMEBUFFER_TEXTURE2_D = 70;
+    private static final int ID_GEN_BUFFER = 71;
+    private static final int ID_GEN_BUFFERS = 72;
+    private static final int ID_GENERATE_MIPMAP = 73;
+    private static final int ID_GEN_FRAMEBUFFER = 74;
+    private static final int ID_GEN_FRAMEBUFFERS = 75;
+    private static final int ID_GEN_RENDERBUFFER = 76;
+    private static final int ID_GEN_RENDERBUFFERS = 77;
+    private static final int ID_GET_ACTIVE_ATTRIB = 78;
+    private static final int ID_GET_ACTIVE_UNIFORM = 79;
+    private static final int ID_GET_ATTACHED_SHADERS = 80;
+    private static final int ID_GET_ATTRIB_LOCATION = 81;
+    private static final int ID_GET_BOOLEANV = 82;
+    private static final int ID_GET_BUFFER_PARAMETERIV = 83;
+    private static final int ID_GET_FLOATV = 84;
+    private static final int ID_GET_FRAMEBUFFER_ATTACHMENT_PARAMETERIV = 85;
+    private static final int ID_GET_PROGRAMIV = 86;
+    private static final int ID_GET_PROGRAM_INFO_LOG = 87;
+    private static final int ID_GET_RENDERBUFFER_PARAMETERIV = 88;
+    private static final int ID_GET_SHADERIV = 89;
+    private static final int ID_GET_SHADER_INFO_LOG = 90;
+    private static final int ID_GET_SHADER_PRECISION_FORMAT = 91;
+    private static final int ID_GET_TEX_PARAMETERFV = 92;
+    private static final int ID_GET_TEX_PARAMETERIV = 93;
+    private static final int ID_GET_UNIFORMFV = 94;
+    private static final int ID_GET_UNIFORMIV = 95;
+    private static final int ID_GET_UNIFORM_LOCATION = 96;
+    private static final int ID_GET_VERTEX_ATTRIBFV = 97;
+    private static final int ID_GET_VERTEX_ATTRIBIV = 98;
+    private static final int ID_GET_VERTEX_ATTRIB_POINTERV = 99;
+    private static final int ID_IS_BUFFER = 100;
+    private static final int ID_IS_ENABLED = 101;
+    private static final int ID_IS_FRAMEBUFFER = 102;
+    private static final int ID_IS_PROGRAM = 103;
+    private static final int ID_IS_RENDERBUFFER = 104;
+    private static final int ID_IS_SHADER = 105;
+    private static final int ID_IS_TEXTURE = 106;
+    private static final int ID_LINK_PROGRAM = 107;
+    private static final int ID_RELEASE_SHADER_COMPILER = 108;
+    private static final int ID_RENDERBUFFER_STORAGE = 109;
+    private static final int ID_SAMPLE_COVERAGE = 110;
+    private static final int ID_SHADER_BINARY = 111;
+    private static final int ID_SHADER_SOURCE = 112;
+    private static final int ID_STENCIL_FUNC_SEPARATE = 113;
+    private static final int ID_STENCIL_MASK_SEPARATE = 114;
+    private static final int ID_STENCIL_OP_SEPARATE = 115;
+    private static final int ID_TEX_PARAMETERFV = 116;
+    private static final int ID_TEX_PARAMETERI = 117;
+    private static final int ID_TEX_PARAMETERIV = 118;
+    private static final int ID_UNIFORM1F = 119;
+    private static final int ID_UNIFORM1FV = 120;
+    private static final int ID_UNIFORM1I = 121;
+    private static final int ID_UNIFORM1IV = 122;
+    private static final int ID_UNIFORM2F = 123;
+    private static final int ID_UNIFORM2FV = 124;
+    private static final int ID_UNIFORM2I = 125;
+    private static final int ID_UNIFORM2IV = 126;
+    private static final int ID_UNIFORM3F = 127;
+    private static final int ID_UNIFORM3FV = 128;
+    private static final int ID_UNIFORM3I = 129;
+    private static final int ID_UNIFORM3IV = 130;
+    private static final int ID_UNIFORM4F = 131;
+    private static final int ID_UNIFORM4FV = 132;
+    private static final int ID_UNIFORM4I = 133;
+    private static final int ID_UNIFORM4IV = 134;
+    private static final int ID_UNIFORM_MATRIX2FV = 135;
+    private static final int ID_UNIFORM_MATRIX3FV = 136;
+    private static final int ID_UNIFORM_MATRIX4FV = 137;
+    private static final int ID_USE_PROGRAM = 138;
+    private static final int ID_VALIDATE_PROGRAM = 139;
+    private static final int ID_VERTEX_ATTRIB1F = 140;
+    private static final int ID_VERTEX_ATTRIB1FV = 141;
+    private static final int ID_VERTEX_ATTRIB2F = 142;
+    private static final int ID_VERTEX_ATTRIB2FV = 143;
+    private static final int ID_VERTEX_ATTRIB3F = 144;
+    private static final int ID_VERTEX_ATTRIB3FV = 145;
+    private static final int ID_VERTEX_ATTRIB4F = 146;
+    private static final int ID_VERTEX_ATTRIB4FV = 147;
+    private static final int ID_VERTEX_ATTRIB_POINTER = 148;
+    private static final int ID_READ_BUFFER = 149;
+    private static final int ID_DRAW_RANGE_ELEMENTS = 150;
+    private static final int ID_TEX_IMAGE3_D = 151;
+    private static final int ID_TEX_SUB_IMAGE3_D = 152;
+    private static final int ID_COPY_TEX_SUB_IMAGE3_D = 153;
+    private static final int ID_GEN_QUERIES = 154;
+    private static final int ID_DELETE_QUERIES = 155;
+    private static final int ID_IS_QUERY = 156;
+    private static final int ID_BEGIN_QUERY = 157;
+    private static final int ID_END_QUERY = 158;
+    private static final int ID_GET_QUERYIV = 159;
+    private static final int ID_GET_QUERY_OBJECTUIV = 160;
+    private static final int ID_UNMAP_BUFFER = 161;
+    private static final int ID_GET_BUFFER_POINTERV = 162;
+    private static final int ID_DRAW_BUFFERS = 163;
+    private static final int ID_UNIFORM_MATRIX2X3FV = 164;
+    private static final int ID_UNIFORM_MATRIX3X2FV = 165;
+    private static final int ID_UNIFORM_MATRIX2X4FV = 166;
+    private static final int ID_UNIFORM_MATRIX4X2FV = 167;
+    private static final int ID_UNIFORM_MATRIX3X4FV = 168;
+    private static final int ID_UNIFORM_MATRIX4X3FV = 169;
+    private static final int ID_BLIT_FRAMEBUFFER = 170;
+    private static final int ID_RENDERBUFFER_STORAGE_MULTISAMPLE = 171;
+    private static final int ID_FRAMEBUFFER_TEXTURE_LAYER = 172;
+    private static final int ID_MAP_BUFFER_RANGE = 173;
+    private static final int ID_FLUSH_MAPPED_BUFFER_RANGE = 174;
+    private static final int ID_BIND_VERTEX_ARRAY = 175;
+    private static final int ID_DELETE_VERTEX_ARRAYS = 176;
+    private static final int ID_GEN_VERTEX_ARRAYS = 177;
+    private static final int ID_IS_VERTEX_ARRAY = 178;
+    private static final int ID_BEGIN_TRANSFORM_FEEDBACK = 179;
+    private static final int ID_END_TRANSFORM_FEEDBACK = 180;
+    private static final int ID_BIND_BUFFER_RANGE = 181;
+    private static final int ID_BIND_BUFFER_BASE = 182;
+    private static final int ID_TRANSFORM_FEEDBACK_VARYINGS = 183;
+    private static final int ID_VERTEX_ATTRIB_IPOINTER = 184;
+    private static final int ID_GET_VERTEX_ATTRIB_IIV = 185;
+    private static final int ID_GET_VERTEX_ATTRIB_IUIV = 186;
+    private static final int ID_VERTEX_ATTRIB_I4I = 187;
+    private static final int ID_VERTEX_ATTRIB_I4UI = 188;
+    private static final int ID_GET_UNIFORMUIV = 189;
+    private static final int ID_GET_FRAG_DATA_LOCATION = 190;
+    private static final int ID_UNIFORM1UIV = 191;
+    private static final int ID_UNIFORM3UIV = 192;
+    private static final int ID_UNIFORM4UIV = 193;
+    private static final int ID_CLEAR_BUFFERIV = 194;
+    private static final int ID_CLEAR_BUFFERUIV = 195;
+    private static final int ID_CLEAR_BUFFERFV = 196;
+    private static final int ID_CLEAR_BUFFERFI = 197;
+    private static final int ID_GET_STRINGI = 198;
+    private static final int ID_COPY_BUFFER_SUB_DATA = 199;
+    private static final int ID_GET_UNIFORM_INDICES = 200;
+    private static final int ID_GET_ACTIVE_UNIFORMSIV = 201;
+    private static final int ID_GET_UNIFORM_BLOCK_INDEX = 202;
+    private static final int ID_GET_ACTIVE_UNIFORM_BLOCKIV = 203;
+    private static final int ID_GET_ACTIVE_UNIFORM_BLOCK_NAME = 204;
+    private static final int ID_UNIFORM_BLOCK_BINDING = 205;
+    private static final int ID_DRAW_ARRAYS_INSTANCED = 206;
+    private static final int ID_DRAW_ELEMENTS_INSTANCED = 207;
+    private static final int ID_GET_INTEGER64V = 208;
+    private static final int ID_GET_BUFFER_PARAMETERI64V = 209;
+    private static final int ID_GEN_SAMPLERS = 210;
+    private static final int ID_DELETE_SAMPLERS = 211;
+    private static final int ID_IS_SAMPLER = 212;
+    private static final int ID_BIND_SAMPLER = 213;
+    private static final int ID_SAMPLER_PARAMETERI = 214;
+    private static final int ID_SAMPLER_PARAMETERIV = 215;
+    private static final int ID_SAMPLER_PARAMETERF = 216;
+    private static final int ID_SAMPLER_PARAMETERFV = 217;
+    private static final int ID_GET_SAMPLER_PARAMETERIV = 218;
+    private static final int ID_GET_SAMPLER_PARAMETERFV = 219;
+    private static final int ID_VERTEX_ATTRIB_DIVISOR = 220;
+    private static final int ID_BIND_TRANSFORM_FEEDBACK = 221;
+    private static final int ID_DELETE_TRANSFORM_FEEDBACKS = 222;
+    private static final int ID_GEN_TRANSFORM_FEEDBACKS = 223;
+    private static final int ID_IS_TRANSFORM_FEEDBACK = 224;
+    private static final int ID_PAUSE_TRANSFORM_FEEDBACK = 225;
+    private static final int ID_RESUME_TRANSFORM_FEEDBACK = 226;
+    private static final int ID_PROGRAM_PARAMETERI = 227;
+    private static final int ID_INVALIDATE_FRAMEBUFFER = 228;
+    private static final int ID_INVALIDATE_SUB_FRAMEBUFFER = 229;
+
+    /** The method ids of the GL methods */
+    private static final ObjectIntMap<String> METHODS = new ObjectIntMap<>();
+    /** Whether each method changes the pipeline state */
+    private static final boolean[] STATE = new boolean[NAMES.length];
+    /** Whether each method is a draw call */
+    private static final boolean[] DRAW = new boolean[NAMES.length];
+
+    static {
+        for (int ii = 0; ii < NAMES.length; ii++) {
+            String name = NAMES[ii];
+            METHODS.put(name, ii);
+            STATE[ii] = name.startsWith("glBlend") || name.startsWith("glStencil") ||
+                        name.startsWith("glUniform") || name.equals("glEnable") ||
+                        name.equals("glDisable") || name.equals("glBindTexture") ||
+                        name.equals("glActiveTexture") || name.equals("glUseProgram") ||
+                        name.equals("glColorMask") || name.equals("glDepthMask") ||
+                        name.equals("glBindBufferBase") || name.equals("glBindBufferRange");
+            DRAW[ii] = name.startsWith("glDraw") && !name.equals("glDrawBuffers");
+        }
+    }
+    //endregion
+
+    /** The alignment reported for uniform buffer offsets */
+    public static final int UNIFORM_ALIGNMENT = 256;
+    /** The maximum uniform block size reported */
+    public static final int MAX_UNIFORM_BLOCK = 65536;
+    /** The maximum texture size reported */
+    public static final int MAX_TEXTURE_SIZE = 8192;
+    /** The number of texture units (and other indexed limits) reported */
+    public static final int MAX_UNITS = 16;
+    /** The maximum number of texture array layers reported */
+    public static final int MAX_LAYERS = 256;
+
+    /** The command log (method id, argument count, then the arguments) */
+    private final IntArray log = new IntArray(1024);
+    /** The position in the log of each command */
+    private final IntArray starts = new IntArray(256);
+    /** Whether calls are appended to the log */
+    private boolean logging = true;
+    /** The number of calls, indexed by method id */
+    private final int[] counts = new int[NAMES.length];
+    /** The number of calls (of any type) */
+    private long calls;
+    /** The number of calls that change the pipeline state */
+    private int stateChanges;
+    /** The number of draw calls */
+    private int drawCalls;
+    /** The bytes uploaded, indexed by target */
+    private final IntMap<long[]> uploads = new IntMap<>();
+    /** The bytes uploaded to all targets */
+    private long uploaded;
+
+    /** The next object handle */
+    private int nextHandle = 1;
+    /** The contents of each buffer object */
+    private final IntMap<ByteBuffer> buffers = new IntMap<>();
+    /** The object bound to each target */
+    private final IntIntMap bindings = new IntIntMap();
+    /** The texture bound to each texture unit */
+    private final IntIntMap textures = new IntIntMap();
+    /** The active texture unit */
+    private int activeTexture = GL20.GL_TEXTURE0;
+    /** The current viewport */
+    private final int[] viewport = new int[4];
+    /** The next id for a named location */
+    private int nextLocation;
+    /** The ids assigned to uniform names */
+    private final ObjectIntMap<String> uniforms = new ObjectIntMap<>();
+    /** The ids assigned to attribute names */
+    private final ObjectIntMap<String> attributes = new ObjectIntMap<>();
+    /** The ids assigned to uniform block names */
+    private final ObjectIntMap<String> blocks = new ObjectIntMap<>();
+
+    /** The storage of the last mapped range */
+    private ByteBuffer mapStorage;
+    /** The offset of the last mapped range */
+    private int mapOffset;
+    /** The length of the last mapped range */
+    private int mapLength;
+    /** The view of the last mapped range (reused when the range is mapped again) */
+    private ByteBuffer mapView;
+
+    /**
+     * Creates a new recorder with an empty log.
+     */
+    public CUGLRecorder() {
+    }
+
+    /**
+     * Returns the recording GL instance.
+     *
+     * The recorder is itself the GL instance. This method is a convenience
+     * for code that only needs the GL interface.
+     *
+     * @return the recording GL instance.
+     */
+    public GL30 getGL() {
+        return this;
+    }
+
+    /**
+     * Makes this recorder the active OpenGL backend.
+     *
+     * This replaces {@link Gdx#gl}, {@link Gdx#gl20} and {@link Gdx#gl30}. The
+     * recorder does not create an application, so {@link Gdx#graphics} must be
+     * set by a headless application (or mock) before any sprite batch is made.
+     */
+    public void install() {
+        Gdx.gl = this;
+        Gdx.gl20 = this;
+        Gdx.gl30 = this;
+    }
+
+    //region Log Access
+    /**
+     * Clears the command log and all counters.
+     *
+     * The simulated OpenGL state (objects, bindings and buffer contents) is
+     * preserved, so this can be called between frames.
+     */
+    public void clear() {
+        log.clear();
+        starts.clear();
+        for (int ii = 0; ii < counts.length; ii++) {
+            counts[ii] = 0;
+        }
+        for (long[] total : uploads.values()) {
+            total[0] = 0;
+        }
+        calls = 0;
+        uploaded = 0;
+        stateChanges = 0;
+        drawCalls = 0;
+    }
+
+    /**
+     * Returns true if calls are appended to the command log.
+     *
+     * @return true if calls are appended to the command log.
+     */
+    public boolean isLogging() {
+        return logging;
+    }
+
+    /**
+     * Sets whether calls are appended to the command log.
+     *
+     * The counters are kept whether or not the log is on. Turn the log off
+     * when recording many frames without calling {@link #clear}, such as in
+     * a benchmark, as the log only grows.
+     *
+     * @param logging   Whether calls are appended to the command log
+     */
+    public void setLogging(boolean logging) {
+        this.logging = logging;
+    }
+
+    /**
+     * Returns the number of commands in the log.
+     *
+     * @return the number of commands in the log.
+     */
+    public int size() {
+        return starts.size;
+    }
+
+    /**
+     * Returns the name of the GL method for the given command.
+     *
+     * @param index The command index in the log
+     *
+     * @return the name of the GL method for the given command.
+     */
+    public String getCommand(int index) {
+        return NAMES[log.get(starts.get(index))];
+    }
+
+    /**
+     * Returns the number of recorded arguments of the given command.
+     *
+     * @param index The command index in the log
+     *
+     * @return the number of recorded arguments of the given command.
+     */
+    public int getArgumentCount(int index) {
+        return log.get(starts.get(index)+1);
+    }
+
+    /**
+     * Returns an argument of the given command.
+     *
+     * Integer arguments are stored as is, and booleans are stored as 0 or 1.
+     * Float arguments are stored as their raw bits (see {@link Float#intBitsToFloat}).
+     * Arrays, buffers and strings are stored as 0.
+     *
+     * @param index The command index in the log
+     * @param arg   The argument position
+     *
+     * @return an argument of the given command.
+     */
+    public int getArgument(int index, int arg) {
+        int pos = starts.get(index);
+        if (arg < 0 || arg >= log.get(pos+1)) {
+            throw new IndexOutOfBoundsException("Argument "+arg+" is out of range");
+        }
+        return log.get(pos+2+arg);
+    }
+
+    /**
+     * Returns the number of calls to the given GL method.
+     *
+     * @param name  The GL method name (e.g. "glDrawElements")
+     *
+     * @return the number of calls to the given GL method.
+     */
+    public int getCount(String name) {
+        int id = METHODS.get(name, -1);
+        return id == -1 ? 0 : counts[id];
+    }
+
+    /**
+     * Returns the number of calls (of any type).
+     *
+     * @return the number of calls (of any type).
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Returns the number of draw calls (of any type).
+     *
+     * @return the number of draw calls (of any type).
+     */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * Returns the number of calls that change the pipeline state.
+     *
+     * These are the capability, blend, stencil, mask, program, uniform, and
+     * texture binding calls.
+     *
+     * @return the number of calls that change the pipeline state.
+     */
+    public int getStateChanges() {
+        return stateChanges;
+    }
+
+    /**
+     * Returns the bytes uploaded to the given target.
+     *
+     * The target is a buffer target (e.g. GL_ARRAY_BUFFER) or a texture target
+     * (e.g. GL_TEXTURE_2D). Writes to mapped buffer ranges count as uploads.
+     *
+     * @param target    The OpenGL target
+     *
+     * @return the bytes uploaded to the given target.
+     */
+    public long getUploadedBytes(int target) {
+        long[] total = uploads.get(target);
+        return total == null ? 0 : total[0];
+    }
+
+    /**
+     * Returns the bytes uploaded to all targets.
+     *
+     * @return the bytes uploaded to all targets.
+     */
+    public long getUploadedBytes() {
+        return uploaded;
+    }
+
+    /**
+     * Returns the contents of the given buffer object.
+     *
+     * The buffer returned is a view of the storage used by the recorder, and
+     * has the size of the last glBufferData call. This method returns null if
+     * the buffer has no storage.
+     *
+     * @param handle    The buffer object handle
+     *
+     * @return the contents of the given buffer object.
+     */
+    public ByteBuffer getBufferData(int handle) {
+        ByteBuffer data = buffers.get(handle);
+        return data == null ? null : data.duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Returns the object bound to the given target.
+     *
+     * @param target    The OpenGL target
+     *
+     * @return the object bound to the given target.
+     */
+    public int getBinding(int target) {
+        return bindings.get(target, 0);
+    }
+
+    @Override
+    public String toString() {
+        return "CUGLRecorder["+calls+" calls, "+drawCalls+" draws]";
+    }
+    //endregion
+
+    //region Simulation
+    /**
+     * Counts a call, and starts its entry in the log if logging is on.
+     *
+     * If this method returns true, the caller must append exactly argc
+     * arguments to the log.
+     *
+     * @param id    The method id
+     * @param argc  The number of arguments
+     *
+     * @return true if the arguments should be appended to the log.
+     */
+    private boolean call(int id, int argc) {
+        calls++;
+        counts[id]++;
+        if (STATE[id]) {
+            stateChanges++;
+        } else if (DRAW[id]) {
+            drawCalls++;
+        }
+        if (logging) {
+            starts.add(log.size);
+            log.add(id, argc);
+        }
+        return logging;
+    }
+
+    /**
+     * Adds the given number of bytes to the uploads for a target.
+     *
+     * @param target    The OpenGL target
+     * @param bytes     The number of bytes uploaded
+     */
+    private void upload(int target, long bytes) {
+        long[] total = uploads.get(target);
+        if (total == null) {
+            total = new long[1];
+            uploads.put(target, total);
+        }
+        total[0] += bytes;
+        uploaded += bytes;
+    }
+
+    /**
+     * Returns the size in bytes of the remaining elements of a buffer.
+     *
+     * @param data  The buffer
+     *
+     * @return the size in bytes of the remaining elements of a buffer.
+     */
+    private static int byteSize(Buffer data) {
+        if (data instanceof ByteBuffer) {
+            return data.remaining();
+        } else if (data instanceof ShortBuffer || data instanceof CharBuffer) {
+            return 2*data.remaining();
+        } else if (data instanceof LongBuffer || data instanceof DoubleBuffer) {
+            return 8*data.remaining();
+        }
+        return 4*data.remaining();
+    }
+
+    /**
+     * Copies the remaining bytes of src into dst at the given byte offset.
+     *
+     * The copy uses absolute gets and puts, so that no views are allocated.
+     * Neither buffer position changes.
+     *
+     * @param dst       The buffer storage (in native order)
+     * @param offset    The byte offset into dst
+     * @param size      The maximum number of bytes to copy
+     * @param src       The data source
+     */
+    private static void copy(ByteBuffer dst, int offset, int size, Buffer src) {
+        int amount = Math.min(size, Math.min(byteSize(src), dst.limit()-offset));
+        int pos = src.position();
+        if (src instanceof ByteBuffer) {
+            ByteBuffer source = (ByteBuffer)src;
+            for (int ii = 0; ii < amount; ii++) {
+                dst.put(offset+ii, source.get(pos+ii));
+            }
+        } else if (src instanceof FloatBuffer) {
+            FloatBuffer source = (FloatBuffer)src;
+            for (int ii = 0; ii < amount/4; ii++) {
+                dst.putFloat(offset+4*ii, source.get(pos+ii));
+            }
+        } else if (src instanceof IntBuffer) {
+            IntBuffer source = (IntBuffer)src;
+            for (int ii = 0; ii < amount/4; ii++) {
+                dst.putInt(offset+4*ii, source.get(pos+ii));
+            }
+        } else if (src instanceof ShortBuffer) {
+            ShortBuffer source = (ShortBuffer)src;
+            for (int ii = 0; ii < amount/2; ii++) {
+                dst.putShort(offset+2*ii, source.get(pos+ii));
+            }
+        }
+    }
+
+    /**
+     * Stores fresh handles in the buffer, starting at its position.
+     *
+     * @param n         The number of handles
+     * @param handles   The buffer to store the handles
+     */
+    private void generate(int n, IntBuffer handles) {
+        int pos = handles.position();
+        for (int ii = 0; ii < n && pos+ii < handles.limit(); ii++) {
+            handles.put(pos+ii, nextHandle++);
+        }
+    }
+
+    /**
+     * Stores fresh handles in the array, starting at the offset.
+     *
+     * @param n         The number of handles
+     * @param handles   The array to store the handles
+     * @param offset    The first array position
+     */
+    private void generate(int n, int[] handles, int offset) {
+        for (int ii = 0; ii < n && offset+ii < handles.length; ii++) {
+            handles[offset+ii] = nextHandle++;
+        }
+    }
+
+    /**
+     * Stores the value of an integer state query in the buffer.
+     *
+     * @param pname     The query name
+     * @param params    The buffer to store the result
+     */
+    private void query(int pname, IntBuffer params) {
+        int pos = params.position();
+        if (pname == GL20.GL_VIEWPORT) {
+            for (int ii = 0; ii < 4 && pos+ii < params.limit(); ii++) {
+                params.put(pos+ii, viewport[ii]);
+            }
+            return;
+        }
+
+        int value = 0;
+        switch (pname) {
+            case GL30.GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT:
+                value = UNIFORM_ALIGNMENT;
+                break;
+            case GL30.GL_MAX_UNIFORM_BLOCK_SIZE:
+                value = MAX_UNIFORM_BLOCK;
+                break;
+            case GL20.GL_MAX_TEXTURE_SIZE:
+                value = MAX_TEXTURE_SIZE;
+                break;
+            case GL30.GL_MAX_ARRAY_TEXTURE_LAYERS:
+                value = MAX_LAYERS;
+                break;
+            case GL20.GL_MAX_TEXTURE_IMAGE_UNITS:
+            case GL20.GL_MAX_COMBINED_TEXTURE_IMAGE_UNITS:
+            case GL20.GL_MAX_VERTEX_ATTRIBS:
+            case GL30.GL_MAX_UNIFORM_BUFFER_BINDINGS:
+                value = MAX_UNITS;
+                break;
+            case GL20.GL_ACTIVE_TEXTURE:
+                value = activeTexture;
+                break;
+            case GL20.GL_TEXTURE_BINDING_2D:
+                value = textures.get(activeTexture, 0);
+                break;
+            case GL20.GL_FRAMEBUFFER_BINDING:
+                value = bindings.get(GL20.GL_FRAMEBUFFER, 0);
+                break;
+            case GL20.GL_RENDERBUFFER_BINDING:
+                value = bindings.get(GL20.GL_RENDERBUFFER, 0);
+                break;
+            case GL20.GL_ARRAY_BUFFER_BINDING:
+                value = bindings.get(GL20.GL_ARRAY_BUFFER, 0);
+                break;
+            case GL20.GL_ELEMENT_ARRAY_BUFFER_BINDING:
+                value = bindings.get(GL20.GL_ELEMENT_ARRAY_BUFFER, 0);
+                break;
+            case GL30.GL_UNIFORM_BUFFER_BINDING:
+                value = bindings.get(GL30.GL_UNIFORM_BUFFER, 0);
+                break;
+            case GL30.GL_VERTEX_ARRAY_BINDING:
+                value = bindings.get(GL30.GL_VERTEX_ARRAY_BINDING, 0);
+                break;
+            case GL30.GL_PIXEL_UNPACK_BUFFER_BINDING:
+                value = bindings.get(GL30.GL_PIXEL_UNPACK_BUFFER, 0);
+                break;
+            case GL30.GL_PIXEL_PACK_BUFFER_BINDING:
+                value = bindings.get(GL30.GL_PIXEL_PACK_BUFFER, 0);
+                break;
+        }
+        params.put(pos, value);
+    }
+
+    /**
+     * Stores the value of a shader or program query in the buffer.
+     *
+     * Every compile, link and validation succeeds, and every other value is 0.
+     *
+     * @param pname     The query name
+     * @param params    The buffer to store the result
+     */
+    private static void status(int pname, IntBuffer params) {
+        boolean ok = pname == GL20.GL_COMPILE_STATUS || pname == GL20.GL_LINK_STATUS ||
+                     pname == GL20.GL_VALIDATE_STATUS;
+        params.put(params.position(), ok ? 1 : 0);
+    }
+
+    /**
+     * Returns the (stable) id assigned to a named location.
+     *
+     * @param ids   The ids for this kind of location
+     * @param name  The location name
+     *
+     * @return the (stable) id assigned to a named location.
+     */
+    private int location(ObjectIntMap<String> ids, String name) {
+        int id = ids.get(name, -1);
+        if (id == -1) {
+            id = nextLocation++;
+            ids.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Sets the storage of the buffer bound to the given target.
+     *
+     * The previous storage is reused if it is large enough.
+     *
+     * @param target    The OpenGL target
+     * @param size      The buffer size in bytes
+     * @param data      The initial contents (may be null)
+     */
+    private void bufferData(int target, int size, Buffer data) {
+        int handle = bindings.get(target, 0);
+        ByteBuffer storage = buffers.get(handle);
+        if (storage == null || storage.capacity() < size) {
+            storage = BufferUtils.newByteBuffer(size);
+            buffers.put(handle, storage);
+        }
+        ((Buffer)storage).clear();
+        ((Buffer)storage).limit(size);
+        if (data != null) {
+            copy(storage, 0, size, data);
+            upload(target, size);
+        }
+    }
+
+    /**
+     * Writes to the storage of the buffer bound to the given target.
+     *
+     * @param target    The OpenGL target
+     * @param offset    The byte offset into the buffer
+     * @param size      The number of bytes to write
+     * @param data      The data to write
+     */
+    private void bufferSubData(int target, int offset, int size, Buffer data) {
+        ByteBuffer storage = buffers.get(bindings.get(target, 0));
+        if (storage != null && data != null) {
+            copy(storage, offset, size, data);
+        }
+        upload(target, size);
+    }
+
+    /**
+     * Returns a view of a range of the buffer bound to the given target.
+     *
+     * The view is reused if the same range is mapped again. This method
+     * returns null if the buffer has no storage, or is too small.
+     *
+     * @param target    The OpenGL target
+     * @param offset    The byte offset of the range
+     * @param length    The length of the range in bytes
+     * @param access    The access bits
+     *
+     * @return a view of a range of the buffer bound to the given target.
+     */
+    private Buffer mapBufferRange(int target, int offset, int length, int access) {
+        ByteBuffer storage = buffers.get(bindings.get(target, 0));
+        if (storage == null || offset+length > storage.limit()) {
+            return null;
+        }
+        if ((access & GL30.GL_MAP_WRITE_BIT) != 0) {
+            upload(target, length);
+        }
+        if (storage != mapStorage || offset != mapOffset || length != mapLength) {
+            ByteBuffer range = storage.duplicate();
+            ((Buffer)range).position(offset);
+            ((Buffer)range).limit(offset+length);
+            mapView = range.slice().order(ByteOrder.nativeOrder());
+            mapStorage = storage;
+            mapOffset = offset;
+            mapLength = length;
+        }
+        ((Buffer)mapView).clear();
+        return mapView;
+    }
+    //endregion
+
+    //region OpenGL
+    @Override
+    public void glActiveTexture(int texture) {
+        if (call(ID_ACTIVE_TEXTURE, 1)) {
+            log.add(texture);
+        }
+        activeTexture = texture;
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        if (call(ID_BIND_TEXTURE, 2)) {
+            log.add(target, texture);
+        }
+        textures.put(activeTexture, texture);
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        if (call(ID_BLEND_FUNC, 2)) {
+            log.add(sfactor, dfactor);
+        }
+    }
+
+    @Override
+    public void glClear(int mask) {
+        if (call(ID_CLEAR, 1)) {
+            log.add(mask);
+        }
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        if (call(ID_CLEAR_COLOR, 4)) {
+            log.add(Float.floatToRawIntBits(red), Float.floatToRawIntBits(green), Float.floatToRawIntBits(blue), Float.floatToRawIntBits(alpha));
+        }
+    }
+
+    @Override
+    public void glClearDepthf(float depth) {
+        if (call(ID_CLEAR_DEPTHF, 1)) {
+            log.add(Float.floatToRawIntBits(depth));
+        }
+    }
+
+    @Override
+    public void glClearStencil(int s) {
+        if (call(ID_CLEAR_STENCIL, 1)) {
+            log.add(s);
+        }
+    }
+
+    @Override
+    public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+        if (call(ID_COLOR_MASK, 4)) {
+            log.add(red ? 1 : 0, green ? 1 : 0, blue ? 1 : 0, alpha ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, int imageSize, Buffer data) {
+        if (call(ID_COMPRESSED_TEX_IMAGE2_D, 8)) {
+            log.add(target, level, internalformat, width);
+            log.add(height, border, imageSize, 0);
+        }
+        if (data != null) {
+            upload(target, byteSize(data));
+        }
+    }
+
+    @Override
+    public void glCompressedTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int imageSize, Buffer data) {
+        if (call(ID_COMPRESSED_TEX_SUB_IMAGE2_D, 9)) {
+            log.add(target, level, xoffset, yoffset);
+            log.add(width, height, format, imageSize);
+            log.add(0);
+        }
+        if (data != null) {
+            upload(target, byteSize(data));
+        }
+    }
+
+    @Override
+    public void glCopyTexImage2D(int target, int level, int internalformat, int x, int y, int width, int height, int border) {
+        if (call(ID_COPY_TEX_IMAGE2_D, 8)) {
+            log.add(target, level, internalformat, x);
+            log.add(y, width, height, border);
+        }
+    }
+
+    @Override
+    public void glCopyTexSubImage2D(int target, int level, int xoffset, int yoffset, int x, int y, int width, int height) {
+        if (call(ID_COPY_TEX_SUB_IMAGE2_D, 8)) {
+            log.add(target, level, xoffset, yoffset);
+            log.add(x, y, width, height);
+        }
+    }
+
+    @Override
+    public void glCullFace(int mode) {
+        if (call(ID_CULL_FACE, 1)) {
+            log.add(mode);
+        }
+    }
+
+    @Override
+    public void glDeleteTextures(int n, IntBuffer textures) {
+        if (call(ID_DELETE_TEXTURES, 2)) {
+            log.add(n, 0);
+        }
+    }
+
+    @Override
+    public void glDeleteTexture(int texture) {
+        if (call(ID_DELETE_TEXTURE, 1)) {
+            log.add(texture);
+        }
+    }
+
+    @Override
+    public void glDepthFunc(int func) {
+        if (call(ID_DEPTH_FUNC, 1)) {
+            log.add(func);
+        }
+    }
+
+    @Override
+    public void glDepthMask(boolean flag) {
+        if (call(ID_DEPTH_MASK, 1)) {
+            log.add(flag ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void glDepthRangef(float zNear, float zFar) {
+        if (call(ID_DEPTH_RANGEF, 2)) {
+            log.add(Float.floatToRawIntBits(zNear), Float.floatToRawIntBits(zFar));
+        }
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        if (call(ID_DISABLE, 1)) {
+            log.add(cap);
+        }
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        if (call(ID_DRAW_ARRAYS, 3)) {
+            log.add(mode, first, count);
+        }
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, Buffer indices) {
+        if (call(ID_DRAW_ELEMENTS, 4)) {
+            log.add(mode, count, type, 0);
+        }
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        if (call(ID_ENABLE, 1)) {
+            log.add(cap);
+        }
+    }
+
+    @Override
+    public void glFinish() {
+        call(ID_FINISH, 0);
+    }
+
+    @Override
+    public void glFlush() {
+        call(ID_FLUSH, 0);
+    }
+
+    @Override
+    public void glFrontFace(int mode) {
+        if (call(ID_FRONT_FACE, 1)) {
+            log.add(mode);
+        }
+    }
+
+    @Override
+    public void glGenTextures(int n, IntBuffer textures) {
+        if (call(ID_GEN_TEXTURES, 2)) {
+            log.add(n, 0);
+        }
+        generate(n, textures);
+    }
+
+    @Override
+    public int glGenTexture() {
+        call(ID_GEN_TEXTURE, 0);
+        return nextHandle++;
+    }
+
+    @Override
+    public int glGetError() {
+        call(ID_GET_ERROR, 0);
+        return GL20.GL_NO_ERROR;
+    }
+
+    @Override
+    public void glGetIntegerv(int pname, IntBuffer params) {
+        if (call(ID_GET_INTEGERV, 2)) {
+            log.add(pname, 0);
+        }
+        query(pname, params);
+    }
+
+    @Override
+    public String glGetString(int name) {
+        if (call(ID_GET_STRING, 1)) {
+            log.add(name);
+        }
+        return "";
+    }
+
+    @Override
+    public void glHint(int target, int mode) {
+        if (call(ID_HINT, 2)) {
+            log.add(target, mode);
+        }
+    }
+
+    @Override
+    public void glLineWidth(float width) {
+        if (call(ID_LINE_WIDTH, 1)) {
+            log.add(Float.floatToRawIntBits(width));
+        }
+    }
+
+    @Override
+    public void glPixelStorei(int pname, int param) {
+        if (call(ID_PIXEL_STOREI, 2)) {
+            log.add(pname, param);
+        }
+    }
+
+    @Override
+    public void glPolygonOffset(float factor, float units) {
+        if (call(ID_POLYGON_OFFSET, 2)) {
+            log.add(Float.floatToRawIntBits(factor), Float.floatToRawIntBits(units));
+        }
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+        if (call(ID_READ_PIXELS, 7)) {
+            log.add(x, y, width, height);
+            log.add(format, type, 0);
+        }
+    }
+
+    @Override
+    public void glScissor(int x, int y, int width, int height) {
+        if (call(ID_SCISSOR, 4)) {
+            log.add(x, y, width, height);
+        }
+    }
+
+    @Override
+    public void glStencilFunc(int func, int ref, int mask) {
+        if (call(ID_STENCIL_FUNC, 3)) {
+            log.add(func, ref, mask);
+        }
+    }
+
+    @Override
+    public void glStencilMask(int mask) {
+        if (call(ID_STENCIL_MASK, 1)) {
+            log.add(mask);
+        }
+    }
+
+    @Override
+    public void glStencilOp(int fail, int zfail, int zpass) {
+        if (call(ID_STENCIL_OP, 3)) {
+            log.add(fail, zfail, zpass);
+        }
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+        if (call(ID_TEX_IMAGE2_D, 9)) {
+            log.add(target, level, internalformat, width);
+            log.add(height, border, format, type);
+            log.add(0);
+        }
+        if (pixels != null) {
+            upload(target, byteSize(pixels));
+        }
+    }
+
+    @Override
+    public void glTexParameterf(int target, int pname, float param) {
+        if (call(ID_TEX_PARAMETERF, 3)) {
+            log.add(target, pname, Float.floatToRawIntBits(param));
+        }
+    }
+
+    @Override
+    public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, Buffer pixels) {
+        if (call(ID_TEX_SUB_IMAGE2_D, 9)) {
+            log.add(target, level, xoffset, yoffset);
+            log.add(width, height, format, type);
+            log.add(0);
+        }
+        if (pixels != null) {
+            upload(target, byteSize(pixels));
+        }
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        if (call(ID_VIEWPORT, 4)) {
+            log.add(x, y, width, height);
+        }
+        viewport[0] = x;
+        viewport[1] = y;
+        viewport[2] = width;
+        viewport[3] = height;
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        if (call(ID_ATTACH_SHADER, 2)) {
+            log.add(program, shader);
+        }
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, String name) {
+        if (call(ID_BIND_ATTRIB_LOCATION, 3)) {
+            log.add(program, index, 0);
+        }
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        if (call(ID_BIND_BUFFER, 2)) {
+            log.add(target, buffer);
+        }
+        bindings.put(target, buffer);
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        if (call(ID_BIND_FRAMEBUFFER, 2)) {
+            log.add(target, framebuffer);
+        }
+        bindings.put(target, framebuffer);
+    }
+
+    @Override
+    public void glBindRenderbuffer(int target, int renderbuffer) {
+        if (call(ID_BIND_RENDERBUFFER, 2)) {
+            log.add(target, renderbuffer);
+        }
+        bindings.put(target, renderbuffer);
+    }
+
+    @Override
+    public void glBlendColor(float red, float green, float blue, float alpha) {
+        if (call(ID_BLEND_COLOR, 4)) {
+            log.add(Float.floatToRawIntBits(red), Float.floatToRawIntBits(green), Float.floatToRawIntBits(blue), Float.floatToRawIntBits(alpha));
+        }
+    }
+
+    @Override
+    public void glBlendEquation(int mode) {
+        if (call(ID_BLEND_EQUATION, 1)) {
+            log.add(mode);
+        }
+    }
+
+    @Override
+    public void glBlendEquationSeparate(int modeRGB, int modeAlpha) {
+        if (call(ID_BLEND_EQUATION_SEPARATE, 2)) {
+            log.add(modeRGB, modeAlpha);
+        }
+    }
+
+    @Override
+    public void glBlendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
+        if (call(ID_BLEND_FUNC_SEPARATE, 4)) {
+            log.add(srcRGB, dstRGB, srcAlpha, dstAlpha);
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        if (call(ID_BUFFER_DATA, 4)) {
+            log.add(target, size, 0, usage);
+        }
+        bufferData(target, size, data);
+    }
+
+    @Override
+    public void glBufferSubData(int target, int offset, int size, Buffer data) {
+        if (call(ID_BUFFER_SUB_DATA, 4)) {
+            log.add(target, offset, size, 0);
+        }
+        bufferSubData(target, offset, size, data);
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        if (call(ID_CHECK_FRAMEBUFFER_STATUS, 1)) {
+            log.add(target);
+        }
+        return GL20.GL_FRAMEBUFFER_COMPLETE;
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        if (call(ID_COMPILE_SHADER, 1)) {
+            log.add(shader);
+        }
+    }
+
+    @Override
+    public int glCreateProgram() {
+        call(ID_CREATE_PROGRAM, 0);
+        return nextHandle++;
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        if (call(ID_CREATE_SHADER, 1)) {
+            log.add(type);
+        }
+        return nextHandle++;
+    }
+
+    @Override
+    public void glDeleteBuffer(int buffer) {
+        if (call(ID_DELETE_BUFFER, 1)) {
+            log.add(buffer);
+        }
+        buffers.remove(buffer);
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, IntBuffer buffers) {
+        if (call(ID_DELETE_BUFFERS, 2)) {
+            log.add(n, 0);
+        }
+        for (int ii = 0; ii < n; ii++) {
+            this.buffers.remove(buffers.get(buffers.position()+ii));
+        }
+    }
+
+    @Override
+    public void glDeleteFramebuffer(int framebuffer) {
+        if (call(ID_DELETE_FRAMEBUFFER, 1)) {
+            log.add(framebuffer);
+        }
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, IntBuffer framebuffers) {
+        if (call(ID_DELETE_FRAMEBUFFERS, 2)) {
+            log.add(n, 0);
+        }
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        if (call(ID_DELETE_PROGRAM, 1)) {
+            log.add(program);
+        }
+    }
+
+    @Override
+    public void glDeleteRenderbuffer(int renderbuffer) {
+        if (call(ID_DELETE_RENDERBUFFER, 1)) {
+            log.add(renderbuffer);
+        }
+    }
+
+    @Override
+    public void glDeleteRenderbuffers(int n, IntBuffer renderbuffers) {
+        if (call(ID_DELETE_RENDERBUFFERS, 2)) {
+            log.add(n, 0);
+        }
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        if (call(ID_DELETE_SHADER, 1)) {
+            log.add(shader);
+        }
+    }
+
+    @Override
+    public void glDetachShader(int program, int shader) {
+        if (call(ID_DETACH_SHADER, 2)) {
+            log.add(program, shader);
+        }
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        if (call(ID_DISABLE_VERTEX_ATTRIB_ARRAY, 1)) {
+            log.add(index);
+        }
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int indices) {
+        if (call(ID_DRAW_ELEMENTS, 4)) {
+            log.add(mode, count, type, indices);
+        }
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        if (call(ID_ENABLE_VERTEX_ATTRIB_ARRAY, 1)) {
+            log.add(index);
+        }
+    }
+
+    @Override
+    public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) {
+        if (call(ID_FRAMEBUFFER_RENDERBUFFER, 4)) {
+            log.add(target, attachment, renderbuffertarget, renderbuffer);
+        }
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        if (call(ID_FRAMEBUFFER_TEXTURE2_D, 5)) {
+            log.add(target, attachment, textarget, texture);
+            log.add(level);
+        }
+    }
+
+    @Override
+    public int glGenBuffer() {
+        call(ID_GEN_BUFFER, 0);
+        return nextHandle++;
+    }
+
+    @Override
+    public void glGenBuffers(int n, IntBuffer buffers) {
+        if (call(ID_GEN_BUFFERS, 2)) {
+            log.add(n, 0);
+        }
+        generate(n, buffers);
+    }
+
+    @Override
+    public void glGenerateMipmap(int target) {
+        if (call(ID_GENERATE_MIPMAP, 1)) {
+            log.add(target);
+        }
+    }
+
+    @Override
+    public int glGenFramebuffer() {
+        call(ID_GEN_FRAMEBUFFER, 0);
+        return nextHandle++;
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, IntBuffer framebuffers) {
+        if (call(ID_GEN_FRAMEBUFFERS, 2)) {
+            log.add(n, 0);
+        }
+        generate(n, framebuffers);
+    }
+
+    @Override
+    public int glGenRenderbuffer() {
+        call(ID_GEN_RENDERBUFFER, 0);
+        return nextHandle++;
+    }
+
+    @Override
+    public void glGenRenderbuffers(int n, IntBuffer renderbuffers) {
+        if (call(ID_GEN_RENDERBUFFERS, 2)) {
+            log.add(n, 0);
+        }
+        generate(n, renderbuffers);
+    }
+
+    @Override
+    public String glGetActiveAttrib(int program, int index, IntBuffer size, IntBuffer type) {
+        if (call(ID_GET_ACTIVE_ATTRIB, 4)) {
+            log.add(program, index, 0, 0);
+        }
+        return "";
+    }
+
+    @Override
+    public String glGetActiveUniform(int program, int index, IntBuffer size, IntBuffer type) {
+        if (call(ID_GET_ACTIVE_UNIFORM, 4)) {
+            log.add(program, index, 0, 0);
+        }
+        return "";
+    }
+
+    @Override
+    public void glGetAttachedShaders(int program, int maxcount, Buffer count, IntBuffer shaders) {
+        if (call(ID_GET_ATTACHED_SHADERS, 4)) {
+            log.add(program, maxcount, 0, 0);
+        }
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        if (call(ID_GET_ATTRIB_LOCATION, 2)) {
+            log.add(program, 0);
+        }
+        return location(attributes, name);
+    }
+
+    @Override
+    public void glGetBooleanv(int pname, Buffer params) {
+        if (call(ID_GET_BOOLEANV, 2)) {
+            log.add(pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetBufferParameteriv(int target, int pname, IntBuffer params) {
+        if (call(ID_GET_BUFFER_PARAMETERIV, 3)) {
+            log.add(target, pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetFloatv(int pname, FloatBuffer params) {
+        if (call(ID_GET_FLOATV, 2)) {
+            log.add(pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetFramebufferAttachmentParameteriv(int target, int attachment, int pname, IntBuffer params) {
+        if (call(ID_GET_FRAMEBUFFER_ATTACHMENT_PARAMETERIV, 4)) {
+            log.add(target, attachment, pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, IntBuffer params) {
+        if (call(ID_GET_PROGRAMIV, 3)) {
+            log.add(program, pname, 0);
+        }
+        status(pname, params);
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        if (call(ID_GET_PROGRAM_INFO_LOG, 1)) {
+            log.add(program);
+        }
+        return "";
+    }
+
+    @Override
+    public void glGetRenderbufferParameteriv(int target, int pname, IntBuffer params) {
+        if (call(ID_GET_RENDERBUFFER_PARAMETERIV, 3)) {
+            log.add(target, pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, IntBuffer params) {
+        if (call(ID_GET_SHADERIV, 3)) {
+            log.add(shader, pname, 0);
+        }
+        status(pname, params);
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        if (call(ID_GET_SHADER_INFO_LOG, 1)) {
+            log.add(shader);
+        }
+        return "";
+    }
+
+    @Override
+    public void glGetShaderPrecisionFormat(int shadertype, int precisiontype, IntBuffer range, IntBuffer precision) {
+        if (call(ID_GET_SHADER_PRECISION_FORMAT, 4)) {
+            log.add(shadertype, precisiontype, 0, 0);
+        }
+    }
+
+    @Override
+    public void glGetTexParameterfv(int target, int pname, FloatBuffer params) {
+        if (call(ID_GET_TEX_PARAMETERFV, 3)) {
+            log.add(target, pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetTexParameteriv(int target, int pname, IntBuffer params) {
+        if (call(ID_GET_TEX_PARAMETERIV, 3)) {
+            log.add(target, pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetUniformfv(int program, int location, FloatBuffer params) {
+        if (call(ID_GET_UNIFORMFV, 3)) {
+            log.add(program, location, 0);
+        }
+    }
+
+    @Override
+    public void glGetUniformiv(int program, int location, IntBuffer params) {
+        if (call(ID_GET_UNIFORMIV, 3)) {
+            log.add(program, location, 0);
+        }
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        if (call(ID_GET_UNIFORM_LOCATION, 2)) {
+            log.add(program, 0);
+        }
+        return location(uniforms, name);
+    }
+
+    @Override
+    public void glGetVertexAttribfv(int index, int pname, FloatBuffer params) {
+        if (call(ID_GET_VERTEX_ATTRIBFV, 3)) {
+            log.add(index, pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetVertexAttribiv(int index, int pname, IntBuffer params) {
+        if (call(ID_GET_VERTEX_ATTRIBIV, 3)) {
+            log.add(index, pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetVertexAttribPointerv(int index, int pname, Buffer pointer) {
+        if (call(ID_GET_VERTEX_ATTRIB_POINTERV, 3)) {
+            log.add(index, pname, 0);
+        }
+    }
+
+    @Override
+    public boolean glIsBuffer(int buffer) {
+        if (call(ID_IS_BUFFER, 1)) {
+            log.add(buffer);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean glIsEnabled(int cap) {
+        if (call(ID_IS_ENABLED, 1)) {
+            log.add(cap);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean glIsFramebuffer(int framebuffer) {
+        if (call(ID_IS_FRAMEBUFFER, 1)) {
+            log.add(framebuffer);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean glIsProgram(int program) {
+        if (call(ID_IS_PROGRAM, 1)) {
+            log.add(program);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean glIsRenderbuffer(int renderbuffer) {
+        if (call(ID_IS_RENDERBUFFER, 1)) {
+            log.add(renderbuffer);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean glIsShader(int shader) {
+        if (call(ID_IS_SHADER, 1)) {
+            log.add(shader);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean glIsTexture(int texture) {
+        if (call(ID_IS_TEXTURE, 1)) {
+            log.add(texture);
+        }
+        return false;
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        if (call(ID_LINK_PROGRAM, 1)) {
+            log.add(program);
+        }
+    }
+
+    @Override
+    public void glReleaseShaderCompiler() {
+        call(ID_RELEASE_SHADER_COMPILER, 0);
+    }
+
+    @Override
+    public void glRenderbufferStorage(int target, int internalformat, int width, int height) {
+        if (call(ID_RENDERBUFFER_STORAGE, 4)) {
+            log.add(target, internalformat, width, height);
+        }
+    }
+
+    @Override
+    public void glSampleCoverage(float value, boolean invert) {
+        if (call(ID_SAMPLE_COVERAGE, 2)) {
+            log.add(Float.floatToRawIntBits(value), invert ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void glShaderBinary(int n, IntBuffer shaders, int binaryformat, Buffer binary, int length) {
+        if (call(ID_SHADER_BINARY, 5)) {
+            log.add(n, 0, binaryformat, 0);
+            log.add(length);
+        }
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string) {
+        if (call(ID_SHADER_SOURCE, 2)) {
+            log.add(shader, 0);
+        }
+    }
+
+    @Override
+    public void glStencilFuncSeparate(int face, int func, int ref, int mask) {
+        if (call(ID_STENCIL_FUNC_SEPARATE, 4)) {
+            log.add(face, func, ref, mask);
+        }
+    }
+
+    @Override
+    public void glStencilMaskSeparate(int face, int mask) {
+        if (call(ID_STENCIL_MASK_SEPARATE, 2)) {
+            log.add(face, mask);
+        }
+    }
+
+    @Override
+    public void glStencilOpSeparate(int face, int fail, int zfail, int zpass) {
+        if (call(ID_STENCIL_OP_SEPARATE, 4)) {
+            log.add(face, fail, zfail, zpass);
+        }
+    }
+
+    @Override
+    public void glTexParameterfv(int target, int pname, FloatBuffer params) {
+        if (call(ID_TEX_PARAMETERFV, 3)) {
+            log.add(target, pname, 0);
+        }
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        if (call(ID_TEX_PARAMETERI, 3)) {
+            log.add(target, pname, param);
+        }
+    }
+
+    @Override
+    public void glTexParameteriv(int target, int pname, IntBuffer params) {
+        if (call(ID_TEX_PARAMETERIV, 3)) {
+            log.add(target, pname, 0);
+        }
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        if (call(ID_UNIFORM1F, 2)) {
+            log.add(location, Float.floatToRawIntBits(x));
+        }
+    }
+
+    @Override
+    public void glUniform1fv(int location, int count, FloatBuffer v) {
+        if (call(ID_UNIFORM1FV, 3)) {
+            log.add(location, count, 0);
+        }
+    }
+
+    @Override
+    public void glUniform1fv(int location, int count, float[] v, int offset) {
+        if (call(ID_UNIFORM1FV, 4)) {
+            log.add(location, count, 0, offset);
+        }
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        if (call(ID_UNIFORM1I, 2)) {
+            log.add(location, x);
+        }
+    }
+
+    @Override
+    public void glUniform1iv(int location, int count, IntBuffer v) {
+        if (call(ID_UNIFORM1IV, 3)) {
+            log.add(location, count, 0);
+        }
+    }
+
+    @Override
+    public void glUniform1iv(int location, int count, int[] v, int offset) {
+        if (call(ID_UNIFORM1IV, 4)) {
+            log.add(location, count, 0, offset);
+        }
+    }
+
+    @Override
+    public void glUniform2f(int location, float x, float y) {
+        if (call(ID_UNIFORM2F, 3)) {
+            log.add(location, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y));
+        }
+    }
+
+    @Override
+    public void glUniform2fv(int location, int count, FloatBuffer v) {
+        if (call(ID_UNIFORM2FV, 3)) {
+            log.add(location, count, 0);
+        }
+    }
+
+    @Override
+    public void glUniform2fv(int location, int count, float[] v, int offset) {
+        if (call(ID_UNIFORM2FV, 4)) {
+            log.add(location, count, 0, offset);
+        }
+    }
+
+    @Override
+    public void glUniform2i(int location, int x, int y) {
+        if (call(ID_UNIFORM2I, 3)) {
+            log.add(location, x, y);
+        }
+    }
+
+    @Override
+    public void glUniform2iv(int location, int count, IntBuffer v) {
+        if (call(ID_UNIFORM2IV, 3)) {
+            log.add(location, count, 0);
+        }
+    }
+
+    @Override
+    public void glUniform2iv(int location, int count, int[] v, int offset) {
+        if (call(ID_UNIFORM2IV, 4)) {
+            log.add(location, count, 0, offset);
+        }
+    }
+
+    @Override
+    public void glUniform3f(int location, float x, float y, float z) {
+        if (call(ID_UNIFORM3F, 4)) {
+            log.add(location, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y), Float.floatToRawIntBits(z));
+        }
+    }
+
+    @Override
+    public void glUniform3fv(int location, int count, FloatBuffer v) {
+        if (call(ID_UNIFORM3FV, 3)) {
+            log.add(location, count, 0);
+        }
+    }
+
+    @Override
+    public void glUniform3fv(int location, int count, float[] v, int offset) {
+        if (call(ID_UNIFORM3FV, 4)) {
+            log.add(location, count, 0, offset);
+        }
+    }
+
+    @Override
+    public void glUniform3i(int location, int x, int y, int z) {
+        if (call(ID_UNIFORM3I, 4)) {
+            log.add(location, x, y, z);
+        }
+    }
+
+    @Override
+    public void glUniform3iv(int location, int count, IntBuffer v) {
+        if (call(ID_UNIFORM3IV, 3)) {
+            log.add(location, count, 0);
+        }
+    }
+
+    @Override
+    public void glUniform3iv(int location, int count, int[] v, int offset) {
+        if (call(ID_UNIFORM3IV, 4)) {
+            log.add(location, count, 0, offset);
+        }
+    }
+
+    @Override
+    public void glUniform4f(int location, float x, float y, float z, float w) {
+        if (call(ID_UNIFORM4F, 5)) {
+            log.add(location, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y), Float.floatToRawIntBits(z));
+            log.add(Float.floatToRawIntBits(w));
+        }
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, FloatBuffer v) {
+        if (call(ID_UNIFORM4FV, 3)) {
+            log.add(location, count, 0);
+        }
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+        if (call(ID_UNIFORM4FV, 4)) {
+            log.add(location, count, 0, offset);
+        }
+    }
+
+    @Override
+    public void glUniform4i(int location, int x, int y, int z, int w) {
+        if (call(ID_UNIFORM4I, 5)) {
+            log.add(location, x, y, z);
+            log.add(w);
+        }
+    }
+
+    @Override
+    public void glUniform4iv(int location, int count, IntBuffer v) {
+        if (call(ID_UNIFORM4IV, 3)) {
+            log.add(location, count, 0);
+        }
+    }
+
+    @Override
+    public void glUniform4iv(int location, int count, int[] v, int offset) {
+        if (call(ID_UNIFORM4IV, 4)) {
+            log.add(location, count, 0, offset);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix2fv(int location, int count, boolean transpose, FloatBuffer value) {
+        if (call(ID_UNIFORM_MATRIX2FV, 4)) {
+            log.add(location, count, transpose ? 1 : 0, 0);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix2fv(int location, int count, boolean transpose, float[] value, int offset) {
+        if (call(ID_UNIFORM_MATRIX2FV, 5)) {
+            log.add(location, count, transpose ? 1 : 0, 0);
+            log.add(offset);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix3fv(int location, int count, boolean transpose, FloatBuffer value) {
+        if (call(ID_UNIFORM_MATRIX3FV, 4)) {
+            log.add(location, count, transpose ? 1 : 0, 0);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset) {
+        if (call(ID_UNIFORM_MATRIX3FV, 5)) {
+            log.add(location, count, transpose ? 1 : 0, 0);
+            log.add(offset);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, FloatBuffer value) {
+        if (call(ID_UNIFORM_MATRIX4FV, 4)) {
+            log.add(location, count, transpose ? 1 : 0, 0);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        if (call(ID_UNIFORM_MATRIX4FV, 5)) {
+            log.add(location, count, transpose ? 1 : 0, 0);
+            log.add(offset);
+        }
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        if (call(ID_USE_PROGRAM, 1)) {
+            log.add(program);
+        }
+    }
+
+    @Override
+    public void glValidateProgram(int program) {
+        if (call(ID_VALIDATE_PROGRAM, 1)) {
+            log.add(program);
+        }
+    }
+
+    @Override
+    public void glVertexAttrib1f(int indx, float x) {
+        if (call(ID_VERTEX_ATTRIB1F, 2)) {
+            log.add(indx, Float.floatToRawIntBits(x));
+        }
+    }
+
+    @Override
+    public void glVertexAttrib1fv(int indx, FloatBuffer values) {
+        if (call(ID_VERTEX_ATTRIB1FV, 2)) {
+            log.add(indx, 0);
+        }
+    }
+
+    @Override
+    public void glVertexAttrib2f(int indx, float x, float y) {
+        if (call(ID_VERTEX_ATTRIB2F, 3)) {
+            log.add(indx, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y));
+        }
+    }
+
+    @Override
+    public void glVertexAttrib2fv(int indx, FloatBuffer values) {
+        if (call(ID_VERTEX_ATTRIB2FV, 2)) {
+            log.add(indx, 0);
+        }
+    }
+
+    @Override
+    public void glVertexAttrib3f(int indx, float x, float y, float z) {
+        if (call(ID_VERTEX_ATTRIB3F, 4)) {
+            log.add(indx, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y), Float.floatToRawIntBits(z));
+        }
+    }
+
+    @Override
+    public void glVertexAttrib3fv(int indx, FloatBuffer values) {
+        if (call(ID_VERTEX_ATTRIB3FV, 2)) {
+            log.add(indx, 0);
+        }
+    }
+
+    @Override
+    public void glVertexAttrib4f(int indx, float x, float y, float z, float w) {
+        if (call(ID_VERTEX_ATTRIB4F, 5)) {
+            log.add(indx, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y), Float.floatToRawIntBits(z));
+            log.add(Float.floatToRawIntBits(w));
+        }
+    }
+
+    @Override
+    public void glVertexAttrib4fv(int indx, FloatBuffer values) {
+        if (call(ID_VERTEX_ATTRIB4FV, 2)) {
+            log.add(indx, 0);
+        }
+    }
+
+    @Override
+    public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        if (call(ID_VERTEX_ATTRIB_POINTER, 6)) {
+            log.add(indx, size, type, normalized ? 1 : 0);
+            log.add(stride, 0);
+        }
+    }
+
+    @Override
+    public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int ptr) {
+        if (call(ID_VERTEX_ATTRIB_POINTER, 6)) {
+            log.add(indx, size, type, normalized ? 1 : 0);
+            log.add(stride, ptr);
+        }
+    }
+
+    @Override
+    public void glReadBuffer(int mode) {
+        if (call(ID_READ_BUFFER, 1)) {
+            log.add(mode);
+        }
+    }
+
+    @Override
+    public void glDrawRangeElements(int mode, int start, int end, int count, int type, Buffer indices) {
+        if (call(ID_DRAW_RANGE_ELEMENTS, 6)) {
+            log.add(mode, start, end, count);
+            log.add(type, 0);
+        }
+    }
+
+    @Override
+    public void glDrawRangeElements(int mode, int start, int end, int count, int type, int offset) {
+        if (call(ID_DRAW_RANGE_ELEMENTS, 6)) {
+            log.add(mode, start, end, count);
+            log.add(type, offset);
+        }
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, int offset) {
+        if (call(ID_TEX_IMAGE2_D, 9)) {
+            log.add(target, level, internalformat, width);
+            log.add(height, border, format, type);
+            log.add(offset);
+        }
+    }
+
+    @Override
+    public void glTexImage3D(int target, int level, int internalformat, int width, int height, int depth, int border, int format, int type, Buffer pixels) {
+        if (call(ID_TEX_IMAGE3_D, 10)) {
+            log.add(target, level, internalformat, width);
+            log.add(height, depth, border, format);
+            log.add(type, 0);
+        }
+        if (pixels != null) {
+            upload(target, byteSize(pixels));
+        }
+    }
+
+    @Override
+    public void glTexImage3D(int target, int level, int internalformat, int width, int height, int depth, int border, int format, int type, int offset) {
+        if (call(ID_TEX_IMAGE3_D, 10)) {
+            log.add(target, level, internalformat, width);
+            log.add(height, depth, border, format);
+            log.add(type, offset);
+        }
+    }
+
+    @Override
+    public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, int offset) {
+        if (call(ID_TEX_SUB_IMAGE2_D, 9)) {
+            log.add(target, level, xoffset, yoffset);
+            log.add(width, height, format, type);
+            log.add(offset);
+        }
+    }
+
+    @Override
+    public void glTexSubImage3D(int target, int level, int xoffset, int yoffset, int zoffset, int width, int height, int depth, int format, int type, Buffer pixels) {
+        if (call(ID_TEX_SUB_IMAGE3_D, 11)) {
+            log.add(target, level, xoffset, yoffset);
+            log.add(zoffset, width, height, depth);
+            log.add(format, type, 0);
+        }
+        if (pixels != null) {
+            upload(target, byteSize(pixels));
+        }
+    }
+
+    @Override
+    public void glTexSubImage3D(int target, int level, int xoffset, int yoffset, int zoffset, int width, int height, int depth, int format, int type, int offset) {
+        if (call(ID_TEX_SUB_IMAGE3_D, 11)) {
+            log.add(target, level, xoffset, yoffset);
+            log.add(zoffset, width, height, depth);
+            log.add(format, type, offset);
+        }
+    }
+
+    @Override
+    public void glCopyTexSubImage3D(int target, int level, int xoffset, int yoffset, int zoffset, int x, int y, int width, int height) {
+        if (call(ID_COPY_TEX_SUB_IMAGE3_D, 9)) {
+            log.add(target, level, xoffset, yoffset);
+            log.add(zoffset, x, y, width);
+            log.add(height);
+        }
+    }
+
+    @Override
+    public void glGenQueries(int n, int[] ids, int offset) {
+        if (call(ID_GEN_QUERIES, 3)) {
+            log.add(n, 0, offset);
+        }
+        generate(n, ids, offset);
+    }
+
+    @Override
+    public void glGenQueries(int n, IntBuffer ids) {
+        if (call(ID_GEN_QUERIES, 2)) {
+            log.add(n, 0);
+        }
+        generate(n, ids);
+    }
+
+    @Override
+    public void glDeleteQueries(int n, int[] ids, int offset) {
+        if (call(ID_DELETE_QUERIES, 3)) {
+            log.add(n, 0, offset);
+        }
+    }
+
+    @Override
+    public void glDeleteQueries(int n, IntBuffer ids) {
+        if (call(ID_DELETE_QUERIES, 2)) {
+            log.add(n, 0);
+        }
+    }
+
+    @Override
+    public boolean glIsQuery(int id) {
+        if (call(ID_IS_QUERY, 1)) {
+            log.add(id);
+        }
+        return false;
+    }
+
+    @Override
+    public void glBeginQuery(int target, int id) {
+        if (call(ID_BEGIN_QUERY, 2)) {
+            log.add(target, id);
+        }
+    }
+
+    @Override
+    public void glEndQuery(int target) {
+        if (call(ID_END_QUERY, 1)) {
+            log.add(target);
+        }
+    }
+
+    @Override
+    public void glGetQueryiv(int target, int pname, IntBuffer params) {
+        if (call(ID_GET_QUERYIV, 3)) {
+            log.add(target, pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetQueryObjectuiv(int id, int pname, IntBuffer params) {
+        if (call(ID_GET_QUERY_OBJECTUIV, 3)) {
+            log.add(id, pname, 0);
+        }
+    }
+
+    @Override
+    public boolean glUnmapBuffer(int target) {
+        if (call(ID_UNMAP_BUFFER, 1)) {
+            log.add(target);
+        }
+        return true;
+    }
+
+    @Override
+    public Buffer glGetBufferPointerv(int target, int pname) {
+        if (call(ID_GET_BUFFER_POINTERV, 2)) {
+            log.add(target, pname);
+        }
+        return null;
+    }
+
+    @Override
+    public void glDrawBuffers(int n, IntBuffer bufs) {
+        if (call(ID_DRAW_BUFFERS, 2)) {
+            log.add(n, 0);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix2x3fv(int location, int count, boolean transpose, FloatBuffer value) {
+        if (call(ID_UNIFORM_MATRIX2X3FV, 4)) {
+            log.add(location, count, transpose ? 1 : 0, 0);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix3x2fv(int location, int count, boolean transpose, FloatBuffer value) {
+        if (call(ID_UNIFORM_MATRIX3X2FV, 4)) {
+            log.add(location, count, transpose ? 1 : 0, 0);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix2x4fv(int location, int count, boolean transpose, FloatBuffer value) {
+        if (call(ID_UNIFORM_MATRIX2X4FV, 4)) {
+            log.add(location, count, transpose ? 1 : 0, 0);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix4x2fv(int location, int count, boolean transpose, FloatBuffer value) {
+        if (call(ID_UNIFORM_MATRIX4X2FV, 4)) {
+            log.add(location, count, transpose ? 1 : 0, 0);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix3x4fv(int location, int count, boolean transpose, FloatBuffer value) {
+        if (call(ID_UNIFORM_MATRIX3X4FV, 4)) {
+            log.add(location, count, transpose ? 1 : 0, 0);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix4x3fv(int location, int count, boolean transpose, FloatBuffer value) {
+        if (call(ID_UNIFORM_MATRIX4X3FV, 4)) {
+            log.add(location, count, transpose ? 1 : 0, 0);
+        }
+    }
+
+    @Override
+    public void glBlitFramebuffer(int srcX0, int srcY0, int srcX1, int srcY1, int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter) {
+        if (call(ID_BLIT_FRAMEBUFFER, 10)) {
+            log.add(srcX0, srcY0, srcX1, srcY1);
+            log.add(dstX0, dstY0, dstX1, dstY1);
+            log.add(mask, filter);
+        }
+    }
+
+    @Override
+    public void glRenderbufferStorageMultisample(int target, int samples, int internalformat, int width, int height) {
+        if (call(ID_RENDERBUFFER_STORAGE_MULTISAMPLE, 5)) {
+            log.add(target, samples, internalformat, width);
+            log.add(height);
+        }
+    }
+
+    @Override
+    public void glFramebufferTextureLayer(int target, int attachment, int texture, int level, int layer) {
+        if (call(ID_FRAMEBUFFER_TEXTURE_LAYER, 5)) {
+            log.add(target, attachment, texture, level);
+            log.add(layer);
+        }
+    }
+
+    @Override
+    public Buffer glMapBufferRange(int target, int offset, int length, int access) {
+        if (call(ID_MAP_BUFFER_RANGE, 4)) {
+            log.add(target, offset, length, access);
+        }
+        return mapBufferRange(target, offset, length, access);
+    }
+
+    @Override
+    public void glFlushMappedBufferRange(int target, int offset, int length) {
+        if (call(ID_FLUSH_MAPPED_BUFFER_RANGE, 3)) {
+            log.add(target, offset, length);
+        }
+    }
+
+    @Override
+    public void glBindVertexArray(int array) {
+        if (call(ID_BIND_VERTEX_ARRAY, 1)) {
+            log.add(array);
+        }
+        bindings.put(GL30.GL_VERTEX_ARRAY_BINDING, array);
+    }
+
+    @Override
+    public void glDeleteVertexArrays(int n, int[] arrays, int offset) {
+        if (call(ID_DELETE_VERTEX_ARRAYS, 3)) {
+            log.add(n, 0, offset);
+        }
+    }
+
+    @Override
+    public void glDeleteVertexArrays(int n, IntBuffer arrays) {
+        if (call(ID_DELETE_VERTEX_ARRAYS, 2)) {
+            log.add(n, 0);
+        }
+    }
+
+    @Override
+    public void glGenVertexArrays(int n, int[] arrays, int offset) {
+        if (call(ID_GEN_VERTEX_ARRAYS, 3)) {
+            log.add(n, 0, offset);
+        }
+        generate(n, arrays, offset);
+    }
+
+    @Override
+    public void glGenVertexArrays(int n, IntBuffer arrays) {
+        if (call(ID_GEN_VERTEX_ARRAYS, 2)) {
+            log.add(n, 0);
+        }
+        generate(n, arrays);
+    }
+
+    @Override
+    public boolean glIsVertexArray(int array) {
+        if (call(ID_IS_VERTEX_ARRAY, 1)) {
+            log.add(array);
+        }
+        return false;
+    }
+
+    @Override
+    public void glBeginTransformFeedback(int primitiveMode) {
+        if (call(ID_BEGIN_TRANSFORM_FEEDBACK, 1)) {
+            log.add(primitiveMode);
+        }
+    }
+
+    @Override
+    public void glEndTransformFeedback() {
+        call(ID_END_TRANSFORM_FEEDBACK, 0);
+    }
+
+    @Override
+    public void glBindBufferRange(int target, int index, int buffer, int offset, int size) {
+        if (call(ID_BIND_BUFFER_RANGE, 5)) {
+            log.add(target, index, buffer, offset);
+            log.add(size);
+        }
+        bindings.put(target, buffer);
+    }
+
+    @Override
+    public void glBindBufferBase(int target, int index, int buffer) {
+        if (call(ID_BIND_BUFFER_BASE, 3)) {
+            log.add(target, index, buffer);
+        }
+        bindings.put(target, buffer);
+    }
+
+    @Override
+    public void glTransformFeedbackVaryings(int program, String[] varyings, int bufferMode) {
+        if (call(ID_TRANSFORM_FEEDBACK_VARYINGS, 3)) {
+            log.add(program, 0, bufferMode);
+        }
+    }
+
+    @Override
+    public void glVertexAttribIPointer(int index, int size, int type, int stride, int offset) {
+        if (call(ID_VERTEX_ATTRIB_IPOINTER, 5)) {
+            log.add(index, size, type, stride);
+            log.add(offset);
+        }
+    }
+
+    @Override
+    public void glGetVertexAttribIiv(int index, int pname, IntBuffer params) {
+        if (call(ID_GET_VERTEX_ATTRIB_IIV, 3)) {
+            log.add(index, pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetVertexAttribIuiv(int index, int pname, IntBuffer params) {
+        if (call(ID_GET_VERTEX_ATTRIB_IUIV, 3)) {
+            log.add(index, pname, 0);
+        }
+    }
+
+    @Override
+    public void glVertexAttribI4i(int index, int x, int y, int z, int w) {
+        if (call(ID_VERTEX_ATTRIB_I4I, 5)) {
+            log.add(index, x, y, z);
+            log.add(w);
+        }
+    }
+
+    @Override
+    public void glVertexAttribI4ui(int index, int x, int y, int z, int w) {
+        if (call(ID_VERTEX_ATTRIB_I4UI, 5)) {
+            log.add(index, x, y, z);
+            log.add(w);
+        }
+    }
+
+    @Override
+    public void glGetUniformuiv(int program, int location, IntBuffer params) {
+        if (call(ID_GET_UNIFORMUIV, 3)) {
+            log.add(program, location, 0);
+        }
+    }
+
+    @Override
+    public int glGetFragDataLocation(int program, String name) {
+        if (call(ID_GET_FRAG_DATA_LOCATION, 2)) {
+            log.add(program, 0);
+        }
+        return 0;
+    }
+
+    @Override
+    public void glUniform1uiv(int location, int count, IntBuffer value) {
+        if (call(ID_UNIFORM1UIV, 3)) {
+            log.add(location, count, 0);
+        }
+    }
+
+    @Override
+    public void glUniform3uiv(int location, int count, IntBuffer value) {
+        if (call(ID_UNIFORM3UIV, 3)) {
+            log.add(location, count, 0);
+        }
+    }
+
+    @Override
+    public void glUniform4uiv(int location, int count, IntBuffer value) {
+        if (call(ID_UNIFORM4UIV, 3)) {
+            log.add(location, count, 0);
+        }
+    }
+
+    @Override
+    public void glClearBufferiv(int buffer, int drawbuffer, IntBuffer value) {
+        if (call(ID_CLEAR_BUFFERIV, 3)) {
+            log.add(buffer, drawbuffer, 0);
+        }
+    }
+
+    @Override
+    public void glClearBufferuiv(int buffer, int drawbuffer, IntBuffer value) {
+        if (call(ID_CLEAR_BUFFERUIV, 3)) {
+            log.add(buffer, drawbuffer, 0);
+        }
+    }
+
+    @Override
+    public void glClearBufferfv(int buffer, int drawbuffer, FloatBuffer value) {
+        if (call(ID_CLEAR_BUFFERFV, 3)) {
+            log.add(buffer, drawbuffer, 0);
+        }
+    }
+
+    @Override
+    public void glClearBufferfi(int buffer, int drawbuffer, float depth, int stencil) {
+        if (call(ID_CLEAR_BUFFERFI, 4)) {
+            log.add(buffer, drawbuffer, Float.floatToRawIntBits(depth), stencil);
+        }
+    }
+
+    @Override
+    public String glGetStringi(int name, int index) {
+        if (call(ID_GET_STRINGI, 2)) {
+            log.add(name, index);
+        }
+        return "";
+    }
+
+    @Override
+    public void glCopyBufferSubData(int readTarget, int writeTarget, int readOffset, int writeOffset, int size) {
+        if (call(ID_COPY_BUFFER_SUB_DATA, 5)) {
+            log.add(readTarget, writeTarget, readOffset, writeOffset);
+            log.add(size);
+        }
+    }
+
+    @Override
+    public void glGetUniformIndices(int program, String[] uniformNames, IntBuffer uniformIndices) {
+        if (call(ID_GET_UNIFORM_INDICES, 3)) {
+            log.add(program, 0, 0);
+        }
+    }
+
+    @Override
+    public void glGetActiveUniformsiv(int program, int uniformCount, IntBuffer uniformIndices, int pname, IntBuffer params) {
+        if (call(ID_GET_ACTIVE_UNIFORMSIV, 5)) {
+            log.add(program, uniformCount, 0, pname);
+            log.add(0);
+        }
+    }
+
+    @Override
+    public int glGetUniformBlockIndex(int program, String uniformBlockName) {
+        if (call(ID_GET_UNIFORM_BLOCK_INDEX, 2)) {
+            log.add(program, 0);
+        }
+        return location(blocks, uniformBlockName);
+    }
+
+    @Override
+    public void glGetActiveUniformBlockiv(int program, int uniformBlockIndex, int pname, IntBuffer params) {
+        if (call(ID_GET_ACTIVE_UNIFORM_BLOCKIV, 4)) {
+            log.add(program, uniformBlockIndex, pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetActiveUniformBlockName(int program, int uniformBlockIndex, Buffer length, Buffer uniformBlockName) {
+        if (call(ID_GET_ACTIVE_UNIFORM_BLOCK_NAME, 4)) {
+            log.add(program, uniformBlockIndex, 0, 0);
+        }
+    }
+
+    @Override
+    public String glGetActiveUniformBlockName(int program, int uniformBlockIndex) {
+        if (call(ID_GET_ACTIVE_UNIFORM_BLOCK_NAME, 2)) {
+            log.add(program, uniformBlockIndex);
+        }
+        return "";
+    }
+
+    @Override
+    public void glUniformBlockBinding(int program, int uniformBlockIndex, int uniformBlockBinding) {
+        if (call(ID_UNIFORM_BLOCK_BINDING, 3)) {
+            log.add(program, uniformBlockIndex, uniformBlockBinding);
+        }
+    }
+
+    @Override
+    public void glDrawArraysInstanced(int mode, int first, int count, int instanceCount) {
+        if (call(ID_DRAW_ARRAYS_INSTANCED, 4)) {
+            log.add(mode, first, count, instanceCount);
+        }
+    }
+
+    @Override
+    public void glDrawElementsInstanced(int mode, int count, int type, int indicesOffset, int instanceCount) {
+        if (call(ID_DRAW_ELEMENTS_INSTANCED, 5)) {
+            log.add(mode, count, type, indicesOffset);
+            log.add(instanceCount);
+        }
+    }
+
+    @Override
+    public void glGetInteger64v(int pname, LongBuffer params) {
+        if (call(ID_GET_INTEGER64V, 2)) {
+            log.add(pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetBufferParameteri64v(int target, int pname, LongBuffer params) {
+        if (call(ID_GET_BUFFER_PARAMETERI64V, 3)) {
+            log.add(target, pname, 0);
+        }
+    }
+
+    @Override
+    public void glGenSamplers(int count, int[] samplers, int offset) {
+        if (call(ID_GEN_SAMPLERS, 3)) {
+            log.add(count, 0, offset);
+        }
+        generate(count, samplers, offset);
+    }
+
+    @Override
+    public void glGenSamplers(int count, IntBuffer samplers) {
+        if (call(ID_GEN_SAMPLERS, 2)) {
+            log.add(count, 0);
+        }
+        generate(count, samplers);
+    }
+
+    @Override
+    public void glDeleteSamplers(int count, int[] samplers, int offset) {
+        if (call(ID_DELETE_SAMPLERS, 3)) {
+            log.add(count, 0, offset);
+        }
+    }
+
+    @Override
+    public void glDeleteSamplers(int count, IntBuffer samplers) {
+        if (call(ID_DELETE_SAMPLERS, 2)) {
+            log.add(count, 0);
+        }
+    }
+
+    @Override
+    public boolean glIsSampler(int sampler) {
+        if (call(ID_IS_SAMPLER, 1)) {
+            log.add(sampler);
+        }
+        return false;
+    }
+
+    @Override
+    public void glBindSampler(int unit, int sampler) {
+        if (call(ID_BIND_SAMPLER, 2)) {
+            log.add(unit, sampler);
+        }
+    }
+
+    @Override
+    public void glSamplerParameteri(int sampler, int pname, int param) {
+        if (call(ID_SAMPLER_PARAMETERI, 3)) {
+            log.add(sampler, pname, param);
+        }
+    }
+
+    @Override
+    public void glSamplerParameteriv(int sampler, int pname, IntBuffer param) {
+        if (call(ID_SAMPLER_PARAMETERIV, 3)) {
+            log.add(sampler, pname, 0);
+        }
+    }
+
+    @Override
+    public void glSamplerParameterf(int sampler, int pname, float param) {
+        if (call(ID_SAMPLER_PARAMETERF, 3)) {
+            log.add(sampler, pname, Float.floatToRawIntBits(param));
+        }
+    }
+
+    @Override
+    public void glSamplerParameterfv(int sampler, int pname, FloatBuffer param) {
+        if (call(ID_SAMPLER_PARAMETERFV, 3)) {
+            log.add(sampler, pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetSamplerParameteriv(int sampler, int pname, IntBuffer params) {
+        if (call(ID_GET_SAMPLER_PARAMETERIV, 3)) {
+            log.add(sampler, pname, 0);
+        }
+    }
+
+    @Override
+    public void glGetSamplerParameterfv(int sampler, int pname, FloatBuffer params) {
+        if (call(ID_GET_SAMPLER_PARAMETERFV, 3)) {
+            log.add(sampler, pname, 0);
+        }
+    }
+
+    @Override
+    public void glVertexAttribDivisor(int index, int divisor) {
+        if (call(ID_VERTEX_ATTRIB_DIVISOR, 2)) {
+            log.add(index, divisor);
+        }
+    }
+
+    @Override
+    public void glBindTransformFeedback(int target, int id) {
+        if (call(ID_BIND_TRANSFORM_FEEDBACK, 2)) {
+            log.add(target, id);
+        }
+    }
+
+    @Override
+    public void glDeleteTransformFeedbacks(int n, int[] ids, int offset) {
+        if (call(ID_DELETE_TRANSFORM_FEEDBACKS, 3)) {
+            log.add(n, 0, offset);
+        }
+    }
+
+    @Override
+    public void glDeleteTransformFeedbacks(int n, IntBuffer ids) {
+        if (call(ID_DELETE_TRANSFORM_FEEDBACKS, 2)) {
+            log.add(n, 0);
+        }
+    }
+
+    @Override
+    public void glGenTransformFeedbacks(int n, int[] ids, int offset) {
+        if (call(ID_GEN_TRANSFORM_FEEDBACKS, 3)) {
+            log.add(n, 0, offset);
+        }
+        generate(n, ids, offset);
+    }
+
+    @Override
+    public void glGenTransformFeedbacks(int n, IntBuffer ids) {
+        if (call(ID_GEN_TRANSFORM_FEEDBACKS, 2)) {
+            log.add(n, 0);
+        }
+        generate(n, ids);
+    }
+
+    @Override
+    public boolean glIsTransformFeedback(int id) {
+        if (call(ID_IS_TRANSFORM_FEEDBACK, 1)) {
+            log.add(id);
+        }
+        return false;
+    }
+
+    @Override
+    public void glPauseTransformFeedback() {
+        call(ID_PAUSE_TRANSFORM_FEEDBACK, 0);
+    }
+
+    @Override
+    public void glResumeTransformFeedback() {
+        call(ID_RESUME_TRANSFORM_FEEDBACK, 0);
+    }
+
+    @Override
+    public void glProgramParameteri(int program, int pname, int value) {
+        if (call(ID_PROGRAM_PARAMETERI, 3)) {
+            log.add(program, pname, value);
+        }
+    }
+
+    @Override
+    public void glInvalidateFramebuffer(int target, int numAttachments, IntBuffer attachments) {
+        if (call(ID_INVALIDATE_FRAMEBUFFER, 3)) {
+            log.add(target, numAttachments, 0);
+        }
+    }
+
+    @Override
+    public void glInvalidateSubFramebuffer(int target, int numAttachments, IntBuffer attachments, int x, int y, int width, int height) {
+        if (call(ID_INVALIDATE_SUB_FRAMEBUFFER, 7)) {
+            log.add(target, numAttachments, 0, x);
+            log.add(y, width, height);
+        }
+    }
+    //endregion
+}
@@ -97,12 +97,8 @@ public class CUGradient {
      * @param grad  The gradient to copy
      */
     public CUGradient(CUGradient grad) {
-        inverse = grad.inverse;
-        inner  = grad.inner;
-        outer  = grad.outer;
-        extent = grad.extent;
-        radius = grad.radius;
-        feather = grad.feather;
+        this();
+        set(grad);
     }
 
     /**
@@ -0,0 +1,385 @@
+package edu.cornell.gdiac.render;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * This class computes mipmap chains on the CPU, off the rendering thread.
+ *
+ * OpenGL can generate mipmaps with glGenerateMipmap, but only on the rendering
+ * thread, and with a filter chosen by the driver (usually a box filter in
+ * gamma space, which darkens minified images). This class computes the chain
+ * on the calling thread and the common fork-join pool, splitting each level
+ * into bands of rows. The result is a single buffer with every level, which
+ * may be uploaded with {@link CUTexture#CUTexture(ByteBuffer, int, int, CUTexture.PixelFormat, int)}
+ * or persisted by a {@link CUTextureCache}.
+ *
+ * The color channels of RGB and RGBA images are filtered in linear space
+ * (treating the image as sRGB), while alpha and the channels of RED and
+ * RED_GREEN images are filtered as is. Only 8-bit formats are supported.
+ */
+public class CUMipmapGenerator {
+    /** The number of rows in each band of work */
+    private static final int BAND_ROWS = 32;
+    /** The number of entries in the linear to sRGB table */
+    private static final int LINEAR_STEPS = 4096;
+    /** The sRGB to linear conversion table */
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+    /** The linear to sRGB conversion table */
+    private static final byte[] LINEAR_TO_SRGB = new byte[LINEAR_STEPS];
+    /** The Kaiser window shape parameter */
+    private static final double KAISER_ALPHA = 4.0;
+    /** The weights of the six Kaiser filter taps, for a 2:1 reduction */
+    private static final float[] KAISER_WEIGHTS = new float[6];
+
+    static {
+        for (int ii = 0; ii < 256; ii++) {
+            double c = ii/255.0;
+            SRGB_TO_LINEAR[ii] = (float)(c <= 0.04045 ? c/12.92 : Math.pow((c+0.055)/1.055, 2.4));
+        }
+        for (int ii = 0; ii < LINEAR_STEPS; ii++) {
+            double c = ii/(double)(LINEAR_STEPS-1);
+            c = c <= 0.0031308 ? c*12.92 : 1.055*Math.pow(c, 1/2.4)-0.055;
+            LINEAR_TO_SRGB[ii] = (byte)Math.round(c*255);
+        }
+
+        // Windowed sinc at the source pixel centers -2.5 .. 2.5 from the target
+        double radius = 3.0;
+        double total = 0;
+        for (int ii = 0; ii < 6; ii++) {
+            double d = ii-2.5;
+            double x = Math.PI*d/2;
+            double sinc = Math.sin(x)/x;
+            double r = d/radius;
+            double window = bessel(KAISER_ALPHA*Math.sqrt(1-r*r))/bessel(KAISER_ALPHA);
+            KAISER_WEIGHTS[ii] = (float)(sinc*window);
+            total += KAISER_WEIGHTS[ii];
+        }
+        for (int ii = 0; ii < 6; ii++) {
+            KAISER_WEIGHTS[ii] /= total;
+        }
+    }
+
+    /**
+     * The filter used to reduce one level to the next.
+     */
+    public enum Filter {
+        /** Averages each 2x2 block (fast, slightly blurry) */
+        BOX,
+        /** A Kaiser-windowed sinc over 6x6 pixels (sharper, slower) */
+        KAISER
+    }
+
+    /**
+     * Returns true if mipmaps can be generated for the given format.
+     *
+     * @param format    The pixel format
+     *
+     * @return true if mipmaps can be generated for the given format.
+     */
+    public static boolean supports(CUTexture.PixelFormat format) {
+        switch (format) {
+            case RGBA:
+            case RGB:
+            case RED:
+            case RED_GREEN:
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of levels in a full mipmap chain.
+     *
+     * @param width     The width of the base level
+     * @param height    The height of the base level
+     *
+     * @return the number of levels in a full mipmap chain.
+     */
+    public static int levelCount(int width, int height) {
+        return 32-Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    /**
+     * Returns a buffer with the given image and its full mipmap chain.
+     *
+     * The base level is read from the position of data to the end of the
+     * image, and is not modified. The result is a new direct buffer with every
+     * level, in order from the largest, with no padding (one byte alignment).
+     * This method blocks until the chain is complete.
+     *
+     * @param data      The base level
+     * @param width     The width of the base level
+     * @param height    The height of the base level
+     * @param format    The pixel format
+     * @param filter    The reduction filter
+     *
+     * @return a buffer with the given image and its full mipmap chain.
+     */
+    public static ByteBuffer generate(ByteBuffer data, int width, int height,
+                                      CUTexture.PixelFormat format, Filter filter) {
+        if (!supports(format)) {
+            throw new IllegalArgumentException("Cannot generate mipmaps for "+format);
+        }
+        int channels = format.byteSize();
+        int colors = format == CUTexture.PixelFormat.RGB || format == CUTexture.PixelFormat.RGBA ? 3 : 0;
+        int levels = levelCount(width, height);
+
+        int total = 0;
+        for (int level = 0; level < levels; level++) {
+            total += Math.max(1, width >> level)*Math.max(1, height >> level)*channels;
+        }
+
+        ByteBuffer result = BufferUtils.newByteBuffer(total);
+        ByteBuffer base = data.duplicate();
+        ((Buffer)base).limit(base.position()+width*height*channels);
+        result.put(base);
+
+        int offset = 0;
+        int sw = width;
+        int sh = height;
+        for (int level = 1; level < levels; level++) {
+            int dw = Math.max(1, sw >> 1);
+            int dh = Math.max(1, sh >> 1);
+            Level src = new Level(result, offset, sw, sh, channels, colors);
+            Level dst = new Level(result, offset+sw*sh*channels, dw, dh, channels, colors);
+            if (filter == Filter.KAISER) {
+                kaiser(src, dst);
+            } else {
+                box(src, dst);
+            }
+            offset = dst.offset;
+            sw = dw;
+            sh = dh;
+        }
+
+        ((Buffer)result).position(0);
+        ((Buffer)result).limit(total);
+        return result;
+    }
+
+    /**
+     * A single level of a mipmap chain, inside of the result buffer.
+     */
+    private static class Level {
+        /** The result buffer */
+        final ByteBuffer buffer;
+        /** The offset of this level in the buffer */
+        final int offset;
+        /** The level width */
+        final int width;
+        /** The level height */
+        final int height;
+        /** The number of channels per pixel */
+        final int channels;
+        /** The number of leading channels that are sRGB colors */
+        final int colors;
+
+        /**
+         * Creates a level at the given offset.
+         *
+         * @param buffer    The result buffer
+         * @param offset    The offset of this level in the buffer
+         * @param width     The level width
+         * @param height    The level height
+         * @param channels  The number of channels per pixel
+         * @param colors    The number of leading channels that are sRGB colors
+         */
+        Level(ByteBuffer buffer, int offset, int width, int height, int channels, int colors) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.width = width;
+            this.height = height;
+            this.channels = channels;
+            this.colors = colors;
+        }
+
+        /**
+         * Returns the linear value of a channel, clamping to the edges.
+         *
+         * @param x The pixel x-coordinate
+         * @param y The pixel y-coordinate
+         * @param c The channel
+         *
+         * @return the linear value of a channel, clamping to the edges.
+         */
+        float get(int x, int y, int c) {
+            x = Math.min(Math.max(x, 0), width-1);
+            y = Math.min(Math.max(y, 0), height-1);
+            int value = buffer.get(offset+(y*width+x)*channels+c) & 0xFF;
+            return c < colors ? SRGB_TO_LINEAR[value] : value/255.0f;
+        }
+
+        /**
+         * Sets a channel to the given linear value.
+         *
+         * @param x     The pixel x-coordinate
+         * @param y     The pixel y-coordinate
+         * @param c     The channel
+         * @param value The linear value
+         */
+        void put(int x, int y, int c, float value) {
+            value = Math.min(Math.max(value, 0), 1);
+            byte result;
+            if (c < colors) {
+                result = LINEAR_TO_SRGB[(int)(value*(LINEAR_STEPS-1)+0.5f)];
+            } else {
+                result = (byte)(int)(value*255+0.5f);
+            }
+            buffer.put(offset+(y*width+x)*channels+c, result);
+        }
+    }
+
+    /**
+     * Reduces the source level with a 2x2 box filter.
+     *
+     * @param src   The source level
+     * @param dst   The destination level
+     */
+    private static void box(final Level src, final Level dst) {
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int band = 0; band < dst.height; band += BAND_ROWS) {
+            final int start = band;
+            final int end = Math.min(dst.height, band+BAND_ROWS);
+            tasks.add(Executors.callable(new Runnable() {
+                @Override
+                public void run() {
+                    for (int y = start; y < end; y++) {
+                        for (int x = 0; x < dst.width; x++) {
+                            for (int c = 0; c < dst.channels; c++) {
+                                float sum = src.get(2*x, 2*y, c)+src.get(2*x+1, 2*y, c)+
+                                            src.get(2*x, 2*y+1, c)+src.get(2*x+1, 2*y+1, c);
+                                dst.put(x, y, c, sum/4);
+                            }
+                        }
+                    }
+                }
+            }));
+        }
+        run(tasks);
+    }
+
+    /**
+     * Reduces the source level with a separable Kaiser-windowed sinc filter.
+     *
+     * Each band of destination rows is filtered horizontally into a scratch
+     * buffer holding only the source rows under that band, and then filtered
+     * vertically from that buffer. So the scratch memory is proportional to
+     * the band, and not to the level.
+     *
+     * @param src   The source level
+     * @param dst   The destination level
+     */
+    private static void kaiser(final Level src, final Level dst) {
+        final int channels = src.channels;
+        final int stride = dst.width*channels;
+
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int band = 0; band < dst.height; band += BAND_ROWS) {
+            final int start = band;
+            final int end = Math.min(dst.height, band+BAND_ROWS);
+            tasks.add(Executors.callable(new Runnable() {
+                @Override
+                public void run() {
+                    // The source rows under the kernel of this band
+                    int first = Math.max(2*start-2, 0);
+                    int last  = Math.min(2*end+1, src.height-1);
+                    float[] temp = new float[(last-first+1)*stride];
+
+                    // Horizontal pass into linear floats (skipped if the width is 1)
+                    for (int y = first; y <= last; y++) {
+                        int row = (y-first)*stride;
+                        for (int x = 0; x < dst.width; x++) {
+                            for (int c = 0; c < channels; c++) {
+                                float sum;
+                                if (src.width == 1) {
+                                    sum = src.get(0, y, c);
+                                } else {
+                                    sum = 0;
+                                    for (int k = 0; k < 6; k++) {
+                                        sum += KAISER_WEIGHTS[k]*src.get(2*x+k-2, y, c);
+                                    }
+                                }
+                                temp[row+x*channels+c] = sum;
+                            }
+                        }
+                    }
+
+                    // Vertical pass into the destination
+                    for (int y = start; y < end; y++) {
+                        for (int x = 0; x < dst.width; x++) {
+                            for (int c = 0; c < channels; c++) {
+                                float sum;
+                                if (src.height == 1) {
+                                    sum = temp[x*channels+c];
+                                } else {
+                                    sum = 0;
+                                    for (int k = 0; k < 6; k++) {
+                                        int row = Math.min(Math.max(2*y+k-2, 0), src.height-1);
+                                        sum += KAISER_WEIGHTS[k]*temp[(row-first)*stride+x*channels+c];
+                                    }
+                                }
+                                dst.put(x, y, c, sum);
+                            }
+                        }
+                    }
+                }
+            }));
+        }
+        run(tasks);
+    }
+
+    /**
+     * Runs the tasks in the common fork-join pool, and waits for them.
+     *
+     * A single task is run on the calling thread.
+     *
+     * @param tasks The tasks to run
+     */
+    private static void run(List<Callable<Object>> tasks) {
+        try {
+            if (tasks.size() == 1) {
+                tasks.get(0).call();
+                return;
+            }
+            for (Future<Object> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GdxRuntimeException("Mipmap generation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new GdxRuntimeException("Mipmap generation failed", e.getCause());
+        } catch (Exception e) {
+            throw new GdxRuntimeException("Mipmap generation failed", e);
+        }
+    }
+
+    /**
+     * Returns the zeroth order modified Bessel function of the first kind.
+     *
+     * @param x The function argument
+     *
+     * @return the zeroth order modified Bessel function of the first kind.
+     */
+    private static double bessel(double x) {
+        double sum = 1;
+        double term = 1;
+        double half = x/2;
+        for (int k = 1; k < 32; k++) {
+            term *= (half/k)*(half/k);
+            sum += term;
+        }
+        return sum;
+    }
+}
@@ -63,6 +63,8 @@ public class CURenderTarget {
     private int[] bindpoints;
     /** The clear color for this render target */
     private Color clearcol;
+    /** The flight recorder event for the active pass (or null) */
+    private Object flightEvent;
 
     // #mark Setup
     /**
@@ -526,6 +528,7 @@ public class CURenderTarget {
      * return control to the default render target (the screen) when done.
      */
     public void begin() {
+        flightEvent = CUFlightRecorder.beginTarget(width, height);
         Gdx.gl30.glGetIntegerv(GL30.GL_VIEWPORT, viewport);
 
         Gdx.gl30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, framebo);
@@ -551,6 +554,8 @@ public class CURenderTarget {
         viewport.get(vport,0,4);
         Gdx.gl30.glViewport(vport[0], vport[1], vport[2], vport[3]);
         viewport.clear();
+        CUFlightRecorder.endTarget(flightEvent);
+        flightEvent = null;
     }
 
     /**
@@ -626,8 +631,10 @@ public class CURenderTarget {
         CUTexture texture = outputs[index];
         int bpoint = bindpoints[index];
         CUTexture.PixelFormat format = texture.getFormat();
+        Object event = CUFlightRecorder.beginReadback(width, height, (long)width*height*format.byteSize());
         Gdx.gl30.glReadBuffer( bpoint );
         Gdx.gl30.glReadPixels(0,0,width,height,format.glFormat( ),format.formatType(),buffer);
+        CUFlightRecorder.endReadback(event);
         return buffer;
     }
 
@@ -59,14 +59,12 @@ public class CUScissor {
     }
 
     /**
-     * Creates a copy with the resources of the given scissor mask.
+     * Creates a copy of the given scissor mask.
      *
-     * The original scissor mask is no longer safe to use after calling this
-     * constructor.
-     *
-     * @param mask    The scissor mask to take from
+     * @param mask    The scissor mask to copy
      */
     public CUScissor(CUScissor mask) {
+        this();
         set(mask);
     }
 
@@ -144,10 +142,10 @@ public class CUScissor {
      * @return this scissor mask, returned for chaining
      */
     public CUScissor set(CUScissor mask) {
-        scissor = mask.scissor;
-        inverse = mask.inverse;
-        transform = mask.transform;
-        bounds = mask.bounds;
+        scissor.set(mask.scissor);
+        inverse.set(mask.inverse);
+        transform.set(mask.transform);
+        bounds.set(mask.bounds);
         fringe = mask.fringe;
         return this;
     }
@@ -480,7 +478,7 @@ public class CUScissor {
         Affine2 transform = this.transform;
         transform.inv();
         this.transform.mul(transform);
-        bounds.intersect(mask.bounds.transform(transform));
+        intersect(bounds, mask.bounds, transform);
         recompute();
         return this;
     }
@@ -511,10 +509,46 @@ public class CUScissor {
         transform.preMul(mask.transform);
 
         CUScissor result = new CUScissor(this);
-        result.bounds.intersect(mask.bounds.transform(transform));
+        intersect(result.bounds, mask.bounds, transform);
         result.recompute();
         return result;
     }
+
+    /**
+     * Intersects a rectangle with the bounding box of another, transformed one.
+     *
+     * The bounding box is the axis-aligned box containing the four transformed
+     * corners of other. If the two do not overlap, rect becomes empty (with
+     * zero width and height). Only rect is modified.
+     *
+     * @param rect      The rectangle to intersect
+     * @param other     The rectangle to transform
+     * @param transform The transform to apply to other
+     */
+    private static void intersect(Rectangle rect, Rectangle other, Affine2 transform) {
+        float minx = Float.MAX_VALUE, miny = Float.MAX_VALUE;
+        float maxx = -Float.MAX_VALUE, maxy = -Float.MAX_VALUE;
+        for (int ii = 0; ii < 4; ii++) {
+            float x = other.x + ((ii & 1) == 0 ? 0 : other.width);
+            float y = other.y + ((ii & 2) == 0 ? 0 : other.height);
+            float tx = transform.m00 * x + transform.m01 * y + transform.m02;
+            float ty = transform.m10 * x + transform.m11 * y + transform.m12;
+            minx = Math.min(minx, tx);
+            maxx = Math.max(maxx, tx);
+            miny = Math.min(miny, ty);
+            maxy = Math.max(maxy, ty);
+        }
+
+        float left   = Math.max(rect.x, minx);
+        float bottom = Math.max(rect.y, miny);
+        float right  = Math.min(rect.x + rect.width, maxx);
+        float top    = Math.min(rect.y + rect.height, maxy);
+        if (right < left || top < bottom) {
+            rect.set(left, bottom, 0, 0);
+        } else {
+            rect.set(left, bottom, right - left, top - bottom);
+        }
+    }
     //endregion
 
     //region Conversion
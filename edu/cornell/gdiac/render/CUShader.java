@@ -9,7 +9,6 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.GL30;
 import com.badlogic.gdx.graphics.Mesh;
-import com.badlogic.gdx.graphics.g2d.UniformBuffer;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.math.Matrix3;
 import com.badlogic.gdx.math.Matrix4;
@@ -119,10 +118,10 @@ public class CUShader extends ShaderProgram implements Disposable {
      *
      * A uniform block is a variable attached to a uniform buffer.  It is not the
      * same as a normal uniform and cannot be treated as such.  In this case
-     * the uniform values are set in the {@link UniformBuffer} object and
+     * the uniform values are set in the {@link CUUniformBuffer} object and
      * not the shader.
      *
-     * This method allows us to verify that at {@link UniformBuffer} object
+     * This method allows us to verify that at {@link CUUniformBuffer} object
      * properly matches this shader.
      *
      * @param pos   The location of the uniform block in the shader
@@ -148,10 +147,10 @@ public class CUShader extends ShaderProgram implements Disposable {
      *
      * A uniform block is a variable attached to a uniform buffer.  It is not the
      * same as a normal uniform and cannot be treated as such.  In this case
-     * the uniform values are set in the {@link UniformBuffer} object and
+     * the uniform values are set in the {@link CUUniformBuffer} object and
      * not the shader.
      *
-     * This method allows us to verify that at {@link UniformBuffer} object
+     * This method allows us to verify that at {@link CUUniformBuffer} object
      * properly matches this shader.
      *
      * @param name      The name of the uniform block in the shader
@@ -182,7 +181,7 @@ public class CUShader extends ShaderProgram implements Disposable {
      *
      * A uniform block is a variable attached to a uniform buffer.  It is not the
      * same as a normal uniform and cannot be treated as such.  In this case
-     * the uniform values are set in the UniformBuffer object and
+     * the uniform values are set in the CUUniformBuffer object and
      * not the shader.
      *
      * This method will only succeed if the shader is actively bound.
@@ -200,7 +199,7 @@ public class CUShader extends ShaderProgram implements Disposable {
      *
      * A uniform block is a variable attached to a uniform buffer.  It is not the
      * same as a normal uniform and cannot be treated as such.  In this case
-     * the uniform values are set in the UniformBuffer object and
+     * the uniform values are set in the CUUniformBuffer object and
      * not the shader.
      *
      * This method will only succeed if the shader is actively bound.
@@ -221,7 +220,7 @@ public class CUShader extends ShaderProgram implements Disposable {
      *
      * A uniform block is a variable attached to a uniform buffer.  It is not the
      * same as a normal uniform and cannot be treated as such.  In this case
-     * the uniform values are set in the {@link UniformBuffer} object and
+     * the uniform values are set in the {@link CUUniformBuffer} object and
      * not the shader.
      *
      * This method will bind the uniform buffer to the current bindpoint of the
@@ -273,7 +272,7 @@ public class CUShader extends ShaderProgram implements Disposable {
      *
      * A uniform block is a variable attached to a uniform buffer.  It is not the
      * same as a normal uniform and cannot be treated as such.  In this case
-     * the uniform values are set in the {@link UniformBuffer} object and
+     * the uniform values are set in the {@link CUUniformBuffer} object and
      * not the shader.
      *
      * This method will bind the uniform buffer to the current bindpoint of the
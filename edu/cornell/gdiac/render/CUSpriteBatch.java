@@ -1,5 +1,7 @@
 package edu.cornell.gdiac.render;
 
+import java.nio.ByteBuffer;
+
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
@@ -27,6 +29,12 @@ public class CUSpriteBatch implements Batch {
     final float[] vertices;
     /** Number of numbers in each vertex */
     final int numsInVertex;
+    /** Whether each vertex ends with a texture array layer */
+    final boolean layerAttribute;
+    /** The texture array layer of new vertices */
+    private int textureLayer;
+    /** The position in vertices up to which the layer attribute is written */
+    private int textureLayerMark;
     /** Array to hold index data **/
     final short[] indxData;
     /** Index into vertices for where to add the next float */
@@ -35,6 +43,8 @@ public class CUSpriteBatch implements Batch {
     boolean drawing = false;
     /** The projection matrix */
     private final Matrix4 projectionMatrix = new Matrix4();
+    /** The identity matrix (the default transform) */
+    private final Matrix4 identityMatrix = new Matrix4();
 
     /** The shader */
     private ShaderProgram shader;
@@ -44,6 +54,10 @@ public class CUSpriteBatch implements Batch {
     private final Color color = new Color(1, 1, 1, 1);
     /** The packed color */
     float colorPacked = Color.WHITE_FLOAT_BITS;
+    /** Whether colors and textures use premultiplied alpha */
+    private boolean premultiplied;
+    /** Whether to draw additively (in premultiplied mode, with zero alpha) */
+    private boolean additive;
 
     /** The number of vertices drawn in this pass (so far) */
     public int vertTotal;
@@ -51,6 +65,8 @@ public class CUSpriteBatch implements Batch {
     public int renderCalls = 0;
     /** Number of rendering calls, ever. Will not be reset unless set manually. **/
     public int totalRenderCalls = 0;
+    /** The statistics for this pass (reset at {@link #begin()}) */
+    private final CUBatchStats stats = new CUBatchStats();
 
     /** The uniform buffer for this sprite batch */
     private CUUniformBuffer unifbuff;
@@ -64,6 +80,86 @@ public class CUSpriteBatch implements Batch {
     private int indxMax;
     /** The number of indices in the current mesh **/
     private int indxSize;
+    /** Whether to draw quad-only batches with the static quad indices */
+    private boolean quadIndexing;
+    /** Whether every primitive since the last flush is a standard quad */
+    private boolean quadsOnly;
+    /** Whether to copy vertices into mapped graphics memory on flush */
+    private boolean mappedUploads;
+    /** The capture receiving every flush (or null) */
+    private CUDrawCapture capture;
+    /** The heat map receiving every batch-breaking texture switch (or null) */
+    private CUTextureHeatMap heatMap;
+
+    /** Whether to reorder non-overlapping draws to merge compatible state */
+    private boolean reordering;
+    /** The recorded contexts of a flush, for reordering */
+    private final Array<Context> segments = new Array<>();
+    /** The first context of each reordered group */
+    private final Array<Context> groups = new Array<>();
+    /** The next context in the same group (or -1), for reordering */
+    private int[] groupNext = new int[32];
+    /** The first context of each group, for reordering */
+    private int[] groupHead = new int[32];
+    /** The last context of each group, for reordering */
+    private int[] groupTail = new int[32];
+    /** The latest group touching each grid cell, for reordering */
+    private final int[] reorderGrid = new int[REORDER_GRID*REORDER_GRID];
+    /** The grid cells covered by a context, for reordering */
+    private final int[] reorderCells = new int[4];
+    /** The projection of a context, for reordering */
+    private final Matrix4 reorderMatrix = new Matrix4();
+    /** The reordered index data */
+    private short[] reorderIndices;
+    /** The state of the first context of a flush, for reordering */
+    private Context reorderStart;
+
+    /** Whether to sort draws by layer (and then state) at each flush */
+    private boolean layered;
+    /** The high word of the sort key (layer, blend) of each context, for layering */
+    private long[] sortKeys = new long[32];
+    /** The low word of the sort key (texture, state) of each context, for layering */
+    private long[] sortLows = new long[32];
+    /** The sorted order of the recorded contexts, for layering */
+    private int[] sortOrder = new int[32];
+    /** The scratch space for the radix sort, for layering */
+    private int[] sortTemp = new int[32];
+    /** The counts of each radix digit, for layering */
+    private final int[] sortCounts = new int[257];
+    /** The distinct blend states of a flush, for layering */
+    private final Array<Context> sortBlends = new Array<>();
+    /** The first blend state with each hash, for layering */
+    private final IntIntMap sortBlendIds = new IntIntMap();
+    /** The next blend state with the same hash (or -1), for layering */
+    private int[] sortBlendChain = new int[32];
+    /** The id of each distinct texture of a flush, for layering */
+    private final ObjectIntMap<Texture> sortTextures = new ObjectIntMap<>();
+    /** The distinct remaining states of a flush, for layering */
+    private final Array<Context> sortStates = new Array<>();
+    /** The first remaining state with each hash, for layering */
+    private final IntIntMap sortStateIds = new IntIntMap();
+    /** The next remaining state with the same hash (or -1), for layering */
+    private int[] sortStateChain = new int[32];
+
+    /** Whether to group geometry drawn with commutative blend functions */
+    private boolean commutative;
+    /** The first context of each deferred group, for commutative blending */
+    private final Array<Context> deferGroups = new Array<>();
+    /** The index of the first context in each deferred group, for commutative blending */
+    private final IntArray deferHead = new IntArray();
+    /** The index of the last context in each deferred group, for commutative blending */
+    private final IntArray deferTail = new IntArray();
+
+    /** Whether to draw opaque geometry front to back with depth testing */
+    private boolean earlyDepth;
+    /** The depth of the context being applied (NaN if not depth testing) */
+    private float contextDepth = Float.NaN;
+    /** The depth rank of each recorded context, for depth testing */
+    private int[] depthRanks = new int[32];
+    /** The number of depths used since the last depth clear (-1 if not cleared this pass) */
+    private int depthBase = -1;
+    /** The number of distinct depths between depth buffer clears (safe for 16-bit buffers) */
+    private static final int DEPTH_STEPS = 1 << 14;
 
     /** The active drawing context */
     private Context context;
@@ -72,10 +168,17 @@ public class CUSpriteBatch implements Batch {
     /** The drawing context history */
     private PooledLinkedList<Context> history;
 
+    /** The pool of drawing contexts for the history */
+    private final Pool<Context> contexts;
+
     /** The active gradient */
     private CUGradient gradient;
     /** The active scissor mask */
     private CUScissor scissor;
+    /** The storage for the active gradient */
+    private final CUGradient gradientCache;
+    /** The storage for the active scissor mask */
+    private final CUScissor scissorCache;
 
     /** Cache for making the affine transform in draw methods */
     private final Affine2 transformCache;
@@ -89,6 +192,8 @@ public class CUSpriteBatch implements Batch {
     private final float[] uniformBlockData;
     /** Cache for chunkify offsets */
     private final IntIntMap offsets;
+    /** The writer returned by {@link #reserve} */
+    private final VertexWriter writer;
 
     /** Constructs a new SpriteBatch with a size of 1000, one buffer, and the default shader.
      * @see CUSpriteBatch#CUSpriteBatch(int, CUShader) */
@@ -113,11 +218,17 @@ public class CUSpriteBatch implements Batch {
      * <p>
      * The defaultShader specifies the shader to use. Note that the names for uniforms for this default shader are different than
      * the ones expect for shaders set with {@link #setShader(ShaderProgram)}.
+     * <p>
+     * A vertex has 5 floats (position, color, texture coordinates), or 7 with gradient coordinates. A vertex with 6 or 8 floats
+     * also ends with a texture array layer. Such a sprite batch only draws the layers of a {@link CUTextureArray}, and
+     * switching between layers of the same array does not break a batch.
      * @param size The max number of sprites in a single batch. Max of 8191.
-     * @param defaultShader The default shader to use. This is not owned by the SpriteBatch and must be disposed separately. */
+     * @param defaultShader The default shader to use. This is not owned by the SpriteBatch and must be disposed separately.
+     * @param numsInVertex The number of floats in each vertex (5 to 8) */
     public CUSpriteBatch (int size, CUShader defaultShader, int numsInVertex) {
         // 32767 is max vertex index, so 32767 / 4 vertices per sprite = 8191 sprites max.
         if (size > 8191) throw new IllegalArgumentException("Can't have more than 8191 sprites per batch: " + size);
+        if (numsInVertex < 5 || numsInVertex > 8) throw new IllegalArgumentException("Vertices must have 5 to 8 floats: " + numsInVertex);
 
         projectionMatrix.setToOrtho2D(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
 
@@ -130,21 +241,28 @@ public class CUSpriteBatch implements Batch {
         // Set up data arrays
         vertMax = size;
         this.numsInVertex = numsInVertex;
+        layerAttribute = numsInVertex == 6 || numsInVertex == 8;
         vertices = new float[size * numsInVertex];
 
         indxMax = size*6;
 		indxData = new short[indxMax];
 
-        if (numsInVertex == 7) {
-            vertbuff = new CUVertexBuffer(SpriteShader.ATTRIBUTE_OFFSET[4], vertMax * 4, indxMax);
+        if (numsInVertex >= 7) {
+            vertbuff = new CUVertexBuffer(4 * numsInVertex, vertMax * 4, indxMax);
             vertbuff.setupAttribute(CUShader.GRADCOORD_ATTRIBUTE + "0", 2, GL30.GL_FLOAT, false, SpriteShader.ATTRIBUTE_OFFSET[3]);
         } else {
-            vertbuff = new CUVertexBuffer(SpriteShader.ATTRIBUTE_OFFSET[3], vertMax * 4, indxMax);
+            vertbuff = new CUVertexBuffer(4 * numsInVertex, vertMax * 4, indxMax);
+        }
+        if (layerAttribute) {
+            vertbuff.setupAttribute(SpriteShader.LAYER_ATTRIBUTE, 1, GL30.GL_FLOAT, false, 4 * (numsInVertex-1));
         }
         vertbuff.setupAttribute(ShaderProgram.POSITION_ATTRIBUTE, 2, GL30.GL_FLOAT, false, SpriteShader.ATTRIBUTE_OFFSET[0]);
         vertbuff.setupAttribute(ShaderProgram.COLOR_ATTRIBUTE, 4, GL30.GL_UNSIGNED_BYTE, true, SpriteShader.ATTRIBUTE_OFFSET[1]);
         vertbuff.setupAttribute(ShaderProgram.TEXCOORD_ATTRIBUTE + "0", 2, GL30.GL_FLOAT, false, SpriteShader.ATTRIBUTE_OFFSET[2]);
         vertbuff.attach(shader);
+        vertbuff.setQuadIndices(vertMax/4+1);
+        quadIndexing = true;
+        quadsOnly = true;
 
         unifbuff = new CUUniformBuffer(40 * Float.SIZE, size/4);
         // Layout std140 format
@@ -162,6 +280,14 @@ public class CUSpriteBatch implements Batch {
 
         scissor = null;
         gradient = null;
+        scissorCache = new CUScissor();
+        gradientCache = new CUGradient();
+        contexts = new Pool<Context>(16) {
+            @Override
+            protected Context newObject() {
+                return new Context();
+            }
+        };
         context = new Context();
         context.dirty = DIRTY_ALL_VALS;
         history = new PooledLinkedList<>(size);
@@ -171,6 +297,7 @@ public class CUSpriteBatch implements Batch {
         indicesCache = new short[8];
         polyCache = new Poly2(verticesCache, indicesCache);
         offsets = new IntIntMap();
+        writer = new VertexWriter(vertices, indxData, numsInVertex);
     }
 
     /**
@@ -210,13 +337,13 @@ public class CUSpriteBatch implements Batch {
     @Override
     public void setColor (Color tint) {
         color.set(tint);
-        colorPacked = tint.toFloatBits();
+        pack();
     }
 
     @Override
     public void setColor (float r, float g, float b, float a) {
         color.set(r, g, b, a);
-        colorPacked = color.toFloatBits();
+        pack();
     }
 
     @Override
@@ -227,7 +354,11 @@ public class CUSpriteBatch implements Batch {
     @Override
     public void setPackedColor (float packedColor) {
         Color.abgr8888ToColor(color, packedColor);
-        this.colorPacked = packedColor;
+        if (premultiplied) {
+            pack();
+        } else {
+            this.colorPacked = packedColor;
+        }
     }
 
     @Override
@@ -282,7 +413,7 @@ public class CUSpriteBatch implements Batch {
     @Override
     public void enableBlending() {
         if (!context.blending) {
-            if (inflight) { record(); }
+            if (inflight) { stats.blendRecords++; record(); }
             context.blending = true;
             context.dirty = context.dirty | DIRTY_BLENDSTATE;
         }
@@ -291,7 +422,7 @@ public class CUSpriteBatch implements Batch {
     @Override
     public void disableBlending() {
         if (context.blending) {
-            if (inflight) { record(); }
+            if (inflight) { stats.blendRecords++; record(); }
             context.blending = false;
             context.dirty = context.dirty | DIRTY_BLENDSTATE;
         }
@@ -311,7 +442,7 @@ public class CUSpriteBatch implements Batch {
      */
     public void setBlendEquation(int equation) {
         if (context.blendEquation != equation) {
-            if (inflight) { record(); }
+            if (inflight) { stats.blendRecords++; record(); }
             context.blendEquation = equation;
             context.dirty = context.dirty | DIRTY_BLENDSTATE;
         }
@@ -346,7 +477,7 @@ public class CUSpriteBatch implements Batch {
     @Override
     public void setBlendFunction(int srcFactor, int dstFactor) {
         if (context.srcFactor != srcFactor || context.dstFactor != dstFactor) {
-            if (inflight) { record(); }
+            if (inflight) { stats.blendRecords++; record(); }
             context.srcFactor = srcFactor;
             context.dstFactor = dstFactor;
             context.dirty = context.dirty | DIRTY_BLENDFACTOR;
@@ -357,7 +488,7 @@ public class CUSpriteBatch implements Batch {
     public void setBlendFunctionSeparate(int srcFactor, int dstFactor, int srcFactorAlpha, int dstFactorAlpha) {
         if (context.srcFactor != srcFactor || context.dstFactor != dstFactor ||
                 context.srcFactor != srcFactorAlpha || context.dstFactorAlpha != dstFactorAlpha) {
-            if (inflight) { record(); }
+            if (inflight) { stats.blendRecords++; record(); }
             context.srcFactor = srcFactor;
             context.dstFactor = dstFactor;
             context.srcFactorAlpha = srcFactorAlpha;
@@ -426,6 +557,136 @@ public class CUSpriteBatch implements Batch {
         return context.dstFactor;
     }
 
+    /**
+     * Sets whether this sprite batch uses premultiplied alpha.
+     *
+     * With premultiplied alpha, the color channels of every texture and tint
+     * are already scaled by alpha. Normal blending then uses the blend function
+     * (GL_ONE, GL_ONE_MINUS_SRC_ALPHA), while additive blending is the same
+     * function with an alpha of zero. So normal and additive drawing may be
+     * mixed without any state changes (see {@link #setAdditive}).
+     *
+     * Changing this value resets the blend function to (GL_ONE,
+     * GL_ONE_MINUS_SRC_ALPHA) or to the default (GL_SRC_ALPHA,
+     * GL_ONE_MINUS_SRC_ALPHA). The active color is premultiplied by the sprite
+     * batch, and so should still be specified normally. Gradients are also
+     * premultiplied by the shader. However, textures must be premultiplied
+     * when they are loaded (see {@link CUTexture#premultiply}), as must any
+     * colors in vertices passed directly to the batch.
+     *
+     * This value is false by default.
+     *
+     * @param value Whether this sprite batch uses premultiplied alpha
+     */
+    public void setPremultiplied(boolean value) {
+        if (premultiplied == value) {
+            return;
+        }
+        if (inflight) { stats.blendRecords++; record(); }
+        premultiplied = value;
+        if (value) {
+            context.type = context.type | TYPE_PREMULTIPLY;
+            context.srcFactor = GL30.GL_ONE;
+        } else {
+            context.type = context.type & ~TYPE_PREMULTIPLY;
+            context.srcFactor = GL30.GL_SRC_ALPHA;
+        }
+        context.dstFactor = GL30.GL_ONE_MINUS_SRC_ALPHA;
+        context.srcFactorAlpha = -1;
+        context.dstFactorAlpha = -1;
+        context.dirty = context.dirty | DIRTY_BLENDFACTOR | DIRTY_DRAWTYPE;
+        pack();
+        updateAdditive();
+    }
+
+    /**
+     * Returns true if this sprite batch uses premultiplied alpha.
+     *
+     * See {@link #setPremultiplied} for a description of this mode.
+     *
+     * @return true if this sprite batch uses premultiplied alpha.
+     */
+    public boolean isPremultiplied() {
+        return premultiplied;
+    }
+
+    /**
+     * Sets whether subsequent drawing is additive.
+     *
+     * If this sprite batch uses premultiplied alpha, additive drawing only
+     * zeroes the alpha of the active color after premultiplying it. This does
+     * not change the blend state, so additive and normal sprites are drawn with
+     * the same draw call. Gradients ignore the active color, so an additive
+     * gradient instead has its alpha zeroed by the shader. This is a separate
+     * drawing type, and so additive and normal gradients are drawn with
+     * separate draw calls. Otherwise, this method sets the blend function to
+     * (GL_SRC_ALPHA, GL_ONE) for additive drawing, and back to the default
+     * (GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA) when disabled.
+     *
+     * This value is false by default.
+     *
+     * @param value Whether subsequent drawing is additive
+     */
+    public void setAdditive(boolean value) {
+        if (additive == value) {
+            return;
+        }
+        additive = value;
+        if (premultiplied) {
+            pack();
+            updateAdditive();
+        } else {
+            setBlendFunction(GL30.GL_SRC_ALPHA, value ? GL30.GL_ONE : GL30.GL_ONE_MINUS_SRC_ALPHA);
+        }
+    }
+
+    /**
+     * Returns true if subsequent drawing is additive.
+     *
+     * See {@link #setAdditive} for a description of this value.
+     *
+     * @return true if subsequent drawing is additive.
+     */
+    public boolean isAdditive() {
+        return additive;
+    }
+
+    /**
+     * Updates the additive gradient drawing type of the active context.
+     *
+     * The drawing type is only set for an active gradient in premultiplied
+     * additive mode. In every other case, zeroing the alpha of the active
+     * color is enough (or additive drawing uses the blend function).
+     */
+    private void updateAdditive() {
+        boolean value = premultiplied && additive && gradient != null;
+        if (((context.type & TYPE_ADDITIVE) != 0) == value) {
+            return;
+        }
+        if (inflight) { stats.blendRecords++; record(); }
+        if (value) {
+            context.type = context.type | TYPE_ADDITIVE;
+        } else {
+            context.type = context.type & ~TYPE_ADDITIVE;
+        }
+        context.dirty = context.dirty | DIRTY_DRAWTYPE;
+    }
+
+    /**
+     * Computes the packed color from the active color.
+     *
+     * In premultiplied mode, the color channels are scaled by alpha, and the
+     * alpha is zero for additive drawing.
+     */
+    private void pack() {
+        if (premultiplied) {
+            float a = color.a;
+            colorPacked = Color.toFloatBits(color.r*a, color.g*a, color.b*a, additive ? 0 : a);
+        } else {
+            colorPacked = color.toFloatBits();
+        }
+    }
+
     /**
      * Sets the blur step in pixels (0 if there is no blurring).
      *
@@ -450,7 +711,7 @@ public class CUSpriteBatch implements Batch {
             return;
         }
 
-        if (inflight) { record(); }
+        if (inflight) { stats.blurRecords++; record(); }
         if (step == 0) {
             // Active gradient is not null
             context.dirty = context.dirty | DIRTY_BLURSTEP | DIRTY_DRAWTYPE;
@@ -464,6 +725,139 @@ public class CUSpriteBatch implements Batch {
         context.blurstep = step;
     }
 
+    /**
+     * Sets whether subsequent drawing is opaque.
+     *
+     * Opaque geometry must completely cover every pixel it draws (e.g. a
+     * sprite with no transparent texels). This flag is only used when early
+     * depth testing is enabled (see {@link #setEarlyDepth}). In that case,
+     * opaque geometry is drawn with blending disabled.
+     *
+     * This value is false by default.
+     *
+     * @param value Whether subsequent drawing is opaque
+     */
+    public void setOpaque(boolean value) {
+        if (context.opaque != value) {
+            if (inflight) { stats.opaqueRecords++; record(); }
+            context.opaque = value;
+        }
+    }
+
+    /**
+     * Returns true if subsequent drawing is opaque.
+     *
+     * See {@link #setOpaque} for a description of this flag.
+     *
+     * @return true if subsequent drawing is opaque.
+     */
+    public boolean isOpaque() {
+        return context.opaque;
+    }
+
+    /**
+     * Sets whether to draw opaque geometry front to back with depth testing.
+     *
+     * Normally all geometry is painted back to front with blending, and so
+     * hidden pixels cost full fill rate. When this value is true, each flush
+     * with opaque geometry (see {@link #setOpaque}) is drawn in two passes.
+     * Every recorded context gets a depth from its layer (see {@link #setLayer})
+     * and then its submission order. The opaque contexts are drawn first, front
+     * to back, with depth writes on and blending off. The remaining contexts
+     * are then drawn back to front, with depth testing but no depth writes.
+     * The graphics card rejects hidden pixels before shading them, while the
+     * result is the same as painting in order.
+     *
+     * Depths increase across the flushes of a pass, so later flushes still
+     * paint over earlier ones. This mode requires a depth buffer, which is
+     * cleared by the first flush of each pass that uses it (and again only if
+     * the pass runs out of depths). No other drawing should write depth during
+     * the pass. It assumes an orthographic projection. A flush with stencil
+     * clears or stencil effects is painted in order, as normal.
+     *
+     * @param value Whether to draw opaque geometry front to back
+     */
+    public void setEarlyDepth(boolean value) {
+        earlyDepth = value;
+    }
+
+    /**
+     * Returns true if opaque geometry is drawn front to back with depth testing.
+     *
+     * See {@link #setEarlyDepth} for a description of this mode.
+     *
+     * @return true if opaque geometry is drawn front to back with depth testing.
+     */
+    public boolean isEarlyDepth() {
+        return earlyDepth;
+    }
+
+    /**
+     * Sets the layer for subsequent drawing.
+     *
+     * The layer is only used when the batch is layered (see {@link #setLayered}).
+     * In that case, all geometry on a lower layer is drawn before any geometry
+     * on a higher layer, no matter the submission order. Geometry on the same
+     * layer may be drawn in any order. Changing the layer does not change
+     * any graphics state.
+     *
+     * This value is 0 by default.
+     *
+     * @param layer The layer for subsequent drawing
+     */
+    public void setLayer(int layer) {
+        if (context.layer != layer) {
+            if (inflight) { stats.layerRecords++; record(); }
+            context.layer = layer;
+        }
+    }
+
+    /**
+     * Returns the layer for subsequent drawing.
+     *
+     * The layer is only used when the batch is layered (see {@link #setLayered}).
+     *
+     * @return the layer for subsequent drawing.
+     */
+    public int getLayer() {
+        return context.layer;
+    }
+
+    /**
+     * Sets whether this batch sorts draws by layer.
+     *
+     * When this value is true, the batch collects geometry until a flush and
+     * then radix sorts the recorded contexts by the key (layer, blend state,
+     * texture, remaining state such as the draw type and uniform block).
+     * Adjacent contexts with the same state are merged into a single draw.
+     * As the order within a layer is free, a game that knows the layer of
+     * each draw gets close to the minimum number of state changes without
+     * changing its submission loop.
+     *
+     * Layers only order the geometry within a flush. Geometry is never moved
+     * across an explicit flush or the end of a pass. A stencil clear is also a
+     * barrier: the geometry before the clear is sorted on its own, and is
+     * drawn before the clear and all geometry after it. So layers only order
+     * geometry between two stencil clears. This mode takes precedence over
+     * {@link #setReordering}.
+     *
+     * @param value Whether this batch sorts draws by layer
+     */
+    public void setLayered(boolean value) {
+        layered = value;
+    }
+
+    /**
+     * Returns true if this batch sorts draws by layer.
+     *
+     * See {@link #setLayered} for a description of this mode.
+     *
+     * @return true if this batch sorts draws by layer.
+     */
+    public boolean isLayered() {
+        return layered;
+    }
+
     /**
      * Returns the blur step in pixels (0 if there is no blurring).
      *
@@ -485,37 +879,70 @@ public class CUSpriteBatch implements Batch {
      */
     public int getBlurStep() { return context.blurstep; }
 
+    /**
+     * Returns the current projection matrix.
+     *
+     * The matrix returned is owned by this sprite batch, and should not be
+     * modified. To change the projection, use {@link #setProjectionMatrix}.
+     *
+     * @return the current projection matrix.
+     */
     @Override
     public Matrix4 getProjectionMatrix () {
         return context.perspective;
     }
 
+    /**
+     * Returns the current transform matrix.
+     *
+     * The matrix returned is owned by this sprite batch, and should not be
+     * modified. To change the transform, use {@link #setTransformMatrix}.
+     *
+     * @return the current transform matrix.
+     */
     @Override
     public Matrix4 getTransformMatrix () {
         return context.transform;
     }
 
+    /**
+     * Sets the projection matrix.
+     *
+     * The matrix is copied, so later changes to it have no effect until this
+     * method is called again. A null value restores the default orthographic
+     * projection of the screen.
+     *
+     * @param projection    The projection matrix
+     */
     @Override
     public void setProjectionMatrix (Matrix4 projection) {
         if (projection == null) {
             projectionMatrix.setToOrtho2D(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
             projection = projectionMatrix;
         }
-        if (!context.perspective.equals(projection)) {
-            if (inflight) { record(); }
-            context.perspective = projection;
+        if (!java.util.Arrays.equals(context.perspective.val, projection.val)) {
+            if (inflight) { stats.matrixRecords++; record(); }
+            context.perspective.set(projection);
             context.dirty = context.dirty | DIRTY_MATRIX;
         }
     }
 
+    /**
+     * Sets the transform matrix.
+     *
+     * The matrix is copied, so later changes to it have no effect until this
+     * method is called again. A null value restores the identity.
+     *
+     * @param transform The transform matrix
+     */
     @Override
     public void setTransformMatrix (Matrix4 transform) {
         if (transform == null) {
-            transform = new Matrix4();
+            transform = identityMatrix;
         }
-        if (!context.transform.equals(transform)) {
-            if (inflight) { record(); }
-            context.transform = transform;
+        if (!java.util.Arrays.equals(context.transform.val, transform.val)) {
+            if (inflight) { stats.matrixRecords++; record(); }
+            context.transform.set(transform);
             context.dirty = context.dirty | DIRTY_MATRIX;
         }
     }
@@ -539,7 +966,25 @@ public class CUSpriteBatch implements Batch {
      */
     public CUGradient getGradient()  {
         if (gradient != null) {
-            return new CUGradient(gradient);
+            return new CUGradient().set(gradient);
+        }
+        return null;
+    }
+
+    /**
+     * Copies the active gradient of this sprite batch into result.
+     *
+     * This is a version of {@link #getGradient()} that does not allocate. If
+     * there is no active gradient, this method returns null and does not
+     * modify result.
+     *
+     * @param result    The gradient to store the active gradient
+     *
+     * @return result if there is an active gradient, and null otherwise
+     */
+    public CUGradient getGradient(CUGradient result)  {
+        if (gradient != null) {
+            return result.set(gradient);
         }
         return null;
     }
@@ -566,7 +1011,7 @@ public class CUSpriteBatch implements Batch {
         if (gradient == this.gradient) {
             return;
         }
-        if (inflight) record();
+        if (inflight) { stats.gradientRecords++; record(); }
         if (gradient == null) {
             // Active gradient is not null
             context.dirty = context.dirty | DIRTY_UNIBLOCK | DIRTY_DRAWTYPE;
@@ -575,8 +1020,9 @@ public class CUSpriteBatch implements Batch {
         } else {
             context.dirty = context.dirty | DIRTY_UNIBLOCK | DIRTY_DRAWTYPE;
             context.type = context.type | TYPE_GRADIENT;
-            this.gradient = new CUGradient(gradient);
+            this.gradient = gradientCache.set(gradient);
         }
+        updateAdditive();
     }
 
 
@@ -601,6 +1047,24 @@ public class CUSpriteBatch implements Batch {
         return null;
     }
 
+    /**
+     * Copies the active scissor mask of this sprite batch into result.
+     *
+     * This is a version of {@link #getScissor()} that does not allocate. If
+     * there is no active scissor mask, this method returns null and does not
+     * modify result.
+     *
+     * @param result    The scissor mask to store the active scissor
+     *
+     * @return result if there is an active scissor mask, and null otherwise
+     */
+    public CUScissor getScissor (CUScissor result) {
+        if (scissor != null) {
+            return result.set(scissor);
+        }
+        return null;
+    }
+
     /**
      * Sets the active scissor mask of this sprite batch
      *
@@ -620,7 +1084,7 @@ public class CUSpriteBatch implements Batch {
             return;
         }
 
-        if (inflight) { record(); }
+        if (inflight) { stats.scissorRecords++; record(); }
 
         if (scissor == null) {
             // Active gradient is not null
@@ -630,7 +1094,7 @@ public class CUSpriteBatch implements Batch {
         } else {
             context.dirty = context.dirty | DIRTY_UNIBLOCK | DIRTY_DRAWTYPE;
             context.type = context.type | TYPE_SCISSOR;
-            this.scissor = new CUScissor(scissor);
+            this.scissor = scissorCache.set(scissor);
         }
     }
 
@@ -642,12 +1106,143 @@ public class CUSpriteBatch implements Batch {
      */
     public void setCommand(int command) {
         if (context.command != command) {
-            if (inflight) { record(); }
+            if (inflight) { stats.commandRecords++; record(); }
             context.command = command;
             context.dirty = context.dirty | DIRTY_COMMAND;
         }
     }
 
+    /**
+     * Sets whether this batch may reorder draws to reduce state changes.
+     *
+     * By default, a sprite batch draws everything in submission order, and
+     * every state change (such as a new texture) starts a new draw call. So
+     * an interleaved A-B-A-B texture pattern costs four draws. When this value
+     * is true, the batch examines the recorded state changes at each flush.
+     * Geometry drawn with the same state as an earlier group is moved into
+     * that group, provided that its screen-space bounds do not overlap anything
+     * drawn in between. As overlapping draws are never reordered, the result
+     * is identical to drawing in order.
+     *
+     * Overlap is tested on a coarse screen grid, so geometry that is near (but
+     * not touching) is sometimes kept in order. Stencil clears and point
+     * drawing are barriers that nothing moves across.
+     *
+     * @param value Whether this batch may reorder draws
+     */
+    public void setReordering(boolean value) {
+        reordering = value;
+    }
+
+    /**
+     * Returns true if this batch may reorder draws to reduce state changes.
+     *
+     * See {@link #setReordering} for a description of this mode.
+     *
+     * @return true if this batch may reorder draws to reduce state changes.
+     */
+    public boolean isReordering() {
+        return reordering;
+    }
+
+    /**
+     * Sets whether this batch groups geometry with commutative blending.
+     *
+     * Some blend functions give the same result in any draw order. Examples
+     * are additive blending (such as {@code GL_ONE, GL_ONE} or
+     * {@code GL_SRC_ALPHA, GL_ONE}), multiplicative blending (such as
+     * {@code GL_DST_COLOR, GL_ZERO}), and the {@code GL_MIN} and {@code GL_MAX}
+     * blend equations. When this value is true, geometry drawn with one of
+     * these blend functions is deferred at each flush. It is collected into one
+     * group per drawing state, and the groups are drawn together at the next
+     * barrier. So a particle system that alternates normal and additive sprites
+     * needs only a few draw calls.
+     *
+     * The deferred geometry is drawn after the normal geometry that followed
+     * it. This changes the result wherever the two overlap, so this mode is
+     * only appropriate when that is acceptable (e.g. glowing particles). The
+     * barriers are the end of a flush, stencil clears, point drawing, and
+     * a change to a blend function that does not commute with the deferred
+     * ones. This mode has no effect on a layered batch.
+     *
+     * @param value Whether this batch groups geometry with commutative blending
+     */
+    public void setCommutativeBlending(boolean value) {
+        commutative = value;
+    }
+
+    /**
+     * Returns true if this batch groups geometry with commutative blending.
+     *
+     * See {@link #setCommutativeBlending} for a description of this mode.
+     *
+     * @return true if this batch groups geometry with commutative blending.
+     */
+    public boolean isCommutativeBlending() {
+        return commutative;
+    }
+
+    /**
+     * Sets whether quad-only batches use the static quad indices.
+     *
+     * Rectangles always use the same index pattern. When this value is true
+     * (the default), a flush where every primitive was a filled rectangle
+     * draws from an index buffer that was uploaded once at construction, and
+     * only the vertices are loaded. Batches with any other geometry, such as
+     * a {@link Poly2} or an outline, still load their indices as normal.
+     *
+     * @param value Whether to draw quad-only batches with static indices
+     */
+    public void setQuadIndexing(boolean value) {
+        quadIndexing = value;
+    }
+
+    /**
+     * Returns true if quad-only batches use the static quad indices.
+     *
+     * Rectangles always use the same index pattern. When this value is true
+     * (the default), a flush where every primitive was a filled rectangle
+     * draws from an index buffer that was uploaded once at construction, and
+     * only the vertices are loaded. Batches with any other geometry, such as
+     * a {@link Poly2} or an outline, still load their indices as normal.
+     *
+     * @return true if quad-only batches use the static quad indices.
+     */
+    public boolean isQuadIndexing() {
+        return quadIndexing;
+    }
+
+    /**
+     * Sets whether vertices are copied straight into mapped graphics memory.
+     *
+     * By default, a flush copies the vertices into a direct buffer and then
+     * hands that buffer to OpenGL, which copies them again. When this value is
+     * true, the flush maps the vertex buffer range instead and writes the
+     * vertices into it directly (see {@link CUVertexBuffer#loadMappedVertexData}).
+     * This saves a full copy of the vertex stream, which matters for batches
+     * with tens of thousands of vertices. Some drivers map buffers slowly, so
+     * this value is false by default.
+     *
+     * @param value Whether to copy vertices into mapped graphics memory
+     */
+    public void setMappedUploads(boolean value) {
+        mappedUploads = value;
+    }
+
+    /**
+     * Returns true if vertices are copied straight into mapped graphics memory.
+     *
+     * By default, a flush copies the vertices into a direct buffer and then
+     * hands that buffer to OpenGL, which copies them again. When this value is
+     * true, the flush maps the vertex buffer range instead and writes the
+     * vertices into it directly (see {@link CUVertexBuffer#loadMappedVertexData}).
+     *
+     * @return true if vertices are copied straight into mapped graphics memory
+     */
+    public boolean isMappedUploads() {
+        return mappedUploads;
+    }
+
     /**
      * Sets the active texture of this sprite batch
      *
@@ -659,14 +1254,38 @@ public class CUSpriteBatch implements Batch {
      * subtexture will not cause a pipeline flush.  This is an important
      * argument for using texture atlases.
      *
+     * If the vertices of this sprite batch have a layer attribute, the texture
+     * must be a layer of a {@link CUTextureArray} (or null). Switching between
+     * layers of the same array only changes the layer of new vertices, and
+     * does not cause a pipeline flush either.
+     *
      * @param texture   The active texture for this sprite batch
      */
     public void setTexture(Texture texture) {
+        if (texture instanceof CUTextureArray.Layer) {
+            if (!layerAttribute) {
+                throw new IllegalArgumentException("Texture array layers require vertices with a layer attribute");
+            }
+            CUTextureArray.Layer layer = (CUTextureArray.Layer)texture;
+            if (layer.getIndex() != textureLayer) {
+                writeTextureLayers();
+                textureLayer = layer.getIndex();
+            }
+            texture = layer.getArray().getLayer(0);
+        } else if (layerAttribute && texture != null) {
+            throw new IllegalArgumentException("Only texture array layers may be drawn with a layer attribute");
+        }
         if (texture == context.texture) {
             return;
         }
 
-        if (inflight) { record(); }
+        if (inflight) {
+            stats.textureRecords++;
+            if (heatMap != null) {
+                heatMap.record(context.texture, texture);
+            }
+            record();
+        }
         if (texture == null) {
             // Active texture is not null
             context.dirty = context.dirty | DIRTY_DRAWTYPE;
@@ -711,7 +1330,7 @@ public class CUSpriteBatch implements Batch {
      */
     public void setStencilEffect(CUStencilEffect.Effect effect) {
         if (context.stencil != effect) {
-            if (inflight) { record(); }
+            if (inflight) { stats.stencilRecords++; record(); }
             context.stencil = effect;
             context.dirty = context.dirty | DIRTY_STENCIL_EFFECT;
         }
@@ -745,7 +1364,7 @@ public class CUSpriteBatch implements Batch {
      */
     public void clearStencil() {
         if (context.cleared != CUStencilEffect.STENCIL_BOTH) {
-            if (inflight) { record(); }
+            if (inflight) { stats.stencilRecords++; record(); }
             context.cleared = CUStencilEffect.STENCIL_BOTH;
             context.dirty = context.dirty | DIRTY_STENCIL_CLEAR;
         }
@@ -763,7 +1382,7 @@ public class CUSpriteBatch implements Batch {
     public void clearHalfStencil(boolean lower) {
         int state = lower ? CUStencilEffect.STENCIL_LOWER : CUStencilEffect.STENCIL_UPPER;
         if (context.cleared != state) {
-            if (inflight) { record(); }
+            if (inflight) { stats.stencilRecords++; record(); }
             context.cleared = context.cleared | state;
             context.dirty = context.dirty | DIRTY_STENCIL_CLEAR;
         }
@@ -778,6 +1397,8 @@ public class CUSpriteBatch implements Batch {
         if (drawing) throw new IllegalStateException("SpriteBatch.end must be called before begin.");
         renderCalls = 0;
         vertTotal = 0;
+        depthBase = -1;
+        stats.reset();
 
         Gdx.gl30.glDepthMask(false);
         shader.bind();
@@ -786,6 +1407,13 @@ public class CUSpriteBatch implements Batch {
         unifbuff.deactivate();
 
         context.dirty = DIRTY_ALL_VALS;
+        quadsOnly = true;
+        if (capture != null) {
+            capture.beginFrame();
+        }
+        if (heatMap != null) {
+            heatMap.beginPass();
+        }
 
         drawing = true;
     }
@@ -793,8 +1421,11 @@ public class CUSpriteBatch implements Batch {
     @Override
     public void end () {
         if (!drawing) throw new IllegalStateException("SpriteBatch.begin must be called before end.");
-        if (idx > 0) flush();
+        if (idx > 0) flush(FLUSH_END);
         drawing = false;
+        if (capture != null) {
+            capture.endFrame();
+        }
 
         CUStencilEffect.applyEffect(CUStencilEffect.Effect.NONE);
 
@@ -805,71 +1436,118 @@ public class CUSpriteBatch implements Batch {
 
     @Override
     public void flush () {
+        flush(FLUSH_EXPLICIT);
+    }
+
+    /**
+     * Returns the statistics for the current rendering pass.
+     *
+     * The statistics are reset at every call to {@link #begin()}. After a call
+     * to {@link #end()}, they describe the pass just completed. The object
+     * returned is the one used by this sprite batch, and so it is updated as
+     * the batch draws. It should be treated as read-only. Use
+     * {@link CUBatchStats#set} or {@link #getStats(CUBatchStats)} to keep a
+     * snapshot.
+     *
+     * @return the statistics for the current rendering pass.
+     */
+    public CUBatchStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Copies the statistics for the current rendering pass into result.
+     *
+     * The statistics are reset at every call to {@link #begin()}. After a call
+     * to {@link #end()}, they describe the pass just completed.
+     *
+     * @param result    The object to store the statistics
+     *
+     * @return the result object, for chaining
+     */
+    public CUBatchStats getStats(CUBatchStats result) {
+        return result.set(stats);
+    }
+
+    /**
+     * Flushes the vertices to the graphics card, attributing it to cause.
+     *
+     * The cause is one of FLUSH_CAPACITY, FLUSH_EXPLICIT, FLUSH_UNIFORM, or
+     * FLUSH_END, and is only used to gather statistics.
+     *
+     * @param cause The reason for the flush
+     */
+    private void flush (int cause) {
         if (idx == 0) {
             return;
         } else if (context.first != indxSize) {
             record();
         }
+        writeTextureLayers();
+        if (layered) {
+            sortLayers();
+        } else {
+            if (commutative) {
+                defer();
+            }
+            if (reordering) {
+                reorder();
+            }
+        }
+        Object event = CUFlightRecorder.beginFlush();
+        if (capture != null) {
+            capture.writeFlush(vertices, idx, indxData, indxSize, quadIndexing && quadsOnly,
+                               unifbuff.getCachedData(), unifbuff.getBlockStride(), history);
+        }
+
+        switch (cause) {
+            case FLUSH_CAPACITY:
+                stats.capacityFlushes++;
+                break;
+            case FLUSH_UNIFORM:
+                stats.uniformFlushes++;
+                break;
+            case FLUSH_END:
+                stats.endFlushes++;
+                break;
+            default:
+                stats.explicitFlushes++;
+                break;
+        }
 
-        vertbuff.loadVertexData(vertices, idx);
-        vertbuff.loadIndexData(indxData, indxSize);
+        if (mappedUploads) {
+            vertbuff.loadMappedVertexData(vertices, idx);
+        } else {
+            vertbuff.loadVertexData(vertices, idx);
+        }
+        stats.vertexBytes += 4*idx;
+        if (quadIndexing && quadsOnly) {
+            vertbuff.useQuadIndices();
+        } else {
+            vertbuff.loadIndexData(indxData, indxSize);
+            stats.indexBytes += 2*indxSize;
+        }
 
         unifbuff.activate();
         unifbuff.flush();
+        stats.uniformBytes += unifbuff.getBlockStride()*unifbuff.getBlockCount();
 
-        Texture previous = context.texture;
         history.iter();
-        Context next = null;
-        GL30 gl = Gdx.gl30;
-        while ((next = history.next()) != null) {
-            if ((next.dirty & DIRTY_BLENDSTATE) == DIRTY_BLENDSTATE) {
-                if (next.blending) {
-                    gl.glEnable(GL30.GL_BLEND);
-                    gl.glBlendEquation(next.blendEquation);
-                } else {
-                    gl.glDisable(GL30.GL_BLEND);
-                }
-            }
-            if ((next.dirty & DIRTY_BLENDFACTOR) == DIRTY_BLENDFACTOR) {
-                if (next.srcFactorAlpha != -1 && next.dstFactorAlpha != -1) {
-                    Gdx.gl30.glBlendFuncSeparate( next.srcFactor, next.dstFactor,
-                            next.srcFactorAlpha, next.dstFactorAlpha );
-                } else {
-                    Gdx.gl30.glBlendFunc( next.srcFactor, next.dstFactor );
-                }
-            }
-            if ((next.dirty & DIRTY_DRAWTYPE) == DIRTY_DRAWTYPE) {
-                shader.setUniformi("u_drawtype", next.type);
-            }
-            if ((next.dirty & DIRTY_MATRIX) == DIRTY_MATRIX){
-                projectionMatrix.set(next.perspective).mul(next.transform);
-                shader.setUniformMatrix("u_projTrans", projectionMatrix);
-            }
-            if ((next.dirty & DIRTY_TEXTURE) == DIRTY_TEXTURE) {
-                previous = next.texture;
-                if (previous != null) {
-                    previous.bind();
-                }
-            }
-            if ((next.dirty & DIRTY_UNIBLOCK) == DIRTY_UNIBLOCK) {
-                unifbuff.setBlock(next.blockptr);
-            }
-            if ((next.dirty & DIRTY_BLURSTEP) == DIRTY_BLURSTEP) {
-                blurTexture(next.texture,next.blurstep);
-            }
-            if ((next.dirty & DIRTY_STENCIL_CLEAR) == DIRTY_STENCIL_CLEAR) {
-                CUStencilEffect.clearBuffer(next.cleared);
-            }
-            if ((next.dirty & DIRTY_STENCIL_EFFECT) == DIRTY_STENCIL_EFFECT) {
-                CUStencilEffect.applyEffect(next.stencil);
+        Context next;
+        int draws = 0;
+        if (earlyDepth && hasOpaque()) {
+            draws = drawDepthPasses();
+        } else {
+            while ((next = history.next()) != null) {
+                applyContext(next, next.dirty);
+                drawContext(next);
+                draws++;
             }
-
-            int amt = next.last-next.first;
-            vertbuff.draw(next.command, amt, next.first);
-            renderCalls++;
-            totalRenderCalls++;
         }
+        CUFlightRecorder.endFlush(event, draws, vertSize, indxSize);
 
+        stats.vertices  += vertSize;
+        stats.indices   += indxSize;
         vertTotal += indxSize;
         vertSize = indxSize = 0;
 
@@ -879,6 +1557,8 @@ public class CUSpriteBatch implements Batch {
         context.last = 0;
         context.blockptr = -1;
         idx = 0;
+        textureLayerMark = 0;
+        quadsOnly = true;
     }
 
     //endregion
@@ -1339,14 +2019,14 @@ public class CUSpriteBatch implements Batch {
         setTexture(texture);
         setCommand(GL30.GL_TRIANGLES);
         if (idx + count >= vertices.length || indxSize+(count / (4 * numsInVertex)) * 6 >= indxMax)
-            flush();
+            flush(FLUSH_CAPACITY);
 
         int verticesLength = vertices.length;
         int remainingVertices = verticesLength;
 
         remainingVertices -= idx;
         if (remainingVertices == 0) {
-            flush();
+            flush(FLUSH_CAPACITY);
             remainingVertices = verticesLength;
         }
 
@@ -1365,15 +2045,19 @@ public class CUSpriteBatch implements Batch {
 
         int copyCount = Math.min(remainingVertices, count);
 
+        // The given vertices have their own layers (if any)
+        writeTextureLayers();
         System.arraycopy(spriteVertices, offset, vertices, idx, copyCount);
         idx += copyCount;
+        textureLayerMark = idx;
         count -= copyCount;
         while (count > 0) {
             offset += copyCount;
-            flush();
+            flush(FLUSH_CAPACITY);
             copyCount = Math.min(verticesLength, count);
             System.arraycopy(spriteVertices, offset, vertices, 0, copyCount);
             idx += copyCount;
+            textureLayerMark = idx;
             count -= copyCount;
         }
 
@@ -1495,9 +2179,673 @@ public class CUSpriteBatch implements Batch {
         setTexture(texture);
         fill(poly, x, y, transform);
     }
+
+    /**
+     * Draws a collection of sprites stored as parallel arrays.
+     *
+     * This is a bulk alternative to calling {@link #draw(TextureRegion, float, float,
+     * float, float, float, float, float, float, float)} once per sprite. All of the
+     * sprites must use the given texture, and each one is identified by an entry
+     * in the regions array. Sprite i is the region regions[region[offset+i]],
+     * positioned at (x,y), scaled uniformly about its origin and then rotated
+     * (in degrees) about that same origin. The color array holds packed colors
+     * (see {@link Color#toFloatBits}). If it is null, all sprites use the
+     * current color of this sprite batch.
+     *
+     * Vertices and indices are written directly into the batch buffers, with
+     * a single capacity check for each run of sprites that fits. It does not
+     * go through the transform cache or the general {@link #prepare} methods.
+     *
+     * @param texture   The texture shared by all sprites
+     * @param regions   The regions of the texture to draw
+     * @param region    The index into regions for each sprite
+     * @param x         The x-coordinate of each sprite in screen space
+     * @param y         The y-coordinate of each sprite in screen space
+     * @param originX   The x-coordinate of each rotation origin
+     * @param originY   The y-coordinate of each rotation origin
+     * @param scale     The uniform scale factor of each sprite
+     * @param rotation  The amount to rotate each sprite in degrees
+     * @param color     The packed color of each sprite (or null)
+     * @param offset    The first sprite to draw in each array
+     * @param count     The number of sprites to draw
+     */
+    public void drawSprites(Texture texture, TextureRegion[] regions, int[] region, float[] x, float[] y,
+                            float[] originX, float[] originY, float[] scale, float[] rotation,
+                            float[] color, int offset, int count) {
+        if (!drawing) throw new IllegalStateException("SpriteBatch.begin must be called before draw.");
+
+        setTexture(texture);
+        setCommand(GL30.GL_TRIANGLES);
+
+        final int stride = numsInVertex;
+        final boolean gradcoords = numsInVertex >= 7;
+        final float tint = this.colorPacked;
+
+        int next = offset;
+        int last = offset+count;
+        while (next < last) {
+            int room = Math.min((vertices.length-idx)/(4*stride), (indxMax-indxSize)/6)-1;
+            if (room <= 0) {
+                if (idx == 0) {
+                    throw new IllegalStateException("Sprite batch is too small for a single sprite");
+                }
+                flush(FLUSH_CAPACITY);
+                continue;
+            }
+            // This may flush as well, so it must precede the writes
+            setUniformBlock();
+
+            int stop = Math.min(last, next+room);
+            int idx = this.idx;
+            int vert = vertSize;
+            int ind = indxSize;
+            for(int ii = next; ii < stop; ii++) {
+                TextureRegion tr = regions[region[ii]];
+                float w = tr.getRegionWidth();
+                float h = tr.getRegionHeight();
+                float u  = tr.getU();
+                float v  = tr.getV();
+                float u2 = tr.getU2();
+                float v2 = tr.getV2();
+                float clr = color == null ? tint : color[ii];
+
+                float ox = originX[ii];
+                float oy = originY[ii];
+                float s  = scale[ii];
+                float cos = s*MathUtils.cosDeg(rotation[ii]);
+                float sin = s*MathUtils.sinDeg(rotation[ii]);
+                float tx = x[ii] + ox - cos*ox + sin*oy;
+                float ty = y[ii] + oy - sin*ox - cos*oy;
+
+                // Corners in the same order as makeRect
+                vertices[idx  ] = tx;
+                vertices[idx+1] = ty;
+                vertices[idx+2] = clr;
+                vertices[idx+3] = u;
+                vertices[idx+4] = v2;
+                if (gradcoords) {
+                    vertices[idx+5] = u;
+                    vertices[idx+6] = v2;
+                }
+                idx += stride;
+
+                vertices[idx  ] = tx - sin*h;
+                vertices[idx+1] = ty + cos*h;
+                vertices[idx+2] = clr;
+                vertices[idx+3] = u;
+                vertices[idx+4] = v;
+                if (gradcoords) {
+                    vertices[idx+5] = u;
+                    vertices[idx+6] = v;
+                }
+                idx += stride;
+
+                vertices[idx  ] = tx + cos*w - sin*h;
+                vertices[idx+1] = ty + sin*w + cos*h;
+                vertices[idx+2] = clr;
+                vertices[idx+3] = u2;
+                vertices[idx+4] = v;
+                if (gradcoords) {
+                    vertices[idx+5] = u2;
+                    vertices[idx+6] = v;
+                }
+                idx += stride;
+
+                vertices[idx  ] = tx + cos*w;
+                vertices[idx+1] = ty + sin*w;
+                vertices[idx+2] = clr;
+                vertices[idx+3] = u2;
+                vertices[idx+4] = v2;
+                if (gradcoords) {
+                    vertices[idx+5] = u2;
+                    vertices[idx+6] = v2;
+                }
+                idx += stride;
+
+                indxData[ind  ] = (short) vert;
+                indxData[ind+1] = (short)(vert+1);
+                indxData[ind+2] = (short)(vert+2);
+                indxData[ind+3] = (short)(vert+2);
+                indxData[ind+4] = (short)(vert+3);
+                indxData[ind+5] = (short) vert;
+                ind  += 6;
+                vert += 4;
+            }
+
+            this.idx = idx;
+            vertSize = vert;
+            indxSize = ind;
+            next = stop;
+            inflight = true;
+        }
+    }
+    //endregion
+
+    //region Direct Access
+    /**
+     * Returns a writer for the given number of vertices and indices.
+     *
+     * This method is intended for advanced renderers (particles, text, custom
+     * meshes) that want to write many primitives at once. It performs a single
+     * capacity check, flushing if necessary, and then reserves space in the
+     * batch buffers. The writer is positioned at the start of this space, and
+     * all indices written through it are offset by the base vertex. It does
+     * not check bounds, so the caller must write exactly the number of
+     * vertices and indices reserved.
+     *
+     * The reserved primitives are drawn with the current drawing command and
+     * the current state (texture, gradient, scissor, and so on). The writer is
+     * only valid until the next call to any method of this sprite batch. The
+     * same writer object is reused by every call to this method.
+     *
+     * @param vertexCount   The number of vertices to reserve
+     * @param indexCount    The number of indices to reserve
+     *
+     * @return a writer for the given number of vertices and indices.
+     */
+    public VertexWriter reserve(int vertexCount, int indexCount) {
+        if (!drawing) throw new IllegalStateException("SpriteBatch.begin must be called before reserve.");
+        if (vertexCount < 0 || numsInVertex*vertexCount >= vertices.length) {
+            throw new IllegalArgumentException("Vertex count is out of range: "+vertexCount);
+        } else if (indexCount < 0 || indexCount > indxMax) {
+            throw new IllegalArgumentException("Index count is out of range: "+indexCount);
+        }
+
+        if (idx + (numsInVertex * vertexCount) >= vertices.length || indxSize+indexCount > indxMax) {
+            flush(FLUSH_CAPACITY);
+        }
+        // This may flush as well, so it must precede the reservation
+        setUniformBlock();
+
+        writer.vertex = idx;
+        writer.index  = indxSize;
+        writer.base   = vertSize;
+        quadsOnly = false;
+
+        idx += numsInVertex * vertexCount;
+        vertSize += vertexCount;
+        indxSize += indexCount;
+
+        inflight = true;
+        return writer;
+    }
+
+    /**
+     * A writer over the vertex and index arrays of a sprite batch.
+     *
+     * This class is returned by {@link #reserve}. It writes vertices in the
+     * format expected by the sprite batch shader: position, packed color,
+     * texture coordinates and (if the batch has 7 floats per vertex) gradient
+     * coordinates. Indices are relative to the first reserved vertex, as the
+     * base vertex is added automatically.
+     *
+     * The fields are exposed for renderers that would prefer to write to the
+     * arrays themselves. In that case the position fields should be advanced
+     * by the caller.
+     */
+    public static class VertexWriter {
+        /** The batch vertex array */
+        public final float[] vertices;
+        /** The batch index array */
+        public final short[] indices;
+        /** The number of floats in each vertex */
+        public final int stride;
+        /** The position in the vertex array of the next float to write */
+        public int vertex;
+        /** The position in the index array of the next index to write */
+        public int index;
+        /** The base vertex added to every index */
+        public int base;
+
+        /**
+         * Creates a writer for the given arrays
+         *
+         * @param vertices  The batch vertex array
+         * @param indices   The batch index array
+         * @param stride    The number of floats in each vertex
+         */
+        VertexWriter(float[] vertices, short[] indices, int stride) {
+            this.vertices = vertices;
+            this.indices = indices;
+            this.stride = stride;
+        }
+
+        /**
+         * Writes a single vertex and advances the vertex position.
+         *
+         * If the batch has gradient coordinates, they are the same as the
+         * texture coordinates.
+         *
+         * @param x     The x-coordinate in screen space
+         * @param y     The y-coordinate in screen space
+         * @param color The packed vertex color
+         * @param u     The texture u-coordinate
+         * @param v     The texture v-coordinate
+         *
+         * @return this writer, returned for chaining
+         */
+        public VertexWriter vertex(float x, float y, float color, float u, float v) {
+            int pos = vertex;
+            vertices[pos  ] = x;
+            vertices[pos+1] = y;
+            vertices[pos+2] = color;
+            vertices[pos+3] = u;
+            vertices[pos+4] = v;
+            if (stride >= 7) {
+                vertices[pos+5] = u;
+                vertices[pos+6] = v;
+            }
+            vertex = pos+stride;
+            return this;
+        }
+
+        /**
+         * Writes a single index and advances the index position.
+         *
+         * The index is relative to the first reserved vertex.
+         *
+         * @param i     The vertex index
+         *
+         * @return this writer, returned for chaining
+         */
+        public VertexWriter index(int i) {
+            indices[index++] = (short)(base+i);
+            return this;
+        }
+
+        /**
+         * Writes the indices of a single triangle and advances the index position.
+         *
+         * The indices are relative to the first reserved vertex.
+         *
+         * @param a     The first vertex index
+         * @param b     The second vertex index
+         * @param c     The third vertex index
+         *
+         * @return this writer, returned for chaining
+         */
+        public VertexWriter triangle(int a, int b, int c) {
+            int pos = index;
+            indices[pos  ] = (short)(base+a);
+            indices[pos+1] = (short)(base+b);
+            indices[pos+2] = (short)(base+c);
+            index = pos+3;
+            return this;
+        }
+
+        /**
+         * Writes the indices of a quad as two triangles.
+         *
+         * The quad vertices should be in clockwise order starting at the vertex
+         * index given, as the triangles are (first, first+1, first+2) and
+         * (first+2, first+3, first). This is the same order used by the sprite
+         * batch for rectangles.
+         *
+         * @param first The first vertex index of the quad
+         *
+         * @return this writer, returned for chaining
+         */
+        public VertexWriter quad(int first) {
+            int pos = index;
+            int v = base+first;
+            indices[pos  ] = (short) v;
+            indices[pos+1] = (short)(v+1);
+            indices[pos+2] = (short)(v+2);
+            indices[pos+3] = (short)(v+2);
+            indices[pos+4] = (short)(v+3);
+            indices[pos+5] = (short) v;
+            index = pos+6;
+            return this;
+        }
+    }
+    //endregion
+
+    //region Context Application
+    /**
+     * Applies the state of a recorded context to the graphics pipeline.
+     *
+     * Only the state identified by the dirty bits is applied.
+     *
+     * @param next  The recorded context
+     * @param dirty The state to apply
+     */
+    private void applyContext(Context next, int dirty) {
+        GL30 gl = Gdx.gl30;
+        if ((dirty & DIRTY_BLENDSTATE) == DIRTY_BLENDSTATE) {
+            if (next.blending) {
+                gl.glEnable(GL30.GL_BLEND);
+                gl.glBlendEquation(next.blendEquation);
+            } else {
+                gl.glDisable(GL30.GL_BLEND);
+            }
+        }
+        if ((dirty & DIRTY_BLENDFACTOR) == DIRTY_BLENDFACTOR) {
+            if (next.srcFactorAlpha != -1 && next.dstFactorAlpha != -1) {
+                gl.glBlendFuncSeparate( next.srcFactor, next.dstFactor,
+                        next.srcFactorAlpha, next.dstFactorAlpha );
+            } else {
+                gl.glBlendFunc( next.srcFactor, next.dstFactor );
+            }
+        }
+        if ((dirty & DIRTY_DRAWTYPE) == DIRTY_DRAWTYPE) {
+            shader.setUniformi("u_drawtype", next.type);
+        }
+        if ((dirty & DIRTY_MATRIX) == DIRTY_MATRIX){
+            projectionMatrix.set(next.perspective).mul(next.transform);
+            if (!Float.isNaN(contextDepth)) {
+                float[] val = projectionMatrix.val;
+                val[Matrix4.M20] = 0;
+                val[Matrix4.M21] = 0;
+                val[Matrix4.M23] = contextDepth;
+            }
+            shader.setUniformMatrix("u_projTrans", projectionMatrix);
+        }
+        if ((dirty & DIRTY_TEXTURE) == DIRTY_TEXTURE) {
+            if (next.texture != null) {
+                next.texture.bind();
+            }
+        }
+        if ((dirty & DIRTY_UNIBLOCK) == DIRTY_UNIBLOCK) {
+            unifbuff.setBlock(next.blockptr);
+        }
+        if ((dirty & DIRTY_BLURSTEP) == DIRTY_BLURSTEP) {
+            blurTexture(next.texture,next.blurstep);
+        }
+        if ((dirty & DIRTY_STENCIL_CLEAR) == DIRTY_STENCIL_CLEAR) {
+            CUStencilEffect.clearBuffer(next.cleared);
+        }
+        if ((dirty & DIRTY_STENCIL_EFFECT) == DIRTY_STENCIL_EFFECT) {
+            CUStencilEffect.applyEffect(next.stencil);
+        }
+    }
+
+    /**
+     * Draws the geometry of a recorded context.
+     *
+     * The state of the context should already be applied.
+     *
+     * @param next  The recorded context
+     */
+    private void drawContext(Context next) {
+        int amt = next.last-next.first;
+        vertbuff.draw(next.command, amt, next.first);
+        renderCalls++;
+        totalRenderCalls++;
+        stats.drawCalls++;
+    }
+
+    /**
+     * Returns true if the history should be drawn with early depth testing.
+     *
+     * This is the case if there is opaque geometry, and no stencil clears or
+     * stencil effects that depend upon the drawing order. The recorded contexts
+     * are stored in the segments array as a side effect.
+     *
+     * @return true if the history should be drawn with early depth testing.
+     */
+    private boolean hasOpaque() {
+        segments.clear();
+        history.iter();
+        Context next;
+        boolean opaque = false;
+        boolean ordered = false;
+        while ((next = history.next()) != null) {
+            segments.add(next);
+            opaque = opaque || next.opaque;
+            ordered = ordered || next.cleared != CUStencilEffect.STENCIL_NONE ||
+                      (next.stencil != CUStencilEffect.Effect.NATIVE &&
+                       next.stencil != CUStencilEffect.Effect.NONE);
+        }
+        history.iter();
+        return opaque && !ordered && segments.size <= DEPTH_STEPS;
+    }
+
+    /**
+     * Draws the recorded contexts in an opaque pass and a transparent pass.
+     *
+     * The contexts must be stored in the segments array. Each context gets a
+     * depth from its rank when sorted by (layer, submission order), offset by
+     * the depths used by earlier flushes of this pass. All primitives of a
+     * context share its depth, so the test passes ties to keep their painter's
+     * order. The opaque contexts are drawn front to back with depth writes
+     * and no blending. The other contexts are then drawn in submission order
+     * without depth writes. Finally the pipeline is restored to the state of
+     * the last context, so that the next flush can apply its state changes
+     * as normal.
+     *
+     * @return the number of draw calls
+     */
+    private int drawDepthPasses() {
+        int count = segments.size;
+        if (sortKeys.length < count) {
+            sortKeys  = new long[count];
+            sortOrder = new int[count];
+            sortTemp  = new int[count];
+        }
+        if (depthRanks.length < count) {
+            depthRanks = new int[count];
+        }
+        for (int ii = 0; ii < count; ii++) {
+            long layer = (segments.get(ii).layer ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+            sortKeys[ii] = layer << 32 | ii;
+        }
+        java.util.Arrays.sort(sortKeys, 0, count);
+        for (int ii = 0; ii < count; ii++) {
+            depthRanks[(int)sortKeys[ii]] = ii;
+            sortOrder[ii] = (int)sortKeys[ii];
+        }
+
+        GL30 gl = Gdx.gl30;
+        gl.glDepthMask(true);
+        if (depthBase < 0 || depthBase+count > DEPTH_STEPS) {
+            gl.glClear(GL30.GL_DEPTH_BUFFER_BIT);
+            depthBase = 0;
+        }
+        gl.glEnable(GL30.GL_DEPTH_TEST);
+        gl.glDepthFunc(GL30.GL_LEQUAL);
+        gl.glDisable(GL30.GL_BLEND);
+
+        // Opaque pass, front to back
+        int draws = 0;
+        Context prev = null;
+        for (int ii = count-1; ii >= 0; ii--) {
+            Context next = segments.get(sortOrder[ii]);
+            if (next.opaque) {
+                int dirty = prev == null ? DIRTY_ALL_VALS & ~DIRTY_STENCIL_CLEAR : difference(prev, next);
+                contextDepth = depth(depthRanks[sortOrder[ii]]);
+                applyContext(next, (dirty | DIRTY_MATRIX) & ~DIRTY_BLENDSTATE);
+                drawContext(next);
+                draws++;
+                prev = next;
+            }
+        }
+
+        // Transparent pass, back to front
+        gl.glDepthMask(false);
+        boolean blended = false;
+        for (int ii = 0; ii < count; ii++) {
+            Context next = segments.get(ii);
+            if (!next.opaque) {
+                int dirty = difference(prev, next);
+                if (!blended) {
+                    dirty = dirty | DIRTY_BLENDSTATE | DIRTY_BLENDFACTOR;
+                    blended = true;
+                }
+                contextDepth = depth(depthRanks[ii]);
+                applyContext(next, dirty | DIRTY_MATRIX);
+                drawContext(next);
+                draws++;
+                prev = next;
+            }
+        }
+
+        // Restore the state of the last context
+        gl.glDisable(GL30.GL_DEPTH_TEST);
+        contextDepth = Float.NaN;
+        depthBase += count;
+        Context last = segments.get(count-1);
+        int dirty = difference(prev, last) | DIRTY_MATRIX;
+        if (!blended) {
+            dirty = dirty | DIRTY_BLENDSTATE | DIRTY_BLENDFACTOR;
+        }
+        applyContext(last, dirty);
+        return draws;
+    }
+
+    /**
+     * Returns the normalized device depth for the given rank.
+     *
+     * Higher ranks (and later flushes) are nearer to the viewer, and so have
+     * smaller depth.
+     *
+     * @param rank  The context rank in the current flush
+     *
+     * @return the normalized device depth for the given rank.
+     */
+    private float depth(int rank) {
+        return 1.0f - 2.0f*(depthBase+rank+1)/(DEPTH_STEPS+1);
+    }
+    //endregion
+
+    //region Capture and Replay
+    /**
+     * Sets the capture that receives every flush of this sprite batch.
+     *
+     * While a capture is attached, each flush is written to it in full (see
+     * {@link CUDrawCapture}), and calls to {@link #begin} and {@link #end} mark
+     * the frames. This is slow, and is only meant for reproducing performance
+     * problems offline with {@link CUDrawReplay}. The batch does not own the
+     * capture, and will not dispose it. Set the capture to null to stop.
+     *
+     * This method may not be called while drawing.
+     *
+     * @param capture   The capture to receive every flush (or null)
+     */
+    public void setCapture(CUDrawCapture capture) {
+        if (drawing) throw new IllegalStateException("SpriteBatch.end must be called before setCapture.");
+        this.capture = capture;
+    }
+
+    /**
+     * Returns the capture that receives every flush of this sprite batch.
+     *
+     * If this value is null, no capture is active.
+     *
+     * @return the capture that receives every flush of this sprite batch.
+     */
+    public CUDrawCapture getCapture() {
+        return capture;
+    }
+
+    /**
+     * Sets the heat map that counts the texture switches of this sprite batch.
+     *
+     * While a heat map is attached, each texture switch that splits a draw
+     * call is recorded as a transition from the previous texture to the new
+     * one (see {@link CUTextureHeatMap}). Each call to {@link #begin} starts a
+     * new pass of the heat map. Set the heat map to null to stop.
+     *
+     * This method may not be called while drawing.
+     *
+     * @param heatMap   The heat map to count texture switches (or null)
+     */
+    public void setHeatMap(CUTextureHeatMap heatMap) {
+        if (drawing) throw new IllegalStateException("SpriteBatch.end must be called before setHeatMap.");
+        this.heatMap = heatMap;
+    }
+
+    /**
+     * Returns the heat map that counts the texture switches of this sprite batch.
+     *
+     * If this value is null, no heat map is active.
+     *
+     * @return the heat map that counts the texture switches of this sprite batch.
+     */
+    public CUTextureHeatMap getHeatMap() {
+        return heatMap;
+    }
+
+    /**
+     * Submits a captured flush to the graphics card.
+     *
+     * This is the method used by {@link CUDrawReplay}. Pending geometry is
+     * flushed first. The data is then loaded into this batch as if it had
+     * been drawn, and flushed with the given contexts. As the graphics state
+     * no longer agrees with the active context, the batch reapplies all of
+     * its state on the next flush.
+     *
+     * @param vertexData    The captured vertices (from position to limit)
+     * @param floats        The number of floats in the vertices
+     * @param indexData     The captured indices (or null for quads)
+     * @param count         The number of indices
+     * @param quads         Whether the indices are the standard quad pattern
+     * @param uniforms      The captured uniform buffer (from position to limit)
+     * @param replay        The captured contexts
+     * @param size          The number of captured contexts
+     */
+    void submit(ByteBuffer vertexData, int floats, ByteBuffer indexData, int count, boolean quads,
+                ByteBuffer uniforms, Array<Context> replay, int size) {
+        if (!drawing) throw new IllegalStateException("SpriteBatch.begin must be called before replay.");
+        if (floats > vertices.length || count > indxMax) {
+            throw new IllegalArgumentException("Captured flush exceeds the batch capacity");
+        }
+        flush(FLUSH_EXPLICIT);
+
+        vertexData.asFloatBuffer().get(vertices, 0, floats);
+        if (quads) {
+            for (int ii = 0, jj = 0; ii < count; ii += 6, jj += 4) {
+                indxData[ii  ] = (short)jj;
+                indxData[ii+1] = (short)(jj+1);
+                indxData[ii+2] = (short)(jj+2);
+                indxData[ii+3] = (short)(jj+2);
+                indxData[ii+4] = (short)(jj+3);
+                indxData[ii+5] = (short)jj;
+            }
+        } else {
+            indexData.asShortBuffer().get(indxData, 0, count);
+        }
+        unifbuff.setCachedData(uniforms);
+
+        for (int ii = 0; ii < size; ii++) {
+            Context source = replay.get(ii);
+            Context next = contexts.obtain();
+            next.set(source);
+            next.cleared = source.cleared;
+            next.dirty = source.dirty;
+            history.add(next);
+        }
+
+        idx = floats;
+        textureLayerMark = idx;
+        vertSize = floats/numsInVertex;
+        indxSize = count;
+        quadsOnly = quads;
+        context.first = indxSize;
+        flush(FLUSH_EXPLICIT);
+        context.dirty = DIRTY_ALL_VALS;
+    }
     //endregion
 
     //region Internal Helpers
+    /**
+     * Writes the current texture array layer into the new vertices.
+     *
+     * Vertices are written without their layer attribute. It is filled in
+     * here, for every vertex since the last call, whenever the layer changes
+     * and before each flush. This method does nothing if the vertices have no
+     * layer attribute.
+     */
+    private void writeTextureLayers() {
+        if (!layerAttribute) {
+            return;
+        }
+        float layer = textureLayer;
+        for (int ii = textureLayerMark+numsInVertex-1; ii < idx; ii += numsInVertex) {
+            vertices[ii] = layer;
+        }
+        textureLayerMark = idx;
+    }
+
     /**
      * Fills poly with a mesh defining the given rectangle.
      *
@@ -1544,7 +2892,9 @@ public class CUSpriteBatch implements Batch {
      * will use the correct set of uniforms.
      */
     public void record () {
-        Context next = new Context(context);
+        CUFlightRecorder.record(context.dirty, indxSize-context.first);
+        Context next = contexts.obtain();
+        next.set(context);
         context.last = indxSize;
         next.first = indxSize;
         history.add(context);
@@ -1558,6 +2908,11 @@ public class CUSpriteBatch implements Batch {
      * This method is called upon flushing or cleanup.
      */
     public void unwind() {
+        history.iter();
+        Context next;
+        while ((next = history.next()) != null) {
+            contexts.free(next);
+        }
         history.clear();
     }
 
@@ -1572,7 +2927,7 @@ public class CUSpriteBatch implements Batch {
             return;
         }
         if (context.blockptr+1 >= unifbuff.getBlockCount()) {
-            flush();
+            flush(FLUSH_UNIFORM);
         }
         float[] data = uniformBlockData;
         if (scissor != null) {
@@ -1620,7 +2975,7 @@ public class CUSpriteBatch implements Batch {
      */
     public void prepare(float x, float y, float width, float height) {
         if (idx + (numsInVertex * 4) >= vertices.length || indxSize+8 >= indxMax)
-            flush();
+            flush(FLUSH_CAPACITY);
 
         int idx = this.idx;
         float clr = this.colorPacked;
@@ -1636,7 +2991,7 @@ public class CUSpriteBatch implements Batch {
             vertices[idx + 2] = clr;
             vertices[idx + 3] = x1;
             vertices[idx + 4] = y1;
-            if (numsInVertex == 7) {
+            if (numsInVertex >= 7) {
                 vertices[idx + 5] = x1;
                 vertices[idx + 6] = y1;
             }
@@ -1648,6 +3003,7 @@ public class CUSpriteBatch implements Batch {
         int jj = 0;
         int istart = indxSize;
         int indLength = context.command == GL30.GL_TRIANGLES ? 6 : 8;
+        quadsOnly = quadsOnly && indLength == 6;
         for (int i = 0; i < indLength; i++) {
             indxData[istart+jj] = (short) (vertSize + polyCache.indices[i]);
             jj++;
@@ -1670,7 +3026,7 @@ public class CUSpriteBatch implements Batch {
      */
     public void prepare(int srcX, int srcY, int srcWidth, int srcHeight, float tWidth, float tHeight, boolean flipX, boolean flipY) {
         if (idx + (numsInVertex * 4) >= vertices.length || indxSize+8 >= indxMax)
-            flush();
+            flush(FLUSH_CAPACITY);
 
         int idx = this.idx;
         float clr = this.colorPacked;
@@ -1690,6 +3046,7 @@ public class CUSpriteBatch implements Batch {
         int jj = 0;
         int istart = indxSize;
         int indLength = context.command == GL30.GL_TRIANGLES ? 6 : 8;
+        quadsOnly = quadsOnly && indLength == 6;
         for (int i = 0; i < indLength; i++) {
             indxData[istart+jj] = (short) (vertSize + polyCache.indices[i]);
             jj++;
@@ -1727,7 +3084,7 @@ public class CUSpriteBatch implements Batch {
         vertices[idx + 4] = v;
 
         idx = this.idx;
-        if (numsInVertex == 7) {
+        if (numsInVertex >= 7) {
             vertices[idx + 5] = u;
             vertices[idx + 6] = v;
             idx += numsInVertex;
@@ -1758,7 +3115,7 @@ public class CUSpriteBatch implements Batch {
      */
     public void prepare(float width, float height, float u, float v, float u2, float v2) {
         if (idx + (numsInVertex * 4) >= vertices.length || indxSize+8 >= indxMax)
-            flush();
+            flush(FLUSH_CAPACITY);
 
         int idx = this.idx;
         float clr = this.colorPacked;
@@ -1778,6 +3135,7 @@ public class CUSpriteBatch implements Batch {
         int jj = 0;
         int istart = indxSize;
         int indLength = context.command == GL30.GL_TRIANGLES ? 6 : 8;
+        quadsOnly = quadsOnly && indLength == 6;
         for (int i = 0; i < indLength; i++) {
             indxData[istart+jj] = (short) (vertSize + polyCache.indices[i]);
             jj++;
@@ -1798,7 +3156,7 @@ public class CUSpriteBatch implements Batch {
         vertices[idx + 4] = v;
 
         idx = this.idx;
-        if (numsInVertex == 7) {
+        if (numsInVertex >= 7) {
             vertices[idx + 5] = u;
             vertices[idx + 6] = v;
             idx += numsInVertex;
@@ -1833,8 +3191,9 @@ public class CUSpriteBatch implements Batch {
             return;
         } else if (idx + (numsInVertex * poly.vertices.length) >= vertices.length ||
                 indxSize+poly.indices.length  > indxMax) {
-            flush();
+            flush(FLUSH_CAPACITY);
         }
+        quadsOnly = false;
 
         Texture texture = context.texture;
         float twidth, theight;
@@ -1861,7 +3220,7 @@ public class CUSpriteBatch implements Batch {
             vertices[idx + 2] = clr;
             vertices[idx + 3] = x1;
             vertices[idx + 4] = y1;
-            if (numsInVertex == 7) {
+            if (numsInVertex >= 7) {
                 vertices[idx + 5] = x1;
                 vertices[idx + 6] = y1;
             }
@@ -1900,6 +3259,7 @@ public class CUSpriteBatch implements Batch {
      * @param poly The polygone to add to the buffer
      */
     public void chunkify(Poly2 poly) {
+        stats.chunkifyFallbacks++;
         int chunksize = context.command == GL30.GL_TRIANGLES ? 3 : (context.command == GL30.GL_LINES ? 2 : 1);
 
         Texture texture = context.texture;
@@ -1917,9 +3277,10 @@ public class CUSpriteBatch implements Batch {
         float clr = this.colorPacked;
         for(int ii = 0;  ii < poly.indices.length; ii += chunksize) {
             if (indxSize+chunksize > indxMax || vertSize+chunksize > vertMax) {
-                flush();
+                flush(FLUSH_CAPACITY);
                 offsets.clear();
             }
+            quadsOnly = false;
 
             for(int jj = 0; jj < chunksize; jj++) {
                 int search = offsets.get(poly.indices[ii+jj], -1);
@@ -1938,7 +3299,7 @@ public class CUSpriteBatch implements Batch {
                     vertices[idx + 2] = clr;
                     vertices[idx + 3] = x1;
                     vertices[idx + 4] = y1;
-                    if (numsInVertex == 7) {
+                    if (numsInVertex >= 7) {
                         vertices[idx + 5] = x1;
                         vertices[idx + 6] = y1;
                     }
@@ -1957,6 +3318,658 @@ public class CUSpriteBatch implements Batch {
         offsets.clear();
         inflight = true;
     }
+
+    /**
+     * Merges non-overlapping geometry with compatible state in the history.
+     *
+     * Each recorded context is moved into the earliest group with the same
+     * state, such that its bounds do not overlap anything drawn by the groups
+     * after it. A grid of screen cells tracks the latest group to touch each
+     * cell, so the groups that a context cannot move past are found in time
+     * proportional to its size. The index data and history are then rebuilt
+     * with one context per group.
+     */
+    private void reorder() {
+        segments.clear();
+        history.iter();
+        Context next;
+        while ((next = history.next()) != null) {
+            segments.add(next);
+        }
+        int count = segments.size;
+        if (count < 3) {
+            return;
+        }
+        if (groupNext.length < count) {
+            groupNext = new int[count];
+            groupHead = new int[count];
+            groupTail = new int[count];
+        }
+
+        java.util.Arrays.fill(reorderGrid, -1);
+        groups.clear();
+        for (int ii = 0; ii < count; ii++) {
+            Context seg = segments.get(ii);
+            int[] cells = reorderCells;
+            if (isBarrier(seg)) {
+                cells[0] = cells[1] = 0;
+                cells[2] = cells[3] = REORDER_GRID-1;
+            } else {
+                computeCells(seg, cells);
+            }
+
+            int floor = 0;
+            for (int yy = cells[1]; yy <= cells[3]; yy++) {
+                for (int xx = cells[0]; xx <= cells[2]; xx++) {
+                    floor = Math.max(floor, reorderGrid[yy*REORDER_GRID+xx]);
+                }
+            }
+
+            int target = -1;
+            if (!isBarrier(seg)) {
+                for (int gg = floor; target == -1 && gg < groups.size; gg++) {
+                    if (isCompatible(groups.get(gg), seg)) {
+                        target = gg;
+                    }
+                }
+            }
+            groupNext[ii] = -1;
+            if (target == -1) {
+                target = groups.size;
+                groups.add(seg);
+                groupHead[target] = ii;
+            } else {
+                groupNext[groupTail[target]] = ii;
+            }
+            groupTail[target] = ii;
+
+            for (int yy = cells[1]; yy <= cells[3]; yy++) {
+                for (int xx = cells[0]; xx <= cells[2]; xx++) {
+                    int pos = yy*REORDER_GRID+xx;
+                    reorderGrid[pos] = Math.max(reorderGrid[pos], target);
+                }
+            }
+        }
+
+        if (groups.size < count) {
+            regroup();
+        }
+    }
+
+    /**
+     * Defers the contexts with a commutative blend function to a barrier.
+     *
+     * Each commutative context is moved into a deferred group with the same
+     * state, and the deferred groups are emitted in order at each barrier.
+     * All pending groups share the same class of blend function, as (say)
+     * additive and multiplicative blending do not commute with each other.
+     * Other contexts keep their order, and are merged with the group before
+     * them if that group has the same state.
+     */
+    private void defer() {
+        segments.clear();
+        history.iter();
+        Context next;
+        while ((next = history.next()) != null) {
+            segments.add(next);
+        }
+        int count = segments.size;
+        if (count < 3) {
+            return;
+        }
+        if (groupNext.length < count) {
+            groupNext = new int[count];
+            groupHead = new int[count];
+            groupTail = new int[count];
+        }
+
+        groups.clear();
+        deferGroups.clear();
+        deferHead.clear();
+        deferTail.clear();
+        int pending = 0;
+        boolean moved = false;
+        for (int ii = 0; ii < count; ii++) {
+            Context seg = segments.get(ii);
+            groupNext[ii] = -1;
+            boolean barrier = isBarrier(seg);
+            int kind = barrier ? 0 : blendClass(seg);
+            if (barrier || (kind != 0 && kind != pending)) {
+                emitDeferred();
+                pending = 0;
+            }
+            if (kind != 0) {
+                int target = -1;
+                for (int gg = 0; target == -1 && gg < deferGroups.size; gg++) {
+                    if (isCompatible(deferGroups.get(gg), seg)) {
+                        target = gg;
+                    }
+                }
+                if (target == -1) {
+                    deferGroups.add(seg);
+                    deferHead.add(ii);
+                    deferTail.add(ii);
+                } else {
+                    groupNext[deferTail.get(target)] = ii;
+                    deferTail.set(target, ii);
+                }
+                pending = kind;
+            } else {
+                int last = groups.size-1;
+                if (last >= 0 && isCompatible(groups.get(last), seg)) {
+                    groupNext[groupTail[last]] = ii;
+                    groupTail[last] = ii;
+                } else {
+                    groups.add(seg);
+                    groupHead[groups.size-1] = ii;
+                    groupTail[groups.size-1] = ii;
+                }
+            }
+            moved = moved || deferGroups.size > 0;
+        }
+        emitDeferred();
+
+        if (moved || groups.size < count) {
+            regroup();
+        }
+    }
+
+    /**
+     * Appends the pending deferred groups to the reordered groups.
+     */
+    private void emitDeferred() {
+        for (int gg = 0; gg < deferGroups.size; gg++) {
+            groups.add(deferGroups.get(gg));
+            groupHead[groups.size-1] = deferHead.get(gg);
+            groupTail[groups.size-1] = deferTail.get(gg);
+        }
+        deferGroups.clear();
+        deferHead.clear();
+        deferTail.clear();
+    }
+
+    /**
+     * Returns the class of commutative blend function used by seg.
+     *
+     * Contexts in the same (nonzero) class may be drawn in any order. The
+     * classes are 1 for addition, 2 for reverse subtraction, 3 for
+     * multiplication, 4 for minimum, and 5 for maximum. The value is 0 if
+     * the blend function is not commutative.
+     *
+     * @param seg   The recorded context
+     *
+     * @return the class of commutative blend function used by seg.
+     */
+    private int blendClass(Context seg) {
+        if (!seg.blending) {
+            return 0;
+        }
+        switch (seg.blendEquation) {
+            case GL30.GL_MIN:
+                return 4;
+            case GL30.GL_MAX:
+                return 5;
+            case GL30.GL_FUNC_ADD:
+            case GL30.GL_FUNC_REVERSE_SUBTRACT:
+                break;
+            default:
+                return 0;
+        }
+        int kind = blendClass(seg.srcFactor, seg.dstFactor, false);
+        if (seg.srcFactorAlpha != -1 && seg.dstFactorAlpha != -1 &&
+            blendClass(seg.srcFactorAlpha, seg.dstFactorAlpha, true) != kind) {
+            return 0;
+        } else if (kind == 1 && seg.blendEquation == GL30.GL_FUNC_REVERSE_SUBTRACT) {
+            return 2;
+        } else if (kind == 3 && seg.blendEquation != GL30.GL_FUNC_ADD) {
+            return 0;
+        }
+        return kind;
+    }
+
+    /**
+     * Returns the class of commutative blending for the given factors.
+     *
+     * The result is 1 if the destination is only added to, 3 if it is only
+     * multiplied, and 0 otherwise.
+     *
+     * @param src   The source factor
+     * @param dst   The destination factor
+     * @param alpha Whether these are the alpha factors
+     *
+     * @return the class of commutative blending for the given factors.
+     */
+    private static int blendClass(int src, int dst, boolean alpha) {
+        if (dst == GL30.GL_ONE && isSourceFactor(src)) {
+            return 1;
+        } else if (src == GL30.GL_ZERO && isSourceFactor(dst)) {
+            return 3;
+        } else if (dst == GL30.GL_ZERO && src == (alpha ? GL30.GL_DST_ALPHA : GL30.GL_DST_COLOR)) {
+            return 3;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns true if the blend factor does not depend on the destination.
+     *
+     * @param factor    The blend factor
+     *
+     * @return true if the blend factor does not depend on the destination.
+     */
+    private static boolean isSourceFactor(int factor) {
+        switch (factor) {
+            case GL30.GL_ZERO:
+            case GL30.GL_ONE:
+            case GL30.GL_SRC_COLOR:
+            case GL30.GL_ONE_MINUS_SRC_COLOR:
+            case GL30.GL_SRC_ALPHA:
+            case GL30.GL_ONE_MINUS_SRC_ALPHA:
+            case GL30.GL_CONSTANT_COLOR:
+            case GL30.GL_ONE_MINUS_CONSTANT_COLOR:
+            case GL30.GL_CONSTANT_ALPHA:
+            case GL30.GL_ONE_MINUS_CONSTANT_ALPHA:
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sorts the recorded contexts by layer and state, merging equal states.
+     *
+     * Each context gets a 128-bit key in two words: the layer and the id of
+     * its blend state in the high word, and the ids of its texture and
+     * remaining state in the low word. Ids are assigned in order of first
+     * appearance in this flush, and so never overflow their 32 bits. The keys
+     * are then sorted with a stable byte-wise radix sort, skipping the bytes
+     * that all keys share.
+     *
+     * A stencil clear is a sort barrier. The contexts are split into runs at
+     * each context that clears the stencil buffer, and each run is sorted on
+     * its own. The clear is then moved to the first context of its sorted
+     * run, so that it still precedes all of the geometry of that run.
+     */
+    private void sortLayers() {
+        segments.clear();
+        history.iter();
+        Context next;
+        while ((next = history.next()) != null) {
+            segments.add(next);
+        }
+        int count = segments.size;
+        if (count < 2) {
+            return;
+        }
+        if (sortKeys.length < count) {
+            sortKeys  = new long[count];
+            sortOrder = new int[count];
+            sortTemp  = new int[count];
+        }
+        if (sortLows.length < count) {
+            sortLows = new long[count];
+            sortBlendChain = new int[count];
+            sortStateChain = new int[count];
+        }
+        if (groupNext.length < count) {
+            groupNext = new int[count];
+            groupHead = new int[count];
+            groupTail = new int[count];
+        }
+
+        sortBlends.clear();
+        sortBlendIds.clear();
+        sortTextures.clear();
+        sortStates.clear();
+        sortStateIds.clear();
+        int textures = 0;
+        int nulltex = -1;
+        for (int ii = 0; ii < count; ii++) {
+            Context seg = segments.get(ii);
+            int blend = sortId(sortBlends, sortBlendIds, sortBlendChain, seg, true);
+            int tex;
+            if (seg.texture == null) {
+                // Maps do not accept null keys
+                if (nulltex == -1) {
+                    nulltex = textures++;
+                }
+                tex = nulltex;
+            } else {
+                tex = sortTextures.get(seg.texture, -1);
+                if (tex == -1) {
+                    tex = textures++;
+                    sortTextures.put(seg.texture, tex);
+                }
+            }
+            int state = sortId(sortStates, sortStateIds, sortStateChain, seg, false);
+            sortKeys[ii] = ((long)(seg.layer ^ Integer.MIN_VALUE) & 0xFFFFFFFFL) << 32 | blend;
+            sortLows[ii] = (long)tex << 32 | state;
+            sortOrder[ii] = ii;
+        }
+
+        int[] order = sortOrder;
+        int start = 0;
+        for (int ii = 1; ii <= count; ii++) {
+            if (ii == count || segments.get(ii).cleared != CUStencilEffect.STENCIL_NONE) {
+                sortRun(start, ii);
+                Context clear = segments.get(start);
+                Context first = segments.get(order[start]);
+                if (first != clear) {
+                    first.cleared = clear.cleared;
+                    clear.cleared = CUStencilEffect.STENCIL_NONE;
+                }
+                start = ii;
+            }
+        }
+
+        boolean moved = false;
+        groups.clear();
+        for (int ii = 0; ii < count; ii++) {
+            int index = order[ii];
+            Context seg = segments.get(index);
+            moved = moved || index != ii;
+            groupNext[index] = -1;
+            int last = groups.size-1;
+            if (last >= 0 && isSortCompatible(groups.get(last), seg)) {
+                groupNext[groupTail[last]] = index;
+                groupTail[last] = index;
+            } else {
+                groups.add(seg);
+                groupHead[groups.size-1] = index;
+                groupTail[groups.size-1] = index;
+            }
+        }
+
+        if (moved || groups.size < count) {
+            regroup();
+        }
+    }
+
+    /**
+     * Returns true if a sorted context may join the group with the given head.
+     *
+     * This is the same as {@link #isCompatible}, except that the head may
+     * clear the stencil buffer. After sorting, a clear is always at the head
+     * of its run, and so it precedes all of the geometry of the group.
+     *
+     * @param head  The first context of the group
+     * @param seg   The recorded context
+     *
+     * @return true if a sorted context may join the group with the given head.
+     */
+    private boolean isSortCompatible(Context head, Context seg) {
+        return difference(head, seg) == 0 && head.opaque == seg.opaque &&
+               head.command != GL30.GL_POINTS && !isBarrier(seg);
+    }
+
+    /**
+     * Radix sorts the given range of the sort order by the sort keys.
+     *
+     * The sort is stable, and a pass is skipped if every key in the range has
+     * the same byte. Each pass scatters into the scratch space and copies the
+     * range back, so the other ranges of the sort order are untouched.
+     *
+     * @param from  The first position of the range (inclusive)
+     * @param to    The last position of the range (exclusive)
+     */
+    private void sortRun(int from, int to) {
+        int size = to-from;
+        if (size < 2) {
+            return;
+        }
+        int[] order = sortOrder;
+        int[] temp = sortTemp;
+        int[] counts = sortCounts;
+        for (int pass = 0; pass < 16; pass++) {
+            long[] keys = pass < 8 ? sortLows : sortKeys;
+            int shift = (pass & 7)*8;
+            java.util.Arrays.fill(counts, 0);
+            for (int ii = from; ii < to; ii++) {
+                counts[(int)((keys[order[ii]] >>> shift) & 0xFF)+1]++;
+            }
+            if (counts[(int)((keys[order[from]] >>> shift) & 0xFF)+1] == size) {
+                continue;
+            }
+            for (int ii = 1; ii < counts.length; ii++) {
+                counts[ii] += counts[ii-1];
+            }
+            for (int ii = from; ii < to; ii++) {
+                int seg = order[ii];
+                temp[from+counts[(int)((keys[seg] >>> shift) & 0xFF)]++] = seg;
+            }
+            System.arraycopy(temp, from, order, from, size);
+        }
+    }
+
+    /**
+     * Returns the id of the state of seg within the given representatives.
+     *
+     * If no representative has the same state, seg is added as a new one.
+     * The representatives are found by hash, and the chain links those with
+     * the same hash, so this takes constant time for each context.
+     *
+     * @param states    The representatives of each distinct state
+     * @param ids       The first representative with each hash
+     * @param chain     The next representative with the same hash (or -1)
+     * @param seg       The recorded context
+     * @param blend     Whether to compare the blend state (or the other state)
+     *
+     * @return the id of the state of seg within the given representatives.
+     */
+    private int sortId(Array<Context> states, IntIntMap ids, int[] chain, Context seg, boolean blend) {
+        int mask = DIRTY_BLENDSTATE | DIRTY_BLENDFACTOR;
+        int hash = blend ? blendHash(seg) : stateHash(seg);
+        int first = ids.get(hash, -1);
+        for (int ii = first; ii != -1; ii = chain[ii]) {
+            int diff = difference(states.get(ii), seg) & ~DIRTY_TEXTURE;
+            if ((blend && (diff & mask) == 0) || (!blend && (diff & ~mask) == 0)) {
+                return ii;
+            }
+        }
+        int id = states.size;
+        chain[id] = first;
+        ids.put(hash, id);
+        states.add(seg);
+        return id;
+    }
+
+    /**
+     * Returns a hash of the blend state of a context.
+     *
+     * Contexts with the same blend state (see {@link #difference}) have the
+     * same hash.
+     *
+     * @param seg   The recorded context
+     *
+     * @return a hash of the blend state of a context.
+     */
+    private static int blendHash(Context seg) {
+        int hash = seg.blending ? 1 : 0;
+        hash = 31*hash+seg.blendEquation;
+        hash = 31*hash+seg.srcFactor;
+        hash = 31*hash+seg.dstFactor;
+        hash = 31*hash+seg.srcFactorAlpha;
+        hash = 31*hash+seg.dstFactorAlpha;
+        return hash;
+    }
+
+    /**
+     * Returns a hash of the state of a context other than blending and texture.
+     *
+     * Contexts with the same remaining state (see {@link #difference}) have
+     * the same hash.
+     *
+     * @param seg   The recorded context
+     *
+     * @return a hash of the state of a context other than blending and texture.
+     */
+    private static int stateHash(Context seg) {
+        int hash = seg.command;
+        hash = 31*hash+seg.type;
+        hash = 31*hash+java.util.Arrays.hashCode(seg.perspective.val);
+        hash = 31*hash+java.util.Arrays.hashCode(seg.transform.val);
+        hash = 31*hash+System.identityHashCode(seg.stencil);
+        hash = 31*hash+seg.blockptr;
+        hash = 31*hash+seg.blurstep;
+        return hash;
+    }
+
+    /**
+     * Rebuilds the index data and history from the reordered groups.
+     *
+     * The groups are stored as linked lists of the recorded contexts. The
+     * first context of each group absorbs the others, which are returned to
+     * the pool. The dirty bits are recomputed for the new order.
+     */
+    private void regroup() {
+        if (reorderIndices == null) {
+            reorderIndices = new short[indxData.length];
+        }
+        if (reorderStart == null) {
+            reorderStart = new Context();
+        }
+        Context first = segments.get(0);
+        reorderStart.set(first);
+        reorderStart.dirty = first.dirty;
+
+        history.clear();
+        int pos = 0;
+        Context prev = reorderStart;
+        for (int gg = 0; gg < groups.size; gg++) {
+            Context head = groups.get(gg);
+            int start = pos;
+            int ii = groupHead[gg];
+            while (ii != -1) {
+                Context seg = segments.get(ii);
+                int amt = seg.last-seg.first;
+                System.arraycopy(indxData, seg.first, reorderIndices, pos, amt);
+                pos += amt;
+                if (seg != head) {
+                    contexts.free(seg);
+                }
+                ii = groupNext[ii];
+            }
+            head.first = start;
+            head.last  = pos;
+            int dirty = difference(prev, head);
+            if (gg == 0) {
+                // Relative to the state before this flush
+                dirty = dirty | reorderStart.dirty;
+            }
+            if (head.cleared != CUStencilEffect.STENCIL_NONE) {
+                dirty = dirty | DIRTY_STENCIL_CLEAR;
+            }
+            head.dirty = dirty;
+            history.add(head);
+            prev = head;
+        }
+        System.arraycopy(reorderIndices, 0, indxData, 0, pos);
+        quadsOnly = false;
+    }
+
+    /**
+     * Returns true if no geometry may be reordered across this context.
+     *
+     * @param seg   The recorded context
+     *
+     * @return true if no geometry may be reordered across this context.
+     */
+    private boolean isBarrier(Context seg) {
+        return seg.cleared != CUStencilEffect.STENCIL_NONE || seg.command == GL30.GL_POINTS;
+    }
+
+    /**
+     * Returns true if the two contexts draw with the same state.
+     *
+     * @param a The first context
+     * @param b The second context
+     *
+     * @return true if the two contexts draw with the same state.
+     */
+    private boolean isCompatible(Context a, Context b) {
+        return difference(a, b) == 0 && a.opaque == b.opaque && !isBarrier(a) && !isBarrier(b);
+    }
+
+    /**
+     * Returns the dirty bits for the state that differs between two contexts.
+     *
+     * @param a The first context
+     * @param b The second context
+     *
+     * @return the dirty bits for the state that differs between two contexts.
+     */
+    private int difference(Context a, Context b) {
+        int dirty = 0;
+        if (a.command != b.command) {
+            dirty = dirty | DIRTY_COMMAND;
+        }
+        if (a.blending != b.blending || a.blendEquation != b.blendEquation) {
+            dirty = dirty | DIRTY_BLENDSTATE;
+        }
+        if (a.srcFactor != b.srcFactor || a.dstFactor != b.dstFactor ||
+            a.srcFactorAlpha != b.srcFactorAlpha || a.dstFactorAlpha != b.dstFactorAlpha) {
+            dirty = dirty | DIRTY_BLENDFACTOR;
+        }
+        if (a.type != b.type) {
+            dirty = dirty | DIRTY_DRAWTYPE;
+        }
+        if (!java.util.Arrays.equals(a.perspective.val, b.perspective.val) ||
+            !java.util.Arrays.equals(a.transform.val, b.transform.val)) {
+            dirty = dirty | DIRTY_MATRIX;
+        }
+        if (a.stencil != b.stencil) {
+            dirty = dirty | DIRTY_STENCIL_EFFECT;
+        }
+        if (a.texture != b.texture) {
+            dirty = dirty | DIRTY_TEXTURE;
+        }
+        if (a.blockptr != b.blockptr) {
+            dirty = dirty | DIRTY_UNIBLOCK;
+        }
+        if (a.blurstep != b.blurstep) {
+            dirty = dirty | DIRTY_BLURSTEP;
+        }
+        return dirty;
+    }
+
+    /**
+     * Computes the grid cells covered by the geometry of a context.
+     *
+     * The cells are stored as (x0, y0, x1, y1), inclusive. The bounds are
+     * computed in normalized device coordinates, so that contexts with
+     * different matrices can be compared.
+     *
+     * @param seg   The recorded context
+     * @param cells The array to store the cells
+     */
+    private void computeCells(Context seg, int[] cells) {
+        float[] m = reorderMatrix.set(seg.perspective).mul(seg.transform).val;
+        float minx = Float.MAX_VALUE, miny = Float.MAX_VALUE;
+        float maxx = -Float.MAX_VALUE, maxy = -Float.MAX_VALUE;
+        for (int ii = seg.first; ii < seg.last; ii++) {
+            int pos = indxData[ii]*numsInVertex;
+            float x = vertices[pos];
+            float y = vertices[pos+1];
+            float w = m[Matrix4.M30]*x+m[Matrix4.M31]*y+m[Matrix4.M33];
+            if (w == 0) {
+                w = 1;
+            }
+            float nx = (m[Matrix4.M00]*x+m[Matrix4.M01]*y+m[Matrix4.M03])/w;
+            float ny = (m[Matrix4.M10]*x+m[Matrix4.M11]*y+m[Matrix4.M13])/w;
+            minx = Math.min(minx, nx);
+            maxx = Math.max(maxx, nx);
+            miny = Math.min(miny, ny);
+            maxy = Math.max(maxy, ny);
+        }
+        if (seg.first == seg.last) {
+            // Empty geometry covers nothing, but must land somewhere
+            minx = maxx = miny = maxy = -1;
+        }
+        float scale = REORDER_GRID/2.0f;
+        cells[0] = MathUtils.clamp((int)Math.floor((minx+1)*scale), 0, REORDER_GRID-1);
+        cells[1] = MathUtils.clamp((int)Math.floor((miny+1)*scale), 0, REORDER_GRID-1);
+        cells[2] = MathUtils.clamp((int)Math.floor((maxx+1)*scale), 0, REORDER_GRID-1);
+        cells[3] = MathUtils.clamp((int)Math.floor((maxy+1)*scale), 0, REORDER_GRID-1);
+    }
     //endregion
 
     //region Drawing Context
@@ -2006,6 +4019,10 @@ public class CUSpriteBatch implements Batch {
         public int  blurstep;
         /** The dirty bits relative to the previous set of uniforms */
         public int dirty;
+        /** The sorting layer (when the batch is layered) */
+        public int layer;
+        /** Whether the geometry is opaque (for early depth testing) */
+        public boolean opaque;
 
         /**
          * Creates a context of the default uniforms.
@@ -2045,6 +4062,8 @@ public class CUSpriteBatch implements Batch {
             texture  = copy.texture;
             blockptr = copy.blockptr;
             blurstep = copy.blurstep;
+            layer = copy.layer;
+            opaque = copy.opaque;
             dirty = 0;
         }
 
@@ -2070,6 +4089,8 @@ public class CUSpriteBatch implements Batch {
             blurstep = 0;
             type = 0;
             dirty = 0;
+            layer = 0;
+            opaque = false;
         }
 
         /**
@@ -2095,11 +4116,15 @@ public class CUSpriteBatch implements Batch {
             blurstep = 0;
             type = 0;
             dirty = 0;
+            layer = 0;
+            opaque = false;
         }
     }
 
     /** The default vertex capacity */
     public static final int DEFAULT_CAPACITY = 8192;
+    /** The number of grid cells (in each dimension) for reordering */
+    private static final int REORDER_GRID = 32;
 
     /** The drawing type for a textured mesh */
     private static final int TYPE_TEXTURE = 1;
@@ -2109,6 +4134,19 @@ public class CUSpriteBatch implements Batch {
     private static final int TYPE_SCISSOR = 4;
     /** The drawing type for a (simple) texture blur */
     private static final int  TYPE_GAUSSBLUR = 8;
+    /** The drawing type for premultiplied alpha */
+    private static final int TYPE_PREMULTIPLY = 16;
+    /** The drawing type for an additive gradient (in premultiplied mode) */
+    private static final int TYPE_ADDITIVE = 32;
+
+    /** The batch was flushed because the buffers were full */
+    private static final int FLUSH_CAPACITY = 0;
+    /** The batch was flushed by the user */
+    private static final int FLUSH_EXPLICIT = 1;
+    /** The batch was flushed because the uniform blocks were exhausted */
+    private static final int FLUSH_UNIFORM = 2;
+    /** The batch was flushed at the end of the pass */
+    private static final int FLUSH_END = 3;
 
     /** The drawing command has changed */
     private static final int DIRTY_COMMAND = 1;
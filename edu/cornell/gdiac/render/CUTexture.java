@@ -3,12 +3,39 @@ package edu.cornell.gdiac.render;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.*;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
 import com.badlogic.gdx.utils.BufferUtils;
 import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
 
 import java.nio.*;
 
 public class CUTexture extends Texture {
+    /** The OpenGL ES 3 internal format for ETC2 compressed RGB */
+    public static final int GL_COMPRESSED_RGB8_ETC2 = 0x9274;
+    /** The OpenGL ES 3 internal format for ETC2/EAC compressed RGBA */
+    public static final int GL_COMPRESSED_RGBA8_ETC2_EAC = 0x9278;
+    /** The OpenGL ES 3 internal format for EAC compressed red */
+    public static final int GL_COMPRESSED_R11_EAC = 0x9270;
+    /** The OpenGL ES 3 internal format for EAC compressed red-green */
+    public static final int GL_COMPRESSED_RG11_EAC = 0x9272;
+    /** The S3TC extension internal format for DXT1 compressed RGB */
+    public static final int GL_COMPRESSED_RGB_S3TC_DXT1 = 0x83F0;
+    /** The S3TC extension internal format for DXT1 compressed RGBA */
+    public static final int GL_COMPRESSED_RGBA_S3TC_DXT1 = 0x83F1;
+    /** The S3TC extension internal format for DXT3 compressed RGBA */
+    public static final int GL_COMPRESSED_RGBA_S3TC_DXT3 = 0x83F2;
+    /** The S3TC extension internal format for DXT5 compressed RGBA */
+    public static final int GL_COMPRESSED_RGBA_S3TC_DXT5 = 0x83F3;
+    /** The BPTC extension internal format for BC7 compressed RGBA */
+    public static final int GL_COMPRESSED_RGBA_BPTC_UNORM = 0x8E8C;
+    /** The ASTC extension internal format for 4x4 blocks */
+    public static final int GL_COMPRESSED_RGBA_ASTC_4x4 = 0x93B0;
+    /** The ASTC extension internal format for 6x6 blocks */
+    public static final int GL_COMPRESSED_RGBA_ASTC_6x6 = 0x93B4;
+    /** The ASTC extension internal format for 8x8 blocks */
+    public static final int GL_COMPRESSED_RGBA_ASTC_8x8 = 0x93B7;
+
     /**
      * This enum lists the possible texture pixel formats.
      *
@@ -67,6 +94,86 @@ public class CUTexture extends Texture {
          * 8 bits to the stencil.
          */
         DEPTH_STENCIL,
+        /**
+         * ETC2 compressed RGB (no alpha).
+         *
+         * This format uses GL_COMPRESSED_RGB8_ETC2, with 8 bytes for each
+         * 4x4 block. It is supported by every OpenGL ES 3 device.
+         */
+        ETC2_RGB,
+        /**
+         * ETC2 compressed RGB with EAC compressed alpha.
+         *
+         * This format uses GL_COMPRESSED_RGBA8_ETC2_EAC, with 16 bytes for
+         * each 4x4 block. It is supported by every OpenGL ES 3 device.
+         */
+        ETC2_RGBA,
+        /**
+         * EAC compressed single channel (red).
+         *
+         * This format uses GL_COMPRESSED_R11_EAC, with 8 bytes for each 4x4
+         * block. It is supported by every OpenGL ES 3 device.
+         */
+        EAC_R,
+        /**
+         * EAC compressed dual channel (red and green).
+         *
+         * This format uses GL_COMPRESSED_RG11_EAC, with 16 bytes for each 4x4
+         * block. It is supported by every OpenGL ES 3 device.
+         */
+        EAC_RG,
+        /**
+         * S3TC (BC1) compressed RGB with 1-bit alpha.
+         *
+         * This format uses GL_COMPRESSED_RGBA_S3TC_DXT1_EXT, with 8 bytes for
+         * each 4x4 block. It is generally only supported on desktop.
+         */
+        DXT1,
+        /**
+         * S3TC (BC2) compressed RGB with explicit alpha.
+         *
+         * This format uses GL_COMPRESSED_RGBA_S3TC_DXT3_EXT, with 16 bytes for
+         * each 4x4 block. It is generally only supported on desktop.
+         */
+        DXT3,
+        /**
+         * S3TC (BC3) compressed RGB with interpolated alpha.
+         *
+         * This format uses GL_COMPRESSED_RGBA_S3TC_DXT5_EXT, with 16 bytes for
+         * each 4x4 block. It is generally only supported on desktop.
+         */
+        DXT5,
+        /**
+         * BPTC (BC7) compressed RGBA.
+         *
+         * This format uses GL_COMPRESSED_RGBA_BPTC_UNORM, with 16 bytes for
+         * each 4x4 block. It is generally only supported on desktop.
+         */
+        BPTC,
+        /**
+         * ASTC compressed RGBA with 4x4 blocks.
+         *
+         * This format uses GL_COMPRESSED_RGBA_ASTC_4x4_KHR, with 16 bytes for
+         * each block (8 bits per pixel). It is supported by most newer mobile
+         * devices.
+         */
+        ASTC_4x4,
+        /**
+         * ASTC compressed RGBA with 6x6 blocks.
+         *
+         * This format uses GL_COMPRESSED_RGBA_ASTC_6x6_KHR, with 16 bytes for
+         * each block (3.56 bits per pixel). It is supported by most newer
+         * mobile devices.
+         */
+        ASTC_6x6,
+        /**
+         * ASTC compressed RGBA with 8x8 blocks.
+         *
+         * This format uses GL_COMPRESSED_RGBA_ASTC_8x8_KHR, with 16 bytes for
+         * each block (2 bits per pixel). It is supported by most newer mobile
+         * devices.
+         */
+        ASTC_8x8,
         /**
          * A texture format that has is not generally supported by GL30
          *
@@ -92,6 +199,12 @@ public class CUTexture extends Texture {
                     return GL30.GL_DEPTH_COMPONENT;
                 case DEPTH_STENCIL:
                     return GL30.GL_DEPTH_STENCIL;
+                case ETC2_RGB:
+                    return GL30.GL_RGB;
+                case EAC_R:
+                    return GL30.GL_RED;
+                case EAC_RG:
+                    return GL30.GL_RG;
                 case UNSUPPORTED:
                     throw new GdxRuntimeException("Format not supported by GL30");
             }
@@ -121,6 +234,28 @@ public class CUTexture extends Texture {
                     return GL30.GL_DEPTH_COMPONENT32F;
                 case DEPTH_STENCIL:
                     return GL30.GL_DEPTH24_STENCIL8;
+                case ETC2_RGB:
+                    return GL_COMPRESSED_RGB8_ETC2;
+                case ETC2_RGBA:
+                    return GL_COMPRESSED_RGBA8_ETC2_EAC;
+                case EAC_R:
+                    return GL_COMPRESSED_R11_EAC;
+                case EAC_RG:
+                    return GL_COMPRESSED_RG11_EAC;
+                case DXT1:
+                    return GL_COMPRESSED_RGBA_S3TC_DXT1;
+                case DXT3:
+                    return GL_COMPRESSED_RGBA_S3TC_DXT3;
+                case DXT5:
+                    return GL_COMPRESSED_RGBA_S3TC_DXT5;
+                case BPTC:
+                    return GL_COMPRESSED_RGBA_BPTC_UNORM;
+                case ASTC_4x4:
+                    return GL_COMPRESSED_RGBA_ASTC_4x4;
+                case ASTC_6x6:
+                    return GL_COMPRESSED_RGBA_ASTC_6x6;
+                case ASTC_8x8:
+                    return GL_COMPRESSED_RGBA_ASTC_8x8;
                 case UNSUPPORTED:
                     throw new GdxRuntimeException("Format not supported by GL30");
             }
@@ -155,9 +290,134 @@ public class CUTexture extends Texture {
             return GL30.GL_UNSIGNED_BYTE;
         }
 
+        /**
+         * Returns true if this is a block compressed format.
+         *
+         * Compressed formats are uploaded with glCompressedTexImage2D, and cannot
+         * be written to directly (or rendered to).
+         *
+         * @return true if this is a block compressed format.
+         */
+        public boolean isCompressed() {
+            return blockWidth() > 1;
+        }
+
+        /**
+         * Returns the width of a compressed block (1 for uncompressed formats).
+         *
+         * @return the width of a compressed block (1 for uncompressed formats).
+         */
+        public int blockWidth() {
+            switch (this) {
+                case ASTC_6x6:
+                    return 6;
+                case ASTC_8x8:
+                    return 8;
+                case ETC2_RGB:
+                case ETC2_RGBA:
+                case EAC_R:
+                case EAC_RG:
+                case DXT1:
+                case DXT3:
+                case DXT5:
+                case BPTC:
+                case ASTC_4x4:
+                    return 4;
+            }
+            return 1;
+        }
+
+        /**
+         * Returns the number of bytes in a compressed block (or a pixel).
+         *
+         * For uncompressed formats, this is the same as {@link #byteSize}.
+         *
+         * @return the number of bytes in a compressed block (or a pixel).
+         */
+        public int blockBytes() {
+            switch (this) {
+                case ETC2_RGB:
+                case EAC_R:
+                case DXT1:
+                    return 8;
+                case ETC2_RGBA:
+                case EAC_RG:
+                case DXT3:
+                case DXT5:
+                case BPTC:
+                case ASTC_4x4:
+                case ASTC_6x6:
+                case ASTC_8x8:
+                    return 16;
+            }
+            return byteSize();
+        }
+
+        /**
+         * Returns the number of bytes in an image of the given size.
+         *
+         * Compressed images are rounded up to a whole number of blocks. This
+         * method returns -1 if the format is not supported.
+         *
+         * @param width     The image width
+         * @param height    The image height
+         *
+         * @return the number of bytes in an image of the given size.
+         */
+        public int dataSize(int width, int height) {
+            int block = blockWidth();
+            int bytes = blockBytes();
+            if (bytes < 0) {
+                return -1;
+            }
+            return ((width+block-1)/block)*((height+block-1)/block)*bytes;
+        }
+
+        /**
+         * Returns the compressed PixelFormat for an OpenGL internal format.
+         *
+         * This method returns {@link #UNSUPPORTED} if the internal format is not
+         * a compressed format of this enum.
+         *
+         * @param internal  The OpenGL internal format
+         *
+         * @return the compressed PixelFormat for an OpenGL internal format.
+         */
+        public static PixelFormat compressedFormat(int internal) {
+            switch (internal) {
+                case GL_COMPRESSED_RGB8_ETC2:
+                    return ETC2_RGB;
+                case GL_COMPRESSED_RGBA8_ETC2_EAC:
+                    return ETC2_RGBA;
+                case GL_COMPRESSED_R11_EAC:
+                    return EAC_R;
+                case GL_COMPRESSED_RG11_EAC:
+                    return EAC_RG;
+                case GL_COMPRESSED_RGB_S3TC_DXT1:
+                case GL_COMPRESSED_RGBA_S3TC_DXT1:
+                    return DXT1;
+                case GL_COMPRESSED_RGBA_S3TC_DXT3:
+                    return DXT3;
+                case GL_COMPRESSED_RGBA_S3TC_DXT5:
+                    return DXT5;
+                case GL_COMPRESSED_RGBA_BPTC_UNORM:
+                    return BPTC;
+                case GL_COMPRESSED_RGBA_ASTC_4x4:
+                    return ASTC_4x4;
+                case GL_COMPRESSED_RGBA_ASTC_6x6:
+                    return ASTC_6x6;
+                case GL_COMPRESSED_RGBA_ASTC_8x8:
+                    return ASTC_8x8;
+            }
+            return UNSUPPORTED;
+        }
+
         /**
          * Returns the number of bytes in a single pixel of this texture.
          *
+         * Compressed formats have no whole number of bytes per pixel, and so
+         * return -1. Use {@link #dataSize} instead.
+         *
          * @return the number of bytes in a single pixel of this texture.
          */
         public int byteSize() {
@@ -204,6 +464,26 @@ public class CUTexture extends Texture {
 
             return RGBA;
         }
+
+        /**
+         * Returns the PixelFormat of the buffer made by {@link CUTexture#copyPixels}.
+         *
+         * This is the format equivalent to the Pixmap.Format, unless that is
+         * not supported (or premultiply is true and the format is not RGBA8888).
+         * In that case, the pixels are converted to RGBA.
+         *
+         * @param format        The Pixmap.Format
+         * @param premultiply   Whether the pixels are premultiplied by alpha
+         *
+         * @return the PixelFormat of the buffer made by {@link CUTexture#copyPixels}.
+         */
+        public static PixelFormat copyFormat(Pixmap.Format format, boolean premultiply) {
+            PixelFormat result = gl30Format(format);
+            if (result == UNSUPPORTED || (premultiply && format != Pixmap.Format.RGBA8888)) {
+                return RGBA;
+            }
+            return result;
+        }
     }
 
     /**
@@ -220,6 +500,8 @@ public class CUTexture extends Texture {
         private int height;
         /** Whether to use mipmaps */
         private boolean mipmaps;
+        /** The number of mipmap levels in the data (for precomputed mipmaps) */
+        private int levels;
         /** The modern GL30 pixel format */
         private PixelFormat format;
         /** To query OpenGL information */
@@ -242,9 +524,28 @@ public class CUTexture extends Texture {
             this.height = height;
             this.format = format;
             this.mipmaps = mipMaps;
+            this.levels = 1;
             glHandle = 0;
         }
 
+        /**
+         * Creates a TextureData with the given buffer and precomputed mipmaps.
+         *
+         * The buffer must contain every mipmap level, in order from the largest,
+         * with no padding between levels. Each level halves the dimensions of
+         * the previous one (rounding down, but never below 1).
+         *
+         * @param data      The texture data (all levels)
+         * @param width     The texture width in pixels
+         * @param height    The texture height in pixels
+         * @param format    The texture data format
+         * @param levels    The number of mipmap levels in the data
+         */
+        public GL30Data(Buffer data, int width, int height, PixelFormat format, int levels) {
+            this(data, width, height, format, levels > 1);
+            this.levels = levels;
+        }
+
         /**
          * Returns the {@link TextureDataType}
          *
@@ -263,6 +564,25 @@ public class CUTexture extends Texture {
             return true;
         }
 
+        /**
+         * Prepares the TextureData for a call to {@link #consumeCustomData}.
+         *
+         * The data is given at construction, so this method does nothing.
+         */
+        public void prepare () { }
+
+        /**
+         * Returns false, as this data is not reloaded on a context loss.
+         *
+         * Unmanaged textures are the only ones whose contents may be replaced
+         * (e.g. with {@link CUTexture#setPixels}).
+         *
+         * @return false, as this data is not reloaded on a context loss.
+         */
+        public boolean isManaged () {
+            return false;
+        }
+
         /**
          * Returns the {@link Pixmap} of the current texture contents
          *
@@ -312,7 +632,32 @@ public class CUTexture extends Texture {
             int glFormat = format.glFormat();
             int internal = format.internalFormat();
             int datatype = format.formatType();
-            Gdx.gl30.glTexImage2D( GL30.GL_TEXTURE_2D, 0, internal, width, height, 0, glFormat, datatype, data );
+            if (levels == 1 && !format.isCompressed()) {
+                Gdx.gl30.glTexImage2D( GL30.GL_TEXTURE_2D, 0, internal, width, height, 0, glFormat, datatype, data );
+                if (mipmaps && data != null) {
+                    Gdx.gl30.glGenerateMipmap( GL30.GL_TEXTURE_2D );
+                }
+            } else {
+                // Upload each precomputed level from a view of the data
+                ByteBuffer bytes = data == null ? null : ((ByteBuffer)data).duplicate();
+                int offset = bytes == null ? 0 : bytes.position();
+                for (int level = 0; level < levels; level++) {
+                    int w = Math.max(1, width >> level);
+                    int h = Math.max(1, height >> level);
+                    int size = format.isCompressed() ? format.dataSize(w, h) : w*h*format.byteSize();
+                    if (bytes != null) {
+                        ((Buffer)bytes).limit(offset+size);
+                        ((Buffer)bytes).position(offset);
+                    }
+                    if (format.isCompressed()) {
+                        Gdx.gl30.glCompressedTexImage2D( GL30.GL_TEXTURE_2D, level, internal, w, h, 0, size, bytes );
+                    } else {
+                        Gdx.gl30.glTexImage2D( GL30.GL_TEXTURE_2D, level, internal, w, h, 0, glFormat, datatype, bytes );
+                    }
+                    offset += size;
+                }
+                Gdx.gl30.glTexParameteri( GL30.GL_TEXTURE_2D, GL30.GL_TEXTURE_MAX_LEVEL, levels-1 );
+            }
 
             error = Gdx.gl30.glGetError();
             if (error != 0) {
@@ -368,6 +713,147 @@ public class CUTexture extends Texture {
         }
     }
 
+    /**
+     * This class is a managed TextureData that premultiplies an image file.
+     *
+     * The file is read and premultiplied (see {@link #premultiply(Pixmap)})
+     * each time the data is prepared. Hence, unlike a {@link PixmapTextureData},
+     * the texture is restored (still premultiplied) after a context loss.
+     */
+    private static class PremultipliedData implements TextureData {
+        /** The image file */
+        private final FileHandle file;
+        /** Whether to use mipmaps */
+        private final boolean mipmaps;
+        /** The premultiplied image (until consumed) */
+        private Pixmap pixmap;
+        /** The image width */
+        private int width;
+        /** The image height */
+        private int height;
+        /** The image format */
+        private Pixmap.Format format;
+
+        /**
+         * Creates a TextureData for the given file.
+         *
+         * The file is read immediately, to determine its size and format.
+         *
+         * @param file      The image file handle
+         * @param mipMaps	Whether the texture should use mipmaps
+         */
+        public PremultipliedData(FileHandle file, boolean mipMaps) {
+            this.file = file;
+            this.mipmaps = mipMaps;
+            prepare();
+        }
+
+        /**
+         * Returns the {@link TextureDataType}
+         *
+         * @return the {@link TextureDataType}
+         */
+        public TextureDataType getType () {
+            return TextureDataType.Pixmap;
+        }
+
+        /**
+         * Returns whether the TextureData is prepared or not.
+         *
+         * @return whether the TextureData is prepared or not.
+         */
+        public boolean isPrepared () {
+            return pixmap != null;
+        }
+
+        /**
+         * Prepares the TextureData for a call to {@link #consumePixmap}.
+         *
+         * This method reads the file and premultiplies its pixels.
+         */
+        public void prepare () {
+            if (pixmap != null) {
+                throw new GdxRuntimeException( "Already prepared" );
+            }
+            pixmap = premultiply( new Pixmap( file ) );
+            width  = pixmap.getWidth();
+            height = pixmap.getHeight();
+            format = pixmap.getFormat();
+        }
+
+        /**
+         * Returns true, as this data is reloaded from the file on a context loss.
+         *
+         * @return true, as this data is reloaded from the file on a context loss.
+         */
+        public boolean isManaged () {
+            return true;
+        }
+
+        /**
+         * Returns the premultiplied {@link Pixmap} of the file
+         *
+         * A call to {@link #prepare()} must precede a call to this method. In
+         * this class, ownership of the pixmap is transfered to the caller.
+         *
+         * @return the premultiplied {@link Pixmap} of the file
+         */
+        public Pixmap consumePixmap () {
+            if (pixmap == null) {
+                throw new GdxRuntimeException( "Call prepare() before calling consumePixmap()" );
+            }
+            Pixmap result = pixmap;
+            pixmap = null;
+            return result;
+        }
+
+        /**
+         * Returns whether the caller of {@link #consumePixmap()} should dispose the Pixmap
+         *
+         * This class always transfers the ownership of the pixmap.
+         *
+         * @return whether the caller of {@link #consumePixmap()} should dispose the Pixmap
+         */
+        public boolean disposePixmap () { return true; }
+
+        /**
+         * Throws an exception, as this data is a {@link Pixmap}.
+         */
+        public void consumeCustomData(int target) {
+            throw new GdxRuntimeException( "This TextureData implementation does not upload data itself" );
+        }
+
+        /**
+         * Returns the width of the pixel data
+         *
+         * @return the width of the pixel data
+         */
+        public int getWidth () { return width; }
+
+        /**
+         * Returns the height of the pixel data
+         *
+         * @return the height of the pixel data
+         */
+        public int getHeight () { return height; }
+
+        /**
+         * Returns the {@link Pixmap.Format} of the pixel data
+         *
+         * @return the {@link Pixmap.Format} of the pixel data
+         */
+        public Pixmap.Format getFormat () { return format; }
+
+        /**
+         * Returns whether to generate mipmaps or not
+         *
+         * @return whether to generate mipmaps or not.
+         */
+        public boolean useMipMaps () {
+            return mipmaps;
+        }
+    }
+
     /**
      * This array is the data of a white image with 2 by 2 dimension.
      * It's used for creating a default texture when the texture is a nullptr.
@@ -381,6 +867,11 @@ public class CUTexture extends Texture {
     };
 
     //region Friends
+    /** The maximum number of separate dirty rectangles before they are merged */
+    private static final int MAX_DIRTY_RECTS = 16;
+    /** The residency manager tracking new textures (or null) */
+    private static CUTextureResidency residency;
+
     /** The blank texture corresponding to cu_2x2_white_image */
     private static CUTexture BLANK = null;
 
@@ -393,6 +884,24 @@ public class CUTexture extends Texture {
     /** The bind point assigned to this texture (default 0) */
     private int bindpoint;
 
+    /** Whether the color channels of this texture are premultiplied by alpha */
+    private boolean premultiplied;
+
+    /** The ring of pixel unpack buffers for streamed uploads (or null) */
+    private IntBuffer streamBuffers;
+    /** The number of pixel unpack buffers in the ring */
+    private int streamCount = 2;
+    /** The next pixel unpack buffer in the ring */
+    private int streamIndex;
+    /** Whether a pixel unpack buffer is currently mapped */
+    private boolean streamMapped;
+
+    /** The dirty rectangles awaiting upload, as (x, y, width, height) */
+    private final IntArray dirtyRects = new IntArray();
+
+    /** The residency of this texture (or null if not tracked) */
+    CUTextureResidency.Entry residence;
+
     /** To query OpenGL information */
     private IntBuffer query = BufferUtils.newByteBuffer( 4*16 ).asIntBuffer();
     //endregion
@@ -411,6 +920,7 @@ public class CUTexture extends Texture {
         super(internalPath);
         pixelFormat = PixelFormat.gl30Format(getTextureData().getFormat());
         name = internalPath;
+        track(Gdx.files.internal(internalPath));
     }
 
     /**
@@ -426,6 +936,7 @@ public class CUTexture extends Texture {
         super(file);
         pixelFormat = PixelFormat.gl30Format(getTextureData().getFormat());
         name = file.toString();
+        track(file);
     }
 
     /**
@@ -442,6 +953,7 @@ public class CUTexture extends Texture {
         super(file, mipMaps);
         pixelFormat = PixelFormat.gl30Format(getTextureData().getFormat());
         name = file.toString();
+        track(file);
     }
 
     /**
@@ -457,6 +969,7 @@ public class CUTexture extends Texture {
         super(pixmap);
         pixelFormat = PixelFormat.gl30Format(getTextureData().getFormat());
         name = pixmap.toString();
+        track(null);
     }
 
     /**
@@ -473,6 +986,56 @@ public class CUTexture extends Texture {
         super(pixmap, mipMaps);
         pixelFormat = PixelFormat.gl30Format(getTextureData().getFormat());
         name = pixmap.toString();
+        track(null);
+    }
+
+    /**
+     * Creates a texture from the given file, optionally premultiplying alpha
+     *
+     * Initializing a texture requires the use of the binding point at 0.
+     * Any texture bound to that point will be unbound. Instead, this
+     * texture will be bound in its place.
+     *
+     * If premultiply is true, the color channels of the image are multiplied
+     * by alpha before they are uploaded. Such a texture should be drawn by a
+     * {@link CUSpriteBatch} in premultiplied mode. The texture is managed, so
+     * the file is read and premultiplied again after a context loss.
+     *
+     * @param file          The image file handle
+     * @param mipMaps       Whether the texture should use mipmaps
+     * @param premultiply   Whether to premultiply the color channels by alpha
+     */
+    public CUTexture (FileHandle file, boolean mipMaps, boolean premultiply) {
+        super(premultiply ?
+              new PremultipliedData(file, mipMaps) :
+              TextureData.Factory.loadFromFile(file, mipMaps));
+        pixelFormat = PixelFormat.gl30Format(getTextureData().getFormat());
+        name = file.toString();
+        premultiplied = premultiply;
+        track(file);
+    }
+
+    /**
+     * Creates a texture from the given Pixmap, optionally premultiplying alpha
+     *
+     * Initializing a texture requires the use of the binding point at 0.
+     * Any texture bound to that point will be unbound. Instead, this
+     * texture will be bound in its place.
+     *
+     * If premultiply is true, the color channels of the pixmap are multiplied
+     * by alpha (in place) before they are uploaded. Such a texture should be
+     * drawn by a {@link CUSpriteBatch} in premultiplied mode.
+     *
+     * @param pixmap        The pixmap source
+     * @param mipMaps       Whether the texture should use mipmaps
+     * @param premultiply   Whether to premultiply the color channels by alpha
+     */
+    public CUTexture (Pixmap pixmap, boolean mipMaps, boolean premultiply) {
+        super(premultiply ? premultiply(pixmap) : pixmap, mipMaps);
+        pixelFormat = PixelFormat.gl30Format(getTextureData().getFormat());
+        name = pixmap.toString();
+        premultiplied = premultiply;
+        track(null);
     }
 
     /**
@@ -550,7 +1113,10 @@ public class CUTexture extends Texture {
      * Any texture bound to that point will be unbound. Instead, this
      * texture will be bound in its place.
      *
-     * The data format must match the one given.
+     * The data format must match the one given. If mipMaps is true, the
+     * mipmaps are generated by OpenGL on the calling thread. To compute them
+     * on a worker thread instead, use {@link CUMipmapGenerator} and the
+     * constructor for precomputed mipmaps.
      *
      * @param data      The texture data (size width*height*format)
      * @param width     The texture width in pixels
@@ -561,6 +1127,48 @@ public class CUTexture extends Texture {
     public CUTexture(Buffer data, int width, int height, PixelFormat format, boolean mipMaps) {
         super( new GL30Data( data, width, height, format, mipMaps ) );
         pixelFormat = format;
+        track(null);
+    }
+
+    /**
+     * Creates a texture with the given data and precomputed mipmaps.
+     *
+     * Initializing a texture requires the use of the binding point at 0.
+     * Any texture bound to that point will be unbound. Instead, this
+     * texture will be bound in its place.
+     *
+     * The data format must match the one given, and may be compressed. The
+     * buffer (a ByteBuffer) must contain every mipmap level, in order from
+     * the largest, with no padding between levels. Each level halves the
+     * dimensions of the previous one (rounding down, but never below 1). See
+     * {@link PixelFormat#dataSize} for the size of each level.
+     *
+     * @param data      The texture data (all levels)
+     * @param width     The texture width in pixels
+     * @param height    The texture height in pixels
+     * @param format    The texture data format
+     * @param levels    The number of mipmap levels in the data
+     */
+    public CUTexture(ByteBuffer data, int width, int height, PixelFormat format, int levels) {
+        super( new GL30Data( data, width, height, format, levels ) );
+        pixelFormat = format;
+        track(null);
+    }
+
+    /**
+     * Disposes this texture, including any pixel unpack buffers.
+     */
+    @Override
+    public void dispose() {
+        if (residence != null) {
+            residence.release();
+            residence = null;
+        }
+        if (streamBuffers != null) {
+            Gdx.gl30.glDeleteBuffers(streamCount, streamBuffers);
+            streamBuffers = null;
+        }
+        super.dispose();
     }
 
     /**
@@ -572,6 +1180,59 @@ public class CUTexture extends Texture {
         super.finalize();
     }
 
+    /**
+     * Sets the residency manager that tracks all new textures.
+     *
+     * Every texture created after this call is registered with the manager
+     * (see {@link CUTextureResidency}). Textures created before this call are
+     * not tracked. Set this value to null to stop tracking new textures.
+     *
+     * @param manager   The residency manager (or null)
+     */
+    public static void setResidency(CUTextureResidency manager) {
+        residency = manager;
+    }
+
+    /**
+     * Returns the residency manager that tracks all new textures.
+     *
+     * @return the residency manager that tracks all new textures (or null).
+     */
+    public static CUTextureResidency getResidency() {
+        return residency;
+    }
+
+    /**
+     * Registers this texture with the residency manager, if there is one.
+     *
+     * @param source    The file to reload this texture from (or null)
+     */
+    private void track(FileHandle source) {
+        if (residency != null) {
+            residence = residency.register(this, source);
+        }
+    }
+
+    /**
+     * Sets the file to reload this texture from, if it is tracked.
+     *
+     * Textures created from decoded data have no source file, and so the
+     * residency manager cannot evict them. The classes that decode files for
+     * such textures ({@link CUTextureLoader}, {@link CUTextureCache}, and
+     * {@link CUTextureContainer}) call this method to register the file, so
+     * that these textures may be evicted and reloaded as well.
+     *
+     * @param source    The file to reload this texture from
+     * @param container Whether the file is a KTX or DDS container
+     */
+    void setSource(FileHandle source, boolean container) {
+        if (residence != null) {
+            CUTextureResidency owner = residence.owner;
+            residence.release();
+            residence = owner.register(this, source, container);
+        }
+    }
+
     /**
      * Returns a blank texture that can be used to make solid shapes.
      *
@@ -625,6 +1286,11 @@ public class CUTexture extends Texture {
         int glFormat = pixelFormat.glFormat();
         int internal = pixelFormat.internalFormat();
         int datatype = pixelFormat.formatType();
+        if (pixelFormat.isCompressed()) {
+            Gdx.gl30.glCompressedTexImage2D(GL30.GL_TEXTURE_2D, 0, internal, getWidth(), getHeight(),
+                    0, pixelFormat.dataSize(getWidth(), getHeight()), data);
+            return this;
+        }
         Gdx.gl30.glTexImage2D(GL30.GL_TEXTURE_2D, 0, glFormat, getWidth(), getHeight(),
                 0, internal, datatype, data);
         return this;
@@ -658,6 +1324,418 @@ public class CUTexture extends Texture {
         Gdx.gl30.glTexImage2D(GL30.GL_TEXTURE_2D, 0, glFormat, texture.getWidth(), texture.getHeight(),
                 0, internal, datatype, data);
     }
+
+    /**
+     * Sets the number of pixel unpack buffers used for streamed uploads.
+     *
+     * Streamed uploads (see {@link #mapContents}) rotate through a ring of
+     * buffers, so that the CPU can write the next frame while the graphics card
+     * is still reading the previous one. Two buffers are enough for most uses,
+     * such as video. Changing this value releases the current buffers.
+     *
+     * This method may not be called while the contents are mapped.
+     *
+     * @param count The number of pixel unpack buffers
+     */
+    public void setStreamBufferCount(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Stream buffer count must be positive");
+        } else if (streamMapped) {
+            throw new IllegalStateException("Texture contents are mapped");
+        }
+        if (streamBuffers != null) {
+            Gdx.gl30.glDeleteBuffers(streamCount, streamBuffers);
+            streamBuffers = null;
+        }
+        streamCount = count;
+        streamIndex = 0;
+    }
+
+    /**
+     * Returns the number of pixel unpack buffers used for streamed uploads.
+     *
+     * @return the number of pixel unpack buffers used for streamed uploads.
+     */
+    public int getStreamBufferCount() {
+        return streamCount;
+    }
+
+    /**
+     * Returns a mapped pixel unpack buffer for the contents of this texture.
+     *
+     * The buffer has size width*height*bytesize, and must be filled with data
+     * in the texture format (see {@link #getByteSize}). The data is sent to the
+     * texture by {@link #unmapContents}, which must be called before the next
+     * map. The upload is issued from graphics memory, and so the driver does
+     * not need to copy (or wait on) client memory. The buffers are allocated
+     * on the first call, and reused from a ring after that.
+     *
+     * This method is only successful if the texture is (1) not managed and (2) a
+     * supported PixelFormat. It returns null if the buffer could not be mapped,
+     * in which case {@link #setContents} should be used instead.
+     *
+     * @return a mapped pixel unpack buffer for the contents of this texture.
+     */
+    public ByteBuffer mapContents() {
+        if (getTextureData().isManaged() || pixelFormat == PixelFormat.UNSUPPORTED || pixelFormat.isCompressed()) {
+            throw new GdxRuntimeException("Texture does not support direct writes");
+        } else if (streamMapped) {
+            throw new IllegalStateException("Texture contents are already mapped");
+        }
+
+        GL30 gl = Gdx.gl30;
+        if (streamBuffers == null) {
+            streamBuffers = BufferUtils.newIntBuffer(streamCount);
+            gl.glGenBuffers(streamCount, streamBuffers);
+        }
+        int size = getWidth()*getHeight()*getByteSize();
+        gl.glBindBuffer(GL30.GL_PIXEL_UNPACK_BUFFER, streamBuffers.get(streamIndex));
+        gl.glBufferData(GL30.GL_PIXEL_UNPACK_BUFFER, size, null, GL30.GL_STREAM_DRAW);
+        Buffer range = gl.glMapBufferRange(GL30.GL_PIXEL_UNPACK_BUFFER, 0, size,
+                GL30.GL_MAP_WRITE_BIT | GL30.GL_MAP_INVALIDATE_BUFFER_BIT);
+        if (range == null) {
+            gl.glBindBuffer(GL30.GL_PIXEL_UNPACK_BUFFER, 0);
+            return null;
+        }
+        streamMapped = true;
+        return ((ByteBuffer)range).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Uploads the mapped pixel unpack buffer to this texture.
+     *
+     * This method must follow a successful call to {@link #mapContents}. The
+     * buffer returned by that method may not be used afterwards. If the mapped
+     * data was lost (e.g. because of a display change), the texture is not
+     * updated and this method returns false.
+     *
+     * Calls to this method will make the texture active (bound to its bindpoint).
+     *
+     * @return true if the texture was updated.
+     */
+    public boolean unmapContents() {
+        if (!streamMapped) {
+            throw new IllegalStateException("Texture contents are not mapped");
+        }
+        streamMapped = false;
+
+        GL30 gl = Gdx.gl30;
+        gl.glBindBuffer(GL30.GL_PIXEL_UNPACK_BUFFER, streamBuffers.get(streamIndex));
+        boolean valid = gl.glUnmapBuffer(GL30.GL_PIXEL_UNPACK_BUFFER);
+        if (valid) {
+            bind();
+            gl.glPixelStorei(GL30.GL_UNPACK_ALIGNMENT, 1);
+            gl.glTexSubImage2D(GL30.GL_TEXTURE_2D, 0, 0, 0, getWidth(), getHeight(),
+                    pixelFormat.glFormat(), pixelFormat.formatType(), 0);
+            gl.glPixelStorei(GL30.GL_UNPACK_ALIGNMENT, 4);
+        }
+        gl.glBindBuffer(GL30.GL_PIXEL_UNPACK_BUFFER, 0);
+        streamIndex = (streamIndex+1) % streamCount;
+        return valid;
+    }
+
+    /**
+     * Sets this texture to have the contents of the given buffer, via a pixel unpack buffer.
+     *
+     * This method has the same requirements as {@link #setContents}. However,
+     * the data is copied into a mapped pixel unpack buffer (see {@link #mapContents}),
+     * so the upload does not stall on client memory. This is intended for large
+     * textures updated every frame, such as video. If the buffer cannot be
+     * mapped, this method falls back to {@link #setContents}.
+     *
+     * Only the first width*height*bytesize bytes of the buffer are used. If
+     * it holds fewer bytes than that, this method throws an exception.
+     *
+     * Calls to this method will make the texture active (bound to its bindpoint).
+     *
+     * @param data  The buffer to read into the texture
+     *
+     * @return a reference to this (modified) texture for chaining.
+     */
+    public Texture setStreamedContents(Buffer data) {
+        int shift = 2;
+        if (data instanceof ByteBuffer) {
+            shift = 0;
+        } else if (data instanceof ShortBuffer || data instanceof CharBuffer) {
+            shift = 1;
+        } else if (data instanceof LongBuffer || data instanceof DoubleBuffer) {
+            shift = 3;
+        }
+        int size = getWidth()*getHeight()*getByteSize();
+        if (((long)data.remaining() << shift) < size) {
+            throw new IllegalArgumentException("Buffer has "+(data.remaining() << shift)+" bytes, but the texture requires "+size);
+        }
+
+        ByteBuffer range = mapContents();
+        if (range == null) {
+            return setContents(data);
+        }
+        BufferUtils.copy(data, range, Math.min(size >> shift, range.remaining() >> shift));
+        if (!unmapContents()) {
+            return setContents(data);
+        }
+        return this;
+    }
+
+    /**
+     * Sets a rectangle of this texture to the contents of the given buffer.
+     *
+     * The buffer must hold the entire image (not just the rectangle), with the
+     * same requirements as {@link #setContents}. Only the rectangle is sent to
+     * the graphics card, so the upload cost is proportional to its area. The
+     * rectangle is clipped to the texture bounds.
+     *
+     * This method is only successful if the texture is (1) not managed and (2) a
+     * supported PixelFormat.
+     *
+     * Calls to this method will make the texture active (bound to its bindpoint).
+     *
+     * @param data      The buffer with the entire image
+     * @param x         The left edge of the rectangle
+     * @param y         The top edge of the rectangle
+     * @param width     The rectangle width
+     * @param height    The rectangle height
+     *
+     * @return a reference to this (modified) texture for chaining.
+     */
+    public Texture setContents(Buffer data, int x, int y, int width, int height) {
+        if (getTextureData().isManaged() || pixelFormat == PixelFormat.UNSUPPORTED || pixelFormat.isCompressed()) {
+            throw new GdxRuntimeException("Texture does not support direct writes");
+        }
+        int x0 = Math.max(x, 0);
+        int y0 = Math.max(y, 0);
+        int x1 = Math.min(x+width, getWidth());
+        int y1 = Math.min(y+height, getHeight());
+        if (x0 >= x1 || y0 >= y1) {
+            return this;
+        }
+
+        bind();
+        GL30 gl = Gdx.gl30;
+        gl.glPixelStorei(GL30.GL_UNPACK_ALIGNMENT, 1);
+        gl.glPixelStorei(GL30.GL_UNPACK_ROW_LENGTH, getWidth());
+        gl.glPixelStorei(GL30.GL_UNPACK_SKIP_PIXELS, x0);
+        gl.glPixelStorei(GL30.GL_UNPACK_SKIP_ROWS, y0);
+        gl.glTexSubImage2D(GL30.GL_TEXTURE_2D, 0, x0, y0, x1-x0, y1-y0,
+                pixelFormat.glFormat(), pixelFormat.formatType(), data);
+        gl.glPixelStorei(GL30.GL_UNPACK_SKIP_ROWS, 0);
+        gl.glPixelStorei(GL30.GL_UNPACK_SKIP_PIXELS, 0);
+        gl.glPixelStorei(GL30.GL_UNPACK_ROW_LENGTH, 0);
+        gl.glPixelStorei(GL30.GL_UNPACK_ALIGNMENT, 4);
+        return this;
+    }
+
+    /**
+     * Marks a rectangle of this texture as changed.
+     *
+     * This is for textures backed by an image in client memory that is
+     * modified a little at a time, such as a fog-of-war map or a paint canvas.
+     * Each change is marked with this method, and the changed regions are sent
+     * at once with {@link #updateContents}. Overlapping or nearby rectangles are
+     * merged, as long as the merged rectangle wastes little area, so many
+     * small strokes do not become many small uploads.
+     *
+     * @param x         The left edge of the rectangle
+     * @param y         The top edge of the rectangle
+     * @param width     The rectangle width
+     * @param height    The rectangle height
+     */
+    public void markDirty(int x, int y, int width, int height) {
+        int x0 = Math.max(x, 0);
+        int y0 = Math.max(y, 0);
+        int x1 = Math.min(x+width, getWidth());
+        int y1 = Math.min(y+height, getHeight());
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+
+        // Merge with existing rectangles until nothing changes
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int ii = 0; ii < dirtyRects.size; ii += 4) {
+                int rx0 = dirtyRects.get(ii);
+                int ry0 = dirtyRects.get(ii+1);
+                int rx1 = rx0+dirtyRects.get(ii+2);
+                int ry1 = ry0+dirtyRects.get(ii+3);
+                int ux0 = Math.min(x0, rx0), uy0 = Math.min(y0, ry0);
+                int ux1 = Math.max(x1, rx1), uy1 = Math.max(y1, ry1);
+                long union = (long)(ux1-ux0)*(uy1-uy0);
+                long parts = (long)(x1-x0)*(y1-y0)+(long)(rx1-rx0)*(ry1-ry0);
+                if (union*4 <= parts*5) {
+                    x0 = ux0; y0 = uy0; x1 = ux1; y1 = uy1;
+                    dirtyRects.removeRange(ii, ii+3);
+                    merged = true;
+                    break;
+                }
+            }
+        }
+        dirtyRects.add(x0, y0, x1-x0);
+        dirtyRects.add(y1-y0);
+
+        // Bound the number of uploads
+        if (dirtyRects.size > 4*MAX_DIRTY_RECTS) {
+            int bx0 = Integer.MAX_VALUE, by0 = Integer.MAX_VALUE;
+            int bx1 = Integer.MIN_VALUE, by1 = Integer.MIN_VALUE;
+            for (int ii = 0; ii < dirtyRects.size; ii += 4) {
+                bx0 = Math.min(bx0, dirtyRects.get(ii));
+                by0 = Math.min(by0, dirtyRects.get(ii+1));
+                bx1 = Math.max(bx1, dirtyRects.get(ii)+dirtyRects.get(ii+2));
+                by1 = Math.max(by1, dirtyRects.get(ii+1)+dirtyRects.get(ii+3));
+            }
+            dirtyRects.clear();
+            dirtyRects.add(bx0, by0, bx1-bx0);
+            dirtyRects.add(by1-by0);
+        }
+    }
+
+    /**
+     * Returns true if any rectangle of this texture is marked as changed.
+     *
+     * @return true if any rectangle of this texture is marked as changed.
+     */
+    public boolean isDirty() {
+        return dirtyRects.size > 0;
+    }
+
+    /**
+     * Returns the area (in pixels) marked as changed.
+     *
+     * @return the area (in pixels) marked as changed.
+     */
+    public long getDirtyArea() {
+        long area = 0;
+        for (int ii = 0; ii < dirtyRects.size; ii += 4) {
+            area += (long)dirtyRects.get(ii+2)*dirtyRects.get(ii+3);
+        }
+        return area;
+    }
+
+    /**
+     * Sends the rectangles marked as changed to the graphics card.
+     *
+     * The buffer must hold the entire image, with the same requirements as
+     * {@link #setContents}. Each rectangle marked by {@link #markDirty} is
+     * uploaded with {@link #setContents(Buffer, int, int, int, int)}, and the
+     * marks are then cleared.
+     *
+     * Calls to this method will make the texture active (bound to its bindpoint)
+     * if anything was marked.
+     *
+     * @param data  The buffer with the entire image
+     *
+     * @return the number of rectangles uploaded
+     */
+    public int updateContents(Buffer data) {
+        int count = dirtyRects.size/4;
+        for (int ii = 0; ii < dirtyRects.size; ii += 4) {
+            setContents(data, dirtyRects.get(ii), dirtyRects.get(ii+1),
+                        dirtyRects.get(ii+2), dirtyRects.get(ii+3));
+        }
+        dirtyRects.clear();
+        return count;
+    }
+
+    /**
+     * Multiplies the color channels of the pixmap by alpha, in place.
+     *
+     * This is the conversion required for a texture drawn in premultiplied
+     * mode (see {@link CUSpriteBatch#setPremultiplied}). Pixmaps without an
+     * alpha channel are unchanged.
+     *
+     * @param pixmap    The pixmap to premultiply
+     *
+     * @return the pixmap, for chaining
+     */
+    public static Pixmap premultiply(Pixmap pixmap) {
+        switch (pixmap.getFormat()) {
+            case RGBA8888:
+                premultiply(pixmap.getPixels(), PixelFormat.RGBA);
+                break;
+            case RGBA4444: {
+                Pixmap.Blending blending = pixmap.getBlending();
+                pixmap.setBlending(Pixmap.Blending.None);
+                for (int yy = 0; yy < pixmap.getHeight(); yy++) {
+                    for (int xx = 0; xx < pixmap.getWidth(); xx++) {
+                        int rgba = pixmap.getPixel(xx, yy);
+                        int a = rgba & 0xFF;
+                        int r = ((rgba >>> 24) * a + 127) / 255;
+                        int g = (((rgba >>> 16) & 0xFF) * a + 127) / 255;
+                        int b = (((rgba >>> 8) & 0xFF) * a + 127) / 255;
+                        pixmap.drawPixel(xx, yy, (r << 24) | (g << 16) | (b << 8) | a);
+                    }
+                }
+                pixmap.setBlending(blending);
+                break;
+            }
+            default:
+                break;
+        }
+        return pixmap;
+    }
+
+    /**
+     * Multiplies the color channels of the buffer by alpha, in place.
+     *
+     * The buffer is processed from its position to its limit, and the
+     * position is not changed. Only the RGBA format has an alpha channel, so
+     * all other formats are unchanged. The result may be loaded with
+     * {@link #setContents} for a texture drawn in premultiplied mode (see
+     * {@link CUSpriteBatch#setPremultiplied}).
+     *
+     * @param data      The pixel data
+     * @param format    The pixel data format
+     */
+    public static void premultiply(ByteBuffer data, PixelFormat format) {
+        if (format != PixelFormat.RGBA) {
+            return;
+        }
+        int end = data.limit() - 3;
+        for (int ii = data.position(); ii < end; ii += 4) {
+            int a = data.get(ii+3) & 0xFF;
+            if (a != 0xFF) {
+                data.put(ii,   (byte)(((data.get(ii)   & 0xFF) * a + 127) / 255));
+                data.put(ii+1, (byte)(((data.get(ii+1) & 0xFF) * a + 127) / 255));
+                data.put(ii+2, (byte)(((data.get(ii+2) & 0xFF) * a + 127) / 255));
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the pixmap pixels in a new direct buffer.
+     *
+     * The buffer has the format {@link PixelFormat#copyFormat}, converting the
+     * pixels to RGBA if necessary. If premultiply is true, the color channels
+     * are multiplied by alpha. The pixmap is unchanged, and may be disposed
+     * afterwards. This method does not use OpenGL, and so it is safe to call
+     * on a worker thread.
+     *
+     * @param pixmap        The pixmap to copy
+     * @param premultiply   Whether to premultiply the color channels by alpha
+     *
+     * @return a copy of the pixmap pixels in a new direct buffer.
+     */
+    public static ByteBuffer copyPixels(Pixmap pixmap, boolean premultiply) {
+        PixelFormat format = PixelFormat.copyFormat(pixmap.getFormat(), premultiply);
+        Pixmap source = pixmap;
+        if (format != PixelFormat.gl30Format(pixmap.getFormat())) {
+            source = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), Pixmap.Format.RGBA8888);
+            source.setBlending(Pixmap.Blending.None);
+            source.drawPixmap(pixmap, 0, 0);
+        }
+
+        ByteBuffer pixels = source.getPixels().duplicate();
+        ByteBuffer result = BufferUtils.newByteBuffer(pixels.remaining());
+        result.put(pixels);
+        ((Buffer)result).flip();
+        if (source != pixmap) {
+            source.dispose();
+        }
+        if (premultiply) {
+            premultiply(result, format);
+        }
+        return result;
+    }
     //endregion
 
     //region Attributes
@@ -709,6 +1787,27 @@ public class CUTexture extends Texture {
     }
 
 
+    /**
+     * Sets whether the color channels of this texture are premultiplied by alpha.
+     *
+     * This value does not change the texture data. It records that the data
+     * was premultiplied (e.g. by {@link #premultiply}) before it was loaded.
+     *
+     * @param value Whether this texture is premultiplied
+     */
+    public void setPremultiplied(boolean value) {
+        premultiplied = value;
+    }
+
+    /**
+     * Returns true if the color channels of this texture are premultiplied by alpha.
+     *
+     * @return true if the color channels of this texture are premultiplied by alpha.
+     */
+    public boolean isPremultiplied() {
+        return premultiplied;
+    }
+
     /**
      * Returns the data format of this texture.
      *
@@ -814,6 +1913,9 @@ public class CUTexture extends Texture {
      * This call is reentrant. If can be safely called multiple times.
      */
     public void bind () {
+        if (residence != null) {
+            residence.touch();
+        }
         Gdx.gl30.glActiveTexture(GL30.GL_TEXTURE0+bindpoint);
         Gdx.gl30.glBindTexture(GL30.GL_TEXTURE_2D,glHandle);
     }
@@ -842,6 +1944,9 @@ public class CUTexture extends Texture {
         if (bindpoint != this.bindpoint) {
             this.bindpoint = bindpoint;
         }
+        if (residence != null) {
+            residence.touch();
+        }
         Gdx.gl30.glActiveTexture(GL30.GL_TEXTURE0+bindpoint);
         Gdx.gl30.glBindTexture(GL30.GL_TEXTURE_2D,glHandle);
     }
@@ -0,0 +1,353 @@
+package edu.cornell.gdiac.render;
+
+import java.nio.Buffer;
+import java.nio.IntBuffer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL30;
+import com.badlogic.gdx.graphics.GLTexture;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * This class is a 2D texture array, for batching same-sized images.
+ *
+ * A texture array is a stack of images (layers) of the same size and format,
+ * sampled as a single OpenGL texture. Animation frames, terrain variants, and
+ * character skins are natural layers. Unlike an atlas, a layer has no
+ * neighbors, and so there is no bleeding between images and no padding.
+ *
+ * Each layer is available as a {@link Texture} with {@link #getLayer}. These
+ * layer textures may be drawn (or used in a {@link com.badlogic.gdx.graphics.g2d.TextureRegion})
+ * by a {@link CUSpriteBatch} whose vertices have a layer attribute (6 or 8
+ * floats per vertex). Such a sprite batch uses the texture array variant of
+ * {@link edu.cornell.gdiac.render.shaders.SpriteShader}, and switching between
+ * layers of the same array does not break a batch.
+ *
+ * The layer textures share the OpenGL handle of the array, and so share its
+ * filter and wrap settings. They are owned by the array, and are invalid once
+ * the array is disposed. The array is not managed, so its contents must be
+ * restored by the application if the OpenGL context is lost.
+ */
+public class CUTextureArray extends GLTexture {
+
+    /**
+     * A single layer of a texture array, usable wherever a texture is.
+     *
+     * Binding a layer binds the entire array. The layer index is passed to the
+     * shader by {@link CUSpriteBatch} as a vertex attribute.
+     */
+    public static class Layer extends Texture {
+        /** The texture array of this layer */
+        private final CUTextureArray array;
+        /** The index of this layer */
+        private final int index;
+
+        /**
+         * Creates a layer view of the given texture array.
+         *
+         * @param array The texture array
+         * @param index The index of the layer
+         */
+        Layer(CUTextureArray array, int index) {
+            super(GL30.GL_TEXTURE_2D_ARRAY, array.getTextureObjectHandle(), new LayerData(array));
+            this.array = array;
+            this.index = index;
+        }
+
+        /**
+         * Returns the texture array of this layer.
+         *
+         * @return the texture array of this layer.
+         */
+        public CUTextureArray getArray() {
+            return array;
+        }
+
+        /**
+         * Returns the index of this layer.
+         *
+         * @return the index of this layer.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Does nothing, as the OpenGL handle is owned by the texture array.
+         */
+        @Override
+        public void dispose() {
+        }
+    }
+
+    /**
+     * The TextureData of a layer, which never uploads anything.
+     *
+     * The storage of a layer is allocated by the texture array.
+     */
+    private static class LayerData implements TextureData {
+        /** The texture array */
+        private final CUTextureArray array;
+
+        /**
+         * Creates the data of a layer of the given texture array.
+         *
+         * @param array The texture array
+         */
+        LayerData(CUTextureArray array) {
+            this.array = array;
+        }
+
+        @Override
+        public TextureDataType getType() { return TextureDataType.Custom; }
+
+        @Override
+        public boolean isPrepared() { return true; }
+
+        @Override
+        public void prepare() { }
+
+        @Override
+        public Pixmap consumePixmap() {
+            throw new GdxRuntimeException("Texture array layers have no pixmap");
+        }
+
+        @Override
+        public boolean disposePixmap() { return false; }
+
+        @Override
+        public void consumeCustomData(int target) { }
+
+        @Override
+        public int getWidth() { return array.width; }
+
+        @Override
+        public int getHeight() { return array.height; }
+
+        @Override
+        public Pixmap.Format getFormat() { return Pixmap.Format.RGBA8888; }
+
+        @Override
+        public boolean useMipMaps() { return array.mipMaps; }
+
+        @Override
+        public boolean isManaged() { return false; }
+    }
+
+    /** The width of each layer */
+    private final int width;
+    /** The height of each layer */
+    private final int height;
+    /** The pixel format of every layer */
+    private final CUTexture.PixelFormat format;
+    /** Whether mipmaps have been generated */
+    private boolean mipMaps;
+    /** The layer textures */
+    private final Layer[] layers;
+
+    /**
+     * Creates a texture array with the given size and format.
+     *
+     * The layers are allocated, but their contents are undefined until set
+     * with {@link #setLayer}. Compressed formats are not supported.
+     *
+     * @param width     The width of each layer
+     * @param height    The height of each layer
+     * @param layers    The number of layers
+     * @param format    The pixel format of every layer
+     */
+    public CUTextureArray(int width, int height, int layers, CUTexture.PixelFormat format) {
+        super(GL30.GL_TEXTURE_2D_ARRAY);
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(String.format("Texture size %dx%d is not valid", width, height));
+        } else if (format == CUTexture.PixelFormat.UNSUPPORTED || format.isCompressed()) {
+            throw new IllegalArgumentException("Texture arrays do not support the format "+format);
+        }
+
+        IntBuffer query = BufferUtils.newIntBuffer(16);
+        Gdx.gl30.glGetIntegerv(GL30.GL_MAX_ARRAY_TEXTURE_LAYERS, query);
+        if (layers <= 0 || layers > query.get(0)) {
+            throw new IllegalArgumentException("Layer count "+layers+" is not in the range 1.."+query.get(0));
+        }
+
+        this.width  = width;
+        this.height = height;
+        this.format = format;
+        bind();
+        Gdx.gl30.glTexImage3D(glTarget, 0, format.internalFormat(), width, height, layers, 0,
+                              format.glFormat(), format.formatType(), null);
+        int error = Gdx.gl30.glGetError();
+        if (error != 0) {
+            Gdx.app.error("OPENGL", String.format("Could not initialize texture array. %s", CUGLDebug.errorName(error)));
+        }
+        unsafeSetFilter(minFilter, magFilter, true);
+        unsafeSetWrap(uWrap, vWrap, true);
+
+        this.layers = new Layer[layers];
+        for (int ii = 0; ii < layers; ii++) {
+            this.layers[ii] = new Layer(this, ii);
+        }
+    }
+
+    /**
+     * Returns the width of each layer.
+     *
+     * @return the width of each layer.
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of each layer.
+     *
+     * @return the height of each layer.
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of layers.
+     *
+     * @return the number of layers.
+     */
+    @Override
+    public int getDepth() {
+        return layers.length;
+    }
+
+    /**
+     * Returns the number of layers.
+     *
+     * @return the number of layers.
+     */
+    public int getLayerCount() {
+        return layers.length;
+    }
+
+    /**
+     * Returns the pixel format of every layer.
+     *
+     * @return the pixel format of every layer.
+     */
+    public CUTexture.PixelFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns false, as texture arrays are not managed.
+     *
+     * @return false, as texture arrays are not managed.
+     */
+    @Override
+    public boolean isManaged() {
+        return false;
+    }
+
+    /**
+     * Throws an exception, as texture arrays are not managed.
+     */
+    @Override
+    protected void reload() {
+        throw new GdxRuntimeException("Texture arrays cannot be reloaded");
+    }
+
+    /**
+     * Returns the texture for the given layer.
+     *
+     * @param index The index of the layer
+     *
+     * @return the texture for the given layer.
+     */
+    public Layer getLayer(int index) {
+        return layers[index];
+    }
+
+    /**
+     * Sets the contents of the given layer.
+     *
+     * The data format must match the format of this array, and the buffer
+     * must contain width*height pixels with no row padding. Calls to this
+     * method will make the array active (bound to its bindpoint).
+     *
+     * @param index The index of the layer
+     * @param data  The pixel data
+     *
+     * @return this texture array, for chaining
+     */
+    public CUTextureArray setLayer(int index, Buffer data) {
+        if (index < 0 || index >= layers.length) {
+            throw new IndexOutOfBoundsException("Layer "+index+" is not in the range 0.."+(layers.length-1));
+        }
+        bind();
+        Gdx.gl30.glPixelStorei(GL30.GL_UNPACK_ALIGNMENT, 1);
+        Gdx.gl30.glTexSubImage3D(glTarget, 0, 0, 0, index, width, height, 1,
+                                 format.glFormat(), format.formatType(), data);
+        Gdx.gl30.glPixelStorei(GL30.GL_UNPACK_ALIGNMENT, 4);
+        return this;
+    }
+
+    /**
+     * Sets the contents of the given layer to the pixmap.
+     *
+     * The pixmap must have the size of the layers. If its format does not match
+     * the format of this array, it is converted (only RGBA arrays accept
+     * pixmaps of other formats). Calls to this method will make the array
+     * active (bound to its bindpoint).
+     *
+     * @param index     The index of the layer
+     * @param pixmap    The pixmap
+     *
+     * @return this texture array, for chaining
+     */
+    public CUTextureArray setLayer(int index, Pixmap pixmap) {
+        if (pixmap.getWidth() != width || pixmap.getHeight() != height) {
+            throw new IllegalArgumentException(String.format("Pixmap size %dx%d does not match layer size %dx%d",
+                                               pixmap.getWidth(), pixmap.getHeight(), width, height));
+        }
+        if (CUTexture.PixelFormat.gl30Format(pixmap.getFormat()) == format) {
+            return setLayer(index, pixmap.getPixels());
+        } else if (format != CUTexture.PixelFormat.RGBA) {
+            throw new IllegalArgumentException("Pixmap format "+pixmap.getFormat()+" does not match "+format);
+        }
+
+        Pixmap copy = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        copy.setBlending(Pixmap.Blending.None);
+        copy.drawPixmap(pixmap, 0, 0);
+        setLayer(index, copy.getPixels());
+        copy.dispose();
+        return this;
+    }
+
+    /**
+     * Generates the mipmaps of every layer.
+     *
+     * This should be called after the layers are set, and again whenever a
+     * layer changes. Calls to this method will make the array active (bound
+     * to its bindpoint).
+     *
+     * @return this texture array, for chaining
+     */
+    public CUTextureArray generateMipmaps() {
+        bind();
+        Gdx.gl30.glGenerateMipmap(glTarget);
+        mipMaps = true;
+        return this;
+    }
+
+    /**
+     * Returns true if the mipmaps of this array have been generated.
+     *
+     * @return true if the mipmaps of this array have been generated.
+     */
+    public boolean hasMipMaps() {
+        return mipMaps;
+    }
+}
@@ -0,0 +1,561 @@
+package edu.cornell.gdiac.render;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.badlogic.gdx.Files;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.GL30;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * This class is a disk cache of decoded images, for fast texture loading.
+ *
+ * Loading a texture from a PNG file decodes the image every time. This cache
+ * stores the decoded pixels in a file of their own, in the exact layout of a
+ * {@link CUTexture.PixelFormat}. The first load of an image decodes it and
+ * writes the cache file. Every later load (including in later runs of the
+ * application) memory maps the cache file and passes the mapped buffer
+ * straight to OpenGL, with no decoding and no intermediate copy.
+ *
+ * Cache files are keyed by a hash of the contents of the source file (and the
+ * load options), so an edited image is decoded again. Stale files are never
+ * removed automatically; call {@link #clear} to empty the cache.
+ *
+ * A cache file may also hold a full mipmap chain. If an image is read with a
+ * mipmap filter, the chain is computed by {@link CUMipmapGenerator} when the
+ * image is decoded, and stored with it. Later loads upload every level from
+ * the mapped file, with no work for OpenGL to do.
+ *
+ * Each cache file starts with a header (big-endian, like {@link CUDrawCapture})
+ * of the magic number {@link #MAGIC}, the format {@link #VERSION}, the OpenGL
+ * internal format, the width, the height, the number of mipmap levels, the
+ * flags, and the size of the data. This is followed by the pixel data of every
+ * level, in order from the largest, with no padding.
+ *
+ * The methods {@link #read} and {@link #contains} do not use OpenGL, and so
+ * they are safe to call on a worker thread.
+ */
+public class CUTextureCache {
+    /** The magic number at the start of every cache file ("CUTC") */
+    public static final int MAGIC = 0x43555443;
+    /** The cache file format version */
+    public static final int VERSION = 1;
+    /** The size of the cache file header in bytes */
+    public static final int HEADER = 32;
+    /** The extension of cache files */
+    public static final String EXTENSION = ".tex";
+
+    /** The header flag for premultiplied alpha */
+    private static final int FLAG_PREMULTIPLIED = 1;
+
+    /**
+     * A decoded image, either memory mapped from a cache file or just decoded.
+     */
+    public static class Image {
+        /** The pixel format */
+        private final CUTexture.PixelFormat format;
+        /** The width of the base level */
+        private final int width;
+        /** The height of the base level */
+        private final int height;
+        /** The number of mipmap levels */
+        private final int levels;
+        /** Whether the color channels are premultiplied by alpha */
+        private final boolean premultiplied;
+        /** The pixel data of every level */
+        private final ByteBuffer data;
+        /** Whether the data is memory mapped from a cache file */
+        private final boolean mapped;
+
+        /**
+         * Creates an image with the given contents.
+         *
+         * @param format        The pixel format
+         * @param width         The width of the base level
+         * @param height        The height of the base level
+         * @param levels        The number of mipmap levels
+         * @param premultiplied Whether the color channels are premultiplied by alpha
+         * @param data          The pixel data of every level
+         * @param mapped        Whether the data is memory mapped from a cache file
+         */
+        Image(CUTexture.PixelFormat format, int width, int height, int levels,
+              boolean premultiplied, ByteBuffer data, boolean mapped) {
+            this.format = format;
+            this.width = width;
+            this.height = height;
+            this.levels = levels;
+            this.premultiplied = premultiplied;
+            this.data = data;
+            this.mapped = mapped;
+        }
+
+        /**
+         * Returns the pixel format of this image.
+         *
+         * @return the pixel format of this image.
+         */
+        public CUTexture.PixelFormat getFormat() {
+            return format;
+        }
+
+        /**
+         * Returns the width of the base level.
+         *
+         * @return the width of the base level.
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * Returns the height of the base level.
+         *
+         * @return the height of the base level.
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Returns the number of mipmap levels.
+         *
+         * @return the number of mipmap levels.
+         */
+        public int getLevels() {
+            return levels;
+        }
+
+        /**
+         * Returns true if the color channels are premultiplied by alpha.
+         *
+         * @return true if the color channels are premultiplied by alpha.
+         */
+        public boolean isPremultiplied() {
+            return premultiplied;
+        }
+
+        /**
+         * Returns the pixel data of every level.
+         *
+         * @return the pixel data of every level.
+         */
+        public ByteBuffer getData() {
+            return data;
+        }
+
+        /**
+         * Returns true if the data is memory mapped from a cache file.
+         *
+         * @return true if the data is memory mapped from a cache file.
+         */
+        public boolean isMapped() {
+            return mapped;
+        }
+
+        /**
+         * Returns a new texture with the contents of this image.
+         *
+         * This method must be called on the rendering thread. If the image has
+         * precomputed mipmaps, they are uploaded and mipMaps is ignored.
+         * Otherwise, the mipmaps are generated by OpenGL if mipMaps is true.
+         *
+         * @param mipMaps   Whether the texture should use mipmaps
+         *
+         * @return a new texture with the contents of this image.
+         */
+        public CUTexture createTexture(boolean mipMaps) {
+            GL30 gl = Gdx.gl30;
+            gl.glPixelStorei(GL30.GL_UNPACK_ALIGNMENT, 1);
+            CUTexture result;
+            if (levels > 1) {
+                result = new CUTexture(data, width, height, format, levels);
+            } else {
+                result = new CUTexture(data, width, height, format, mipMaps);
+            }
+            gl.glPixelStorei(GL30.GL_UNPACK_ALIGNMENT, 4);
+            result.setPremultiplied(premultiplied);
+            return result;
+        }
+    }
+
+    /** The cache directory */
+    private final FileHandle directory;
+    /** The filter for cached mipmap chains (or null to generate them in OpenGL) */
+    private CUMipmapGenerator.Filter mipmapFilter;
+    /** The number of loads satisfied by a cache file */
+    private final AtomicInteger hits = new AtomicInteger();
+    /** The number of loads that decoded the source file */
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Creates a cache in the given directory.
+     *
+     * The directory is created if it does not exist. It must be writable, so
+     * it cannot be an internal or classpath file handle.
+     *
+     * @param directory The cache directory
+     */
+    public CUTextureCache(FileHandle directory) {
+        if (directory.type() == Files.FileType.Internal || directory.type() == Files.FileType.Classpath) {
+            throw new IllegalArgumentException("Cache directory must be writable: "+directory);
+        }
+        directory.mkdirs();
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("Cache directory is not a directory: "+directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the cache directory.
+     *
+     * @return the cache directory.
+     */
+    public FileHandle getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Sets the filter for the mipmap chains cached by {@link #get}.
+     *
+     * If the filter is null (the default), textures loaded with mipmaps by
+     * {@link #get} have them generated by OpenGL, and only the base level is
+     * cached. Otherwise, the full chain is computed with this filter on a
+     * miss, and cached with the image.
+     *
+     * @param filter    The filter for cached mipmap chains (or null)
+     */
+    public void setMipmapFilter(CUMipmapGenerator.Filter filter) {
+        mipmapFilter = filter;
+    }
+
+    /**
+     * Returns the filter for the mipmap chains cached by {@link #get}.
+     *
+     * @return the filter for the mipmap chains cached by {@link #get} (or null).
+     */
+    public CUMipmapGenerator.Filter getMipmapFilter() {
+        return mipmapFilter;
+    }
+
+    /**
+     * Returns the number of loads satisfied by a cache file.
+     *
+     * @return the number of loads satisfied by a cache file.
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of loads that decoded the source file.
+     *
+     * @return the number of loads that decoded the source file.
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Deletes every cache file in the cache directory.
+     */
+    public void clear() {
+        for (FileHandle file : directory.list(EXTENSION)) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Returns true if the given image has a cache file.
+     *
+     * This method hashes the source file, but does not decode it.
+     *
+     * @param source        The image file
+     * @param premultiply   Whether the color channels are premultiplied by alpha
+     *
+     * @return true if the given image has a cache file.
+     */
+    public boolean contains(FileHandle source, boolean premultiply) {
+        return directory.child(key(source, premultiply, null)).exists();
+    }
+
+    /**
+     * Returns a texture loaded from the given file through this cache.
+     *
+     * @param source    The image file
+     *
+     * @return a texture loaded from the given file through this cache.
+     */
+    public CUTexture get(FileHandle source) {
+        return get(source, false, false);
+    }
+
+    /**
+     * Returns a texture loaded from the given file through this cache.
+     *
+     * This method must be called on the rendering thread. If premultiply is
+     * true, the color channels are multiplied by alpha before they are cached
+     * (see {@link CUTexture#premultiply}), so that work is not repeated either.
+     * If mipMaps is true and there is a mipmap filter, the mipmap chain is
+     * cached as well (see {@link #setMipmapFilter}).
+     *
+     * @param source        The image file
+     * @param mipMaps       Whether the texture should use mipmaps
+     * @param premultiply   Whether to premultiply the color channels by alpha
+     *
+     * @return a texture loaded from the given file through this cache.
+     */
+    public CUTexture get(FileHandle source, boolean mipMaps, boolean premultiply) {
+        CUTexture result = read(source, premultiply, mipMaps ? mipmapFilter : null).createTexture(mipMaps);
+        result.setName(source.path());
+        result.setSource(source, false);
+        return result;
+    }
+
+    /**
+     * Returns the decoded image for the given file.
+     *
+     * If the image has a valid cache file, it is memory mapped. Otherwise, the
+     * source file is decoded and a cache file is written. A failure to write
+     * the cache file is logged, but the decoded image is still returned.
+     *
+     * @param source        The image file
+     * @param premultiply   Whether to premultiply the color channels by alpha
+     *
+     * @return the decoded image for the given file.
+     */
+    public Image read(FileHandle source, boolean premultiply) {
+        return read(source, premultiply, null);
+    }
+
+    /**
+     * Returns the decoded image for the given file, with a mipmap chain.
+     *
+     * If the filter is not null, the image has its full mipmap chain, computed
+     * with that filter (on this thread and the common fork-join pool) if the
+     * image is not yet cached. Images with a pixel format not supported by
+     * {@link CUMipmapGenerator} have only a base level. If the filter is null,
+     * this is the same as {@link #read(FileHandle, boolean)}.
+     *
+     * @param source        The image file
+     * @param premultiply   Whether to premultiply the color channels by alpha
+     * @param filter        The filter for the mipmap chain (or null for none)
+     *
+     * @return the decoded image for the given file, with a mipmap chain.
+     */
+    public Image read(FileHandle source, boolean premultiply, CUMipmapGenerator.Filter filter) {
+        FileHandle file = directory.child(key(source, premultiply, filter));
+        if (file.exists()) {
+            Image result = map(file);
+            if (result != null) {
+                hits.incrementAndGet();
+                return result;
+            }
+            file.delete();
+        }
+
+        misses.incrementAndGet();
+        Image result = decode(source, premultiply);
+        if (filter != null && CUMipmapGenerator.supports(result.format)) {
+            ByteBuffer chain = CUMipmapGenerator.generate(result.data, result.width, result.height,
+                                                          result.format, filter);
+            result = new Image(result.format, result.width, result.height,
+                               CUMipmapGenerator.levelCount(result.width, result.height),
+                               result.premultiplied, chain, false);
+        }
+        write(file, result);
+        return result;
+    }
+
+    /**
+     * Returns the cache file name for the given image and options.
+     *
+     * @param source        The image file
+     * @param premultiply   Whether the color channels are premultiplied by alpha
+     * @param filter        The filter for the mipmap chain (or null for none)
+     *
+     * @return the cache file name for the given image and options.
+     */
+    private static String key(FileHandle source, boolean premultiply, CUMipmapGenerator.Filter filter) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new GdxRuntimeException("SHA-1 is not available", e);
+        }
+
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream input = source.read()) {
+            int amount;
+            while ((amount = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, amount);
+            }
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Unable to read "+source, e);
+        }
+
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest()) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16));
+            result.append(Character.forDigit(b & 0xF, 16));
+        }
+        if (premultiply) {
+            result.append("-p");
+        }
+        if (filter != null) {
+            result.append('-').append(filter.name().toLowerCase(Locale.ROOT));
+        }
+        return result.append(EXTENSION).toString();
+    }
+
+    /**
+     * Returns the image memory mapped from a cache file (or null if invalid).
+     *
+     * @param file  The cache file
+     *
+     * @return the image memory mapped from a cache file (or null if invalid).
+     */
+    private static Image map(FileHandle file) {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile access = new RandomAccessFile(file.file(), "r");
+             FileChannel channel = access.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            Gdx.app.error("CUTextureCache", "Unable to map "+file, e);
+            return null;
+        }
+
+        if (buffer.limit() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            return null;
+        }
+        CUTexture.PixelFormat format = internalFormat(buffer.getInt(8));
+        int width  = buffer.getInt(12);
+        int height = buffer.getInt(16);
+        int levels = buffer.getInt(20);
+        int flags  = buffer.getInt(24);
+        int size   = buffer.getInt(28);
+        if (format == CUTexture.PixelFormat.UNSUPPORTED || width <= 0 || height <= 0 || levels <= 0 ||
+            size != chainSize(format, width, height, levels) || HEADER+(long)size > buffer.limit()) {
+            return null;
+        }
+
+        ((Buffer)buffer).position(HEADER);
+        ByteBuffer data = buffer.slice();
+        ((Buffer)data).limit(size);
+        return new Image(format, width, height, levels, (flags & FLAG_PREMULTIPLIED) != 0, data, true);
+    }
+
+    /**
+     * Returns the image decoded from the source file.
+     *
+     * @param source        The image file
+     * @param premultiply   Whether to premultiply the color channels by alpha
+     *
+     * @return the image decoded from the source file.
+     */
+    private static Image decode(FileHandle source, boolean premultiply) {
+        Pixmap pixmap = new Pixmap(source);
+        try {
+            CUTexture.PixelFormat format = CUTexture.PixelFormat.copyFormat(pixmap.getFormat(), premultiply);
+            ByteBuffer data = CUTexture.copyPixels(pixmap, premultiply);
+            return new Image(format, pixmap.getWidth(), pixmap.getHeight(), 1, premultiply, data, false);
+        } finally {
+            pixmap.dispose();
+        }
+    }
+
+    /**
+     * Writes the image to a cache file.
+     *
+     * The file is written under a temporary name and then renamed, so a
+     * partially written file is never mapped.
+     *
+     * @param file  The cache file
+     * @param image The image to write
+     */
+    private static void write(FileHandle file, Image image) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(image.format.internalFormat());
+        header.putInt(image.width);
+        header.putInt(image.height);
+        header.putInt(image.levels);
+        header.putInt(image.premultiplied ? FLAG_PREMULTIPLIED : 0);
+        header.putInt(image.data.remaining());
+        ((Buffer)header).flip();
+
+        File target = file.file();
+        File temp = new File(target.getPath()+"."+Thread.currentThread().getId()+".tmp");
+        try (FileOutputStream output = new FileOutputStream(temp);
+             FileChannel channel = output.getChannel()) {
+            ByteBuffer data = image.data.duplicate();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        } catch (IOException e) {
+            Gdx.app.error("CUTextureCache", "Unable to write "+file, e);
+            temp.delete();
+            return;
+        }
+
+        if (!temp.renameTo(target)) {
+            target.delete();
+            if (!temp.renameTo(target)) {
+                Gdx.app.error("CUTextureCache", "Unable to write "+file);
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the uncompressed or compressed PixelFormat for an internal format.
+     *
+     * @param internal  The OpenGL internal format
+     *
+     * @return the uncompressed or compressed PixelFormat for an internal format.
+     */
+    private static CUTexture.PixelFormat internalFormat(int internal) {
+        for (CUTexture.PixelFormat format : CUTexture.PixelFormat.values()) {
+            if (format != CUTexture.PixelFormat.UNSUPPORTED && format.internalFormat() == internal) {
+                return format;
+            }
+        }
+        return CUTexture.PixelFormat.UNSUPPORTED;
+    }
+
+    /**
+     * Returns the size of a mipmap chain in bytes.
+     *
+     * @param format    The pixel format
+     * @param width     The width of the base level
+     * @param height    The height of the base level
+     * @param levels    The number of mipmap levels
+     *
+     * @return the size of a mipmap chain in bytes.
+     */
+    private static long chainSize(CUTexture.PixelFormat format, int width, int height, int levels) {
+        long result = 0;
+        for (int level = 0; level < levels; level++) {
+            result += format.dataSize(Math.max(1, width >> level), Math.max(1, height >> level));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,415 @@
+package edu.cornell.gdiac.render;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * This class reads compressed textures from KTX and DDS container files.
+ *
+ * Unlike PNG files, these containers store the texture in the block compressed
+ * format that the GPU samples directly, together with any precomputed mipmaps.
+ * A container is read (on any thread) with {@link #read}, which copies every
+ * mipmap level into a single direct buffer. The texture is then created on the
+ * rendering thread with {@link #createTexture}, which uploads each level with
+ * glCompressedTexImage2D. The formats supported are those in
+ * {@link CUTexture.PixelFormat}, and the platform must support the matching
+ * OpenGL extension.
+ *
+ * Only simple 2D textures are supported. Cube maps, texture arrays, and 3D
+ * textures are rejected. KTX files must be version 1 (KTX2 files use
+ * supercompression schemes that require a transcoder). DDS files may use
+ * DXT1, DXT3, DXT5, or the DX10 header with BC1, BC2, BC3, or BC7.
+ */
+public class CUTextureContainer {
+    /** The identifier at the start of a KTX (version 1) file */
+    private static final byte[] KTX_IDENTIFIER = {
+        (byte)0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte)0xBB, '\r', '\n', 0x1A, '\n'
+    };
+    /** The size of the KTX header (including the identifier) */
+    private static final int KTX_HEADER = 64;
+    /** The value of the KTX endianness field in the native order of the file */
+    private static final int KTX_ENDIAN = 0x04030201;
+
+    /** The magic number at the start of a DDS file ("DDS ") */
+    private static final int DDS_MAGIC = 0x20534444;
+    /** The size of the DDS header (including the magic number) */
+    private static final int DDS_HEADER = 128;
+    /** The size of the optional DX10 header of a DDS file */
+    private static final int DDS_DX10_HEADER = 20;
+    /** The DDS pixel format flag for a FourCC code */
+    private static final int DDPF_FOURCC = 0x4;
+    /** The DDS caps2 flag for a cube map */
+    private static final int DDSCAPS2_CUBEMAP = 0x200;
+    /** The DDS caps2 flag for a volume texture */
+    private static final int DDSCAPS2_VOLUME = 0x200000;
+    /** The DDS FourCC for DXT1 */
+    private static final int FOURCC_DXT1 = 0x31545844;
+    /** The DDS FourCC for DXT3 */
+    private static final int FOURCC_DXT3 = 0x33545844;
+    /** The DDS FourCC for DXT5 */
+    private static final int FOURCC_DXT5 = 0x35545844;
+    /** The DDS FourCC for the DX10 header */
+    private static final int FOURCC_DX10 = 0x30315844;
+    /** The DXGI format for BC1 */
+    private static final int DXGI_BC1_UNORM = 71;
+    /** The DXGI format for BC2 */
+    private static final int DXGI_BC2_UNORM = 74;
+    /** The DXGI format for BC3 */
+    private static final int DXGI_BC3_UNORM = 77;
+    /** The DXGI format for BC7 */
+    private static final int DXGI_BC7_UNORM = 98;
+    /** The DX10 resource dimension of a 2D texture */
+    private static final int DX10_TEXTURE2D = 3;
+    /** The DX10 misc flag for a cube map */
+    private static final int DX10_TEXTURECUBE = 0x4;
+
+    /** The source file */
+    private final FileHandle file;
+    /** The compressed pixel format */
+    private final CUTexture.PixelFormat format;
+    /** The width of the base level */
+    private final int width;
+    /** The height of the base level */
+    private final int height;
+    /** The number of mipmap levels */
+    private final int levels;
+    /** Every mipmap level, in order and without padding */
+    private final ByteBuffer data;
+
+    /**
+     * Creates a container with the given contents.
+     *
+     * @param file      The source file
+     * @param format    The compressed pixel format
+     * @param width     The width of the base level
+     * @param height    The height of the base level
+     * @param levels    The number of mipmap levels
+     * @param data      Every mipmap level, in order and without padding
+     */
+    private CUTextureContainer(FileHandle file, CUTexture.PixelFormat format,
+                               int width, int height, int levels, ByteBuffer data) {
+        this.file = file;
+        this.format = format;
+        this.width = width;
+        this.height = height;
+        this.levels = levels;
+        this.data = data;
+    }
+
+    /**
+     * Returns the container read from the given file.
+     *
+     * The container type is determined from the contents of the file, not its
+     * extension. This method does not use OpenGL, and so it is safe to call on
+     * a worker thread.
+     *
+     * @param file  The KTX or DDS file
+     *
+     * @return the container read from the given file.
+     */
+    public static CUTextureContainer read(FileHandle file) {
+        byte[] bytes = file.readBytes();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (isKTX(buffer)) {
+            return readKTX(file, buffer);
+        } else if (bytes.length >= 4 && buffer.getInt(0) == DDS_MAGIC) {
+            return readDDS(file, buffer);
+        }
+        throw new GdxRuntimeException("Not a KTX or DDS file: "+file);
+    }
+
+    /**
+     * Returns a new texture with the contents of this container.
+     *
+     * This method must be called on the rendering thread. The texture uses
+     * mipmaps if the container has more than one level.
+     *
+     * @return a new texture with the contents of this container.
+     */
+    public CUTexture createTexture() {
+        CUTexture result = new CUTexture(data, width, height, format, levels);
+        result.setName(file.path());
+        result.setSource(file, true);
+        return result;
+    }
+
+    /**
+     * Returns the source file of this container.
+     *
+     * @return the source file of this container.
+     */
+    public FileHandle getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the compressed pixel format of this container.
+     *
+     * @return the compressed pixel format of this container.
+     */
+    public CUTexture.PixelFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the width of the base level.
+     *
+     * @return the width of the base level.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the base level.
+     *
+     * @return the height of the base level.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of mipmap levels.
+     *
+     * @return the number of mipmap levels.
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Returns the compressed data of every level.
+     *
+     * The levels are in order from the largest, with no padding between them.
+     *
+     * @return the compressed data of every level.
+     */
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    //region KTX
+    /**
+     * Returns true if the buffer starts with the KTX identifier.
+     *
+     * @param buffer    The file contents
+     *
+     * @return true if the buffer starts with the KTX identifier.
+     */
+    private static boolean isKTX(ByteBuffer buffer) {
+        if (buffer.limit() < KTX_HEADER) {
+            return false;
+        }
+        for (int ii = 0; ii < KTX_IDENTIFIER.length; ii++) {
+            if (buffer.get(ii) != KTX_IDENTIFIER[ii]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the container read from a KTX (version 1) file.
+     *
+     * @param file      The source file
+     * @param buffer    The file contents
+     *
+     * @return the container read from a KTX (version 1) file.
+     */
+    private static CUTextureContainer readKTX(FileHandle file, ByteBuffer buffer) {
+        if (buffer.getInt(12) != KTX_ENDIAN) {
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.getInt(12) != KTX_ENDIAN) {
+                throw new GdxRuntimeException("Invalid KTX endianness: "+file);
+            }
+        }
+
+        int glType   = buffer.getInt(16);
+        int internal = buffer.getInt(28);
+        int width    = buffer.getInt(36);
+        int height   = buffer.getInt(40);
+        int depth    = buffer.getInt(44);
+        int elements = buffer.getInt(48);
+        int faces    = buffer.getInt(52);
+        int levels   = Math.max(1, buffer.getInt(56));
+        int keyvalue = buffer.getInt(60);
+
+        CUTexture.PixelFormat format = CUTexture.PixelFormat.compressedFormat(internal);
+        if (glType != 0 || format == CUTexture.PixelFormat.UNSUPPORTED) {
+            throw new GdxRuntimeException("Unsupported KTX format 0x"+Integer.toHexString(internal)+": "+file);
+        } else if (depth > 1 || elements > 0 || faces != 1) {
+            throw new GdxRuntimeException("KTX file is not a 2D texture: "+file);
+        }
+        checkSize(file, width, height, levels);
+
+        ByteBuffer data = BufferUtils.newByteBuffer(chainSize(format, width, height, levels));
+        int offset = KTX_HEADER+keyvalue;
+        for (int level = 0; level < levels; level++) {
+            int size = levelSize(format, width, height, level);
+            if (offset+4 > buffer.limit() || buffer.getInt(offset) != size) {
+                throw new GdxRuntimeException("Corrupt KTX level "+level+": "+file);
+            }
+            offset += 4;
+            copy(file, buffer, offset, size, data);
+            offset += (size+3) & ~3;
+        }
+        ((Buffer)data).flip();
+        return new CUTextureContainer(file, format, width, height, levels, data);
+    }
+    //endregion
+
+    //region DDS
+    /**
+     * Returns the container read from a DDS file.
+     *
+     * @param file      The source file
+     * @param buffer    The file contents
+     *
+     * @return the container read from a DDS file.
+     */
+    private static CUTextureContainer readDDS(FileHandle file, ByteBuffer buffer) {
+        if (buffer.limit() < DDS_HEADER) {
+            throw new GdxRuntimeException("Truncated DDS header: "+file);
+        }
+
+        int height  = buffer.getInt(12);
+        int width   = buffer.getInt(16);
+        int levels  = Math.max(1, buffer.getInt(28));
+        int pfFlags = buffer.getInt(80);
+        int fourCC  = buffer.getInt(84);
+        int caps2   = buffer.getInt(112);
+        if ((caps2 & (DDSCAPS2_CUBEMAP | DDSCAPS2_VOLUME)) != 0) {
+            throw new GdxRuntimeException("DDS file is not a 2D texture: "+file);
+        } else if ((pfFlags & DDPF_FOURCC) == 0) {
+            throw new GdxRuntimeException("DDS file is not compressed: "+file);
+        }
+
+        CUTexture.PixelFormat format = CUTexture.PixelFormat.UNSUPPORTED;
+        int offset = DDS_HEADER;
+        switch (fourCC) {
+            case FOURCC_DXT1:
+                format = CUTexture.PixelFormat.DXT1;
+                break;
+            case FOURCC_DXT3:
+                format = CUTexture.PixelFormat.DXT3;
+                break;
+            case FOURCC_DXT5:
+                format = CUTexture.PixelFormat.DXT5;
+                break;
+            case FOURCC_DX10:
+                if (buffer.limit() < DDS_HEADER+DDS_DX10_HEADER) {
+                    throw new GdxRuntimeException("Truncated DDS header: "+file);
+                }
+                int dxgi = buffer.getInt(DDS_HEADER);
+                if (buffer.getInt(DDS_HEADER+4) != DX10_TEXTURE2D ||
+                    (buffer.getInt(DDS_HEADER+8) & DX10_TEXTURECUBE) != 0 ||
+                    buffer.getInt(DDS_HEADER+12) > 1) {
+                    throw new GdxRuntimeException("DDS file is not a 2D texture: "+file);
+                }
+                switch (dxgi) {
+                    case DXGI_BC1_UNORM:
+                        format = CUTexture.PixelFormat.DXT1;
+                        break;
+                    case DXGI_BC2_UNORM:
+                        format = CUTexture.PixelFormat.DXT3;
+                        break;
+                    case DXGI_BC3_UNORM:
+                        format = CUTexture.PixelFormat.DXT5;
+                        break;
+                    case DXGI_BC7_UNORM:
+                        format = CUTexture.PixelFormat.BPTC;
+                        break;
+                }
+                offset += DDS_DX10_HEADER;
+                break;
+        }
+        if (format == CUTexture.PixelFormat.UNSUPPORTED) {
+            throw new GdxRuntimeException("Unsupported DDS format: "+file);
+        }
+        checkSize(file, width, height, levels);
+
+        int size = chainSize(format, width, height, levels);
+        ByteBuffer data = BufferUtils.newByteBuffer(size);
+        copy(file, buffer, offset, size, data);
+        ((Buffer)data).flip();
+        return new CUTextureContainer(file, format, width, height, levels, data);
+    }
+    //endregion
+
+    //region Helpers
+    /**
+     * Verifies that the texture dimensions and mipmap levels are valid.
+     *
+     * @param file      The source file
+     * @param width     The width of the base level
+     * @param height    The height of the base level
+     * @param levels    The number of mipmap levels
+     */
+    private static void checkSize(FileHandle file, int width, int height, int levels) {
+        if (width <= 0 || height <= 0) {
+            throw new GdxRuntimeException("Invalid texture size "+width+"x"+height+": "+file);
+        }
+        int maximum = 32-Integer.numberOfLeadingZeros(Math.max(width, height));
+        if (levels > maximum) {
+            throw new GdxRuntimeException("Too many mipmap levels ("+levels+"): "+file);
+        }
+    }
+
+    /**
+     * Returns the size of a mipmap level in bytes.
+     *
+     * @param format    The compressed pixel format
+     * @param width     The width of the base level
+     * @param height    The height of the base level
+     * @param level     The mipmap level
+     *
+     * @return the size of a mipmap level in bytes.
+     */
+    private static int levelSize(CUTexture.PixelFormat format, int width, int height, int level) {
+        return format.dataSize(Math.max(1, width >> level), Math.max(1, height >> level));
+    }
+
+    /**
+     * Returns the size of a mipmap chain in bytes.
+     *
+     * @param format    The compressed pixel format
+     * @param width     The width of the base level
+     * @param height    The height of the base level
+     * @param levels    The number of mipmap levels
+     *
+     * @return the size of a mipmap chain in bytes.
+     */
+    private static int chainSize(CUTexture.PixelFormat format, int width, int height, int levels) {
+        int result = 0;
+        for (int level = 0; level < levels; level++) {
+            result += levelSize(format, width, height, level);
+        }
+        return result;
+    }
+
+    /**
+     * Copies bytes from the file contents to the end of the data buffer.
+     *
+     * @param file      The source file (for errors)
+     * @param buffer    The file contents
+     * @param offset    The offset of the bytes to copy
+     * @param size      The number of bytes to copy
+     * @param data      The data buffer
+     */
+    private static void copy(FileHandle file, ByteBuffer buffer, int offset, int size, ByteBuffer data) {
+        if (offset+size > buffer.limit()) {
+            throw new GdxRuntimeException("Truncated texture data: "+file);
+        }
+        ByteBuffer range = buffer.duplicate();
+        ((Buffer)range).limit(offset+size);
+        ((Buffer)range).position(offset);
+        data.put(range);
+    }
+    //endregion
+}
@@ -0,0 +1,304 @@
+package edu.cornell.gdiac.render;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.*;
+
+/**
+ * This class counts the texture switches that split the draws of a sprite batch.
+ *
+ * A heat map is attached to a sprite batch with {@link CUSpriteBatch#setHeatMap}.
+ * From then on, every call to {@link CUSpriteBatch#setTexture} that breaks a
+ * batch is recorded as a transition from the previous texture to the new one.
+ * The counts are kept both for the current pass (from {@link CUSpriteBatch#begin}
+ * to {@link CUSpriteBatch#end}) and for the whole session.
+ *
+ * Textures are identified by their OpenGL handle, and named by
+ * {@link CUTexture#getName} when available. Drawing with no texture (e.g.
+ * solid shapes) is recorded as the texture {@link #NONE}. The counts can be
+ * exported as a matrix with {@link #write}, and {@link #proposeGroups} uses
+ * them to suggest which textures should share an atlas page. Textures that
+ * are frequently drawn one after another belong on the same page.
+ */
+public class CUTextureHeatMap {
+    /** The name used for drawing with no texture */
+    public static final String NONE = "(none)";
+
+    /** The texture index of each OpenGL handle */
+    private final IntIntMap indices = new IntIntMap();
+    /** The name of each texture index */
+    private final Array<String> names = new Array<>();
+    /** The area (in pixels) of each texture index */
+    private final IntArray areas = new IntArray();
+    /** The session transition counts, indexed by from*capacity+to */
+    private int[] session = new int[0];
+    /** The pass transition counts, indexed by from*capacity+to */
+    private int[] pass = new int[0];
+    /** The number of texture indices that fit in the count matrices */
+    private int capacity;
+    /** The number of passes recorded */
+    private int passes;
+
+    /**
+     * Creates an empty heat map.
+     */
+    public CUTextureHeatMap() {
+        index(null);
+    }
+
+    /**
+     * Returns the number of distinct textures recorded (including {@link #NONE}).
+     *
+     * @return the number of distinct textures recorded.
+     */
+    public int getTextureCount() {
+        return names.size;
+    }
+
+    /**
+     * Returns the name of the given texture index.
+     *
+     * @param index The texture index
+     *
+     * @return the name of the given texture index.
+     */
+    public String getName(int index) {
+        return names.get(index);
+    }
+
+    /**
+     * Returns the number of passes recorded.
+     *
+     * @return the number of passes recorded.
+     */
+    public int getPassCount() {
+        return passes;
+    }
+
+    /**
+     * Returns the number of transitions between two textures.
+     *
+     * @param from      The index of the previous texture
+     * @param to        The index of the new texture
+     * @param session   Whether to return the session count (or the pass count)
+     *
+     * @return the number of transitions between two textures.
+     */
+    public int getCount(int from, int to, boolean session) {
+        return (session ? this.session : pass)[from*capacity+to];
+    }
+
+    /**
+     * Resets all counts, for both the pass and the session.
+     *
+     * The recorded textures are kept.
+     */
+    public void clear() {
+        java.util.Arrays.fill(session, 0);
+        java.util.Arrays.fill(pass, 0);
+        passes = 0;
+    }
+
+    /**
+     * Starts a new pass, resetting the pass counts.
+     */
+    void beginPass() {
+        java.util.Arrays.fill(pass, 0);
+        passes++;
+    }
+
+    /**
+     * Records a texture switch that split a batch.
+     *
+     * @param from  The previous texture (or null)
+     * @param to    The new texture (or null)
+     */
+    void record(Texture from, Texture to) {
+        int a = index(from);
+        int b = index(to);
+        session[a*capacity+b]++;
+        pass[a*capacity+b]++;
+    }
+
+    /**
+     * Returns the index of the given texture, adding it if necessary.
+     *
+     * @param texture   The texture (or null)
+     *
+     * @return the index of the given texture.
+     */
+    private int index(Texture texture) {
+        int handle = texture == null ? 0 : texture.getTextureObjectHandle();
+        int result = indices.get(handle, -1);
+        if (result != -1) {
+            return result;
+        }
+
+        result = names.size;
+        indices.put(handle, result);
+        if (texture == null) {
+            names.add(NONE);
+            areas.add(0);
+        } else {
+            String name = texture instanceof CUTexture ? ((CUTexture)texture).getName() : null;
+            names.add(name != null ? name : "texture#"+handle);
+            areas.add(texture.getWidth()*texture.getHeight());
+        }
+        if (names.size > capacity) {
+            int size = Math.max(8, 2*capacity);
+            session = resize(session, capacity, size);
+            pass = resize(pass, capacity, size);
+            capacity = size;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy of the square matrix with a larger size.
+     *
+     * @param matrix    The matrix
+     * @param size      The current size
+     * @param resize    The new size
+     *
+     * @return a copy of the square matrix with a larger size.
+     */
+    private static int[] resize(int[] matrix, int size, int resize) {
+        int[] result = new int[resize*resize];
+        for (int ii = 0; ii < size; ii++) {
+            System.arraycopy(matrix, ii*size, result, ii*resize, size);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the transition counts as a CSV matrix.
+     *
+     * The first row and column are the texture names. The cell in row from
+     * and column to is the number of transitions from one to the other.
+     *
+     * @param writer    The output
+     * @param session   Whether to write the session counts (or the pass counts)
+     */
+    public void write(Writer writer, boolean session) {
+        int[] counts = session ? this.session : pass;
+        try {
+            writer.write("from\\to");
+            for (int ii = 0; ii < names.size; ii++) {
+                writer.write(',');
+                writer.write(quote(names.get(ii)));
+            }
+            writer.write('\n');
+            for (int ii = 0; ii < names.size; ii++) {
+                writer.write(quote(names.get(ii)));
+                for (int jj = 0; jj < names.size; jj++) {
+                    writer.write(',');
+                    writer.write(Integer.toString(counts[ii*capacity+jj]));
+                }
+                writer.write('\n');
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Unable to write heat map", e);
+        }
+    }
+
+    /**
+     * Returns the name quoted for CSV, if necessary.
+     *
+     * @param name  The texture name
+     *
+     * @return the name quoted for CSV, if necessary.
+     */
+    private static String quote(String name) {
+        if (name.indexOf(',') == -1 && name.indexOf('"') == -1 && name.indexOf('\n') == -1) {
+            return name;
+        }
+        return '"'+name.replace("\"", "\"\"")+'"';
+    }
+
+    /**
+     * Returns proposed atlas groups from the session counts.
+     *
+     * Each group is a set of texture names that fit together on an atlas page
+     * of the given area. The groups are built greedily. The texture pairs are
+     * visited by the number of transitions between them (in either direction),
+     * most frequent first, and the groups of the two textures are merged if
+     * their total area fits on a page. Textures with no transitions to merge,
+     * and {@link #NONE}, are omitted.
+     *
+     * The area ignores packing waste, so a page should be somewhat larger than
+     * the sum of its textures. Pass a smaller area to leave room for waste.
+     *
+     * @param pageArea  The area (in pixels) available on an atlas page
+     *
+     * @return proposed atlas groups from the session counts.
+     */
+    public Array<Array<String>> proposeGroups(long pageArea) {
+        int size = names.size;
+        int[] parent = new int[size];
+        long[] total = new long[size];
+        for (int ii = 0; ii < size; ii++) {
+            parent[ii] = ii;
+            total[ii] = areas.get(ii);
+        }
+
+        // Undirected edges, sorted by weight (high 32 bits) then index
+        LongArray edges = new LongArray();
+        for (int ii = 1; ii < size; ii++) {
+            for (int jj = ii+1; jj < size; jj++) {
+                long weight = (long)session[ii*capacity+jj]+session[jj*capacity+ii];
+                if (weight > 0) {
+                    edges.add(Math.min(weight, Integer.MAX_VALUE) << 32 | (long)ii*size+jj);
+                }
+            }
+        }
+        edges.sort();
+
+        boolean[] merged = new boolean[size];
+        for (int ii = edges.size-1; ii >= 0; ii--) {
+            int pair = (int)edges.get(ii);
+            int a = find(parent, pair / size);
+            int b = find(parent, pair % size);
+            if (a != b && total[a]+total[b] <= pageArea) {
+                parent[b] = a;
+                total[a] += total[b];
+                merged[pair / size] = true;
+                merged[pair % size] = true;
+            }
+        }
+
+        Array<Array<String>> result = new Array<>();
+        IntIntMap groups = new IntIntMap();
+        for (int ii = 1; ii < size; ii++) {
+            if (merged[ii]) {
+                int root = find(parent, ii);
+                int group = groups.get(root, -1);
+                if (group == -1) {
+                    group = result.size;
+                    groups.put(root, group);
+                    result.add(new Array<String>());
+                }
+                result.get(group).add(names.get(ii));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the root of the given element in a union-find forest.
+     *
+     * @param parent    The parent of each element
+     * @param index     The element
+     *
+     * @return the root of the given element in a union-find forest.
+     */
+    private static int find(int[] parent, int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+}
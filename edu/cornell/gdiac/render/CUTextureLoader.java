@@ -0,0 +1,565 @@
+package edu.cornell.gdiac.render;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.GL30;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * This class streams textures from files without stalling the rendering thread.
+ *
+ * The constructors of {@link CUTexture} decode and upload an image in a single
+ * call on the rendering thread. For a large level this causes visible hitches.
+ * This class splits that work in two. Images are decoded on a pool of worker
+ * threads into direct buffers. Then each call to {@link #update} (which must be
+ * on the rendering thread) uploads the decoded images, up to a budget of bytes
+ * per frame.
+ *
+ * A call to {@link #load} returns a {@link Handle} immediately. Until the
+ * texture is uploaded, the handle returns the blank texture from
+ * {@link CUTexture#getBlank}, so it can be drawn right away as a placeholder.
+ * At least one image is uploaded every update, so an image larger than the
+ * budget still loads.
+ *
+ * By default, mipmaps are generated by OpenGL during the upload. With a
+ * mipmap filter (see {@link #setMipmapFilter}), the mipmap chain is computed
+ * on the worker threads instead, and each level is uploaded explicitly. With a
+ * cache (see {@link #setCache}), images are read through a {@link CUTextureCache},
+ * which also persists any computed mipmap chain.
+ */
+public class CUTextureLoader implements Disposable {
+    /** The default upload budget (in bytes per frame) */
+    public static final long DEFAULT_BUDGET = 4 << 20;
+    /** The default maximum mipmap level in OpenGL (restored on reload) */
+    private static final int DEFAULT_MAX_LEVEL = 1000;
+
+    /**
+     * A texture that is being loaded.
+     *
+     * The handle is safe to query from any thread, but the texture should only
+     * be used on the rendering thread.
+     */
+    public static class Handle {
+        /** The image file */
+        private final FileHandle file;
+        /** Whether the texture should use mipmaps */
+        private final boolean mipMaps;
+        /** Whether to premultiply the color channels by alpha */
+        private final boolean premultiply;
+        /** The existing texture to reload (or null for a new texture) */
+        private final CUTexture target;
+        /** Whether the file is a KTX or DDS container */
+        private final boolean container;
+        /** The decoded pixels (until uploaded) */
+        private ByteBuffer data;
+        /** The image width */
+        private int width;
+        /** The image height */
+        private int height;
+        /** The image pixel format */
+        private CUTexture.PixelFormat format;
+        /** The number of mipmap levels in the data */
+        private int levels = 1;
+        /** The filter for computing mipmaps (or null to generate them in OpenGL) */
+        private CUMipmapGenerator.Filter filter;
+        /** The cache to read the image through (or null) */
+        private CUTextureCache cache;
+        /** The uploaded texture (or null if not ready) */
+        private volatile CUTexture texture;
+        /** The error while decoding (or null if none) */
+        private volatile Throwable error;
+        /** Whether this load has been cancelled */
+        private volatile boolean cancelled;
+
+        /**
+         * Creates a handle for the given file.
+         *
+         * @param file          The image file
+         * @param mipMaps       Whether the texture should use mipmaps
+         * @param premultiply   Whether to premultiply the color channels by alpha
+         */
+        Handle(FileHandle file, boolean mipMaps, boolean premultiply) {
+            this(file, mipMaps, premultiply, null, false);
+        }
+
+        /**
+         * Creates a handle for the given file, reloading into the given texture.
+         *
+         * @param file          The image file
+         * @param mipMaps       Whether the texture should use mipmaps
+         * @param premultiply   Whether to premultiply the color channels by alpha
+         * @param target        The texture to reload (or null for a new texture)
+         * @param container     Whether the file is a KTX or DDS container
+         */
+        Handle(FileHandle file, boolean mipMaps, boolean premultiply, CUTexture target, boolean container) {
+            this.file = file;
+            this.mipMaps = mipMaps;
+            this.premultiply = premultiply;
+            this.target = target;
+            this.container = container;
+        }
+
+        /**
+         * Returns the image file of this handle.
+         *
+         * @return the image file of this handle.
+         */
+        public FileHandle getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the loaded texture, or the blank texture if it is not ready.
+         *
+         * @return the loaded texture, or the blank texture if it is not ready.
+         */
+        public Texture getTexture() {
+            CUTexture result = texture;
+            return result != null ? result : CUTexture.getBlank();
+        }
+
+        /**
+         * Returns true if the texture has been uploaded.
+         *
+         * @return true if the texture has been uploaded.
+         */
+        public boolean isReady() {
+            return texture != null;
+        }
+
+        /**
+         * Returns true if the image could not be decoded.
+         *
+         * In that case, this handle returns the blank texture forever.
+         *
+         * @return true if the image could not be decoded.
+         */
+        public boolean isFailed() {
+            return error != null;
+        }
+
+        /**
+         * Returns the error while decoding the image (or null if none).
+         *
+         * @return the error while decoding the image (or null if none).
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        /**
+         * Cancels this load if the texture is not yet uploaded.
+         *
+         * A cancelled image is not uploaded, and this handle returns the blank
+         * texture forever. This must be called before disposing the target of
+         * a reload, as the upload would otherwise bind a deleted texture.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Returns true if this load has been cancelled.
+         *
+         * @return true if this load has been cancelled.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Decodes the image into a direct buffer.
+         *
+         * This method is called on a worker thread.
+         */
+        void decode() {
+            if (container) {
+                try {
+                    CUTextureContainer contents = CUTextureContainer.read(file);
+                    width  = contents.getWidth();
+                    height = contents.getHeight();
+                    levels = contents.getLevels();
+                    format = contents.getFormat();
+                    data = contents.getData();
+                } catch (Throwable e) {
+                    error = e;
+                }
+                return;
+            }
+
+            CUMipmapGenerator.Filter chain = mipMaps ? filter : null;
+            if (cache != null) {
+                try {
+                    CUTextureCache.Image image = cache.read(file, premultiply, chain);
+                    width  = image.getWidth();
+                    height = image.getHeight();
+                    levels = image.getLevels();
+                    format = image.getFormat();
+                    data = image.getData();
+                } catch (Throwable e) {
+                    error = e;
+                }
+                return;
+            }
+
+            Pixmap pixmap = null;
+            try {
+                pixmap = new Pixmap(file);
+                CUTexture.PixelFormat fmt = CUTexture.PixelFormat.copyFormat(pixmap.getFormat(), premultiply);
+                ByteBuffer buffer = CUTexture.copyPixels(pixmap, premultiply);
+                if (chain != null && CUMipmapGenerator.supports(fmt)) {
+                    buffer = CUMipmapGenerator.generate(buffer, pixmap.getWidth(), pixmap.getHeight(), fmt, chain);
+                    levels = CUMipmapGenerator.levelCount(pixmap.getWidth(), pixmap.getHeight());
+                }
+                width  = pixmap.getWidth();
+                height = pixmap.getHeight();
+                format = fmt;
+                data = buffer;
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                if (pixmap != null) {
+                    pixmap.dispose();
+                }
+            }
+        }
+
+        /**
+         * Uploads the decoded image to a new texture (or the reload target).
+         *
+         * This method must be called on the rendering thread. It does nothing
+         * if the reload target has been disposed.
+         */
+        void upload() {
+            if (target != null && target.getTextureObjectHandle() == 0) {
+                data = null;
+                return;
+            }
+            GL30 gl = Gdx.gl30;
+            gl.glPixelStorei(GL30.GL_UNPACK_ALIGNMENT, 1);
+            CUTexture result;
+            if (target != null) {
+                result = target;
+                result.bind();
+                if (levels > 1 || format.isCompressed()) {
+                    ByteBuffer level = data.duplicate();
+                    int offset = level.position();
+                    for (int ii = 0; ii < levels; ii++) {
+                        int w = Math.max(1, width >> ii);
+                        int h = Math.max(1, height >> ii);
+                        int size = format.dataSize(w, h);
+                        ((Buffer)level).limit(offset+size);
+                        ((Buffer)level).position(offset);
+                        if (format.isCompressed()) {
+                            gl.glCompressedTexImage2D(GL30.GL_TEXTURE_2D, ii, format.internalFormat(), w, h, 0,
+                                                      size, level);
+                        } else {
+                            gl.glTexImage2D(GL30.GL_TEXTURE_2D, ii, format.internalFormat(), w, h, 0,
+                                            format.glFormat(), format.formatType(), level);
+                        }
+                        offset += size;
+                    }
+                    gl.glTexParameteri(GL30.GL_TEXTURE_2D, GL30.GL_TEXTURE_MAX_LEVEL, levels-1);
+                } else {
+                    // Eviction limits the texture to level 0
+                    gl.glTexParameteri(GL30.GL_TEXTURE_2D, GL30.GL_TEXTURE_MAX_LEVEL, DEFAULT_MAX_LEVEL);
+                    gl.glTexImage2D(GL30.GL_TEXTURE_2D, 0, format.internalFormat(), width, height, 0,
+                                    format.glFormat(), format.formatType(), data);
+                    if (mipMaps) {
+                        gl.glGenerateMipmap(GL30.GL_TEXTURE_2D);
+                    }
+                }
+            } else if (levels > 1) {
+                result = new CUTexture(data, width, height, format, levels);
+                result.setName(file.path());
+                result.setSource(file, false);
+            } else {
+                result = new CUTexture(data, width, height, format, mipMaps);
+                result.setName(file.path());
+                result.setSource(file, false);
+            }
+            gl.glPixelStorei(GL30.GL_UNPACK_ALIGNMENT, 4);
+            result.setPremultiplied(premultiply);
+            data = null;
+            texture = result;
+        }
+    }
+
+    /** The worker threads decoding images */
+    private final ExecutorService workers;
+    /** The decoded images waiting for upload */
+    private final ConcurrentLinkedQueue<Handle> decoded = new ConcurrentLinkedQueue<>();
+    /** The number of images still decoding */
+    private final AtomicInteger decoding = new AtomicInteger();
+    /** The upload budget (in bytes per frame) */
+    private long budget = DEFAULT_BUDGET;
+    /** The filter for computing mipmaps (or null to generate them in OpenGL) */
+    private volatile CUMipmapGenerator.Filter mipmapFilter;
+    /** The cache to read images through (or null) */
+    private volatile CUTextureCache cache;
+
+    /**
+     * Creates a loader with one worker per available processor (minus one).
+     */
+    public CUTextureLoader() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors()-1));
+    }
+
+    /**
+     * Creates a loader with the given number of worker threads.
+     *
+     * The worker threads are daemon threads, so they do not prevent the
+     * application from exiting.
+     *
+     * @param threads   The number of worker threads
+     */
+    public CUTextureLoader(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Loader must have at least one thread");
+        }
+        workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "CUTextureLoader-"+count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Stops the worker threads.
+     *
+     * Images that are not yet uploaded are abandoned. Textures that were
+     * already uploaded belong to the caller, and are not disposed.
+     */
+    @Override
+    public void dispose() {
+        workers.shutdownNow();
+        decoded.clear();
+    }
+
+    /**
+     * Sets the upload budget in bytes per frame.
+     *
+     * @param bytes The upload budget in bytes per frame
+     */
+    public void setBudget(long bytes) {
+        budget = bytes;
+    }
+
+    /**
+     * Returns the upload budget in bytes per frame.
+     *
+     * @return the upload budget in bytes per frame.
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the filter for computing mipmaps on the worker threads.
+     *
+     * If the filter is null (the default), mipmaps are generated by OpenGL on
+     * the rendering thread during {@link #update}. Otherwise, the full mipmap
+     * chain is computed by {@link CUMipmapGenerator} when the image is decoded,
+     * and {@link #update} only uploads the levels. This only affects images
+     * loaded later.
+     *
+     * @param filter    The filter for computing mipmaps (or null)
+     */
+    public void setMipmapFilter(CUMipmapGenerator.Filter filter) {
+        mipmapFilter = filter;
+    }
+
+    /**
+     * Returns the filter for computing mipmaps on the worker threads.
+     *
+     * @return the filter for computing mipmaps on the worker threads (or null).
+     */
+    public CUMipmapGenerator.Filter getMipmapFilter() {
+        return mipmapFilter;
+    }
+
+    /**
+     * Sets the cache to read images through.
+     *
+     * If the cache is not null, images are read with {@link CUTextureCache#read}
+     * on the worker threads, so a cached image is memory mapped rather than
+     * decoded. Any mipmap chain computed with the mipmap filter is cached as
+     * well. This only affects images loaded later.
+     *
+     * @param cache The cache to read images through (or null)
+     */
+    public void setCache(CUTextureCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cache to read images through.
+     *
+     * @return the cache to read images through (or null).
+     */
+    public CUTextureCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns a handle to a texture loaded from the given file.
+     *
+     * The file is decoded on a worker thread, and uploaded by a later call to
+     * {@link #update}.
+     *
+     * @param file  The image file
+     *
+     * @return a handle to a texture loaded from the given file.
+     */
+    public Handle load(FileHandle file) {
+        return load(file, false, false);
+    }
+
+    /**
+     * Returns a handle to a texture loaded from the given file.
+     *
+     * The file is decoded on a worker thread, and uploaded by a later call to
+     * {@link #update}. If premultiply is true, the color channels are multiplied
+     * by alpha on the worker thread (see {@link CUTexture#premultiply}).
+     *
+     * @param file          The image file
+     * @param mipMaps       Whether the texture should use mipmaps
+     * @param premultiply   Whether to premultiply the color channels by alpha
+     *
+     * @return a handle to a texture loaded from the given file.
+     */
+    public Handle load(FileHandle file, boolean mipMaps, boolean premultiply) {
+        return submit(new Handle(file, mipMaps, premultiply));
+    }
+
+    /**
+     * Returns a handle to reload the given texture from a file.
+     *
+     * The file is decoded on a worker thread, and a later call to {@link #update}
+     * replaces the contents of the existing texture (keeping its OpenGL handle).
+     * The file should have the same size as the texture, as the texture
+     * size is not changed. This is used by {@link CUTextureResidency} to restore
+     * evicted textures. Until then, the handle returns the blank texture.
+     *
+     * @param texture       The texture to reload
+     * @param file          The image file
+     * @param mipMaps       Whether the texture should use mipmaps
+     *
+     * @return a handle to reload the given texture from a file.
+     */
+    public Handle reload(CUTexture texture, FileHandle file, boolean mipMaps) {
+        return reload(texture, file, mipMaps, false);
+    }
+
+    /**
+     * Returns a handle to reload the given texture from a file.
+     *
+     * If container is true, the file is read with {@link CUTextureContainer}
+     * (keeping its compressed format and its mipmaps) instead of decoded as an
+     * image. Otherwise, this is the same as {@link #reload(CUTexture, FileHandle, boolean)}.
+     *
+     * @param texture       The texture to reload
+     * @param file          The image or container file
+     * @param mipMaps       Whether the texture should use mipmaps
+     * @param container     Whether the file is a KTX or DDS container
+     *
+     * @return a handle to reload the given texture from a file.
+     */
+    Handle reload(CUTexture texture, FileHandle file, boolean mipMaps, boolean container) {
+        return submit(new Handle(file, mipMaps, texture.isPremultiplied(), texture, container));
+    }
+
+    /**
+     * Decodes the image of the handle on a worker thread.
+     *
+     * @param handle    The handle to decode
+     *
+     * @return the handle, for chaining
+     */
+    private Handle submit(final Handle handle) {
+        handle.filter = mipmapFilter;
+        handle.cache = cache;
+        decoding.incrementAndGet();
+        workers.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (handle.cancelled) {
+                    decoding.decrementAndGet();
+                    return;
+                }
+                handle.decode();
+                if (handle.error == null) {
+                    decoded.add(handle);
+                } else {
+                    Gdx.app.error("CUTextureLoader", "Could not decode "+handle.file, handle.error);
+                }
+                decoding.decrementAndGet();
+            }
+        });
+        return handle;
+    }
+
+    /**
+     * Uploads decoded images, up to the budget.
+     *
+     * This method must be called on the rendering thread, typically once per
+     * frame. At least one image is uploaded (if any are ready), even if it is
+     * larger than the budget.
+     *
+     * @return the number of textures uploaded
+     */
+    public int update() {
+        long bytes = 0;
+        int count = 0;
+        Handle next;
+        while ((count == 0 || bytes < budget) && (next = decoded.peek()) != null) {
+            if (next.cancelled) {
+                decoded.poll();
+                next.data = null;
+                continue;
+            }
+            long size = next.data.remaining();
+            if (count > 0 && bytes+size > budget) {
+                break;
+            }
+            decoded.poll();
+            next.upload();
+            bytes += size;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if every requested image has been uploaded (or has failed).
+     *
+     * @return true if every requested image has been uploaded (or has failed).
+     */
+    public boolean isIdle() {
+        return decoding.get() == 0 && decoded.isEmpty();
+    }
+
+    /**
+     * Returns the number of images waiting to be decoded or uploaded.
+     *
+     * @return the number of images waiting to be decoded or uploaded.
+     */
+    public int getPending() {
+        return decoding.get()+decoded.size();
+    }
+}
@@ -0,0 +1,331 @@
+package edu.cornell.gdiac.render;
+
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.GL30;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.BufferUtils;
+
+/**
+ * This class keeps the graphics memory used by textures within a budget.
+ *
+ * A residency manager is installed with {@link CUTexture#setResidency}. From
+ * then on, every new {@link CUTexture} is registered with the manager, which
+ * tracks its size in graphics memory and the last frame that it was bound.
+ * Each call to {@link #update} (once per frame, outside of any sprite batch
+ * pass) enforces the memory budget. While the resident textures are over
+ * budget, the least recently used texture that can be reloaded is evicted.
+ *
+ * Only textures loaded from a file can be reloaded, and so only those are
+ * evicted. This includes textures created by a {@link CUTextureLoader}, a
+ * {@link CUTextureCache}, or a {@link CUTextureContainer}, but not textures
+ * created from a pixmap or a buffer. An evicted texture keeps its OpenGL
+ * handle and its size, but its graphics memory (including any mipmaps) is
+ * replaced with a single white pixel. The first time that an evicted texture
+ * is bound again, it is reloaded in the background with a
+ * {@link CUTextureLoader}, and so it draws as a placeholder for a few frames.
+ * Containers are reloaded with {@link CUTextureContainer}, so that they keep
+ * their compressed format.
+ * Textures used in the current or previous frame are never evicted.
+ */
+public class CUTextureResidency {
+    /** The residency state of a texture with its full contents */
+    private static final int RESIDENT = 0;
+    /** The residency state of an evicted texture */
+    private static final int EVICTED = 1;
+    /** The residency state of a texture being reloaded */
+    private static final int RELOADING = 2;
+    /** The residency state of a texture that could not be reloaded */
+    private static final int FAILED = 3;
+    /** The graphics memory of the placeholder pixel of an evicted texture */
+    private static final long PLACEHOLDER_BYTES = 4;
+
+    /**
+     * The residency of a single texture.
+     */
+    static class Entry {
+        /** The manager of this entry */
+        final CUTextureResidency owner;
+        /** The tracked texture */
+        final CUTexture texture;
+        /** The file to reload the texture from (or null) */
+        final FileHandle source;
+        /** Whether the source file is a KTX or DDS container */
+        final boolean container;
+        /** The size of the texture in graphics memory */
+        final long bytes;
+        /** Whether the texture uses mipmaps */
+        final boolean mipMaps;
+        /** The last frame that the texture was bound */
+        long lastUse;
+        /** The residency state */
+        int state;
+        /** The pending reload (or null) */
+        CUTextureLoader.Handle reload;
+
+        /**
+         * Creates an entry for the given texture.
+         *
+         * @param owner     The residency manager
+         * @param texture   The tracked texture
+         * @param source    The file to reload the texture from (or null)
+         * @param container Whether the source file is a KTX or DDS container
+         */
+        Entry(CUTextureResidency owner, CUTexture texture, FileHandle source, boolean container) {
+            this.owner = owner;
+            this.texture = texture;
+            this.source = source;
+            this.container = container;
+            this.mipMaps = texture.getTextureData().useMipMaps();
+            long size = Math.max(texture.getFormat().dataSize(texture.getWidth(), texture.getHeight()), 0);
+            this.bytes = mipMaps ? size+size/3 : size;
+            this.lastUse = owner.frame;
+        }
+
+        /**
+         * Records that the texture was bound, reloading it if it was evicted.
+         */
+        void touch() {
+            lastUse = owner.frame;
+            if (state == EVICTED) {
+                owner.reload(this);
+            }
+        }
+
+        /**
+         * Removes this entry from its manager (when the texture is disposed).
+         */
+        void release() {
+            owner.release(this);
+        }
+    }
+
+    /** The tracked textures */
+    private final Array<Entry> entries = new Array<>();
+    /** The textures being reloaded */
+    private final Array<Entry> reloading = new Array<>();
+    /** The loader for evicted textures */
+    private final CUTextureLoader loader;
+    /** The memory budget in bytes */
+    private long budget;
+    /** The graphics memory used by resident textures */
+    private long resident;
+    /** The current frame */
+    private long frame;
+    /** The number of textures evicted */
+    private int evictions;
+    /** The number of textures reloaded */
+    private int reloads;
+    /** A single white pixel, for evicted textures */
+    private final ByteBuffer placeholder;
+
+    /**
+     * Creates a residency manager with the given budget.
+     *
+     * The loader is used to reload evicted textures. The manager does not own
+     * the loader, but {@link CUTextureLoader#update} must be called each frame
+     * for reloads to complete.
+     *
+     * @param budget    The memory budget in bytes
+     * @param loader    The loader for evicted textures
+     */
+    public CUTextureResidency(long budget, CUTextureLoader loader) {
+        if (loader == null) {
+            throw new IllegalArgumentException("Residency requires a texture loader");
+        }
+        this.budget = budget;
+        this.loader = loader;
+        placeholder = BufferUtils.newByteBuffer(4);
+        placeholder.put(0, (byte)0xFF).put(1, (byte)0xFF).put(2, (byte)0xFF).put(3, (byte)0xFF);
+    }
+
+    /**
+     * Sets the memory budget in bytes.
+     *
+     * The budget is enforced at the next call to {@link #update}.
+     *
+     * @param bytes The memory budget in bytes
+     */
+    public void setBudget(long bytes) {
+        budget = bytes;
+    }
+
+    /**
+     * Returns the memory budget in bytes.
+     *
+     * @return the memory budget in bytes.
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Returns the graphics memory used by the resident textures.
+     *
+     * This is an estimate based on the size and format of each texture.
+     *
+     * @return the graphics memory used by the resident textures.
+     */
+    public long getResidentBytes() {
+        return resident;
+    }
+
+    /**
+     * Returns the number of textures tracked by this manager.
+     *
+     * @return the number of textures tracked by this manager.
+     */
+    public int getTextureCount() {
+        return entries.size;
+    }
+
+    /**
+     * Returns the number of textures evicted.
+     *
+     * @return the number of textures evicted.
+     */
+    public int getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of evicted textures reloaded.
+     *
+     * @return the number of evicted textures reloaded.
+     */
+    public int getReloads() {
+        return reloads;
+    }
+
+    /**
+     * Advances the frame, completes reloads, and enforces the memory budget.
+     *
+     * This method must be called on the rendering thread, once per frame, and
+     * not during a sprite batch pass (as eviction changes the bound texture).
+     *
+     * @return the number of textures evicted
+     */
+    public int update() {
+        frame++;
+        for (int ii = reloading.size-1; ii >= 0; ii--) {
+            Entry entry = reloading.get(ii);
+            if (entry.reload.isReady()) {
+                entry.state = RESIDENT;
+                entry.reload = null;
+                resident += entry.bytes-PLACEHOLDER_BYTES;
+                reloads++;
+                reloading.removeIndex(ii);
+            } else if (entry.reload.isFailed()) {
+                entry.state = FAILED;
+                entry.reload = null;
+                reloading.removeIndex(ii);
+            }
+        }
+
+        int count = 0;
+        while (resident > budget) {
+            Entry oldest = null;
+            for (Entry entry : entries) {
+                if (entry.state == RESIDENT && entry.source != null && entry.lastUse < frame-1 &&
+                    (oldest == null || entry.lastUse < oldest.lastUse)) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null) {
+                break;
+            }
+            evict(oldest);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns a new entry for the given texture.
+     *
+     * @param texture   The texture to track
+     * @param source    The file to reload the texture from (or null)
+     *
+     * @return a new entry for the given texture.
+     */
+    Entry register(CUTexture texture, FileHandle source) {
+        return register(texture, source, false);
+    }
+
+    /**
+     * Returns a new entry for the given texture.
+     *
+     * If container is true, the texture is reloaded from the source file with
+     * {@link CUTextureContainer}, and not decoded as an image.
+     *
+     * @param texture   The texture to track
+     * @param source    The file to reload the texture from (or null)
+     * @param container Whether the source file is a KTX or DDS container
+     *
+     * @return a new entry for the given texture.
+     */
+    Entry register(CUTexture texture, FileHandle source, boolean container) {
+        Entry entry = new Entry(this, texture, source, container);
+        entries.add(entry);
+        resident += entry.bytes;
+        return entry;
+    }
+
+    /**
+     * Stops tracking the given entry.
+     *
+     * @param entry The entry to release
+     */
+    private void release(Entry entry) {
+        if (entries.removeValue(entry, true)) {
+            resident -= entry.state == RESIDENT ? entry.bytes : PLACEHOLDER_BYTES;
+        }
+        if (entry.reload != null) {
+            // The texture is disposed, so the reload must not upload into it
+            entry.reload.cancel();
+            entry.reload = null;
+        }
+        reloading.removeValue(entry, true);
+    }
+
+    /**
+     * Evicts the texture of the given entry, releasing its graphics memory.
+     *
+     * Level 0 is replaced by the placeholder pixel and every mipmap level is
+     * resized to empty, releasing its memory. The maximum level is set to 0,
+     * so the texture remains complete (and does not sample black) with a
+     * mipmap filter. It is restored when the texture is reloaded.
+     *
+     * @param entry The entry to evict
+     */
+    private void evict(Entry entry) {
+        GL30 gl = Gdx.gl30;
+        entry.texture.bind();
+        gl.glTexImage2D(GL30.GL_TEXTURE_2D, 0, GL30.GL_RGBA8, 1, 1, 0,
+                        GL30.GL_RGBA, GL30.GL_UNSIGNED_BYTE, placeholder);
+        if (entry.mipMaps) {
+            int size = Math.max(entry.texture.getWidth(), entry.texture.getHeight());
+            for (int level = 1; (size >> level) > 0; level++) {
+                gl.glTexImage2D(GL30.GL_TEXTURE_2D, level, GL30.GL_RGBA8, 0, 0, 0,
+                                GL30.GL_RGBA, GL30.GL_UNSIGNED_BYTE, null);
+            }
+        }
+        gl.glTexParameteri(GL30.GL_TEXTURE_2D, GL30.GL_TEXTURE_MAX_LEVEL, 0);
+        entry.state = EVICTED;
+        resident -= entry.bytes-PLACEHOLDER_BYTES;
+        evictions++;
+    }
+
+    /**
+     * Starts reloading the texture of the given entry.
+     *
+     * @param entry The entry to reload
+     */
+    private void reload(Entry entry) {
+        entry.state = RELOADING;
+        entry.reload = loader.reload(entry.texture, entry.source, entry.mipMaps, entry.container);
+        reloading.add(entry);
+    }
+}
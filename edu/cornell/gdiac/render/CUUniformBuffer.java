@@ -43,6 +43,8 @@ public class CUUniformBuffer implements Disposable {
     private String name;
     /** Temporary data */
     private final float[] tempdata = new float[16];
+    /** A buffer for querying the active uniform buffer */
+    private final IntBuffer query = BufferUtils.newIntBuffer(1);
     /** Whether this class has been initialized, for finalizer */
     private boolean initialized;
 
@@ -197,6 +199,17 @@ public class CUUniformBuffer implements Disposable {
      */
     public int getBlockCount() { return blockCount; }
 
+    /**
+     * Returns the stride (in bytes) between two blocks of this buffer.
+     *
+     * The stride is the block capacity rounded up to the alignment required
+     * by the graphics card. The size of this buffer in graphics memory is the
+     * stride times the number of blocks.
+     *
+     * @return the stride (in bytes) between two blocks of this buffer.
+     */
+    public int getBlockStride() { return blockStride; }
+
     /**
      * Sets the bind point for this uniform buffer.
      *
@@ -290,6 +303,7 @@ public class CUUniformBuffer implements Disposable {
         gl.glBindBuffer(GL30.GL_UNIFORM_BUFFER, dataBuffer.get(0));
         if (autoflush && dirty) {
             gl.glBufferData(GL30.GL_UNIFORM_BUFFER, blockStride * blockCount, byteBuffer, drawtype);
+            CUFlightRecorder.uploadUniforms(blockStride * blockCount);
             dirty = false;
         }
     }
@@ -306,11 +320,8 @@ public class CUUniformBuffer implements Disposable {
      * This call is reentrant.  If can be safely called multiple times.
      */
     public void deactivate() {
-        GL30 gl = Gdx.gl30;
-        IntBuffer bound = BufferUtils.newIntBuffer(1);
-        gl.glGetIntegerv(GL30.GL_UNIFORM_BUFFER_BINDING, bound);
-        if (bound == dataBuffer) {
-            gl.glBindBuffer(GL30.GL_UNIFORM_BUFFER, 0);
+        if (isActive()) {
+            Gdx.gl30.glBindBuffer(GL30.GL_UNIFORM_BUFFER, 0);
         }
     }
 
@@ -339,10 +350,8 @@ public class CUUniformBuffer implements Disposable {
      * @return true if this uniform block is currently active.
      */
     public boolean isActive() {
-        GL30 gl = Gdx.gl30;
-        IntBuffer bound = BufferUtils.newIntBuffer(1);
-        gl.glGetIntegerv(GL30.GL_UNIFORM_BUFFER_BINDING, bound);
-        return bound == dataBuffer;
+        Gdx.gl30.glGetIntegerv(GL30.GL_UNIFORM_BUFFER_BINDING, query);
+        return query.get(0) == dataBuffer.get(0);
     }
 
     /**
@@ -386,8 +395,63 @@ public class CUUniformBuffer implements Disposable {
         assert isActive() : "Buffer is not active.";
         GL30 gl = Gdx.gl30;
         gl.glBufferData(GL30.GL_UNIFORM_BUFFER, blockStride * blockCount, byteBuffer, drawtype);
+        CUFlightRecorder.uploadUniforms(blockStride * blockCount);
         dirty = false;
     }
+
+    /**
+     * Returns a read-only view of the cached data for all blocks.
+     *
+     * The view covers the entire buffer, and includes any changes that have
+     * not yet been flushed.
+     *
+     * @return a read-only view of the cached data for all blocks.
+     */
+    ByteBuffer getCachedData() {
+        ByteBuffer view = byteBuffer.asReadOnlyBuffer();
+        ((Buffer) view).clear();
+        return view;
+    }
+
+    /**
+     * Replaces the cached data with the given bytes.
+     *
+     * The bytes are copied from the position to the limit of data, starting
+     * at the beginning of this buffer. The changes are sent to the graphics
+     * card on the next flush (or activation, if auto-flush is on).
+     *
+     * @param data  The bytes to copy
+     */
+    void setCachedData(ByteBuffer data) {
+        if (data.remaining() > byteBuffer.capacity()) {
+            throw new IllegalArgumentException("Data exceeds the uniform buffer capacity");
+        }
+        ByteBuffer target = byteBuffer.duplicate();
+        ((Buffer) target).clear();
+        target.put(data.duplicate());
+        dirty = true;
+    }
+
+    /**
+     * Pushes a byte range of the cached data to the graphics card.
+     *
+     * This buffer must be active for this method to succeed. The range is
+     * selected by the position and limit of the cached data, as not every
+     * backend honors the size argument of glBufferSubData.
+     *
+     * @param position  The byte offset of the range
+     * @param size      The number of bytes to push
+     */
+    private void pushRange(int position, int size) {
+        int pos = byteBuffer.position();
+        int lim = byteBuffer.limit();
+        ((Buffer) byteBuffer).limit(position+size);
+        ((Buffer) byteBuffer).position(position);
+        Gdx.gl30.glBufferSubData(GL30.GL_UNIFORM_BUFFER, position, size, byteBuffer);
+        ((Buffer) byteBuffer).limit(lim);
+        ((Buffer) byteBuffer).position(pos);
+        CUFlightRecorder.uploadUniforms(size);
+    }
     //endregion
 
     //region Data Offsets
@@ -882,14 +946,19 @@ public class CUUniformBuffer implements Disposable {
      * @param mat       The value for the uniform
      */
     public void setUniform(int block, int offset, Affine2 mat) {
-        float[] data = new float[12];
+        float[] data = tempdata;
         data[0] = mat.m00;
         data[1] = mat.m10;
+        data[2] = 0;
+        data[3] = 0;
         data[4] = mat.m01;
         data[5] = mat.m11;
+        data[6] = 0;
+        data[7] = 0;
         data[8] = mat.m02;
         data[9] = mat.m12;
         data[10] = 1;
+        data[11] = 0;
         setUniformfv(block, offset, 12, data, 0);
     }
 
@@ -916,14 +985,19 @@ public class CUUniformBuffer implements Disposable {
      * @param mat   The value for the uniform
      */
     public void setUniform(int block, String name, Affine2 mat) {
-        float[] data = new float[12];
+        float[] data = tempdata;
         data[0] = mat.m00;
         data[1] = mat.m10;
+        data[2] = 0;
+        data[3] = 0;
         data[4] = mat.m01;
         data[5] = mat.m11;
+        data[6] = 0;
+        data[7] = 0;
         data[8] = mat.m02;
         data[9] = mat.m12;
         data[10] = 1;
+        data[11] = 0;
         setUniformfv(block, name, 12, data, 0);
 
     }
@@ -947,7 +1021,7 @@ public class CUUniformBuffer implements Disposable {
      * @return true if it can access the given uniform variable as an affine transform.
      */
     public boolean getUniform(int block, int offset, Affine2 mat) {
-        float[] data = new float[12];
+        float[] data = tempdata;
         if (getUniformfv(block, offset, 12, data, 0)) {
             mat.m00 = data[0];
             mat.m10 = data[1];
@@ -981,7 +1055,7 @@ public class CUUniformBuffer implements Disposable {
      * @return true if it can access the given uniform variable as an affine transform.
      */
     public boolean getUniform(int block, String name, Affine2 mat) {
-        float[] data = new float[12];
+        float[] data = tempdata;
         if (getUniformfv(block, name, 12, data, 0)) {
             mat.m00 = data[0];
             mat.m10 = data[1];
@@ -1137,7 +1211,7 @@ public class CUUniformBuffer implements Disposable {
             BufferUtils.copy(values, srcOffset, size, byteBuffer);
             ((Buffer) byteBuffer).position(pos);
             if (autoflush && isActive()) {
-                gl.glBufferSubData(GL30.GL_UNIFORM_BUFFER, position, size * Float.SIZE, byteBuffer);
+                pushRange(position, size * 4);
             } else {
                 dirty = true;
             }
@@ -1155,7 +1229,7 @@ public class CUUniformBuffer implements Disposable {
                 BufferUtils.copy(values, srcOffset, size, byteBuffer);
                 ((Buffer) byteBuffer).position(pos);
                 if (active) {
-                    gl.glBufferSubData(GL30.GL_UNIFORM_BUFFER, position, size * Float.SIZE, byteBuffer);
+                    pushRange(position, size * 4);
                 }
             }
         }
@@ -1266,7 +1340,7 @@ public class CUUniformBuffer implements Disposable {
             BufferUtils.copy( values, srcoff, size, byteBuffer );
             byteBuffer.position( 0 );
             if (autoflush && isActive()) {
-                Gdx.gl30.glBufferSubData(GL30.GL_UNIFORM_BUFFER, position, size*4, byteBuffer);
+                pushRange(position, size*4);
             } else {
                 dirty = true;
             }
@@ -1278,7 +1352,9 @@ public class CUUniformBuffer implements Disposable {
             }
             byteBuffer.position( 0 );
             if (autoflush && isActive()) {
-                Gdx.gl30.glBufferSubData(GL30.GL_UNIFORM_BUFFER, 0, size*4, byteBuffer);
+                for(int bb = 0; bb < blockCount; bb++) {
+                    pushRange(bb*blockStride+offset, size*4);
+                }
             } else {
                 dirty = true;
             }
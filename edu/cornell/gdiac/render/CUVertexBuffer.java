@@ -61,6 +61,10 @@ public class CUVertexBuffer implements Disposable {
     protected ByteBuffer indxData;
     /** Corresponding short buffer for the index buffer */
     protected ShortBuffer shortIndxData;
+    /** The static quad index buffer handle (0 if not allocated) */
+    protected IntBuffer quadBuffer;
+    /** The number of quads supported by the quad index buffer */
+    protected int quadMax;
 
     /** The shader currently attached to this vertex buffer */
     protected ShaderProgram shader;
@@ -72,6 +76,10 @@ public class CUVertexBuffer implements Disposable {
 
     /** Boolean tracks whether this buffer is bound (unreliable because OpenGL) */
     private boolean isbound = false;
+    /** Whether the quad index buffer is the active index buffer */
+    private boolean quadactive = false;
+    /** The storage (in bytes) allocated for mapped vertex writes (0 if none) */
+    private int mappedSize = 0;
 
     /** Whether this has been initialized, for finalizer */
     private boolean initialized;
@@ -135,6 +143,8 @@ public class CUVertexBuffer implements Disposable {
         vertBuffer.put(0, 0);
         indxBuffer = BufferUtils.newIntBuffer(1);
         indxBuffer.put(0, 0);
+        quadBuffer = BufferUtils.newIntBuffer(1);
+        quadBuffer.put(0, 0);
 
         vertData = BufferUtils.newUnsafeByteBuffer(stride * vertMax);
         floatVertData = vertData.asFloatBuffer();
@@ -202,6 +212,15 @@ public class CUVertexBuffer implements Disposable {
             indxBuffer.put(0, 0);
             indxBuffer = null;
         }
+        if (quadBuffer != null) {
+            if (quadBuffer.get(0) != 0) {
+                gl.glDeleteBuffers(1, quadBuffer);
+            }
+            quadBuffer.put(0, 0);
+            quadBuffer = null;
+        }
+        quadMax = 0;
+        quadactive = false;
         if (vertBuffer != null) {
             gl.glDeleteBuffers(1, vertBuffer);
             vertBuffer.put(0, 0);
@@ -240,7 +259,7 @@ public class CUVertexBuffer implements Disposable {
         assert(vertBuffer != null) : "VertexBuffer has not been initialized.";
         gl.glBindVertexArray(vertArray.get(0));
         gl.glBindBuffer(GL30.GL_ARRAY_BUFFER, vertBuffer.get(0));
-        gl.glBindBuffer(GL30.GL_ELEMENT_ARRAY_BUFFER, indxBuffer.get(0));
+        gl.glBindBuffer(GL30.GL_ELEMENT_ARRAY_BUFFER, quadactive ? quadBuffer.get(0) : indxBuffer.get(0));
         if (shader != null) {
             shader.bind();
         }
@@ -373,7 +392,7 @@ public class CUVertexBuffer implements Disposable {
      * This method will only succeed if this buffer is actively bound.
      *
      * @param data  The data to load
-     * @param size  The number of vertices to load
+     * @param size  The number of floats to load
      * @param usage The type of data load
      */
     public void loadVertexData(float[] data, int size, int usage) {
@@ -381,7 +400,9 @@ public class CUVertexBuffer implements Disposable {
         GL30 gl = Gdx.gl30;
 
         BufferUtils.copy(data, vertData, size, 0);
-        gl.glBufferData(gl.GL_ARRAY_BUFFER, stride * size, vertData, usage);
+        gl.glBufferData(gl.GL_ARRAY_BUFFER, 4 * size, vertData, usage);
+        CUFlightRecorder.uploadVertices(4L * size);
+        mappedSize = 0;
 
         int error = gl.glGetError();
         assert (error == gl.GL_NO_ERROR) : "VertexBuffer Error";
@@ -391,6 +412,97 @@ public class CUVertexBuffer implements Disposable {
         loadVertexData(data, size, GL30.GL_STREAM_DRAW);
     }
 
+    /**
+     * Loads this vertex buffer with the contents of its own direct buffer.
+     *
+     * This is an alternative to {@link #loadVertexData(float[], int, int)} for
+     * renderers that write their vertices straight into {@link #getVertexData}.
+     * As the data is already off-heap, it is uploaded without a staging copy.
+     * The first size floats of the direct buffer are loaded, no matter its
+     * current position or limit.
+     *
+     * This method will only succeed if this buffer is actively bound.
+     *
+     * @param size  The number of floats to load
+     * @param usage The type of data load
+     */
+    public void loadVertexData(int size, int usage) {
+        assert isBound() : "Vertex buffer is not bound";
+        assert size <= floatVertData.capacity() : "Vertex data exceeds buffer capacity";
+        GL30 gl = Gdx.gl30;
+
+        ((Buffer)vertData).limit(4 * size);
+        ((Buffer)vertData).position(0);
+        gl.glBufferData(gl.GL_ARRAY_BUFFER, 4 * size, vertData, usage);
+        CUFlightRecorder.uploadVertices(4L * size);
+        ((Buffer)vertData).clear();
+        mappedSize = 0;
+
+        int error = gl.glGetError();
+        assert (error == gl.GL_NO_ERROR) : "VertexBuffer Error";
+    }
+
+    /**
+     * Loads the given vertex buffer with data written into mapped memory.
+     *
+     * Unlike {@link #loadVertexData(float[], int, int)}, the data is not staged
+     * in the direct buffer of this vertex buffer before it is sent to OpenGL.
+     * Instead, the method maps a range of the graphics buffer (invalidating its
+     * previous contents) and copies the data straight into it. This removes one
+     * full copy of the vertex stream on each load. If the range cannot be
+     * mapped, this method falls back to a standard load.
+     *
+     * Graphics memory for the full vertex capacity is allocated on the first
+     * call, using GL_STREAM_DRAW.
+     *
+     * This method will only succeed if this buffer is actively bound.
+     *
+     * @param data  The data to load
+     * @param size  The number of floats to load
+     */
+    public void loadMappedVertexData(float[] data, int size) {
+        assert isBound() : "Vertex buffer is not bound";
+        GL30 gl = Gdx.gl30;
+
+        int capacity = stride * vertMax;
+        if (mappedSize != capacity) {
+            gl.glBufferData(GL30.GL_ARRAY_BUFFER, capacity, null, GL30.GL_STREAM_DRAW);
+            mappedSize = capacity;
+        }
+
+        Buffer range = gl.glMapBufferRange(GL30.GL_ARRAY_BUFFER, 0, 4 * size,
+                GL30.GL_MAP_WRITE_BIT | GL30.GL_MAP_INVALIDATE_BUFFER_BIT);
+        if (range == null) {
+            loadVertexData(data, size, GL30.GL_STREAM_DRAW);
+            return;
+        }
+        BufferUtils.copy(data, range, size, 0);
+        if (!gl.glUnmapBuffer(GL30.GL_ARRAY_BUFFER)) {
+            // The data store was corrupted (e.g. by a display change)
+            loadVertexData(data, size, GL30.GL_STREAM_DRAW);
+            return;
+        }
+        CUFlightRecorder.uploadVertices(4L * size);
+
+        int error = gl.glGetError();
+        assert (error == gl.GL_NO_ERROR) : "VertexBuffer: "+CUGLDebug.errorName(error);
+    }
+
+    /**
+     * Returns the direct buffer backing the vertex data.
+     *
+     * Vertices written to this buffer (with absolute puts, starting at index 0)
+     * can be sent to the graphics card with {@link #loadVertexData(int, int)}.
+     * This buffer has room for the full vertex capacity of this vertex buffer.
+     * It is also used as the staging area for the other load methods, so its
+     * contents are overwritten by them.
+     *
+     * @return the direct buffer backing the vertex data.
+     */
+    public FloatBuffer getVertexData() {
+        return floatVertData;
+    }
+
     /**
      * Loads the given vertex buffer with indices.
      *
@@ -420,8 +532,13 @@ public class CUVertexBuffer implements Disposable {
     public void loadIndexData(short[] data, int size, int usage) {
         assert isBound() : "Vertex buffer is not bound";
         GL30 gl = Gdx.gl30;
+        if (quadactive) {
+            gl.glBindBuffer(GL30.GL_ELEMENT_ARRAY_BUFFER, indxBuffer.get(0));
+            quadactive = false;
+        }
         BufferUtils.copy(data, 0, indxData, size);
         gl.glBufferData( gl.GL_ELEMENT_ARRAY_BUFFER, 2 * size, indxData, usage );
+        CUFlightRecorder.uploadIndices(2L * size);
         int error = gl.glGetError();
         assert (error == gl.GL_NO_ERROR) : "VertexBuffer Error";
     }
@@ -434,6 +551,90 @@ public class CUVertexBuffer implements Disposable {
         loadIndexData(data, size, GL30.GL_STREAM_DRAW);
     }
 
+    /**
+     * Allocates a static index buffer for drawing quads.
+     *
+     * The index pattern for a sequence of quads is fixed: quad k uses the
+     * vertices 4k..4k+3 as the two triangles (0,1,2) and (2,3,0). As this
+     * never changes, this method computes these indices once and uploads
+     * them to the graphics card with GL_STATIC_DRAW. Afterwards, a call to
+     * {@link #useQuadIndices} will draw from this buffer instead of the
+     * streamed indices, so that only vertex data needs to be loaded.
+     *
+     * Calling this method again will replace the existing quad indices.
+     * The number of quads cannot exceed 8192, as indices are shorts.
+     *
+     * @param quads The number of quads to support
+     */
+    public void setQuadIndices(int quads) {
+        if (quads <= 0 || quads > 8192) {
+            throw new IllegalArgumentException("Quad count must be in 1..8192: "+quads);
+        }
+        GL30 gl = Gdx.gl30;
+        if (quadBuffer.get(0) == 0) {
+            gl.glGenBuffers(1, quadBuffer);
+            if (quadBuffer.get(0) == 0) {
+                throw new GdxRuntimeException("Could not create quad index buffer.");
+            }
+        }
+
+        ShortBuffer pattern = BufferUtils.newShortBuffer(6*quads);
+        for(int ii = 0; ii < quads; ii++) {
+            int v = 4*ii;
+            pattern.put((short) v);
+            pattern.put((short)(v+1));
+            pattern.put((short)(v+2));
+            pattern.put((short)(v+2));
+            pattern.put((short)(v+3));
+            pattern.put((short) v);
+        }
+        ((Buffer)pattern).flip();
+
+        // Element buffers are VAO state, so attach to our own array
+        gl.glBindVertexArray(vertArray.get(0));
+        gl.glBindBuffer(GL30.GL_ELEMENT_ARRAY_BUFFER, quadBuffer.get(0));
+        gl.glBufferData(GL30.GL_ELEMENT_ARRAY_BUFFER, 12 * quads, pattern, GL30.GL_STATIC_DRAW);
+        CUFlightRecorder.uploadIndices(12L * quads);
+        gl.glBindBuffer(GL30.GL_ELEMENT_ARRAY_BUFFER, quadactive ? quadBuffer.get(0) : indxBuffer.get(0));
+        if (!isbound) {
+            gl.glBindVertexArray(0);
+        }
+        quadMax = quads;
+
+        int error = gl.glGetError();
+        assert (error == gl.GL_NO_ERROR) : "VertexBuffer: "+CUGLDebug.errorName(error);
+    }
+
+    /**
+     * Returns the number of quads supported by the static quad indices.
+     *
+     * This value is 0 if {@link #setQuadIndices} has never been called.
+     *
+     * @return the number of quads supported by the static quad indices.
+     */
+    public int getQuadCapacity() {
+        return quadMax;
+    }
+
+    /**
+     * Makes the static quad indices the active index data.
+     *
+     * Subsequent draw commands will use the indices allocated by {@link
+     * #setQuadIndices} until the next call to {@link #loadIndexData}, which
+     * restores the streamed index buffer. This method does nothing if the
+     * quad indices are already active.
+     *
+     * This method will only succeed if this buffer is actively bound.
+     */
+    public void useQuadIndices() {
+        assert isBound() : "Vertex buffer is not bound";
+        assert quadMax > 0 : "Quad indices have not been allocated";
+        if (!quadactive) {
+            Gdx.gl30.glBindBuffer(GL30.GL_ELEMENT_ARRAY_BUFFER, quadBuffer.get(0));
+            quadactive = true;
+        }
+    }
+
     /**
      * Draws to the active framebuffer using this vertex buffer
      *
@@ -4,6 +4,7 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import edu.cornell.gdiac.render.CUShader;
 import edu.cornell.gdiac.render.CUSpriteBatch;
+import edu.cornell.gdiac.render.CUTextureArray;
 
 /**
  * A factory for the default {@link CUSpriteBatch} shader
@@ -15,6 +16,17 @@ import edu.cornell.gdiac.render.CUSpriteBatch;
  * coordinates. Finally, there is support for very simple blur effects, which
  * can be used on font labels.
  *
+ * The shader also supports premultiplied alpha. In that mode the vertex colors
+ * and textures are expected to be premultiplied already. The gradient colors
+ * are premultiplied by the shader, and the scissor mask scales every channel
+ * (not just alpha). Additive gradients have their alpha zeroed by the shader,
+ * just as additive vertex colors have zero alpha.
+ *
+ * There is also a variant for texture arrays (see {@link CUTextureArray}), which is
+ * used for vertices with 6 or 8 floats. This variant samples a sampler2DArray with
+ * an extra per-vertex layer attribute (the last float of each vertex), so that
+ * sprites drawn from different layers of the same array share a draw call.
+ *
  * Any alternate shader for {@link CUSpriteBatch} should support all of the attributes,
  * the texture uniform, and the projection uniform.  All other uniforms are optional.
  *
@@ -31,6 +43,8 @@ public class SpriteShader {
     public static final String TEXCOORD_ATTRIBUTE = ShaderProgram.TEXCOORD_ATTRIBUTE+"0";
     /** The gradient coordinate attribute variable (uses the default from {@link CUShader} */
     public static final String GRADCOORD_ATTRIBUTE = CUShader.GRADCOORD_ATTRIBUTE+"0";
+    /** The texture array layer attribute variable (only in the texture array variant) */
+    public static final String LAYER_ATTRIBUTE = "a_layer";
     /** The projection matrix uniform */
     public static final String PROJECTION_UNIFORM = "u_projTrans";
 	/** The texture uniform */
@@ -73,8 +87,14 @@ public class SpriteShader {
     /**
      * Returns a newly created {@link CUSpriteBatch} shader
      *
+     * The number of floats in each vertex selects the variant. Vertices with 7
+     * or 8 floats have gradient coordinates. Vertices with 6 or 8 floats end
+     * with a texture array layer, and the shader samples a sampler2DArray.
+     *
      * This method throws and error if the shader fails to compile.
      *
+     * @param numVertices   The number of floats in each vertex
+     *
      * @return a newly created {@link CUSpriteBatch} shader
      */
     public static CUShader createShader(int numVertices) {
@@ -82,7 +102,16 @@ public class SpriteShader {
         final String vertexShader;
         final String fragmentShader;
 
-        if (numVertices == 7) {
+        final boolean layers = numVertices == 6 || numVertices == 8;
+        final String sampler = layers ? "sampler2DArray " : "sampler2D ";
+        final String layerOut = layers ? "// Texture array layer\n" +
+                                         "in  float " + LAYER_ATTRIBUTE + ";\n" +
+                                         "flat out float outLayer;\n" +
+                                         "\n" : "";
+        final String layerCopy = layers ? "    outLayer = " + LAYER_ATTRIBUTE + ";\n" : "";
+        final String layerIn = layers ? "flat in float outLayer;\n" : "";
+
+        if (numVertices >= 7) {
             vertexShader = "////////// SHADER BEGIN /////////\n" +
                     "// Positions\n" +
                     "in vec4 " + POSITION_ATTRIBUTE + ";\n" +
@@ -96,6 +125,7 @@ public class SpriteShader {
                     "in  vec2 " + TEXCOORD_ATTRIBUTE + ";\n" +
                     "out vec2 outTexCoord;\n" +
                     "\n" +
+                    layerOut +
                     "// Gradient coordinates\n" +
                     "in  vec2 " + GRADCOORD_ATTRIBUTE + ";\n" +
                     "out vec2 outGradCoord;\n" +
@@ -109,6 +139,7 @@ public class SpriteShader {
                     "    outPosition = " + POSITION_ATTRIBUTE + ".xy; // Need untransformed for scissor\n" +
                     "    outColor = " + COLOR_ATTRIBUTE + ";\n" +
                     "    outTexCoord = " + TEXCOORD_ATTRIBUTE + ";\n" +
+                    layerCopy +
                     "    outGradCoord = " + GRADCOORD_ATTRIBUTE + ";\n" +
                     "}\n" +
                     "/////////// SHADER END //////////";
@@ -123,7 +154,7 @@ public class SpriteShader {
                     "uniform vec2 " + BLURSTEP_UNIFORM + ";\n" +
                     "\n" +
                     "// The texture for sampling\n" +
-                    "uniform sampler2D " + TEXTURE_UNIFORM + ";\n" +
+                    "uniform " + sampler + TEXTURE_UNIFORM + ";\n" +
                     "\n" +
                     "// The output color\n" +
                     "out vec4 frag_color;\n" +
@@ -132,6 +163,7 @@ public class SpriteShader {
                     "in vec2 outPosition;\n" +
                     "in vec4 outColor;\n" +
                     "in vec2 outTexCoord;\n" +
+                    layerIn +
                     "in vec2 outGradCoord;\n" +
                     "\n" +
                     "// The stroke+gradient uniform block\n" +
@@ -188,7 +220,7 @@ public class SpriteShader {
                     "    // Sample from the texture and average\n" +
                     "    vec4 result = vec4(0.0);\n" +
                     "    for(int ii = 0; ii < 9; ii++) {\n" +
-                    "        result += texture(" + TEXTURE_UNIFORM + ", coord + off[ii])*kernel[ii];\n" +
+                    "        result += " + sample("coord + off[ii]", layers) + "*kernel[ii];\n" +
                     "    }\n" +
                     "\n" +
                     "    return result;\n" +
@@ -204,6 +236,13 @@ public class SpriteShader {
                     "        vec2 pt = (cmatrix * vec3(outGradCoord,1.0)).xy;\n" +
                     "        float d = boxgradient(pt,cextent," + CONTEXT_FIELDS[7] + ",cfeathr);\n" +
                     "        result = mix(" + CONTEXT_FIELDS[4] + "," + CONTEXT_FIELDS[5] + ",d);\n" +
+                    "        if (" + DRAWTYPE_UNIFORM + " >= 16) {\n" +
+                    "            result.rgb *= result.a;\n" +
+                    "        }\n" +
+                    "        if (" + DRAWTYPE_UNIFORM + " >= 32) {\n" +
+                    "            // Additive gradient (only in premultiplied mode)\n" +
+                    "            result.a = 0.0;\n" +
+                    "        }\n" +
                     "    } else {\n" +
                     "        // Use a solid color\n" +
                     "        result = outColor;\n" +
@@ -211,16 +250,20 @@ public class SpriteShader {
                     "\n" +
                     "    if (mod(" + DRAWTYPE_UNIFORM + ", 2.0) == 1.0) {\n" +
                     "        // Include texture (tinted by color or gradient)\n" +
-                    "        if (" + DRAWTYPE_UNIFORM + " >= 8.0) {\n" +
+                    "        if (mod(" + DRAWTYPE_UNIFORM + ", 16.0) >= 8.0) {\n" +
                     "            result *= blursample(outTexCoord);\n" +
                     "        } else {\n" +
-                    "            result *= texture(" + TEXTURE_UNIFORM + ", outTexCoord);\n" +
+                    "            result *= " + sample("outTexCoord", layers) + ";\n" +
                     "        }\n" +
                     "    }\n" +
                     "\n" +
                     "    if (mod(" + DRAWTYPE_UNIFORM + ", 8.0) >= 4.0) {\n" +
                     "        // Apply scissor mask\n" +
-                    "        result.w *= scissormask(outTexCoord);\n" +
+                    "        if (" + DRAWTYPE_UNIFORM + " >= 16) {\n" +
+                    "            result *= scissormask(outTexCoord);\n" +
+                    "        } else {\n" +
+                    "            result.w *= scissormask(outTexCoord);\n" +
+                    "        }\n" +
                     "    }\n" +
                     "\n" +
                     "    frag_color = result;\n" +
@@ -240,6 +283,7 @@ public class SpriteShader {
                     "in  vec2 "+TEXCOORD_ATTRIBUTE+";\n"+
                     "out vec2 outTexCoord;\n"+
                     "\n"+
+                    layerOut+
                     "// Matrices\n"+
                     "uniform mat4 "+PROJECTION_UNIFORM+";\n"+
                     "\n"+
@@ -249,6 +293,7 @@ public class SpriteShader {
                     "    outPosition = "+POSITION_ATTRIBUTE+".xy; // Need untransformed for scissor\n"+
                     "    outColor = "+COLOR_ATTRIBUTE+";\n"+
                     "    outTexCoord = "+TEXCOORD_ATTRIBUTE+";\n"+
+                    layerCopy+
                     "}\n"+
                     "/////////// SHADER END //////////";
             fragmentShader = "////////// SHADER BEGIN /////////\n"+
@@ -263,7 +308,7 @@ public class SpriteShader {
                     "uniform vec2 "+BLURSTEP_UNIFORM+";\n"+
                     "\n"+
                     "// The texture for sampling\n"+
-                    "uniform sampler2D "+TEXTURE_UNIFORM+";\n"+
+                    "uniform "+sampler+TEXTURE_UNIFORM+";\n"+
                     "\n"+
                     "// The output color\n"+
                     "out vec4 frag_color;\n"+
@@ -272,6 +317,7 @@ public class SpriteShader {
                     "in vec2 outPosition;\n"+
                     "in vec4 outColor;\n"+
                     "in vec2 outTexCoord;\n"+
+                    layerIn+
                     "\n"+
                     "// The stroke+gradient uniform block\n"+
                     "layout (std140) uniform "+CONTEXT_UNIFORM+"\n"+
@@ -327,7 +373,7 @@ public class SpriteShader {
                     "    // Sample from the texture and average\n"+
                     "    vec4 result = vec4(0.0);\n"+
                     "    for(int ii = 0; ii < 9; ii++) {\n"+
-                    "        result += texture("+TEXTURE_UNIFORM+", coord + off[ii])*kernel[ii];\n"+
+                    "        result += "+sample("coord + off[ii]", layers)+"*kernel[ii];\n"+
                     "    }\n"+
                     "\n"+
                     "    return result;\n"+
@@ -343,6 +389,13 @@ public class SpriteShader {
                     "        vec2 pt = (cmatrix * vec3(outTexCoord.xy,1.0)).xy;\n"+
                     "        float d = boxgradient(pt,cextent,"+CONTEXT_FIELDS[7]+",cfeathr);\n"+
                     "        result = mix("+CONTEXT_FIELDS[4]+","+CONTEXT_FIELDS[5]+",d);\n"+
+                    "        if ("+DRAWTYPE_UNIFORM+" >= 16) {\n"+
+                    "            result.rgb *= result.a;\n"+
+                    "        }\n"+
+                    "        if ("+DRAWTYPE_UNIFORM+" >= 32) {\n"+
+                    "            // Additive gradient (only in premultiplied mode)\n"+
+                    "            result.a = 0.0;\n"+
+                    "        }\n"+
                     "    } else {\n"+
                     "        // Use a solid color\n"+
                     "        result = outColor;\n"+
@@ -350,16 +403,20 @@ public class SpriteShader {
                     "\n"+
                     "    if (mod("+DRAWTYPE_UNIFORM+", 2.0) == 1.0) {\n"+
                     "        // Include texture (tinted by color or gradient)\n"+
-                    "        if ("+DRAWTYPE_UNIFORM+" >= 8.0) {\n"+
+                    "        if (mod("+DRAWTYPE_UNIFORM+", 16.0) >= 8.0) {\n"+
                     "            result *= blursample(outTexCoord);\n"+
                     "        } else {\n"+
-                    "            result *= texture("+TEXTURE_UNIFORM+", outTexCoord);\n"+
+                    "            result *= "+sample("outTexCoord", layers)+";\n"+
                     "        }\n"+
                     "    }\n"+
                     "\n"+
                     "    if (mod("+DRAWTYPE_UNIFORM+", 8.0) >= 4.0) {\n"+
                     "        // Apply scissor mask\n"+
-                    "        result.w *= scissormask(outTexCoord);\n"+
+                    "        if ("+DRAWTYPE_UNIFORM+" >= 16) {\n"+
+                    "            result *= scissormask(outTexCoord);\n"+
+                    "        } else {\n"+
+                    "            result.w *= scissormask(outTexCoord);\n"+
+                    "        }\n"+
                     "    }\n"+
                     "\n"+
                     "    frag_color = result;\n"+
@@ -382,4 +439,22 @@ public class SpriteShader {
 
         return spriteShader;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the GLSL expression sampling the texture at the given coordinate
+     *
+     * In the texture array variant, the sample is taken from the layer of the
+     * vertex.
+     *
+     * @param coord     The GLSL texture coordinate expression
+     * @param layers    Whether the texture is a texture array
+     *
+     * @return the GLSL expression sampling the texture at the given coordinate
+     */
+    private static String sample(String coord, boolean layers) {
+        if (layers) {
+            return "texture(" + TEXTURE_UNIFORM + ", vec3(" + coord + ", outLayer))";
+        }
+        return "texture(" + TEXTURE_UNIFORM + ", " + coord + ")";
+    }
+}